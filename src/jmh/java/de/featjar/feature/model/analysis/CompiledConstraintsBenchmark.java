@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.analysis;
+
+import de.featjar.base.data.identifier.Identifiers;
+import de.featjar.feature.model.FeatureModel;
+import de.featjar.feature.model.IConstraint;
+import de.featjar.feature.model.IFeatureModel;
+import de.featjar.feature.model.IFeatureTree;
+import de.featjar.formula.structure.Expressions;
+import de.featjar.formula.structure.IExpression;
+import de.featjar.formula.structure.IFormula;
+import de.featjar.formula.structure.connective.And;
+import de.featjar.formula.structure.connective.AtMost;
+import de.featjar.formula.structure.connective.BiImplies;
+import de.featjar.formula.structure.connective.Implies;
+import de.featjar.formula.structure.connective.Not;
+import de.featjar.formula.structure.connective.Or;
+import de.featjar.formula.structure.predicate.Literal;
+import de.featjar.formula.structure.term.value.Variable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares evaluating all constraints of a random feature model with the formula library's
+ * {@link IExpression#evaluate(List) expression evaluation} and with the {@link CompiledConstraints compiled program},
+ * for a batch of random configurations.
+ * Run with {@code gradle jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompiledConstraintsBenchmark {
+
+    @Param({"1000"})
+    public int featureCount;
+
+    @Param({"1000"})
+    public int constraintCount;
+
+    private static final int CONFIGURATION_COUNT = 64;
+
+    private FlatFeatureTree tree;
+    private List<IFormula> formulas;
+    private CompiledConstraints constraints;
+    private long[][] configurations;
+    private int[] registers;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        IFeatureModel featureModel = new FeatureModel(Identifiers.newCounterIdentifier());
+        IFeatureTree root = featureModel.mutate().addFeatureTreeRoot(featureModel.mutate().addFeature("Root"));
+        for (int i = 0; i < featureCount; i++) {
+            root.mutate().addFeatureBelow(featureModel.mutate().addFeature("F" + i));
+        }
+        for (int i = 0; i < constraintCount; i++) {
+            featureModel.mutate().addConstraint(createFormula(random));
+        }
+        tree = new FlatFeatureTree(featureModel);
+        constraints = new CompiledConstraints(featureModel, tree);
+        formulas = new ArrayList<>();
+        for (IConstraint constraint : featureModel.getConstraints()) {
+            formulas.add(constraint.getFormula());
+        }
+        configurations = new long[CONFIGURATION_COUNT][(tree.size() + 63) >>> 6];
+        for (long[] configuration : configurations) {
+            for (int word = 0; word < configuration.length; word++) {
+                configuration[word] = random.nextLong();
+            }
+        }
+        registers = new int[constraints.getRegisterCount()];
+    }
+
+    /**
+     * Creates a formula in one of the shapes typical for cross-tree constraints, drawing features from a small pool
+     * so that subexpressions recur across constraints.
+     */
+    private IFormula createFormula(Random random) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return new Implies(literal(random), literal(random));
+            case 1:
+                return new Implies(new And(literal(random), literal(random)), new Or(literal(random), literal(random)));
+            case 2:
+                return new Not(new And(literal(random), literal(random)));
+            default:
+                return new BiImplies(
+                        literal(random), new AtMost(1, List.<IFormula>of(literal(random), literal(random))));
+        }
+    }
+
+    private Literal literal(Random random) {
+        return Expressions.literal("F" + random.nextInt(Math.max(featureCount / 10, 2)));
+    }
+
+    /**
+     * Evaluates an expression with {@link IExpression#evaluate(List)} of the formula library, which only needs the
+     * values of variables to be supplied.
+     */
+    private static Object evaluate(IExpression expression, FlatFeatureTree tree, long[] configuration) {
+        if (expression instanceof Variable) {
+            int ordinal = tree.getOrdinal(((Variable) expression).getName());
+            return (configuration[ordinal >>> 6] & (1L << ordinal)) != 0;
+        }
+        List<Object> values = new ArrayList<>(expression.getChildrenCount());
+        for (IExpression child : expression.getChildren()) {
+            values.add(evaluate(child, tree, configuration));
+        }
+        return expression.evaluate(values);
+    }
+
+    @Benchmark
+    public int evaluateFormulas() {
+        int satisfied = 0;
+        for (long[] configuration : configurations) {
+            for (IFormula formula : formulas) {
+                if (Boolean.TRUE.equals(evaluate(formula, tree, configuration))) {
+                    satisfied++;
+                }
+            }
+        }
+        return satisfied;
+    }
+
+    @Benchmark
+    public int evaluateCompiled() {
+        int satisfied = 0;
+        for (long[] configuration : configurations) {
+            constraints.evaluate(configuration, registers);
+            for (int i = 0; i < constraints.size(); i++) {
+                if (constraints.isSatisfied(i, registers)) {
+                    satisfied++;
+                }
+            }
+        }
+        return satisfied;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model;
+
+import de.featjar.base.data.IAttribute;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A secondary index that maps the values of an attribute to the features of a feature model that have them.
+ * Numeric attributes are indexed in a sorted map, so that {@link FeatureQuery queries} can look up ranges of values;
+ * all other attributes, such as strings and enums, are indexed in a hash map for equality lookups.
+ * Features without an explicit value are indexed under the attribute's default value, if any.
+ * The index is kept up to date by {@link FeatureModel} when features are added or removed and when attribute values
+ * change.
+ *
+ * @see FeatureModel#createAttributeIndex(IAttribute)
+ */
+public class AttributeIndex {
+
+    private final IAttribute<?> attribute;
+    private final boolean sorted;
+    private final Map<Object, Set<IFeature>> postings;
+    private final HashMap<IFeature, Object> keys = new HashMap<>();
+
+    AttributeIndex(IAttribute<?> attribute) {
+        this.attribute = attribute;
+        sorted = Number.class.isAssignableFrom(attribute.getType());
+        postings = sorted ? new TreeMap<>() : new HashMap<>();
+    }
+
+    public IAttribute<?> getAttribute() {
+        return attribute;
+    }
+
+    /**
+     * Returns whether this index is sorted and thus supports range lookups.
+     *
+     * @return whether this index is sorted
+     */
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    /**
+     * Returns the number of indexed features, which excludes features without a value.
+     *
+     * @return the number of indexed features
+     */
+    public int size() {
+        return keys.size();
+    }
+
+    private Object toKey(Object value) {
+        return sorted ? (Object) toKey(((Number) value).doubleValue()) : value;
+    }
+
+    private static double toKey(double value) {
+        // -0.0 and 0.0 are equal as numbers, but not as map keys
+        return value == 0 ? 0.0 : value;
+    }
+
+    void update(IFeature feature) {
+        remove(feature);
+        Object value = feature.getAttributeValue(attribute).orElse(null);
+        if (value != null) {
+            Object key = toKey(value);
+            keys.put(feature, key);
+            postings.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(feature);
+        }
+    }
+
+    void remove(IFeature feature) {
+        Object key = keys.remove(feature);
+        if (key != null) {
+            Set<IFeature> features = postings.get(key);
+            features.remove(feature);
+            if (features.isEmpty()) {
+                postings.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Returns all features with a given value.
+     * For sorted indexes, values are compared as doubles, so the result may include features with a different value of
+     * a type that cannot be represented exactly.
+     *
+     * @param value the value
+     * @return the features
+     */
+    public Set<IFeature> getEqual(Object value) {
+        Set<IFeature> features = postings.get(toKey(value));
+        return features == null ? Collections.emptySet() : Collections.unmodifiableSet(features);
+    }
+
+    /**
+     * Returns the sets of all features with a value in a given range.
+     *
+     * @param min the minimum value
+     * @param minInclusive whether the minimum is included
+     * @param max the maximum value
+     * @param maxInclusive whether the maximum is included
+     * @return the sets of features, one per distinct value
+     */
+    @SuppressWarnings("unchecked")
+    public Collection<Set<IFeature>> getRange(double min, boolean minInclusive, double max, boolean maxInclusive) {
+        if (!sorted) {
+            throw new UnsupportedOperationException("index on " + attribute + " is not sorted");
+        }
+        if (!(min <= max)) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableCollection(((NavigableMap<Object, Set<IFeature>>) postings)
+                .subMap(toKey(min), minInclusive, toKey(max), maxInclusive)
+                .values());
+    }
+
+    @Override
+    public String toString() {
+        return "AttributeIndex{" + attribute + (sorted ? ", sorted}" : "}");
+    }
+}
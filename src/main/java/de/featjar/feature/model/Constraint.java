@@ -29,6 +29,8 @@ import java.util.LinkedHashSet;
 public class Constraint extends AFeatureModelElement implements IMutableConstraint {
     protected IFormula formula;
     protected final LinkedHashSet<IFeature> containedFeaturesCache = Sets.empty();
+    protected long canonicalHash;
+    protected boolean canonicalHashValid;
 
     protected Constraint(IFeatureModel featureModel, IFormula formula) {
         super(featureModel);
@@ -51,7 +53,7 @@ public class Constraint extends AFeatureModelElement implements IMutableConstrai
 
     @Override
     public Constraint clone(IFeatureModel newFeatureModel) {
-        return new Constraint(this);
+        return new Constraint(this, newFeatureModel);
     }
 
     @Override
@@ -64,6 +66,15 @@ public class Constraint extends AFeatureModelElement implements IMutableConstrai
         return containedFeaturesCache;
     }
 
+    @Override
+    public long getCanonicalHash() {
+        if (!canonicalHashValid) {
+            canonicalHash = StructuralHashes.ofFormula(formula);
+            canonicalHashValid = true;
+        }
+        return canonicalHash;
+    }
+
     @Override
     public String toString() {
         return String.format("Constraint{formula=%s}", formula);
@@ -71,9 +82,16 @@ public class Constraint extends AFeatureModelElement implements IMutableConstrai
 
     @Override
     public void setFormula(IFormula formula) {
+        if (featureModel instanceof FeatureModel && Constraint.this.formula != null) {
+            ((FeatureModel) featureModel).onConstraintFormulaChanged(this, -1);
+        }
         containedFeaturesCache.clear();
         containedFeaturesCache.addAll(IConstraint.getReferencedFeatures(formula, featureModel));
         Constraint.this.formula = formula;
+        canonicalHashValid = false;
+        if (featureModel instanceof FeatureModel) {
+            ((FeatureModel) featureModel).onConstraintFormulaChanged(this, 1);
+        }
     }
 
     @Override
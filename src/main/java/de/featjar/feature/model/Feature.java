@@ -20,12 +20,22 @@
  */
 package de.featjar.feature.model;
 
+import de.featjar.base.data.Attribute;
+import de.featjar.base.data.IAttribute;
 import de.featjar.base.data.Result;
 import de.featjar.feature.model.IFeature.IMutableFeature;
 
 public class Feature extends AFeatureModelElement implements IMutableFeature {
     protected Class<?> type;
 
+    /**
+     * The feature tree node most recently created for this feature, if any.
+     * Used to find the node without scanning the feature tree and to invalidate its
+     * {@link IFeatureTree#getStructuralHash() structural hash}, {@link SubtreeAggregate subtree aggregates}, and
+     * {@link RecursiveAttribute recursive attribute values} when this feature changes.
+     */
+    protected FeatureTree featureTree;
+
     protected Feature(IFeatureModel featureModel) {
         super(featureModel);
     }
@@ -46,7 +56,7 @@ public class Feature extends AFeatureModelElement implements IMutableFeature {
 
     @Override
     public Feature clone(IFeatureModel newFeatureModel) {
-        return new Feature(this);
+        return new Feature(this, newFeatureModel);
     }
 
     @Override
@@ -56,12 +66,24 @@ public class Feature extends AFeatureModelElement implements IMutableFeature {
 
     @Override
     public Result<IFeatureTree> getFeatureTree() {
+        if (featureTree != null) {
+            IFeatureTree root = featureTree;
+            for (Result<IFeatureTree> parent = root.getParent(); parent.isPresent(); parent = root.getParent()) {
+                root = parent.get();
+            }
+            for (IFeatureTree featureTreeRoot : featureModel.getRoots()) {
+                if (featureTreeRoot == root) {
+                    return Result.of(featureTree);
+                }
+            }
+        }
         return featureModel.getFeatureTree(this);
     }
 
     @Override
     public void setType(Class<?> type) {
         this.type = type;
+        invalidateCaches();
     }
 
     @Override
@@ -71,11 +93,64 @@ public class Feature extends AFeatureModelElement implements IMutableFeature {
 
     @Override
     public void setName(String name) {
-        attributeValues.put(Attributes.NAME, name);
+        Object oldName = attributeValues.put(Attributes.NAME, name);
+        onRenamed(oldName);
     }
 
     @Override
     public void setDescription(String description) {
         attributeValues.put(Attributes.DESCRIPTION, description);
+        onAttributeChanged(Attributes.DESCRIPTION);
+    }
+
+    @Override
+    public <S> void setAttributeValue(Attribute<S> attribute, S value) {
+        if (Attributes.NAME.equals(attribute)) {
+            Object oldName = attributeValues.get(Attributes.NAME);
+            super.setAttributeValue(attribute, value);
+            onRenamed(oldName);
+        } else {
+            super.setAttributeValue(attribute, value);
+            onAttributeChanged(attribute);
+        }
+    }
+
+    @Override
+    public <S> S removeAttributeValue(Attribute<S> attribute) {
+        if (Attributes.NAME.equals(attribute)) {
+            S oldName = super.removeAttributeValue(attribute);
+            onRenamed(oldName);
+            return oldName;
+        }
+        S value = super.removeAttributeValue(attribute);
+        onAttributeChanged(attribute);
+        return value;
+    }
+
+    private void onRenamed(Object oldName) {
+        invalidateCaches();
+        if (featureModel instanceof FeatureModel) {
+            String newName = getName().orElse(null);
+            String oldNameString = oldName == null ? "@" + identifier : (String) oldName;
+            if (!oldNameString.equals(newName)) {
+                ((FeatureModel) featureModel).onFeatureRenamed(this, oldNameString, newName);
+            }
+        }
+    }
+
+    protected void invalidateCaches() {
+        if (featureTree != null) {
+            featureTree.invalidateCaches();
+        }
+    }
+
+    private void onAttributeChanged(IAttribute<?> attribute) {
+        invalidateCaches();
+        if (featureModel instanceof FeatureModel) {
+            if (featureTree != null && ((FeatureModel) featureModel).isRecursive(attribute)) {
+                featureTree.invalidateRecursiveValues();
+            }
+            ((FeatureModel) featureModel).onFeatureAttributeChanged(this, attribute);
+        }
     }
 }
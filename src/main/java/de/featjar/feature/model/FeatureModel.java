@@ -30,10 +30,12 @@ import de.featjar.base.data.identifier.UUIDIdentifier;
 import de.featjar.base.tree.Trees;
 import de.featjar.base.tree.visitor.TreePrinter;
 import de.featjar.feature.model.IFeatureModel.IMutableFeatureModel;
+import de.featjar.feature.model.jfr.CloneEvent;
 import de.featjar.formula.structure.IFormula;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -49,8 +51,58 @@ public class FeatureModel implements IMutableFeatureModel, IMutatableAttributabl
     protected final LinkedHashMap<IIdentifier, IFeature> features;
     protected final LinkedHashMap<IIdentifier, IConstraint> constraints;
 
+    /**
+     * The constraints in order, so that {@link #getConstraint(int)} does not need to scan all constraints.
+     */
+    private final IndexedConstraints indexedConstraints = new IndexedConstraints();
+
+    /**
+     * Cached {@link StructuralHashes#ofConstraints(Collection) hash of all constraints}, kept up to date on every
+     * constraint change once it has been computed.
+     */
+    private long constraintsHash;
+
+    private boolean constraintsHashValid;
+
+    /**
+     * Index of features by name, so that {@link #getFeature(String)} does not need to scan all features.
+     * Kept up to date by {@link Feature} on every name change.
+     */
+    protected final HashMap<String, IFeature> featuresByName;
+
+    /**
+     * Whether two features ever had the same name, in which case the index may miss features.
+     */
+    protected boolean duplicateFeatureNames;
+
     protected final LinkedHashMap<IAttribute<?>, Object> attributeValues;
 
+    /**
+     * Indexes on feature attributes, kept up to date by {@link Feature} on every attribute change.
+     */
+    protected final LinkedHashMap<IAttribute<?>, AttributeIndex> attributeIndexes;
+
+    /**
+     * Subtree aggregates cached by the feature trees of this model, in the order of their offsets.
+     */
+    protected final ArrayList<SubtreeAggregate> subtreeAggregates;
+
+    /**
+     * Recursive attributes resolved by the feature trees of this model, in the order of their indices.
+     */
+    protected final LinkedHashMap<IAttribute<?>, RecursiveAttribute<?>> recursiveAttributes;
+
+    /**
+     * Cached {@link #getFeatureTreeIndex() feature tree index}, or null if the feature trees changed since it was
+     * built.
+     */
+    protected FeatureTreeIndex featureTreeIndex;
+
+    /**
+     * {@link #getFeatureNameIndex() Name search index}, or null if it was never requested.
+     */
+    protected FeatureNameIndex featureNameIndex;
+
     public FeatureModel() {
         this(UUIDIdentifier.newInstance());
     }
@@ -59,32 +111,76 @@ public class FeatureModel implements IMutableFeatureModel, IMutatableAttributabl
         this.identifier = Objects.requireNonNull(identifier);
         featureTreeRoots = new ArrayList<>(1);
         features = Maps.empty();
+        featuresByName = new HashMap<>();
         constraints = Maps.empty();
         attributeValues = new LinkedHashMap<>(4);
+        attributeIndexes = new LinkedHashMap<>(4);
+        subtreeAggregates = new ArrayList<>(2);
+        recursiveAttributes = new LinkedHashMap<>(4);
     }
 
     protected FeatureModel(FeatureModel otherFeatureModel) {
         identifier = otherFeatureModel.getNewIdentifier();
 
-        featureTreeRoots = new ArrayList<>(otherFeatureModel.featureTreeRoots.size());
-        otherFeatureModel.featureTreeRoots.stream().forEach(t -> featureTreeRoots.add(Trees.clone(t)));
-
         features = new LinkedHashMap<>((int) (otherFeatureModel.features.size() * 1.5));
-        otherFeatureModel.features.entrySet().stream()
-                .map(e -> e.getValue().clone(this))
-                .forEach(f -> features.put(f.getIdentifier(), f));
+        // clones have new identifiers, so cloned trees are linked via the identifiers of the original features
+        HashMap<IIdentifier, Feature> clonedFeatures = new HashMap<>((int) (features.size() * 1.5));
+        for (IFeature otherFeature : otherFeatureModel.features.values()) {
+            IFeature feature = otherFeature.clone(this);
+            features.put(feature.getIdentifier(), feature);
+            if (feature instanceof Feature) {
+                clonedFeatures.put(otherFeature.getIdentifier(), (Feature) feature);
+            }
+        }
+
+        featureTreeRoots = new ArrayList<>(otherFeatureModel.featureTreeRoots.size());
+        otherFeatureModel.featureTreeRoots.stream()
+                .forEach(t -> featureTreeRoots.add(cloneFeatureTree(t, clonedFeatures)));
+        featuresByName = new HashMap<>((int) (features.size() * 1.5));
+        features.values().forEach(f -> f.getName().ifPresent(name -> indexFeatureName(f, name)));
 
         constraints = new LinkedHashMap<>((int) (otherFeatureModel.constraints.size() * 1.5));
         otherFeatureModel.constraints.entrySet().stream()
                 .map(e -> e.getValue().clone(this))
-                .forEach(c -> constraints.put(c.getIdentifier(), c));
+                .forEach(c -> {
+                    constraints.put(c.getIdentifier(), c);
+                    indexedConstraints.add(c);
+                });
 
         attributeValues = otherFeatureModel.cloneAttributes();
+
+        attributeIndexes = new LinkedHashMap<>(4);
+        otherFeatureModel.attributeIndexes.keySet().forEach(this::createAttributeIndex);
+
+        subtreeAggregates = new ArrayList<>(otherFeatureModel.subtreeAggregates.size());
+        otherFeatureModel.subtreeAggregates.forEach(a -> createSubtreeAggregate(a.getAttribute()));
+
+        recursiveAttributes = new LinkedHashMap<>(4);
+        otherFeatureModel.recursiveAttributes.keySet().forEach(this::createRecursiveAttribute);
+    }
+
+    private static IFeatureTree cloneFeatureTree(IFeatureTree featureTree, Map<IIdentifier, Feature> clonedFeatures) {
+        IFeatureTree clone = Trees.clone(featureTree);
+        Trees.preOrderStream(clone).forEach(node -> {
+            Feature feature = clonedFeatures.get(node.getFeature().getIdentifier());
+            if (node instanceof FeatureTree && feature != null) {
+                ((FeatureTree) node).relink(feature);
+            }
+        });
+        return clone;
     }
 
     @Override
     public FeatureModel clone() {
-        return new FeatureModel(this);
+        CloneEvent event = new CloneEvent();
+        event.begin();
+        FeatureModel clone = new FeatureModel(this);
+        if (event.shouldCommit()) {
+            event.features = features.size();
+            event.constraints = constraints.size();
+            event.commit();
+        }
+        return clone;
     }
 
     @Override
@@ -117,6 +213,30 @@ public class FeatureModel implements IMutableFeatureModel, IMutatableAttributabl
         return Result.of(constraints.get(Objects.requireNonNull(identifier)));
     }
 
+    /**
+     * Returns the constraint at a position in the order of {@link #getConstraints()}.
+     *
+     * @param index the position
+     * @return the constraint, or an empty result if the position is out of bounds
+     */
+    public Result<IConstraint> getConstraint(int index) {
+        return Result.ofNullable(indexedConstraints.get(index));
+    }
+
+    /**
+     * Returns the {@link StructuralHashes#ofConstraints(Collection) hash of all constraints}.
+     * It is computed on first use and then updated as constraints are added, removed, or changed.
+     *
+     * @return the hash
+     */
+    public long getConstraintsHash() {
+        if (!constraintsHashValid) {
+            constraintsHash = StructuralHashes.ofConstraints(constraints.values());
+            constraintsHashValid = true;
+        }
+        return constraintsHash;
+    }
+
     @Override
     public boolean hasConstraint(IIdentifier identifier) {
         return constraints.containsKey(identifier);
@@ -196,12 +316,20 @@ public class FeatureModel implements IMutableFeatureModel, IMutatableAttributabl
     public IFeatureTree addFeatureTreeRoot(IFeature feature) {
         FeatureTree newTree = new FeatureTree(feature);
         featureTreeRoots.add(newTree);
+        featureTreeIndex = null;
         return newTree;
     }
 
     @Override
     public void addFeatureTreeRoot(IFeatureTree featureTree) {
         featureTreeRoots.add(featureTree);
+        featureTreeIndex = null;
+    }
+
+    @Override
+    public void addFeatureTreeRoot(int index, IFeatureTree featureTree) {
+        featureTreeRoots.add(index, featureTree);
+        featureTreeIndex = null;
     }
 
     @Override
@@ -211,6 +339,7 @@ public class FeatureModel implements IMutableFeatureModel, IMutatableAttributabl
                 it.remove();
             }
         }
+        featureTreeIndex = null;
     }
 
     @Override
@@ -220,19 +349,42 @@ public class FeatureModel implements IMutableFeatureModel, IMutatableAttributabl
                 it.remove();
             }
         }
+        featureTreeIndex = null;
     }
 
     @Override
     public IConstraint addConstraint(IFormula formula) {
         IConstraint newConstraint = new Constraint(this, Trees.clone(formula));
         constraints.put(newConstraint.getIdentifier(), newConstraint);
+        indexedConstraints.add(newConstraint);
+        if (constraintsHashValid) {
+            constraintsHash += StructuralHashes.ofConstraint(newConstraint);
+        }
         return newConstraint;
     }
 
     @Override
     public boolean removeConstraint(IConstraint constraint) {
         Objects.requireNonNull(constraint);
-        return constraints.remove(constraint.getIdentifier()) != null;
+        IConstraint removedConstraint = constraints.remove(constraint.getIdentifier());
+        if (removedConstraint == null) {
+            return false;
+        }
+        indexedConstraints.remove(removedConstraint);
+        if (constraintsHashValid) {
+            constraintsHash -= StructuralHashes.ofConstraint(removedConstraint);
+        }
+        return true;
+    }
+
+    /**
+     * Called by {@link Constraint} before and after its formula changes, with a sign of -1 and 1, to keep the
+     * cached hash of all constraints up to date.
+     */
+    void onConstraintFormulaChanged(IConstraint constraint, int sign) {
+        if (constraintsHashValid && constraints.get(constraint.getIdentifier()) == constraint) {
+            constraintsHash += sign * StructuralHashes.ofConstraint(constraint);
+        }
     }
 
     @Override
@@ -241,12 +393,188 @@ public class FeatureModel implements IMutableFeatureModel, IMutatableAttributabl
         Feature feature = new Feature(this);
         feature.setName(name);
         features.put(feature.getIdentifier(), feature);
+        indexFeatureName(feature, name);
+        for (AttributeIndex index : attributeIndexes.values()) {
+            index.update(feature);
+        }
+        if (featureNameIndex != null) {
+            featureNameIndex.add(feature);
+        }
         return feature;
     }
 
     @Override
     public boolean removeFeature(IFeature feature) {
-        return features.remove(feature.getIdentifier()) != null;
+        if (features.remove(feature.getIdentifier()) == null) {
+            return false;
+        }
+        feature.getName().ifPresent(name -> featuresByName.remove(name, feature));
+        for (AttributeIndex index : attributeIndexes.values()) {
+            index.remove(feature);
+        }
+        if (featureNameIndex != null) {
+            featureNameIndex.remove(feature);
+        }
+        return true;
+    }
+
+    /**
+     * Updates the name index after a feature of this model was renamed.
+     *
+     * @param feature the feature
+     * @param oldName the old name, may be null
+     * @param newName the new name, may be null
+     */
+    protected void onFeatureRenamed(IFeature feature, String oldName, String newName) {
+        if (!features.containsKey(feature.getIdentifier())) {
+            return;
+        }
+        if (oldName != null) {
+            featuresByName.remove(oldName, feature);
+        }
+        if (newName != null) {
+            indexFeatureName(feature, newName);
+        }
+        if (featureNameIndex != null) {
+            featureNameIndex.update(feature);
+        }
+        onFeatureAttributeChanged(feature, Attributes.NAME);
+    }
+
+    /**
+     * Updates the index on an attribute, if any, after the value of a feature of this model changed.
+     *
+     * @param feature the feature
+     * @param attribute the attribute
+     */
+    protected void onFeatureAttributeChanged(IFeature feature, IAttribute<?> attribute) {
+        AttributeIndex index = attributeIndexes.get(attribute);
+        if (index != null && features.containsKey(feature.getIdentifier())) {
+            index.update(feature);
+        }
+    }
+
+    /**
+     * Discards the feature tree index after a node of a feature tree of this model was moved, added, or removed.
+     */
+    protected void onFeatureTreeChanged() {
+        featureTreeIndex = null;
+    }
+
+    private void indexFeatureName(IFeature feature, String name) {
+        IFeature indexedFeature = featuresByName.putIfAbsent(name, feature);
+        if (indexedFeature != null && indexedFeature != feature) {
+            duplicateFeatureNames = true;
+        }
+    }
+
+    @Override
+    public FeatureTreeIndex getFeatureTreeIndex() {
+        if (featureTreeIndex == null) {
+            featureTreeIndex = new FeatureTreeIndex(featureTreeRoots);
+        }
+        return featureTreeIndex;
+    }
+
+    @Override
+    public FeatureNameIndex getFeatureNameIndex() {
+        if (featureNameIndex == null) {
+            featureNameIndex = new FeatureNameIndex(this, features.values());
+        }
+        return featureNameIndex;
+    }
+
+    /**
+     * Creates an index on an attribute, or returns the existing one.
+     * The index is used by {@link #query() queries} and kept up to date as features and their values change.
+     *
+     * @param attribute the attribute
+     * @return the index
+     */
+    public AttributeIndex createAttributeIndex(IAttribute<?> attribute) {
+        AttributeIndex index = attributeIndexes.get(attribute);
+        if (index == null) {
+            index = new AttributeIndex(attribute);
+            for (IFeature feature : features.values()) {
+                index.update(feature);
+            }
+            attributeIndexes.put(attribute, index);
+        }
+        return index;
+    }
+
+    /**
+     * Removes the index on an attribute.
+     *
+     * @param attribute the attribute
+     * @return whether an index existed
+     */
+    public boolean dropAttributeIndex(IAttribute<?> attribute) {
+        return attributeIndexes.remove(attribute) != null;
+    }
+
+    @Override
+    public Result<AttributeIndex> getAttributeIndex(IAttribute<?> attribute) {
+        return Result.ofNullable(attributeIndexes.get(attribute));
+    }
+
+    /**
+     * Creates a subtree aggregate for an attribute, or returns the aggregate already created for it.
+     * The aggregate can only be queried on the feature trees of this model.
+     *
+     * @param attribute the attribute
+     * @return the aggregate
+     */
+    public SubtreeAggregate createSubtreeAggregate(IAttribute<? extends Number> attribute) {
+        for (SubtreeAggregate aggregate : subtreeAggregates) {
+            if (aggregate.getAttribute().equals(attribute)) {
+                return aggregate;
+            }
+        }
+        SubtreeAggregate aggregate = new SubtreeAggregate(this, attribute, subtreeAggregates.size());
+        subtreeAggregates.add(aggregate);
+        return aggregate;
+    }
+
+    SubtreeAggregate[] getSubtreeAggregates() {
+        return subtreeAggregates.toArray(new SubtreeAggregate[0]);
+    }
+
+    /**
+     * Makes an attribute recursive in this model, or returns the recursive attribute already created for it.
+     * The recursive attribute can only be queried on the feature trees of this model.
+     *
+     * @param <T> the type of the attribute value
+     * @param attribute the attribute
+     * @return the recursive attribute
+     */
+    @SuppressWarnings("unchecked")
+    public <T> RecursiveAttribute<T> createRecursiveAttribute(IAttribute<T> attribute) {
+        RecursiveAttribute<?> recursiveAttribute = recursiveAttributes.get(attribute);
+        if (recursiveAttribute == null) {
+            recursiveAttribute = new RecursiveAttribute<>(this, attribute, recursiveAttributes.size());
+            recursiveAttributes.put(attribute, recursiveAttribute);
+        }
+        return (RecursiveAttribute<T>) recursiveAttribute;
+    }
+
+    /**
+     * Returns whether an attribute is recursive in this model.
+     *
+     * @param attribute the attribute
+     * @return whether the attribute is recursive
+     */
+    public boolean isRecursive(IAttribute<?> attribute) {
+        return recursiveAttributes.containsKey(attribute);
+    }
+
+    /**
+     * Returns the recursive attributes of this model, in the order they were created.
+     *
+     * @return the recursive attributes
+     */
+    public List<RecursiveAttribute<?>> getRecursiveAttributes() {
+        return List.copyOf(recursiveAttributes.values());
     }
 
     @Override
@@ -256,6 +584,10 @@ public class FeatureModel implements IMutableFeatureModel, IMutatableAttributabl
 
     @Override
     public Result<IFeature> getFeature(String name) {
+        IFeature feature = featuresByName.get(name);
+        if (feature != null || !duplicateFeatureNames) {
+            return Result.ofNullable(feature);
+        }
         return Result.ofOptional(features.entrySet().stream()
                 .map(e -> e.getValue())
                 .filter(f -> f.getName().valueEquals(name))
@@ -0,0 +1,468 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * An index of the names of all features of a feature model for searching as the user types.
+ * Names are compared case-insensitively.
+ * Prefix queries walk a compressed trie (radix tree) of all names.
+ * Substring queries look up the rarest n-gram of the query and verify only the features containing it.
+ * Fuzzy queries traverse the trie while computing one row of the edit distance matrix per character, skipping every
+ * branch whose row exceeds the distance bound.
+ * Each query returns the best {@code limit} results in a given order, by default by depth in the feature tree and then
+ * by name.
+ * The index is kept up to date by {@link FeatureModel} when features are added, removed, or renamed.
+ *
+ * @see IFeatureModel#getFeatureNameIndex()
+ */
+public class FeatureNameIndex {
+
+    /**
+     * The maximum length of indexed n-grams.
+     * Substring queries of at most this length are answered from a single n-gram.
+     */
+    public static final int GRAM_LENGTH = 3;
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private static final class Node {
+        private String label;
+        private Node[] children = NO_CHILDREN;
+        private List<IFeature> features;
+
+        private Node(String label) {
+            this.label = label;
+        }
+
+        private int findChild(char c) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                char middleChar = children[middle].label.charAt(0);
+                if (middleChar < c) {
+                    low = middle + 1;
+                } else if (middleChar > c) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -(low + 1);
+        }
+
+        private void insertChild(int index, Node child) {
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(children, 0, newChildren, 0, index);
+            newChildren[index] = child;
+            System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+            children = newChildren;
+        }
+
+        private void removeChild(Node child) {
+            int index = findChild(child.label.charAt(0));
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+            children = newChildren;
+        }
+
+        private void addFeature(IFeature feature) {
+            if (features == null) {
+                features = new ArrayList<>(1);
+            }
+            features.add(feature);
+        }
+    }
+
+    /**
+     * Keeps the best results seen so far in a heap whose head is the worst of them.
+     */
+    private static final class Selection implements Consumer<IFeature> {
+        private final Comparator<IFeature> order;
+        private final int limit;
+        private final PriorityQueue<IFeature> heap;
+
+        private Selection(Comparator<IFeature> order, int limit) {
+            if (limit < 0) {
+                throw new IllegalArgumentException(String.format("limit must not be negative (%d)", limit));
+            }
+            this.order = order;
+            this.limit = limit;
+            heap = new PriorityQueue<>(order.reversed());
+        }
+
+        @Override
+        public void accept(IFeature feature) {
+            if (heap.size() < limit) {
+                heap.add(feature);
+            } else if (limit > 0 && order.compare(feature, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(feature);
+            }
+        }
+
+        private List<IFeature> toList() {
+            List<IFeature> features = new ArrayList<>(heap);
+            features.sort(order);
+            return features;
+        }
+    }
+
+    private final IFeatureModel featureModel;
+    private final Node root = new Node("");
+    private final HashMap<IFeature, String> keys = new HashMap<>();
+    private final HashMap<String, Set<IFeature>> grams = new HashMap<>();
+
+    FeatureNameIndex(IFeatureModel featureModel, Collection<IFeature> features) {
+        this.featureModel = featureModel;
+        for (IFeature feature : features) {
+            add(feature);
+        }
+    }
+
+    private static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the number of indexed features.
+     *
+     * @return the number of indexed features
+     */
+    public int size() {
+        return keys.size();
+    }
+
+    void add(IFeature feature) {
+        String name = feature.getName().orElse(null);
+        if (name == null) {
+            return;
+        }
+        String key = normalize(name);
+        keys.put(feature, key);
+        insert(key, feature);
+        for (int length = 1; length <= GRAM_LENGTH; length++) {
+            for (int i = 0; i + length <= key.length(); i++) {
+                grams.computeIfAbsent(key.substring(i, i + length), k -> new LinkedHashSet<>())
+                        .add(feature);
+            }
+        }
+    }
+
+    void remove(IFeature feature) {
+        String key = keys.remove(feature);
+        if (key == null) {
+            return;
+        }
+        delete(key, feature);
+        for (int length = 1; length <= GRAM_LENGTH; length++) {
+            for (int i = 0; i + length <= key.length(); i++) {
+                String gram = key.substring(i, i + length);
+                Set<IFeature> features = grams.get(gram);
+                if (features != null && features.remove(feature) && features.isEmpty()) {
+                    grams.remove(gram);
+                }
+            }
+        }
+    }
+
+    void update(IFeature feature) {
+        remove(feature);
+        add(feature);
+    }
+
+    private static int commonPrefixLength(String label, String key, int offset) {
+        int length = 0;
+        while (length < label.length()
+                && offset + length < key.length()
+                && label.charAt(length) == key.charAt(offset + length)) {
+            length++;
+        }
+        return length;
+    }
+
+    private void insert(String key, IFeature feature) {
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            int index = node.findChild(key.charAt(i));
+            if (index < 0) {
+                Node leaf = new Node(key.substring(i));
+                leaf.addFeature(feature);
+                node.insertChild(-index - 1, leaf);
+                return;
+            }
+            Node child = node.children[index];
+            int common = commonPrefixLength(child.label, key, i);
+            if (common < child.label.length()) {
+                Node middle = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                middle.children = new Node[] {child};
+                node.children[index] = middle;
+                child = middle;
+            }
+            node = child;
+            i += common;
+        }
+        node.addFeature(feature);
+    }
+
+    private void delete(String key, IFeature feature) {
+        List<Node> path = new ArrayList<>();
+        path.add(root);
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            int index = node.findChild(key.charAt(i));
+            if (index < 0) {
+                return;
+            }
+            node = node.children[index];
+            if (!key.startsWith(node.label, i)) {
+                return;
+            }
+            i += node.label.length();
+            path.add(node);
+        }
+        if (node.features == null || !node.features.remove(feature)) {
+            return;
+        }
+        if (node.features.isEmpty()) {
+            node.features = null;
+        }
+        for (int p = path.size() - 1; p > 0; p--) {
+            Node current = path.get(p);
+            Node parent = path.get(p - 1);
+            if (current.features != null) {
+                break;
+            } else if (current.children.length == 0) {
+                parent.removeChild(current);
+            } else {
+                if (current.children.length == 1) {
+                    Node child = current.children[0];
+                    child.label = current.label + child.label;
+                    parent.children[parent.findChild(child.label.charAt(0))] = child;
+                }
+                break;
+            }
+        }
+    }
+
+    private static void collect(Node node, Consumer<IFeature> consumer) {
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            Node current = stack.pop();
+            if (current.features != null) {
+                current.features.forEach(consumer);
+            }
+            for (Node child : current.children) {
+                stack.push(child);
+            }
+        }
+    }
+
+    /**
+     * Returns an order that ranks features by their depth in the feature tree, shallow features first, and then by
+     * name.
+     * Features outside the feature tree are ranked last.
+     *
+     * @return the order
+     */
+    public Comparator<IFeature> byDepth() {
+        FeatureTreeIndex treeIndex = featureModel.getFeatureTreeIndex();
+        return Comparator.<IFeature>comparingInt(feature -> {
+                    int preorder = treeIndex.getPreorder(feature);
+                    return preorder < 0 ? Integer.MAX_VALUE : treeIndex.getDepth(preorder);
+                })
+                .thenComparing(keys::get);
+    }
+
+    /**
+     * Returns an order that ranks features by a custom score, highest scores first.
+     *
+     * @param score the score function
+     * @return the order
+     */
+    public static Comparator<IFeature> byScore(ToDoubleFunction<IFeature> score) {
+        return Comparator.comparingDouble(score).reversed();
+    }
+
+    public List<IFeature> findByPrefix(String prefix, int limit) {
+        return findByPrefix(prefix, limit, byDepth());
+    }
+
+    /**
+     * Finds the best features whose name starts with a prefix.
+     *
+     * @param prefix the prefix
+     * @param limit the maximum number of results
+     * @param order the order of the results
+     * @return the best features in the given order
+     */
+    public List<IFeature> findByPrefix(String prefix, int limit, Comparator<IFeature> order) {
+        Selection selection = new Selection(order, limit);
+        String key = normalize(prefix);
+        Node node = root;
+        int i = 0;
+        while (node != null && i < key.length()) {
+            int index = node.findChild(key.charAt(i));
+            if (index < 0) {
+                node = null;
+            } else {
+                Node child = node.children[index];
+                int common = commonPrefixLength(child.label, key, i);
+                if (i + common < key.length() && common < child.label.length()) {
+                    node = null;
+                } else {
+                    node = child;
+                    i += common;
+                }
+            }
+        }
+        if (node != null) {
+            collect(node, selection);
+        }
+        return selection.toList();
+    }
+
+    public List<IFeature> findBySubstring(String substring, int limit) {
+        return findBySubstring(substring, limit, byDepth());
+    }
+
+    /**
+     * Finds the best features whose name contains a substring.
+     *
+     * @param substring the substring
+     * @param limit the maximum number of results
+     * @param order the order of the results
+     * @return the best features in the given order
+     */
+    public List<IFeature> findBySubstring(String substring, int limit, Comparator<IFeature> order) {
+        Selection selection = new Selection(order, limit);
+        String key = normalize(substring);
+        Collection<IFeature> candidates = keys.keySet();
+        int length = Math.min(key.length(), GRAM_LENGTH);
+        if (length > 0) {
+            for (int i = 0; i + length <= key.length(); i++) {
+                Set<IFeature> features = grams.get(key.substring(i, i + length));
+                if (features == null) {
+                    return selection.toList();
+                } else if (features.size() < candidates.size()) {
+                    candidates = features;
+                }
+            }
+        }
+        for (IFeature feature : candidates) {
+            if (key.length() <= GRAM_LENGTH || keys.get(feature).contains(key)) {
+                selection.accept(feature);
+            }
+        }
+        return selection.toList();
+    }
+
+    /**
+     * Computes the rows of the edit distance matrix for the characters of a label.
+     *
+     * @return the last row, or null if some row exceeds the maximum distance, so that no name below can match
+     */
+    private static int[] advance(int[] row, String label, String key, int maxDistance) {
+        int m = key.length();
+        for (int l = 0; l < label.length(); l++) {
+            char c = label.charAt(l);
+            int[] nextRow = new int[m + 1];
+            nextRow[0] = row[0] + 1;
+            int min = nextRow[0];
+            for (int j = 1; j <= m; j++) {
+                int substitution = row[j - 1] + (key.charAt(j - 1) == c ? 0 : 1);
+                nextRow[j] = Math.min(substitution, Math.min(row[j], nextRow[j - 1]) + 1);
+                min = Math.min(min, nextRow[j]);
+            }
+            if (min > maxDistance) {
+                return null;
+            }
+            row = nextRow;
+        }
+        return row;
+    }
+
+    public List<IFeature> findFuzzy(String name, int maxDistance, int limit) {
+        return findFuzzy(name, maxDistance, limit, byDepth());
+    }
+
+    /**
+     * Finds the best features whose name has at most a given edit distance (Levenshtein distance) to a name.
+     * Results are ranked by their distance first and by the given order second.
+     *
+     * @param name the name
+     * @param maxDistance the maximum edit distance
+     * @param limit the maximum number of results
+     * @param order the order of results with the same distance
+     * @return the best features
+     */
+    public List<IFeature> findFuzzy(String name, int maxDistance, int limit, Comparator<IFeature> order) {
+        String key = normalize(name);
+        int m = key.length();
+        HashMap<IFeature, Integer> distances = new HashMap<>();
+        Selection selection =
+                new Selection(Comparator.<IFeature>comparingInt(distances::get).thenComparing(order), limit);
+        int[] firstRow = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            firstRow[j] = j;
+        }
+        ArrayDeque<Node> nodes = new ArrayDeque<>();
+        ArrayDeque<int[]> rows = new ArrayDeque<>();
+        nodes.push(root);
+        rows.push(firstRow);
+        while (!nodes.isEmpty()) {
+            Node node = nodes.pop();
+            int[] row = advance(rows.pop(), node.label, key, maxDistance);
+            if (row == null) {
+                continue;
+            }
+            if (node.features != null && row[m] <= maxDistance) {
+                for (IFeature feature : node.features) {
+                    distances.put(feature, row[m]);
+                    selection.accept(feature);
+                }
+            }
+            for (Node child : node.children) {
+                nodes.push(child);
+                rows.push(row);
+            }
+        }
+        return selection.toList();
+    }
+}
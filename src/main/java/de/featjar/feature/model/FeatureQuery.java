@@ -0,0 +1,316 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model;
+
+import de.featjar.base.data.IAttribute;
+import de.featjar.base.data.Result;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * A conjunctive query over the features in the feature trees of a feature model, such as "all concrete features with
+ * vendor X and cost below 100 in the subtree of S".
+ * {@link #find()} plans the query: for every condition that is backed by an {@link AttributeIndex attribute index},
+ * it marks the matching features in a bit set over their preorder numbers in the
+ * {@link FeatureTreeIndex feature tree index} restricted to the subtree range, intersects these bit sets starting with
+ * the most selective condition, and checks the remaining conditions only for the features in the intersection.
+ * Without a suitable index, it scans the subtree.
+ * Results are ordered by preorder and do not depend on which indexes exist.
+ *
+ * @see IFeatureModel#query()
+ */
+public class FeatureQuery {
+
+    private static final class Condition {
+        private final IAttribute<?> attribute;
+        private final Object value;
+        private final double min;
+        private final boolean minInclusive;
+        private final double max;
+        private final boolean maxInclusive;
+
+        private Condition(IAttribute<?> attribute, Object value) {
+            this.attribute = attribute;
+            this.value = value;
+            min = max = 0;
+            minInclusive = maxInclusive = false;
+        }
+
+        private Condition(
+                IAttribute<?> attribute, double min, boolean minInclusive, double max, boolean maxInclusive) {
+            this.attribute = attribute;
+            value = null;
+            this.min = min;
+            this.minInclusive = minInclusive;
+            this.max = max;
+            this.maxInclusive = maxInclusive;
+        }
+
+        private boolean test(IFeature feature) {
+            Object featureValue = feature.getAttributeValue(attribute).orElse(null);
+            if (featureValue == null) {
+                return false;
+            } else if (value != null) {
+                return value.equals(featureValue);
+            }
+            double number = ((Number) featureValue).doubleValue();
+            return (minInclusive ? number >= min : number > min) && (maxInclusive ? number <= max : number < max);
+        }
+
+        private Collection<Set<IFeature>> lookup(AttributeIndex index) {
+            if (value != null) {
+                return Collections.singletonList(index.getEqual(value));
+            } else if (index.isSorted()) {
+                return index.getRange(min, minInclusive, max, maxInclusive);
+            }
+            return null;
+        }
+    }
+
+    private final IFeatureModel featureModel;
+    private final List<Condition> conditions = new ArrayList<>();
+    private final List<Predicate<IFeature>> filters = new ArrayList<>();
+    private IFeatureTree subtree;
+
+    /**
+     * Creates a query that matches all features in the feature trees of a feature model.
+     *
+     * @param featureModel the feature model
+     */
+    public FeatureQuery(IFeatureModel featureModel) {
+        this.featureModel = Objects.requireNonNull(featureModel);
+    }
+
+    /**
+     * Restricts this query to features whose value of an attribute equals a given value.
+     *
+     * @param <T> the type of the attribute value
+     * @param attribute the attribute
+     * @param value the value
+     * @return this query
+     */
+    public <T> FeatureQuery equal(IAttribute<T> attribute, T value) {
+        conditions.add(new Condition(Objects.requireNonNull(attribute), Objects.requireNonNull(value)));
+        return this;
+    }
+
+    /**
+     * Restricts this query to features whose value of a numeric attribute lies in a given range.
+     *
+     * @param attribute the attribute
+     * @param min the minimum value
+     * @param minInclusive whether the minimum is included
+     * @param max the maximum value
+     * @param maxInclusive whether the maximum is included
+     * @return this query
+     */
+    public FeatureQuery range(
+            IAttribute<? extends Number> attribute,
+            double min,
+            boolean minInclusive,
+            double max,
+            boolean maxInclusive) {
+        conditions.add(new Condition(Objects.requireNonNull(attribute), min, minInclusive, max, maxInclusive));
+        return this;
+    }
+
+    public FeatureQuery between(IAttribute<? extends Number> attribute, double min, double max) {
+        return range(attribute, min, true, max, true);
+    }
+
+    public FeatureQuery lessThan(IAttribute<? extends Number> attribute, double max) {
+        return range(attribute, Double.NEGATIVE_INFINITY, true, max, false);
+    }
+
+    public FeatureQuery atMost(IAttribute<? extends Number> attribute, double max) {
+        return range(attribute, Double.NEGATIVE_INFINITY, true, max, true);
+    }
+
+    public FeatureQuery greaterThan(IAttribute<? extends Number> attribute, double min) {
+        return range(attribute, min, false, Double.POSITIVE_INFINITY, true);
+    }
+
+    public FeatureQuery atLeast(IAttribute<? extends Number> attribute, double min) {
+        return range(attribute, min, true, Double.POSITIVE_INFINITY, true);
+    }
+
+    public FeatureQuery concrete() {
+        return equal(Attributes.ABSTRACT, Boolean.FALSE);
+    }
+
+    public FeatureQuery abstractOnly() {
+        return equal(Attributes.ABSTRACT, Boolean.TRUE);
+    }
+
+    /**
+     * Restricts this query to features that satisfy a predicate, which is checked after all other conditions.
+     *
+     * @param filter the predicate
+     * @return this query
+     */
+    public FeatureQuery filter(Predicate<IFeature> filter) {
+        filters.add(Objects.requireNonNull(filter));
+        return this;
+    }
+
+    /**
+     * Restricts this query to the features in the subtree of a node, including the node itself.
+     *
+     * @param subtree the root of the subtree
+     * @return this query
+     */
+    public FeatureQuery within(IFeatureTree subtree) {
+        this.subtree = Objects.requireNonNull(subtree);
+        return this;
+    }
+
+    private boolean test(IFeature feature) {
+        for (Condition condition : conditions) {
+            if (!condition.test(feature)) {
+                return false;
+            }
+        }
+        for (Predicate<IFeature> filter : filters) {
+            if (!filter.test(feature)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds all matching features, using attribute indexes where possible.
+     *
+     * @return the matching features in preorder
+     */
+    public List<IFeature> find() {
+        FeatureTreeIndex treeIndex = featureModel.getFeatureTreeIndex();
+        int from = 0;
+        int to = treeIndex.size();
+        if (subtree != null) {
+            from = treeIndex.getPreorder(subtree);
+            if (from < 0) {
+                return new ArrayList<>();
+            }
+            to = treeIndex.getSubtreeEnd(from);
+        }
+        List<Collection<Set<IFeature>>> indexedPostings = new ArrayList<>();
+        List<Long> counts = new ArrayList<>();
+        for (Condition condition : conditions) {
+            Result<AttributeIndex> index = featureModel.getAttributeIndex(condition.attribute);
+            if (index.isPresent()) {
+                Collection<Set<IFeature>> postings = condition.lookup(index.get());
+                if (postings != null) {
+                    long count = 0;
+                    for (Set<IFeature> features : postings) {
+                        count += features.size();
+                    }
+                    if (count < to - from) {
+                        int position = 0;
+                        while (position < counts.size() && counts.get(position) <= count) {
+                            position++;
+                        }
+                        indexedPostings.add(position, postings);
+                        counts.add(position, count);
+                    }
+                }
+            }
+        }
+        List<IFeature> result = new ArrayList<>();
+        if (indexedPostings.isEmpty()) {
+            for (int preorder = from; preorder < to; preorder++) {
+                IFeature feature = treeIndex.getNode(preorder).getFeature();
+                if (test(feature)) {
+                    result.add(feature);
+                }
+            }
+            return result;
+        }
+        // intersects the postings from the most selective one on, so that the bit set only shrinks
+        BitSet bits = toBits(treeIndex, indexedPostings.get(0), from, to);
+        for (int i = 1; i < indexedPostings.size() && !bits.isEmpty(); i++) {
+            bits.and(toBits(treeIndex, indexedPostings.get(i), from, to));
+        }
+        for (int preorder = bits.nextSetBit(from); preorder >= 0; preorder = bits.nextSetBit(preorder + 1)) {
+            IFeature feature = treeIndex.getNode(preorder).getFeature();
+            if (test(feature)) {
+                result.add(feature);
+            }
+        }
+        return result;
+    }
+
+    private static BitSet toBits(FeatureTreeIndex treeIndex, Collection<Set<IFeature>> postings, int from, int to) {
+        BitSet bits = new BitSet(to);
+        for (Set<IFeature> features : postings) {
+            for (IFeature feature : features) {
+                int preorder = treeIndex.getPreorder(feature);
+                if (preorder >= from && preorder < to) {
+                    bits.set(preorder);
+                }
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Finds all matching features by checking every feature in the feature trees, ignoring all indexes.
+     *
+     * @return the matching features in preorder
+     */
+    public List<IFeature> scan() {
+        List<IFeature> result = new ArrayList<>();
+        List<IFeatureTree> roots = featureModel.getRoots();
+        if (subtree != null) {
+            IFeatureTree root = subtree;
+            for (Result<IFeatureTree> parent = root.getParent(); parent.isPresent(); parent = root.getParent()) {
+                root = parent.get();
+            }
+            IFeatureTree subtreeRoot = root;
+            if (roots.stream().noneMatch(r -> r == subtreeRoot)) {
+                return result;
+            }
+            roots = List.of(subtree);
+        }
+        ArrayDeque<IFeatureTree> stack = new ArrayDeque<>();
+        for (IFeatureTree root : roots) {
+            stack.push(root);
+            while (!stack.isEmpty()) {
+                IFeatureTree node = stack.pop();
+                if (test(node.getFeature())) {
+                    result.add(node.getFeature());
+                }
+                List<? extends IFeatureTree> children = node.getChildren();
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    stack.push(children.get(i));
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -23,9 +23,11 @@ package de.featjar.feature.model;
 import de.featjar.base.data.Attribute;
 import de.featjar.base.data.IAttribute;
 import de.featjar.base.data.Range;
+import de.featjar.base.data.Result;
 import de.featjar.base.tree.structure.ARootedTree;
 import de.featjar.base.tree.structure.ITree;
 import de.featjar.feature.model.IFeatureTree.IMutableFeatureTree;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashMap;
@@ -101,7 +103,7 @@ public class FeatureTree extends ARootedTree<IFeatureTree> implements IMutableFe
         }
     }
 
-    protected final IFeature feature;
+    protected IFeature feature;
 
     protected int groupID;
 
@@ -110,8 +112,37 @@ public class FeatureTree extends ARootedTree<IFeatureTree> implements IMutableFe
 
     protected LinkedHashMap<IAttribute<?>, Object> attributeValues;
 
+    /**
+     * Cached {@link #getStructuralHash() structural hash}.
+     * If a node's hash is valid, so are the hashes of all its descendants, which allows invalidation to stop at the
+     * first ancestor that is already invalid.
+     */
+    protected long structuralHash;
+
+    protected boolean structuralHashValid;
+
+    /**
+     * Cached values of all {@link SubtreeAggregate subtree aggregates} of the feature model, valid under the same rule
+     * as the structural hash.
+     */
+    protected double[] aggregates;
+
+    protected boolean aggregatesValid;
+
+    /**
+     * Cached resolved values of all {@link RecursiveAttribute recursive attributes} of the feature model.
+     * Unlike the structural hash, these values are propagated downwards: if a node's values are valid, so are the
+     * values of all its ancestors, which allows invalidation to stop at the first descendant that is already invalid.
+     */
+    protected Object[] recursiveValues;
+
+    protected boolean recursiveValuesValid;
+
     protected FeatureTree(IFeature feature) {
         this.feature = Objects.requireNonNull(feature);
+        if (feature instanceof Feature) {
+            ((Feature) feature).featureTree = this;
+        }
         featureRange = Range.of(0, 1);
         groups = new ArrayList<>(1);
         groups.add(new Group(Range.atLeast(0)));
@@ -121,6 +152,7 @@ public class FeatureTree extends ARootedTree<IFeatureTree> implements IMutableFe
         feature = otherFeatureTree.feature;
         groupID = otherFeatureTree.groupID;
         featureRange = otherFeatureTree.featureRange.clone();
+        groups = new ArrayList<>(otherFeatureTree.groups.size());
         otherFeatureTree.groups.stream().map(Group::clone).forEach(groups::add);
         attributeValues = otherFeatureTree.cloneAttributes();
     }
@@ -154,6 +186,196 @@ public class FeatureTree extends ARootedTree<IFeatureTree> implements IMutableFe
 
     public void setGroupCount(int count) {
         groups = new ArrayList<>(count);
+        invalidateCaches();
+    }
+
+    @Override
+    public void setParent(IFeatureTree newParent) {
+        invalidateCaches(parent);
+        super.setParent(newParent);
+        invalidateCaches(newParent);
+        invalidateRecursiveValues();
+        if (feature.getFeatureModel() instanceof FeatureModel) {
+            ((FeatureModel) feature.getFeatureModel()).onFeatureTreeChanged();
+        }
+    }
+
+    @Override
+    public long getStructuralHash() {
+        if (structuralHashValid) {
+            return structuralHash;
+        }
+        ArrayDeque<FeatureTree> stack = new ArrayDeque<>();
+        stack.push(this);
+        while (!stack.isEmpty()) {
+            FeatureTree node = stack.peek();
+            boolean childrenValid = true;
+            for (IFeatureTree child : node.getChildren()) {
+                if (child instanceof FeatureTree && !((FeatureTree) child).structuralHashValid) {
+                    stack.push((FeatureTree) child);
+                    childrenValid = false;
+                }
+            }
+            if (childrenValid) {
+                stack.pop();
+                node.structuralHash = StructuralHashes.ofNode(node);
+                node.structuralHashValid = true;
+            }
+        }
+        return structuralHash;
+    }
+
+    /**
+     * Returns the sum of an attribute over all features in this subtree.
+     *
+     * @param aggregate the aggregate of the attribute
+     * @return the sum, or 0 if no feature has a value
+     */
+    public double getSubtreeSum(SubtreeAggregate aggregate) {
+        return getAggregates(aggregate)[aggregate.getOffset() + SubtreeAggregate.SUM];
+    }
+
+    /**
+     * Returns the minimum of an attribute over all features in this subtree.
+     *
+     * @param aggregate the aggregate of the attribute
+     * @return the minimum, or positive infinity if no feature has a value
+     */
+    public double getSubtreeMin(SubtreeAggregate aggregate) {
+        return getAggregates(aggregate)[aggregate.getOffset() + SubtreeAggregate.MIN];
+    }
+
+    /**
+     * Returns the maximum of an attribute over all features in this subtree.
+     *
+     * @param aggregate the aggregate of the attribute
+     * @return the maximum, or negative infinity if no feature has a value
+     */
+    public double getSubtreeMax(SubtreeAggregate aggregate) {
+        return getAggregates(aggregate)[aggregate.getOffset() + SubtreeAggregate.MAX];
+    }
+
+    /**
+     * Returns the number of features in this subtree that have a value for an attribute.
+     *
+     * @param aggregate the aggregate of the attribute
+     * @return the number of features
+     */
+    public int getSubtreeCount(SubtreeAggregate aggregate) {
+        return (int) getAggregates(aggregate)[aggregate.getOffset() + SubtreeAggregate.COUNT];
+    }
+
+    private boolean hasAggregates(int length) {
+        return aggregatesValid && aggregates.length >= length;
+    }
+
+    private double[] getAggregates(SubtreeAggregate aggregate) {
+        if (aggregate.getFeatureModel() != feature.getFeatureModel()) {
+            throw new IllegalArgumentException("aggregate was created for another feature model");
+        }
+        if (hasAggregates(aggregate.getOffset() + SubtreeAggregate.WIDTH)) {
+            return aggregates;
+        }
+        SubtreeAggregate[] registered = aggregate.getFeatureModel().getSubtreeAggregates();
+        int length = registered.length * SubtreeAggregate.WIDTH;
+        ArrayDeque<FeatureTree> stack = new ArrayDeque<>();
+        stack.push(this);
+        while (!stack.isEmpty()) {
+            FeatureTree node = stack.peek();
+            boolean childrenValid = true;
+            for (IFeatureTree child : node.getChildren()) {
+                if (child instanceof FeatureTree && !((FeatureTree) child).hasAggregates(length)) {
+                    stack.push((FeatureTree) child);
+                    childrenValid = false;
+                }
+            }
+            if (childrenValid) {
+                stack.pop();
+                node.aggregates = SubtreeAggregate.compute(node, registered);
+                node.aggregatesValid = true;
+            }
+        }
+        return aggregates;
+    }
+
+    /**
+     * Returns the value of a recursive attribute for this feature, which is either its own value or, if it has none,
+     * the value resolved for its parent.
+     *
+     * @param <T> the type of the attribute value
+     * @param attribute the recursive attribute
+     * @return the resolved value, or an empty result if neither this feature nor any ancestor has a value
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Result<T> getRecursiveValue(RecursiveAttribute<T> attribute) {
+        if (attribute.getFeatureModel() != feature.getFeatureModel()) {
+            throw new IllegalArgumentException("recursive attribute was created for another feature model");
+        }
+        return Result.ofNullable((T) getRecursiveValues(attribute)[attribute.getIndex()]);
+    }
+
+    private boolean hasRecursiveValues(int length) {
+        return recursiveValuesValid && recursiveValues.length >= length;
+    }
+
+    private Object[] getRecursiveValues(RecursiveAttribute<?> attribute) {
+        if (hasRecursiveValues(attribute.getIndex() + 1)) {
+            return recursiveValues;
+        }
+        RecursiveAttribute<?>[] registered =
+                attribute.getFeatureModel().getRecursiveAttributes().toArray(new RecursiveAttribute<?>[0]);
+        ArrayDeque<FeatureTree> path = new ArrayDeque<>();
+        IFeatureTree node = this;
+        while (node instanceof FeatureTree && !((FeatureTree) node).hasRecursiveValues(registered.length)) {
+            path.push((FeatureTree) node);
+            node = ((FeatureTree) node).parent;
+        }
+        Object[] values = node instanceof FeatureTree ? ((FeatureTree) node).recursiveValues : null;
+        while (!path.isEmpty()) {
+            FeatureTree featureTree = path.pop();
+            values = RecursiveAttribute.compute(featureTree, values, registered);
+            featureTree.recursiveValues = values;
+            featureTree.recursiveValuesValid = true;
+        }
+        return recursiveValues;
+    }
+
+    /**
+     * Invalidates the cached values of recursive attributes of this node and its descendants.
+     */
+    protected void invalidateRecursiveValues() {
+        ArrayDeque<FeatureTree> stack = new ArrayDeque<>();
+        stack.push(this);
+        while (!stack.isEmpty()) {
+            FeatureTree node = stack.pop();
+            if (node.recursiveValuesValid) {
+                node.recursiveValuesValid = false;
+                for (IFeatureTree child : node.getChildren()) {
+                    if (child instanceof FeatureTree) {
+                        stack.push((FeatureTree) child);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Invalidates the cached structural hash and subtree aggregates of this node and its ancestors.
+     */
+    protected void invalidateCaches() {
+        invalidateCaches(this);
+    }
+
+    private static void invalidateCaches(IFeatureTree node) {
+        while (node instanceof FeatureTree) {
+            FeatureTree featureTree = (FeatureTree) node;
+            if (!featureTree.structuralHashValid && !featureTree.aggregatesValid) {
+                break;
+            }
+            featureTree.structuralHashValid = false;
+            featureTree.aggregatesValid = false;
+            node = featureTree.parent;
+        }
     }
 
     @Override
@@ -196,6 +418,17 @@ public class FeatureTree extends ARootedTree<IFeatureTree> implements IMutableFe
         return new FeatureTree(this);
     }
 
+    /**
+     * Replaces the feature of this node with its copy in a cloned feature model and links the copy back to this node,
+     * so that changes to the copy invalidate the caches of this node instead of the original one.
+     *
+     * @param feature the copied feature
+     */
+    void relink(Feature feature) {
+        this.feature = feature;
+        feature.featureTree = this;
+    }
+
     @Override
     public boolean equalsNode(IFeatureTree other) {
         if (this == other) return true;
@@ -214,16 +447,19 @@ public class FeatureTree extends ARootedTree<IFeatureTree> implements IMutableFe
     @Override
     public void addGroup(int lowerBound, int upperBound) {
         groups.add(new Group(lowerBound, upperBound));
+        invalidateCaches();
     }
 
     @Override
     public void addGroup(Range groupRange) {
         groups.add(new Group(groupRange));
+        invalidateCaches();
     }
 
     public void setGroups(List<Group> groups) {
         this.groups.clear();
         this.groups.addAll(groups);
+        invalidateCaches();
     }
 
     public void setGroupID(int groupID) {
@@ -233,16 +469,19 @@ public class FeatureTree extends ARootedTree<IFeatureTree> implements IMutableFe
             throw new IllegalArgumentException(
                     String.format("groupID must be smaller than number of groups in parent feature (%d)", groupID));
         this.groupID = groupID;
+        invalidateCaches();
     }
 
     @Override
     public void setGroupRange(Range groupRange) {
         getGroup().groupRange = Range.copy(groupRange);
+        invalidateCaches(parent);
     }
 
     @Override
     public void setFeatureRange(Range featureRange) {
-        featureRange = Range.copy(featureRange);
+        this.featureRange = Range.copy(featureRange);
+        invalidateCaches();
     }
 
     @Override
@@ -252,11 +491,13 @@ public class FeatureTree extends ARootedTree<IFeatureTree> implements IMutableFe
         } else {
             featureRange.setLowerBound(1);
         }
+        invalidateCaches();
     }
 
     @Override
     public void setOptional() {
         featureRange.setLowerBound(0);
+        invalidateCaches();
     }
 
     @Override
@@ -271,6 +512,7 @@ public class FeatureTree extends ARootedTree<IFeatureTree> implements IMutableFe
             attributeValues = new LinkedHashMap<>();
         }
         attributeValues.put(attribute, value);
+        invalidateCaches();
     }
 
     @Override
@@ -279,6 +521,7 @@ public class FeatureTree extends ARootedTree<IFeatureTree> implements IMutableFe
         if (attributeValues == null) {
             attributeValues = new LinkedHashMap<>();
         }
+        invalidateCaches();
         return (S) attributeValues.remove(attribute);
     }
 }
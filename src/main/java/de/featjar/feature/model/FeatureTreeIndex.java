@@ -0,0 +1,324 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model;
+
+import de.featjar.base.data.Result;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Numbers all nodes of the feature trees of a feature model in preorder and postorder, so that subtree membership can
+ * be decided in constant time: a node {@code b} lies in the subtree of a node {@code a} if and only if
+ * {@code pre(a) <= pre(b)} and {@code post(b) <= post(a)}, and the subtree of {@code a} consists of the preorder
+ * numbers from {@code pre(a)} to {@code getSubtreeEnd(pre(a)) - 1}.
+ * Lowest common ancestors are answered in constant time by a range minimum query over the depths along an Euler tour
+ * of the trees, using a sparse table that is built on the first such query.
+ * The index is a snapshot; {@link FeatureModel} rebuilds it lazily after the feature tree changes.
+ *
+ * @see IFeatureModel#getFeatureTreeIndex()
+ */
+public class FeatureTreeIndex {
+
+    private final IFeatureTree[] nodes;
+    private final int[] parents;
+    private final int[] subtreeEnds;
+    private final int[] postorders;
+    private final int[] depths;
+    private final IdentityHashMap<IFeatureTree, Integer> preorders;
+
+    /**
+     * Range minimum structure over the Euler tour, built on the first lowest common ancestor query.
+     */
+    private volatile EulerTour eulerTour;
+
+    private static final class EulerTour {
+        private final int[] firstOccurrences;
+        private final int[][] sparseTable;
+
+        private EulerTour(FeatureTreeIndex index) {
+            int size = index.size();
+            int[] tour = new int[Math.max(2 * size - 1, 0)];
+            firstOccurrences = new int[size];
+            int[] nextChildren = new int[size];
+            int[] stack = new int[size];
+            int length = 0;
+            for (int root = 0; root < size; root = index.subtreeEnds[root]) {
+                int top = 0;
+                stack[top++] = root;
+                firstOccurrences[root] = length;
+                tour[length++] = root;
+                nextChildren[root] = root + 1;
+                while (top > 0) {
+                    int node = stack[top - 1];
+                    int child = nextChildren[node];
+                    if (child < index.subtreeEnds[node]) {
+                        nextChildren[node] = index.subtreeEnds[child];
+                        nextChildren[child] = child + 1;
+                        firstOccurrences[child] = length;
+                        tour[length++] = child;
+                        stack[top++] = child;
+                    } else if (--top > 0) {
+                        tour[length++] = stack[top - 1];
+                    }
+                }
+            }
+            int levels = length == 0 ? 1 : 32 - Integer.numberOfLeadingZeros(length);
+            sparseTable = new int[levels][];
+            sparseTable[0] = Arrays.copyOf(tour, length);
+            for (int level = 1; level < levels; level++) {
+                int[] previous = sparseTable[level - 1];
+                int half = 1 << (level - 1);
+                int[] current = new int[length - (1 << level) + 1];
+                for (int i = 0; i < current.length; i++) {
+                    int left = previous[i];
+                    int right = previous[i + half];
+                    current[i] = index.depths[right] < index.depths[left] ? right : left;
+                }
+                sparseTable[level] = current;
+            }
+        }
+
+        private int getShallowest(int from, int to, int[] depths) {
+            int level = 31 - Integer.numberOfLeadingZeros(to - from + 1);
+            int left = sparseTable[level][from];
+            int right = sparseTable[level][to - (1 << level) + 1];
+            return depths[right] < depths[left] ? right : left;
+        }
+    }
+
+    /**
+     * Numbers all nodes of the given feature trees.
+     *
+     * @param roots the roots of the feature trees
+     */
+    public FeatureTreeIndex(List<? extends IFeatureTree> roots) {
+        int size = 0;
+        ArrayDeque<IFeatureTree> stack = new ArrayDeque<>();
+        for (IFeatureTree root : roots) {
+            stack.push(root);
+            while (!stack.isEmpty()) {
+                IFeatureTree node = stack.pop();
+                size++;
+                for (IFeatureTree child : node.getChildren()) {
+                    stack.push(child);
+                }
+            }
+        }
+        nodes = new IFeatureTree[size];
+        parents = new int[size];
+        subtreeEnds = new int[size];
+        postorders = new int[size];
+        depths = new int[size];
+        preorders = new IdentityHashMap<>(size);
+
+        int preorder = 0;
+        ArrayDeque<Integer> parentStack = new ArrayDeque<>();
+        for (IFeatureTree root : roots) {
+            stack.push(root);
+            parentStack.push(-1);
+            while (!stack.isEmpty()) {
+                IFeatureTree node = stack.pop();
+                nodes[preorder] = node;
+                parents[preorder] = parentStack.pop();
+                preorders.put(node, preorder);
+                List<? extends IFeatureTree> children = node.getChildren();
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    stack.push(children.get(i));
+                    parentStack.push(preorder);
+                }
+                preorder++;
+            }
+        }
+        for (int i = size - 1; i >= 0; i--) {
+            subtreeEnds[i] = Math.max(subtreeEnds[i], i + 1);
+            if (parents[i] >= 0) {
+                subtreeEnds[parents[i]] = Math.max(subtreeEnds[parents[i]], subtreeEnds[i]);
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            depths[i] = parents[i] < 0 ? 0 : depths[parents[i]] + 1;
+            postorders[i] = subtreeEnds[i] - 1 - depths[i];
+        }
+    }
+
+    public int size() {
+        return nodes.length;
+    }
+
+    public IFeatureTree getNode(int preorder) {
+        return nodes[preorder];
+    }
+
+    /**
+     * Returns the preorder number of a node.
+     *
+     * @param node the node
+     * @return the preorder number, or -1 if the node is not part of the indexed trees
+     */
+    public int getPreorder(IFeatureTree node) {
+        Integer preorder = preorders.get(node);
+        return preorder == null ? -1 : preorder;
+    }
+
+    /**
+     * Returns the preorder number of the node of a feature.
+     *
+     * @param feature the feature
+     * @return the preorder number, or -1 if the feature is not part of the indexed trees
+     */
+    public int getPreorder(IFeature feature) {
+        IFeatureTree node = feature instanceof Feature
+                ? ((Feature) feature).featureTree
+                : feature.getFeatureTree().orElse(null);
+        int preorder = node == null ? -1 : getPreorder(node);
+        return preorder >= 0 && nodes[preorder].getFeature() == feature ? preorder : -1;
+    }
+
+    /**
+     * Returns the depth of a node, which is 0 for roots.
+     *
+     * @param preorder the preorder number of the node
+     * @return the depth
+     */
+    public int getDepth(int preorder) {
+        return depths[preorder];
+    }
+
+    /**
+     * Returns the depth of a node, which is 0 for roots.
+     *
+     * @param node the node
+     * @return the depth, or -1 if the node is not part of the indexed trees
+     */
+    public int getDepth(IFeatureTree node) {
+        int preorder = getPreorder(node);
+        return preorder < 0 ? -1 : depths[preorder];
+    }
+
+    public int getPostorder(int preorder) {
+        return postorders[preorder];
+    }
+
+    /**
+     * Returns the preorder number of the parent of a node.
+     *
+     * @param preorder the preorder number of the node
+     * @return the preorder number of the parent, or -1 for roots
+     */
+    public int getParent(int preorder) {
+        return parents[preorder];
+    }
+
+    /**
+     * Returns the preorder number following the last node in the subtree of a node.
+     *
+     * @param preorder the preorder number of the node
+     * @return the end of the subtree, exclusive
+     */
+    public int getSubtreeEnd(int preorder) {
+        return subtreeEnds[preorder];
+    }
+
+    /**
+     * Returns whether a node lies in the subtree of another node, including the node itself.
+     *
+     * @param ancestor the root of the subtree
+     * @param node the node
+     * @return whether the node lies in the subtree
+     */
+    public boolean isAncestorOrSelf(IFeatureTree ancestor, IFeatureTree node) {
+        int a = getPreorder(ancestor);
+        int b = getPreorder(node);
+        return a >= 0 && b >= 0 && isAncestorOrSelf(a, b);
+    }
+
+    /**
+     * Returns whether a node lies in the subtree of another node, including the node itself.
+     *
+     * @param ancestor the preorder number of the root of the subtree
+     * @param node the preorder number of the node
+     * @return whether the node lies in the subtree
+     */
+    public boolean isAncestorOrSelf(int ancestor, int node) {
+        return ancestor <= node && postorders[node] <= postorders[ancestor];
+    }
+
+    /**
+     * Returns whether a node is a proper ancestor of another node.
+     *
+     * @param ancestor the ancestor
+     * @param node the node
+     * @return whether the node lies in the subtree of the ancestor and is not the ancestor itself
+     */
+    public boolean isAncestor(IFeatureTree ancestor, IFeatureTree node) {
+        int a = getPreorder(ancestor);
+        int b = getPreorder(node);
+        return a >= 0 && b >= 0 && isAncestor(a, b);
+    }
+
+    public boolean isAncestor(int ancestor, int node) {
+        return ancestor < node && postorders[node] < postorders[ancestor];
+    }
+
+    /**
+     * Returns the lowest common ancestor of two nodes, which may be one of the nodes itself.
+     *
+     * @param a the preorder number of the first node
+     * @param b the preorder number of the second node
+     * @return the preorder number of the lowest common ancestor, or -1 if the nodes lie in different trees
+     */
+    public int getLowestCommonAncestor(int a, int b) {
+        EulerTour tour = eulerTour;
+        if (tour == null) {
+            synchronized (this) {
+                tour = eulerTour;
+                if (tour == null) {
+                    tour = new EulerTour(this);
+                    eulerTour = tour;
+                }
+            }
+        }
+        int from = tour.firstOccurrences[a];
+        int to = tour.firstOccurrences[b];
+        int ancestor = from <= to ? tour.getShallowest(from, to, depths) : tour.getShallowest(to, from, depths);
+        return isAncestorOrSelf(ancestor, a) && isAncestorOrSelf(ancestor, b) ? ancestor : -1;
+    }
+
+    /**
+     * Returns the lowest common ancestor of two nodes, which may be one of the nodes itself.
+     *
+     * @param a the first node
+     * @param b the second node
+     * @return the lowest common ancestor, or an empty result if a node is not indexed or the nodes lie in different
+     *     trees
+     */
+    public Result<IFeatureTree> getLowestCommonAncestor(IFeatureTree a, IFeatureTree b) {
+        int preorderA = getPreorder(a);
+        int preorderB = getPreorder(b);
+        if (preorderA < 0 || preorderB < 0) {
+            return Result.empty();
+        }
+        int ancestor = getLowestCommonAncestor(preorderA, preorderB);
+        return ancestor < 0 ? Result.empty() : Result.of(nodes[ancestor]);
+    }
+}
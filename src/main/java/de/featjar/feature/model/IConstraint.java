@@ -56,6 +56,17 @@ public interface IConstraint extends IFeatureModelElement, IHasCommonAttributes
         return getReferencedFeatures(getFormula(), getFeatureModel());
     }
 
+    /**
+     * Returns a canonical hash of this constraint's formula.
+     * The hash does not depend on identifiers or on the order of operands of commutative connectives.
+     *
+     * @return the canonical hash
+     * @see StructuralHashes#ofFormula(de.featjar.formula.structure.IExpression)
+     */
+    default long getCanonicalHash() {
+        return StructuralHashes.ofFormula(getFormula());
+    }
+
     default LinkedHashSet<String> getTags() {
         return getAttributeValue(Attributes.TAGS).get();
     }
@@ -20,13 +20,16 @@
  */
 package de.featjar.feature.model;
 
+import de.featjar.base.data.IAttribute;
 import de.featjar.base.data.Result;
 import de.featjar.base.data.identifier.IIdentifier;
 import de.featjar.feature.model.mixins.IHasCommonAttributes;
 import de.featjar.feature.model.mixins.IHasConstraints;
 import de.featjar.feature.model.mixins.IHasFeatureTree;
 import de.featjar.formula.structure.IFormula;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * A feature model represents the configuration space of a software system.
@@ -65,6 +68,47 @@ public interface IFeatureModel extends IFeatureModelElement, IHasCommonAttribute
 
     boolean hasFeature(IFeature feature);
 
+    /**
+     * Returns an index of the nodes of all feature trees of this feature model, which is rebuilt lazily after the
+     * feature trees change.
+     * By default, a new index is built on every call.
+     *
+     * @return the feature tree index
+     */
+    default FeatureTreeIndex getFeatureTreeIndex() {
+        return new FeatureTreeIndex(getRoots());
+    }
+
+    /**
+     * Returns an index for searching features by name, which is built on first use and then kept up to date.
+     * By default, a new index is built on every call.
+     *
+     * @return the feature name index
+     */
+    default FeatureNameIndex getFeatureNameIndex() {
+        return new FeatureNameIndex(this, getFeatures());
+    }
+
+    /**
+     * Returns the index on an attribute, if one was {@link FeatureModel#createAttributeIndex(IAttribute) created}.
+     * The index is used by {@link #query() queries}.
+     *
+     * @param attribute the attribute
+     * @return the index, or an empty result if there is none, which is the default
+     */
+    default Result<AttributeIndex> getAttributeIndex(IAttribute<?> attribute) {
+        return Result.empty();
+    }
+
+    /**
+     * Creates a query over the features in the feature trees of this feature model.
+     *
+     * @return a new query that matches all features
+     */
+    default FeatureQuery query() {
+        return new FeatureQuery(this);
+    }
+
     default IMutableFeatureModel mutate() {
         return (IMutableFeatureModel) this;
     }
@@ -83,6 +127,24 @@ public interface IFeatureModel extends IFeatureModelElement, IHasCommonAttribute
 
         void addFeatureTreeRoot(IFeatureTree featureTree);
 
+        /**
+         * Adds a feature tree root at a position among the roots.
+         * By default, all roots are removed and added again in their new order.
+         *
+         * @param index the position
+         * @param featureTree the feature tree
+         */
+        default void addFeatureTreeRoot(int index, IFeatureTree featureTree) {
+            List<IFeatureTree> roots = new ArrayList<>(getRoots());
+            for (IFeatureTree root : roots) {
+                removeFeatureTreeRoot(root);
+            }
+            roots.add(index, featureTree);
+            for (IFeatureTree root : roots) {
+                addFeatureTreeRoot(root);
+            }
+        }
+
         void removeFeatureTreeRoot(IFeatureTree featureTree);
 
         void removeFeatureTreeRoot(IFeature feature);
@@ -137,4 +137,15 @@ public interface IFeatureTree extends IRootedTree<IFeatureTree>, IAttributable,
     }
 
     int getGroupID();
+
+    /**
+     * Returns a content-based hash of this subtree.
+     * The hash does not depend on identifiers, so it can be compared across feature models.
+     *
+     * @return the structural hash
+     * @see StructuralHashes#ofNode(IFeatureTree)
+     */
+    default long getStructuralHash() {
+        return StructuralHashes.ofNode(this);
+    }
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model;
+
+import de.featjar.base.data.identifier.IIdentifier;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The constraints of a {@link FeatureModel} in order, addressable by position.
+ * Removed constraints leave empty slots, and a Fenwick tree over the occupied slots finds the slot of a position,
+ * so adding, removing, and looking up a constraint take logarithmic time.
+ * Slots are compacted when the array is full, which is amortized over the constraints added since.
+ */
+final class IndexedConstraints {
+
+    private IConstraint[] slots = new IConstraint[16];
+    private int[] counts = new int[17];
+    private int slotCount;
+    private int size;
+    private final HashMap<IIdentifier, Integer> slotsByIdentifier = new HashMap<>();
+
+    int size() {
+        return size;
+    }
+
+    void add(IConstraint constraint) {
+        if (slotCount == slots.length) {
+            rebuild(Math.max(16, 2 * size + 1));
+        }
+        slots[slotCount] = constraint;
+        slotsByIdentifier.put(constraint.getIdentifier(), slotCount);
+        update(slotCount, 1);
+        slotCount++;
+        size++;
+    }
+
+    boolean remove(IConstraint constraint) {
+        Integer slot = slotsByIdentifier.remove(constraint.getIdentifier());
+        if (slot == null) {
+            return false;
+        }
+        slots[slot] = null;
+        update(slot, -1);
+        size--;
+        return true;
+    }
+
+    /**
+     * Returns the constraint at a position, counting only constraints that were not removed.
+     *
+     * @param index the position
+     * @return the constraint, or null if the position is out of bounds
+     */
+    IConstraint get(int index) {
+        if (index < 0 || index >= size) {
+            return null;
+        }
+        // descends the Fenwick tree to the last slot whose prefix holds at most index constraints
+        int slot = 0;
+        int remaining = index;
+        for (int step = Integer.highestOneBit(slots.length); step > 0; step >>= 1) {
+            int next = slot + step;
+            if (next <= slots.length && counts[next] <= remaining) {
+                slot = next;
+                remaining -= counts[next];
+            }
+        }
+        return slots[slot];
+    }
+
+    private void update(int slot, int delta) {
+        for (int i = slot + 1; i <= slots.length; i += i & -i) {
+            counts[i] += delta;
+        }
+    }
+
+    private void rebuild(int capacity) {
+        IConstraint[] oldSlots = slots;
+        int oldSlotCount = slotCount;
+        slots = new IConstraint[capacity];
+        counts = new int[capacity + 1];
+        slotCount = 0;
+        for (int i = 0; i < oldSlotCount; i++) {
+            if (oldSlots[i] != null) {
+                slots[slotCount] = oldSlots[i];
+                slotsByIdentifier.put(oldSlots[i].getIdentifier(), slotCount);
+                slotCount++;
+            }
+        }
+        Arrays.fill(counts, 1, slotCount + 1, 1);
+        for (int i = 1; i <= capacity; i++) {
+            int parent = i + (i & -i);
+            if (parent <= capacity) {
+                counts[parent] += counts[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model;
+
+import de.featjar.base.data.IAttribute;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * An attribute whose value is inherited by all descendants of a feature that do not set their own value, like
+ * recursive attributes in FeatureIDE.
+ * Once an attribute is {@link FeatureModel#createRecursiveAttribute(IAttribute) made recursive} in a feature model,
+ * every {@link FeatureTree} node of that model caches the resolved values of all its recursive attributes, so querying
+ * an unchanged node takes constant time.
+ * Cached values are propagated from the root downwards and invalidated only in the subtree of a feature whose value
+ * of a recursive attribute changes, or that is moved to another parent.
+ *
+ * @param <T> the type of the attribute value
+ * @see FeatureTree#getRecursiveValue(RecursiveAttribute)
+ */
+public final class RecursiveAttribute<T> {
+
+    private final FeatureModel featureModel;
+    private final IAttribute<T> attribute;
+    private final int index;
+
+    RecursiveAttribute(FeatureModel featureModel, IAttribute<T> attribute, int index) {
+        this.featureModel = featureModel;
+        this.attribute = attribute;
+        this.index = index;
+    }
+
+    public FeatureModel getFeatureModel() {
+        return featureModel;
+    }
+
+    public IAttribute<T> getAttribute() {
+        return attribute;
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    /**
+     * Computes the resolved values of the given recursive attributes for a node from its own attribute values and the
+     * resolved values of its parent, which must be up to date.
+     * If the node sets none of the attributes, the array of the parent is shared.
+     */
+    static Object[] compute(FeatureTree node, Object[] parentValues, RecursiveAttribute<?>[] attributes) {
+        Map<IAttribute<?>, Object> attributeValues =
+                node.getFeature().getAttributes().orElse(null);
+        Object[] values = parentValues;
+        for (RecursiveAttribute<?> recursiveAttribute : attributes) {
+            Object value = attributeValues == null ? null : attributeValues.get(recursiveAttribute.attribute);
+            if (value != null) {
+                if (values == parentValues) {
+                    values = parentValues == null
+                            ? new Object[attributes.length]
+                            : Arrays.copyOf(parentValues, attributes.length);
+                }
+                values[recursiveAttribute.index] = value;
+            }
+        }
+        return values == null ? new Object[attributes.length] : values;
+    }
+
+    @Override
+    public String toString() {
+        return "RecursiveAttribute{" + attribute + "}";
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model;
+
+import de.featjar.base.data.IAttribute;
+import de.featjar.feature.model.FeatureTree.Group;
+import de.featjar.formula.structure.IExpression;
+import de.featjar.formula.structure.connective.And;
+import de.featjar.formula.structure.connective.AtLeast;
+import de.featjar.formula.structure.connective.AtMost;
+import de.featjar.formula.structure.connective.Between;
+import de.featjar.formula.structure.connective.BiImplies;
+import de.featjar.formula.structure.connective.Choose;
+import de.featjar.formula.structure.connective.Or;
+import de.featjar.formula.structure.connective.Reference;
+import de.featjar.formula.structure.predicate.False;
+import de.featjar.formula.structure.predicate.Literal;
+import de.featjar.formula.structure.predicate.True;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Content-based 64-bit hashes of feature trees, constraints, and feature models.
+ * Hashes depend only on names, ranges, groups, attributes, and formulas, never on identifiers or object identity,
+ * so they can be compared across models, processes, and runs.
+ * Tree hashes are Merkle hashes: the hash of a node combines its own content with the ordered hashes of its children,
+ * so equal subtrees can be detected without traversing them.
+ * Formula hashes are canonical with respect to the order of operands of commutative connectives.
+ * As with any hash, different structures may collide, so equal hashes should be confirmed where it matters.
+ *
+ * @see IFeatureTree#getStructuralHash()
+ * @see IConstraint#getCanonicalHash()
+ */
+public class StructuralHashes {
+
+    private static final long SEED = 0x2545F4914F6CDD1DL;
+    private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private static final long TREE = ofString("tree");
+    private static final long TRUE = ofString("true");
+    private static final long FALSE = ofString("false");
+    private static final long LITERAL = ofString("literal");
+    private static final long UNORDERED = ofString("unordered");
+
+    /**
+     * Combines a hash with a value, depending on the order of combination.
+     *
+     * @param hash the hash
+     * @param value the value
+     * @return the combined hash
+     */
+    public static long mix(long hash, long value) {
+        return (hash ^ finish(value)) * MULTIPLIER + 1;
+    }
+
+    /**
+     * Spreads the bits of a hash (the finalizer of MurmurHash3).
+     *
+     * @param hash the hash
+     * @return the finished hash
+     */
+    public static long finish(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Computes a 64-bit FNV-1a hash of the given string.
+     *
+     * @param string the string, may be null
+     * @return the hash
+     */
+    public static long ofString(String string) {
+        long hash = 0xCBF29CE484222325L;
+        if (string == null) {
+            return hash;
+        }
+        for (int i = 0; i < string.length(); i++) {
+            hash ^= string.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Computes a content-based hash of an attribute value.
+     * Features are hashed by name, lists in order, and other collections independent of order.
+     *
+     * @param value the value
+     * @return the hash
+     */
+    public static long ofValue(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof IFeature) {
+            return ofString(((IFeature) value).getName().orElse(""));
+        } else if (value instanceof List) {
+            long hash = SEED;
+            for (Object element : (List<?>) value) {
+                hash = mix(hash, ofValue(element));
+            }
+            return hash;
+        } else if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            long[] hashes = new long[collection.size()];
+            int i = 0;
+            for (Object element : collection) {
+                hashes[i++] = ofValue(element);
+            }
+            return ofUnordered(hashes);
+        } else {
+            return mix(ofString(value.getClass().getName()), ofString(value.toString()));
+        }
+    }
+
+    /**
+     * Computes a hash of the given attributes, independent of their order.
+     *
+     * @param attributes the attributes
+     * @param ignored an attribute to ignore, may be null
+     * @return the hash
+     */
+    public static long ofAttributes(Map<IAttribute<?>, Object> attributes, IAttribute<?> ignored) {
+        long hash = 0;
+        for (Entry<IAttribute<?>, Object> entry : attributes.entrySet()) {
+            IAttribute<?> attribute = entry.getKey();
+            if (entry.getValue() != null && !attribute.equals(ignored)) {
+                hash += finish(mix(
+                        mix(ofString(attribute.getNamespace()), ofString(attribute.getName())),
+                        ofValue(entry.getValue())));
+            }
+        }
+        return hash;
+    }
+
+    private static long ofUnordered(long[] hashes) {
+        Arrays.sort(hashes);
+        long hash = UNORDERED;
+        for (long childHash : hashes) {
+            hash = mix(hash, childHash);
+        }
+        return hash;
+    }
+
+    /**
+     * Computes the structural hash of a single node, given the structural hashes of its children.
+     * Combines the feature's name, type, and attributes, the feature range, the group ID, the bounds of all groups,
+     * the node's attributes, and the ordered child hashes.
+     *
+     * @param node the node
+     * @return the hash
+     */
+    public static long ofNode(IFeatureTree node) {
+        IFeature feature = node.getFeature();
+        long hash = TREE;
+        hash = mix(hash, ofString(feature.getName().orElse("")));
+        hash = mix(hash, ofString(feature.getType() == null ? null : feature.getType().getName()));
+        hash = mix(hash, ofAttributes(feature.getAttributes().orElse(Map.of()), Attributes.NAME));
+        hash = mix(hash, node.getFeatureRangeLowerBound());
+        hash = mix(hash, node.getFeatureRangeUpperBound());
+        hash = mix(hash, node.getGroupID());
+        List<Group> groups = node.getGroups();
+        hash = mix(hash, groups.size());
+        for (Group group : groups) {
+            hash = mix(hash, group.getLowerBound());
+            hash = mix(hash, group.getUpperBound());
+        }
+        hash = mix(hash, ofAttributes(node.getAttributes().orElse(Map.of()), null));
+        List<? extends IFeatureTree> children = node.getChildren();
+        hash = mix(hash, children.size());
+        for (IFeatureTree child : children) {
+            hash = mix(hash, child.getStructuralHash());
+        }
+        return finish(hash);
+    }
+
+    /**
+     * Computes the canonical hash of a formula.
+     * Operands of conjunctions, disjunctions, bi-implications, and cardinality connectives are combined independent
+     * of their order, and literals are hashed by variable name and polarity.
+     *
+     * @param formula the formula
+     * @return the hash
+     */
+    public static long ofFormula(IExpression formula) {
+        if (formula instanceof Reference) {
+            return ofFormula(formula.getChildren().get(0));
+        } else if (formula instanceof Literal) {
+            Literal literal = (Literal) formula;
+            return finish(mix(mix(LITERAL, ofString(literal.getName())), literal.isPositive() ? 1 : 0));
+        } else if (formula instanceof True) {
+            return TRUE;
+        } else if (formula instanceof False) {
+            return FALSE;
+        }
+        List<? extends IExpression> children = formula.getChildren();
+        long hash = ofString(formula.getClass().getName());
+        if (formula instanceof AtLeast) {
+            hash = mix(hash, ((AtLeast) formula).getMinimum());
+        } else if (formula instanceof AtMost) {
+            hash = mix(hash, ((AtMost) formula).getMaximum());
+        } else if (formula instanceof Between) {
+            hash = mix(hash, ((Between) formula).getMinimum());
+            hash = mix(hash, ((Between) formula).getMaximum());
+        } else if (formula instanceof Choose) {
+            hash = mix(hash, ((Choose) formula).getBound());
+        }
+        if (formula instanceof And
+                || formula instanceof Or
+                || formula instanceof BiImplies
+                || formula instanceof AtLeast
+                || formula instanceof AtMost
+                || formula instanceof Between
+                || formula instanceof Choose) {
+            long[] hashes = new long[children.size()];
+            for (int i = 0; i < hashes.length; i++) {
+                hashes[i] = ofFormula(children.get(i));
+            }
+            hash = mix(hash, ofUnordered(hashes));
+        } else {
+            for (IExpression child : children) {
+                hash = mix(hash, ofFormula(child));
+            }
+        }
+        return finish(hash);
+    }
+
+    /**
+     * Computes the structural hash of a feature model.
+     * Combines the ordered hashes of all feature tree roots and the {@link #ofConstraints(Collection) hash of all
+     * constraints}.
+     * Both are cached by {@link FeatureModel}, so after a change this takes time proportional to the changed paths
+     * of the feature trees and the changed constraints.
+     *
+     * @param featureModel the feature model
+     * @return the hash
+     */
+    public static long ofFeatureModel(IFeatureModel featureModel) {
+        long hash = SEED;
+        List<IFeatureTree> roots = featureModel.getRoots();
+        hash = mix(hash, roots.size());
+        for (IFeatureTree root : roots) {
+            hash = mix(hash, root.getStructuralHash());
+        }
+        hash = mix(hash, featureModel.getNumberOfConstraints());
+        return finish(mix(
+                hash,
+                featureModel instanceof FeatureModel
+                        ? ((FeatureModel) featureModel).getConstraintsHash()
+                        : ofConstraints(featureModel.getConstraints())));
+    }
+
+    /**
+     * Computes the contribution of a constraint to the {@link #ofConstraints(Collection) hash of all constraints}.
+     *
+     * @param constraint the constraint
+     * @return the hash
+     */
+    public static long ofConstraint(IConstraint constraint) {
+        return finish(mix(UNORDERED, constraint.getCanonicalHash()));
+    }
+
+    /**
+     * Computes a hash of the canonical hashes of the given constraints, independent of their order.
+     * The hash is a sum, so it can be updated when a single constraint is added, removed, or changed.
+     *
+     * @param constraints the constraints
+     * @return the hash
+     */
+    public static long ofConstraints(Collection<IConstraint> constraints) {
+        long hash = 0;
+        for (IConstraint constraint : constraints) {
+            hash += ofConstraint(constraint);
+        }
+        return hash;
+    }
+
+    /**
+     * Checks whether two subtrees have the same structural hash.
+     *
+     * @param tree the first tree
+     * @param otherTree the second tree
+     * @return whether both hashes are equal
+     */
+    public static boolean equalStructure(IFeatureTree tree, IFeatureTree otherTree) {
+        return tree == otherTree || tree.getStructuralHash() == otherTree.getStructuralHash();
+    }
+}
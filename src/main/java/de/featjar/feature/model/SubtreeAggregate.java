@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model;
+
+import de.featjar.base.data.IAttribute;
+import java.util.Map;
+
+/**
+ * The sum, minimum, maximum, and count of a numeric attribute over the features of a subtree.
+ * Once an aggregate is {@link FeatureModel#createSubtreeAggregate(IAttribute) created} for a feature model, every
+ * {@link FeatureTree} node of that model caches its value for its subtree, so querying an unchanged subtree takes
+ * constant time.
+ * Like the {@link IFeatureTree#getStructuralHash() structural hash}, cached values are invalidated on the path to the
+ * root when the tree or an attribute value of a feature changes, and recomputed from the children on the next query.
+ *
+ * @see FeatureTree#getSubtreeSum(SubtreeAggregate)
+ */
+public final class SubtreeAggregate {
+
+    static final int SUM = 0;
+    static final int MIN = 1;
+    static final int MAX = 2;
+    static final int COUNT = 3;
+    static final int WIDTH = 4;
+
+    private final FeatureModel featureModel;
+    private final IAttribute<? extends Number> attribute;
+    private final int index;
+
+    SubtreeAggregate(FeatureModel featureModel, IAttribute<? extends Number> attribute, int index) {
+        this.featureModel = featureModel;
+        this.attribute = attribute;
+        this.index = index;
+    }
+
+    public FeatureModel getFeatureModel() {
+        return featureModel;
+    }
+
+    public IAttribute<? extends Number> getAttribute() {
+        return attribute;
+    }
+
+    int getOffset() {
+        return index * WIDTH;
+    }
+
+    /**
+     * Computes the values of the given aggregates for a node from its own attribute values and the cached values of
+     * its children, which must be up to date.
+     */
+    static double[] compute(FeatureTree node, SubtreeAggregate[] aggregates) {
+        double[] values = new double[aggregates.length * WIDTH];
+        Map<IAttribute<?>, Object> attributes = node.getFeature().getAttributes().orElse(null);
+        for (SubtreeAggregate aggregate : aggregates) {
+            int offset = aggregate.getOffset();
+            Object value = attributes == null ? null : attributes.get(aggregate.attribute);
+            if (value instanceof Number) {
+                double number = ((Number) value).doubleValue();
+                values[offset + SUM] = number;
+                values[offset + MIN] = number;
+                values[offset + MAX] = number;
+                values[offset + COUNT] = 1;
+            } else {
+                values[offset + MIN] = Double.POSITIVE_INFINITY;
+                values[offset + MAX] = Double.NEGATIVE_INFINITY;
+            }
+            for (IFeatureTree child : node.getChildren()) {
+                if (child instanceof FeatureTree) {
+                    double[] childValues = ((FeatureTree) child).aggregates;
+                    values[offset + SUM] += childValues[offset + SUM];
+                    values[offset + MIN] = Math.min(values[offset + MIN], childValues[offset + MIN]);
+                    values[offset + MAX] = Math.max(values[offset + MAX], childValues[offset + MAX]);
+                    values[offset + COUNT] += childValues[offset + COUNT];
+                }
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return "SubtreeAggregate{" + attribute + "}";
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.analysis;
+
+import de.featjar.feature.model.IConstraint;
+import de.featjar.feature.model.IFeatureModel;
+import de.featjar.formula.structure.IExpression;
+import de.featjar.formula.structure.connective.And;
+import de.featjar.formula.structure.connective.BiImplies;
+import de.featjar.formula.structure.connective.Reference;
+import de.featjar.formula.structure.predicate.Literal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * Sets of features that always have the same value.
+ * A child is in the same set as its parent if it is mandatory or its group requires all of its children, and two
+ * features are in the same set if a constraint (or a conjunct of a constraint) is an equivalence of two literals of
+ * the same polarity.
+ * Sets are found with one pass over a {@link FlatFeatureTree} and union-find over the equivalences.
+ * The representative of a set is its first feature in preorder.
+ *
+ * @see de.featjar.feature.model.transformer.ComputeFormula#setSimplifyAtomicSets(boolean)
+ */
+public class AtomicSets {
+
+    private final FlatFeatureTree tree;
+    private final int[] representatives;
+
+    /**
+     * Computes the atomic sets of a feature model.
+     *
+     * @param featureModel the feature model
+     */
+    public AtomicSets(IFeatureModel featureModel) {
+        tree = new FlatFeatureTree(featureModel);
+        int size = tree.size();
+        representatives = new int[size];
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            representatives[ordinal] = ordinal;
+            int parent = tree.getParent(ordinal);
+            if (parent >= 0) {
+                int group = tree.getGroup(ordinal);
+                if (tree.getFeatureLowerBound(ordinal) > 0
+                        || tree.getGroupLowerBound(group) >= tree.getGroupSize(group)) {
+                    representatives[ordinal] = representatives[parent];
+                }
+            }
+        }
+        for (IConstraint constraint : featureModel.getConstraints()) {
+            addEquivalences(constraint.getFormula());
+        }
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            representatives[ordinal] = find(ordinal);
+        }
+    }
+
+    private void addEquivalences(IExpression formula) {
+        if (formula instanceof Reference || formula instanceof And) {
+            for (IExpression child : formula.getChildren()) {
+                addEquivalences(child);
+            }
+        } else if (formula instanceof BiImplies
+                && formula.getChildren().get(0) instanceof Literal
+                && formula.getChildren().get(1) instanceof Literal) {
+            Literal literal1 = (Literal) formula.getChildren().get(0);
+            Literal literal2 = (Literal) formula.getChildren().get(1);
+            int ordinal1 = tree.getOrdinal(literal1.getName());
+            int ordinal2 = tree.getOrdinal(literal2.getName());
+            if (ordinal1 >= 0 && ordinal2 >= 0 && literal1.isPositive() == literal2.isPositive()) {
+                int representative1 = find(ordinal1);
+                int representative2 = find(ordinal2);
+                if (representative1 < representative2) {
+                    representatives[representative2] = representative1;
+                } else {
+                    representatives[representative1] = representative2;
+                }
+            }
+        }
+    }
+
+    private int find(int ordinal) {
+        int root = ordinal;
+        while (representatives[root] != root) {
+            root = representatives[root];
+        }
+        while (representatives[ordinal] != root) {
+            int next = representatives[ordinal];
+            representatives[ordinal] = root;
+            ordinal = next;
+        }
+        return root;
+    }
+
+    public FlatFeatureTree getFlatFeatureTree() {
+        return tree;
+    }
+
+    /**
+     * Returns the ordinal of the representative of a feature's set.
+     *
+     * @param ordinal the ordinal of the feature
+     * @return the ordinal of the representative
+     */
+    public int getRepresentative(int ordinal) {
+        return representatives[ordinal];
+    }
+
+    /**
+     * Returns the name of the representative of a feature's set, or the name itself if it is no feature in the tree.
+     *
+     * @param name the feature name
+     * @return the name of the representative
+     */
+    public String getRepresentative(String name) {
+        int ordinal = tree.getOrdinal(name);
+        return ordinal < 0 ? name : tree.getName(representatives[ordinal]);
+    }
+
+    /**
+     * Returns all atomic sets, each with its representative first, in preorder of their representatives.
+     *
+     * @return the atomic sets
+     */
+    public List<List<String>> getSets() {
+        Map<Integer, List<String>> sets = new LinkedHashMap<>();
+        for (int ordinal = 0; ordinal < tree.size(); ordinal++) {
+            sets.computeIfAbsent(representatives[ordinal], r -> new ArrayList<>())
+                    .add(tree.getName(ordinal));
+        }
+        return new ArrayList<>(sets.values());
+    }
+
+    /**
+     * Returns the number of atomic sets, which is the number of variables when atomic sets are collapsed.
+     *
+     * @return the number of atomic sets
+     */
+    public int size() {
+        int count = 0;
+        for (int ordinal = 0; ordinal < tree.size(); ordinal++) {
+            if (representatives[ordinal] == ordinal) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Expands a set of selected representatives to the set of all selected features.
+     *
+     * @param selectedRepresentatives the names of selected representatives
+     * @return the names of all selected features, in preorder
+     */
+    public Set<String> expand(Collection<String> selectedRepresentatives) {
+        Set<String> selected = new LinkedHashSet<>();
+        for (int ordinal = 0; ordinal < tree.size(); ordinal++) {
+            if (selectedRepresentatives.contains(tree.getName(representatives[ordinal]))) {
+                selected.add(tree.getName(ordinal));
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Expands an assignment of representatives to an assignment of all features.
+     * Variables that are not features in the tree are kept as they are.
+     *
+     * @param assignment the values of representatives
+     * @return the values of all features
+     */
+    public Map<String, Boolean> expand(Map<String, Boolean> assignment) {
+        Map<String, Boolean> expanded = new LinkedHashMap<>();
+        for (int ordinal = 0; ordinal < tree.size(); ordinal++) {
+            Boolean value = assignment.get(tree.getName(representatives[ordinal]));
+            if (value != null) {
+                expanded.put(tree.getName(ordinal), value);
+            }
+        }
+        for (Entry<String, Boolean> entry : assignment.entrySet()) {
+            if (tree.getOrdinal(entry.getKey()) < 0) {
+                expanded.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return Collections.unmodifiableMap(expanded);
+    }
+}
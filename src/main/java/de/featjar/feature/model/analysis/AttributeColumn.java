@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.analysis;
+
+import de.featjar.base.data.IAttribute;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+
+/**
+ * The values of a numeric attribute for all features of a {@link FlatFeatureTree}, indexed by ordinal.
+ * Values are read once from the attribute maps of the features, so analyses can use them without looking up and
+ * unboxing each value again.
+ * Features without a value for the attribute have the value 0.
+ * Later changes to attribute values are not reflected.
+ */
+public class AttributeColumn {
+
+    private final IAttribute<? extends Number> attribute;
+    private final double[] values;
+    private final BitSet present;
+
+    /**
+     * Reads the values of an attribute for all features of a flat feature tree.
+     *
+     * @param tree the flat feature tree
+     * @param attribute the attribute
+     */
+    public AttributeColumn(FlatFeatureTree tree, IAttribute<? extends Number> attribute) {
+        this.attribute = attribute;
+        values = new double[tree.size()];
+        present = new BitSet(tree.size());
+        for (int ordinal = 0; ordinal < values.length; ordinal++) {
+            Map<IAttribute<?>, Object> attributes =
+                    tree.getNode(ordinal).getFeature().getAttributes().orElse(null);
+            Object value = attributes == null ? null : attributes.get(attribute);
+            if (value instanceof Number) {
+                values[ordinal] = ((Number) value).doubleValue();
+                present.set(ordinal);
+            }
+        }
+    }
+
+    public IAttribute<? extends Number> getAttribute() {
+        return attribute;
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public double get(int ordinal) {
+        return values[ordinal];
+    }
+
+    /**
+     * Returns whether a feature has a value for the attribute.
+     *
+     * @param ordinal the ordinal of the feature
+     * @return whether the feature has a value
+     */
+    public boolean isPresent(int ordinal) {
+        return present.get(ordinal);
+    }
+
+    /**
+     * Returns a copy of all values.
+     *
+     * @return the values, indexed by ordinal
+     */
+    public double[] toArray() {
+        return Arrays.copyOf(values, values.length);
+    }
+}
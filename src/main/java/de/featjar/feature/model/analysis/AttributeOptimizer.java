@@ -0,0 +1,419 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.analysis;
+
+import de.featjar.base.data.IAttribute;
+import de.featjar.base.data.Problem;
+import de.featjar.base.data.Result;
+import de.featjar.feature.model.IFeatureModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Finds valid configurations of a feature model with minimal total cost, where the cost of a configuration is the sum
+ * of a numeric attribute over its selected features.
+ * <p>
+ * For every node and every number of siblings selected before it in its group, a dynamic program over the tree
+ * computes the minimal cost of completing the node's subtree and the rest of its group, ignoring cross-tree
+ * constraints.
+ * A depth-first search decides features in preorder like {@link ConfigurationEnumerator}, tries the cheaper
+ * alternative first, and prunes every branch whose lower bound from the dynamic program cannot beat the solutions
+ * found so far.
+ * Without constraints, the bounds are exact, so the optimum is found without backtracking in linear time.
+ * With constraints, each constraint is evaluated as soon as the last feature it references is decided.
+ */
+public class AttributeOptimizer {
+
+    private static final double INFINITY = Double.POSITIVE_INFINITY;
+
+    /**
+     * A configuration and its cost.
+     */
+    public static final class Solution {
+        private final long[] configuration;
+        private final double cost;
+
+        private Solution(long[] configuration, double cost) {
+            this.configuration = configuration;
+            this.cost = cost;
+        }
+
+        /**
+         * Returns the configuration as a bitset indexed by the ordinals of the flat feature tree.
+         *
+         * @return a copy of the configuration
+         */
+        public long[] getConfiguration() {
+            return Arrays.copyOf(configuration, configuration.length);
+        }
+
+        public boolean isSelected(int ordinal) {
+            return (configuration[ordinal >>> 6] & (1L << ordinal)) != 0;
+        }
+
+        public double getCost() {
+            return cost;
+        }
+
+        @Override
+        public String toString() {
+            return "Solution{cost=" + cost + "}";
+        }
+    }
+
+    private final FlatFeatureTree tree;
+    private final AttributeColumn costs;
+    private final CompiledConstraints constraints;
+    private final int size;
+    private final int rootGroup;
+    private final int[] subtreeEnds;
+    private final int[] groups;
+    private final int[] firstGroups;
+    private final int[] groupLowerBounds;
+    private final int[] groupUpperBounds;
+    private final int[] firstChildren;
+    private final int[] nextSiblings;
+    private final boolean[] mandatory;
+    private final boolean[] excluded;
+    private final double[] subtreeCosts;
+    private final int[] offsets;
+    private final int[] caps;
+    private final double[] completions;
+    private final int[] constraintStarts;
+    private final int[] constraintIndices;
+
+    /**
+     * Creates an optimizer for a feature model that minimizes the sum of an attribute.
+     *
+     * @param featureModel the feature model
+     * @param attribute the attribute
+     * @throws IllegalArgumentException if a constraint references an unknown feature or contains an unsupported
+     *     expression
+     */
+    public AttributeOptimizer(IFeatureModel featureModel, IAttribute<? extends Number> attribute) {
+        tree = new FlatFeatureTree(featureModel);
+        costs = new AttributeColumn(tree, attribute);
+        constraints = new CompiledConstraints(featureModel, tree);
+        size = tree.size();
+        rootGroup = tree.getFirstGroup(size);
+        subtreeEnds = new int[size];
+        groups = new int[size];
+        firstGroups = new int[size + 1];
+        groupLowerBounds = new int[rootGroup + 1];
+        groupUpperBounds = new int[rootGroup + 1];
+        firstChildren = new int[rootGroup + 1];
+        nextSiblings = new int[size];
+        mandatory = new boolean[size];
+        excluded = new boolean[size];
+        subtreeCosts = new double[size];
+        offsets = new int[size + 1];
+        caps = new int[size];
+
+        int[] groupSizes = new int[rootGroup + 1];
+        int[] lastChildren = new int[rootGroup + 1];
+        Arrays.fill(firstChildren, -1);
+        for (int group = 0; group < rootGroup; group++) {
+            groupLowerBounds[group] = tree.getGroupLowerBound(group);
+            groupUpperBounds[group] = tree.getGroupUpperBound(group);
+            groupSizes[group] = tree.getGroupSize(group);
+        }
+        groupUpperBounds[rootGroup] = Integer.MAX_VALUE;
+        groupSizes[rootGroup] = tree.getRoots().length;
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            subtreeEnds[ordinal] = tree.getSubtreeEnd(ordinal);
+            firstGroups[ordinal] = tree.getFirstGroup(ordinal);
+            mandatory[ordinal] = tree.getFeatureLowerBound(ordinal) > 0;
+            excluded[ordinal] = tree.getFeatureUpperBound(ordinal) == 0;
+            int group = tree.getParent(ordinal) < 0 ? rootGroup : tree.getGroup(ordinal);
+            groups[ordinal] = group;
+            nextSiblings[ordinal] = -1;
+            if (firstChildren[group] < 0) {
+                firstChildren[group] = ordinal;
+            } else {
+                nextSiblings[lastChildren[group]] = ordinal;
+            }
+            lastChildren[group] = ordinal;
+            // states above the lower bound are equivalent if the upper bound cannot be exceeded
+            boolean bounded = groupUpperBounds[group] < groupSizes[group];
+            caps[ordinal] = bounded ? groupUpperBounds[group] : groupLowerBounds[group];
+            offsets[ordinal + 1] = offsets[ordinal] + caps[ordinal] + 1;
+        }
+        firstGroups[size] = rootGroup;
+
+        completions = new double[offsets[size]];
+        for (int ordinal = size - 1; ordinal >= 0; ordinal--) {
+            double subtreeCost = costs.get(ordinal);
+            for (int group = firstGroups[ordinal]; group < firstGroups[ordinal + 1]; group++) {
+                subtreeCost += getGroupCompletion(group);
+            }
+            subtreeCosts[ordinal] = subtreeCost;
+            for (int state = 0; state <= caps[ordinal]; state++) {
+                double selected = excluded[ordinal] ? INFINITY : subtreeCost + getCompletionAfter(ordinal, state + 1);
+                double deselected = mandatory[ordinal] ? INFINITY : getCompletionAfter(ordinal, state);
+                completions[offsets[ordinal] + state] = Math.min(selected, deselected);
+            }
+        }
+
+        // constraints are bucketed by their last ordinal, constraints without features are checked first
+        constraintStarts = new int[size + 2];
+        for (int i = 0; i < constraints.size(); i++) {
+            constraintStarts[constraints.getLastOrdinal(i) + 2]++;
+        }
+        for (int i = 0; i <= size; i++) {
+            constraintStarts[i + 1] += constraintStarts[i];
+        }
+        constraintIndices = new int[constraints.size()];
+        int[] next = Arrays.copyOf(constraintStarts, size + 1);
+        for (int i = 0; i < constraints.size(); i++) {
+            constraintIndices[next[constraints.getLastOrdinal(i) + 1]++] = i;
+        }
+    }
+
+    /**
+     * Returns the minimal cost of deciding a node and the siblings after it in its group, given the number of
+     * siblings selected before it.
+     */
+    private double getCompletion(int ordinal, int state) {
+        if (state > groupUpperBounds[groups[ordinal]]) {
+            return INFINITY;
+        }
+        return completions[offsets[ordinal] + Math.min(state, caps[ordinal])];
+    }
+
+    private double getCompletionAfter(int ordinal, int state) {
+        int next = nextSiblings[ordinal];
+        if (next >= 0) {
+            return getCompletion(next, state);
+        }
+        int group = groups[ordinal];
+        return state >= groupLowerBounds[group] && state <= groupUpperBounds[group] ? 0 : INFINITY;
+    }
+
+    private double getGroupCompletion(int group) {
+        int first = firstChildren[group];
+        if (first >= 0) {
+            return getCompletion(first, 0);
+        }
+        return groupLowerBounds[group] == 0 ? 0 : INFINITY;
+    }
+
+    public FlatFeatureTree getFlatFeatureTree() {
+        return tree;
+    }
+
+    public AttributeColumn getCosts() {
+        return costs;
+    }
+
+    /**
+     * Returns the minimal cost of a valid configuration of the feature tree, ignoring cross-tree constraints.
+     * Without constraints, this is the optimum.
+     *
+     * @return the lower bound, or positive infinity if the tree has no valid configuration
+     */
+    public double getLowerBound() {
+        return getGroupCompletion(rootGroup);
+    }
+
+    /**
+     * Finds a valid configuration with minimal cost.
+     *
+     * @return the solution, or a problem if there is no valid configuration
+     */
+    public Result<Solution> minimize() {
+        List<Solution> solutions = minimize(1, INFINITY);
+        return solutions.isEmpty()
+                ? Result.empty(new Problem("feature model has no valid configuration", Problem.Severity.ERROR))
+                : Result.of(solutions.get(0));
+    }
+
+    /**
+     * Finds the valid configurations with minimal cost that do not exceed a budget.
+     *
+     * @param count the maximum number of solutions
+     * @param budget the maximum cost of a solution
+     * @return up to {@code count} solutions in ascending order of cost
+     */
+    public List<Solution> minimize(int count, double budget) {
+        if (count <= 0) {
+            throw new IllegalArgumentException(String.valueOf(count));
+        }
+        return new Search(count, budget).run();
+    }
+
+    private final class Search {
+        private final int count;
+        private final double budget;
+        private final PriorityQueue<Solution> solutions;
+        private final long[] configuration = new long[(size + 63) >>> 6];
+        private final int[] groupStates = new int[rootGroup + 1];
+        private final int[] registers = new int[constraints.getRegisterCount()];
+        private int[] decisions = new int[16];
+        private boolean[] values = new boolean[16];
+        private boolean[] open = new boolean[16];
+        private double[] bounds = new double[16];
+        private double[] costSums = new double[16];
+        private int depth;
+        private int frontier;
+        private double bound;
+        private double cost;
+
+        private Search(int count, double budget) {
+            this.count = count;
+            this.budget = budget;
+            solutions = new PriorityQueue<>(Comparator.comparingDouble(Solution::getCost).reversed());
+        }
+
+        private List<Solution> run() {
+            bound = getLowerBound();
+            boolean backtracking = !isAdmissible(bound) || !checkConstraints(-1, 0);
+            while (true) {
+                if (!backtracking) {
+                    if (frontier == size) {
+                        addSolution();
+                        backtracking = true;
+                        continue;
+                    }
+                    int ordinal = frontier;
+                    double selectedBound = getBound(ordinal, true);
+                    double deselectedBound = getBound(ordinal, false);
+                    boolean value = selectedBound <= deselectedBound;
+                    double firstBound = value ? selectedBound : deselectedBound;
+                    if (!isAdmissible(firstBound)) {
+                        backtracking = true;
+                        continue;
+                    }
+                    push(ordinal, value, isAdmissible(value ? deselectedBound : selectedBound));
+                    backtracking = !decide(ordinal, value, firstBound);
+                } else {
+                    while (depth > 0 && !open[depth - 1]) {
+                        undo();
+                    }
+                    if (depth == 0) {
+                        break;
+                    }
+                    int ordinal = decisions[depth - 1];
+                    boolean value = !values[depth - 1];
+                    undo();
+                    double otherBound = getBound(ordinal, value);
+                    if (isAdmissible(otherBound)) {
+                        push(ordinal, value, false);
+                        backtracking = !decide(ordinal, value, otherBound);
+                    }
+                }
+            }
+            List<Solution> result = new ArrayList<>(solutions);
+            result.sort(Comparator.comparingDouble(Solution::getCost));
+            return Collections.unmodifiableList(result);
+        }
+
+        /**
+         * Returns the lower bound of all configurations after deciding the feature at the frontier.
+         */
+        private double getBound(int ordinal, boolean value) {
+            int state = groupStates[groups[ordinal]];
+            if (value ? excluded[ordinal] : mandatory[ordinal]) {
+                return INFINITY;
+            }
+            double completion = value
+                    ? subtreeCosts[ordinal] + getCompletionAfter(ordinal, state + 1)
+                    : getCompletionAfter(ordinal, state);
+            return completion == INFINITY ? INFINITY : bound - getCompletion(ordinal, state) + completion;
+        }
+
+        private boolean isAdmissible(double lowerBound) {
+            return lowerBound <= budget
+                    && lowerBound < INFINITY
+                    && (solutions.size() < count || lowerBound < solutions.peek().getCost());
+        }
+
+        private void push(int ordinal, boolean value, boolean otherOpen) {
+            if (depth == decisions.length) {
+                decisions = Arrays.copyOf(decisions, 2 * depth);
+                values = Arrays.copyOf(values, 2 * depth);
+                open = Arrays.copyOf(open, 2 * depth);
+                bounds = Arrays.copyOf(bounds, 2 * depth);
+                costSums = Arrays.copyOf(costSums, 2 * depth);
+            }
+            decisions[depth] = ordinal;
+            values[depth] = value;
+            open[depth] = otherOpen;
+            bounds[depth] = bound;
+            costSums[depth] = cost;
+            depth++;
+        }
+
+        /**
+         * Applies the decision on top of the stack and checks all constraints whose features are now decided.
+         *
+         * @return whether no constraint is violated
+         */
+        private boolean decide(int ordinal, boolean value, double newBound) {
+            bound = newBound;
+            if (value) {
+                configuration[ordinal >>> 6] |= 1L << ordinal;
+                groupStates[groups[ordinal]]++;
+                for (int group = firstGroups[ordinal]; group < firstGroups[ordinal + 1]; group++) {
+                    groupStates[group] = 0;
+                }
+                cost += costs.get(ordinal);
+                frontier = ordinal + 1;
+            } else {
+                frontier = subtreeEnds[ordinal];
+            }
+            return checkConstraints(ordinal, frontier);
+        }
+
+        private void undo() {
+            depth--;
+            int ordinal = decisions[depth];
+            if (values[depth]) {
+                configuration[ordinal >>> 6] &= ~(1L << ordinal);
+                groupStates[groups[ordinal]]--;
+            }
+            bound = bounds[depth];
+            cost = costSums[depth];
+            frontier = ordinal;
+        }
+
+        private boolean checkConstraints(int fromOrdinal, int toOrdinal) {
+            for (int i = constraintStarts[fromOrdinal + 1]; i < constraintStarts[toOrdinal + 1]; i++) {
+                if (!constraints.evaluate(constraintIndices[i], configuration, registers)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void addSolution() {
+            if (cost <= budget) {
+                solutions.add(new Solution(configuration.clone(), cost));
+                if (solutions.size() > count) {
+                    solutions.poll();
+                }
+            }
+        }
+    }
+}
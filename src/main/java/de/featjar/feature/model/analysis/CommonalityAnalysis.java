@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.analysis;
+
+import de.featjar.feature.model.IFeatureModel;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Computes the commonality of every feature, that is, the fraction of valid configurations that contain it.
+ * Uses the counts of a {@link ConfigurationCounter} as inside values and computes outside values, the number of
+ * ways to configure everything outside of a subtree when its root is selected, in one top-down pass.
+ * For each group, the counts that exclude one child are combined from prefix and suffix products of the children's
+ * polynomials, so the whole pass takes a linear number of big integer operations for and, or, and alternative groups.
+ * <p>
+ * If the feature model has no cross-tree constraints, commonalities refer to the whole model.
+ * Otherwise, commonalities are computed only within the maximal
+ * {@link ConfigurationCounter#getConstraintFreeSubtrees() constraint-free subtrees} and are conditional on the
+ * selection of the subtree's root, so they can be multiplied with the root's commonality determined by a solver.
+ * Features outside of constraint-free subtrees have a commonality of {@link Double#NaN}.
+ */
+public class CommonalityAnalysis {
+
+    private final ConfigurationCounter counter;
+    private final BigInteger[] selectedCounts;
+    private final BigInteger[] totalCounts;
+
+    /**
+     * Computes the commonalities of all features of a feature model.
+     *
+     * @param featureModel the feature model
+     */
+    public CommonalityAnalysis(IFeatureModel featureModel) {
+        this(new ConfigurationCounter(featureModel));
+    }
+
+    /**
+     * Computes the commonalities of all features with the counts of a configuration counter.
+     *
+     * @param counter the configuration counter
+     */
+    public CommonalityAnalysis(ConfigurationCounter counter) {
+        this.counter = counter;
+        FlatFeatureTree tree = counter.getFlatFeatureTree();
+        int size = tree.size();
+        BigInteger[] outsideCounts = new BigInteger[size];
+        selectedCounts = new BigInteger[size];
+        totalCounts = new BigInteger[size];
+
+        if (counter.hasConstraints()) {
+            for (int subtree : counter.getConstraintFreeSubtrees()) {
+                outsideCounts[subtree] = BigInteger.ONE;
+                totalCounts[subtree] = counter.getSubtreeCount(subtree, true);
+            }
+        } else {
+            int[] roots = tree.getRoots();
+            List<BigInteger> rootCounts = new ArrayList<>(roots.length);
+            for (int root : roots) {
+                rootCounts.add(counter.getSubtreeCount(root, false).add(counter.getSubtreeCount(root, true)));
+            }
+            BigInteger[] otherRootCounts = getExclusiveProducts(rootCounts);
+            BigInteger total = BigInteger.ONE;
+            for (BigInteger rootCount : rootCounts) {
+                total = total.multiply(rootCount);
+            }
+            for (int i = 0; i < roots.length; i++) {
+                outsideCounts[roots[i]] = otherRootCounts[i];
+                totalCounts[roots[i]] = total;
+            }
+        }
+
+        List<List<Integer>> groupChildren = new ArrayList<>();
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            BigInteger outsideCount = outsideCounts[ordinal];
+            if (outsideCount == null) {
+                continue;
+            }
+            selectedCounts[ordinal] = outsideCount.multiply(counter.getSubtreeCount(ordinal, true));
+            int firstGroup = tree.getFirstGroup(ordinal);
+            int groupCount = tree.getGroupCount(ordinal);
+            groupChildren.clear();
+            for (int i = 0; i < groupCount; i++) {
+                groupChildren.add(new ArrayList<>());
+            }
+            int end = tree.getSubtreeEnd(ordinal);
+            for (int child = ordinal + 1; child < end; child = tree.getSubtreeEnd(child)) {
+                groupChildren.get(tree.getGroup(child) - firstGroup).add(child);
+            }
+            List<BigInteger> groupCounts = new ArrayList<>(groupCount);
+            List<BigInteger[]> exclusiveCounts = new ArrayList<>(groupCount);
+            for (int i = 0; i < groupCount; i++) {
+                int group = firstGroup + i;
+                List<Integer> children = groupChildren.get(i);
+                BigInteger[] deselected = new BigInteger[children.size()];
+                BigInteger[] selected = new BigInteger[children.size()];
+                for (int j = 0; j < children.size(); j++) {
+                    deselected[j] = counter.getSubtreeCount(children.get(j), false);
+                    selected[j] = counter.getSubtreeCount(children.get(j), true);
+                }
+                int lowerBound = tree.getGroupLowerBound(group);
+                int upperBound = Math.min(tree.getGroupUpperBound(group), children.size());
+                groupCounts.add(getGroupCount(deselected, selected, lowerBound, upperBound));
+                exclusiveCounts.add(getExclusiveGroupCounts(deselected, selected, lowerBound, upperBound));
+            }
+            BigInteger[] otherGroupCounts = getExclusiveProducts(groupCounts);
+            for (int i = 0; i < groupCount; i++) {
+                BigInteger groupOutsideCount = outsideCount.multiply(otherGroupCounts[i]);
+                List<Integer> children = groupChildren.get(i);
+                for (int j = 0; j < children.size(); j++) {
+                    int child = children.get(j);
+                    outsideCounts[child] = groupOutsideCount.multiply(exclusiveCounts.get(i)[j]);
+                    totalCounts[child] = totalCounts[ordinal];
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns for each factor the product of all other factors.
+     */
+    private static BigInteger[] getExclusiveProducts(List<BigInteger> factors) {
+        int size = factors.size();
+        BigInteger[] products = new BigInteger[size];
+        BigInteger product = BigInteger.ONE;
+        for (int i = 0; i < size; i++) {
+            products[i] = product;
+            product = product.multiply(factors.get(i));
+        }
+        product = BigInteger.ONE;
+        for (int i = size - 1; i >= 0; i--) {
+            products[i] = products[i].multiply(product);
+            product = product.multiply(factors.get(i));
+        }
+        return products;
+    }
+
+    /**
+     * Returns the number of ways to select between a lower and upper bound of the children of a group.
+     */
+    private static BigInteger getGroupCount(
+            BigInteger[] deselected, BigInteger[] selected, int lowerBound, int upperBound) {
+        if (lowerBound > upperBound) {
+            return BigInteger.ZERO;
+        }
+        boolean bounded = upperBound < selected.length;
+        int degree = bounded ? upperBound : lowerBound - 1;
+        BigInteger[] polynomial = Polynomials.one(degree);
+        for (int i = 0; i < selected.length; i++) {
+            polynomial = Polynomials.extend(polynomial, deselected[i], selected[i]);
+        }
+        return Polynomials.sum(polynomial, lowerBound, upperBound, bounded);
+    }
+
+    /**
+     * Returns for each child of a group the number of ways to select or deselect the other children such that the
+     * bounds of the group hold when the child is selected.
+     */
+    private static BigInteger[] getExclusiveGroupCounts(
+            BigInteger[] deselected, BigInteger[] selected, int lowerBound, int upperBound) {
+        int size = selected.length;
+        BigInteger[] counts = new BigInteger[size];
+        if (lowerBound > upperBound || upperBound == 0) {
+            Arrays.fill(counts, BigInteger.ZERO);
+            return counts;
+        }
+        // the number of other selected children must be between these bounds
+        int otherLowerBound = Math.max(lowerBound - 1, 0);
+        int otherUpperBound = upperBound - 1;
+        boolean bounded = otherUpperBound < size - 1;
+        int degree = bounded ? otherUpperBound : otherLowerBound - 1;
+        BigInteger[][] prefixes = new BigInteger[size + 1][];
+        BigInteger[][] suffixes = new BigInteger[size + 1][];
+        prefixes[0] = Polynomials.one(degree);
+        suffixes[size] = Polynomials.one(degree);
+        for (int i = 0; i < size; i++) {
+            prefixes[i + 1] = Polynomials.extend(prefixes[i], deselected[i], selected[i]);
+        }
+        for (int i = size - 1; i >= 0; i--) {
+            suffixes[i] = Polynomials.extend(suffixes[i + 1], deselected[i], selected[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            BigInteger[] others = Polynomials.multiply(prefixes[i], suffixes[i + 1]);
+            counts[i] = Polynomials.sum(others, otherLowerBound, otherUpperBound, bounded);
+        }
+        return counts;
+    }
+
+    public ConfigurationCounter getConfigurationCounter() {
+        return counter;
+    }
+
+    /**
+     * Returns the number of configurations that contain a feature, within the whole model or within the
+     * constraint-free subtree the feature belongs to.
+     *
+     * @param ordinal the ordinal of the feature
+     * @return the number of configurations, or {@code null} if the feature is not in a constraint-free subtree
+     */
+    public BigInteger getSelectedCount(int ordinal) {
+        return selectedCounts[ordinal];
+    }
+
+    /**
+     * Returns the commonality of a feature.
+     *
+     * @param ordinal the ordinal of the feature
+     * @return the commonality between 0 and 1, or {@link Double#NaN} if it is unknown or there is no configuration
+     */
+    public double getCommonality(int ordinal) {
+        BigInteger selectedCount = selectedCounts[ordinal];
+        BigInteger totalCount = totalCounts[ordinal];
+        if (selectedCount == null || totalCount.signum() == 0) {
+            return Double.NaN;
+        }
+        return new BigDecimal(selectedCount)
+                .divide(new BigDecimal(totalCount), MathContext.DECIMAL64)
+                .doubleValue();
+    }
+
+    /**
+     * Returns the commonalities of all features.
+     *
+     * @return a new array of commonalities, indexed by the ordinals of the {@link FlatFeatureTree}
+     */
+    public double[] getCommonalities() {
+        double[] commonalities = new double[selectedCounts.length];
+        for (int ordinal = 0; ordinal < commonalities.length; ordinal++) {
+            commonalities[ordinal] = getCommonality(ordinal);
+        }
+        return commonalities;
+    }
+}
@@ -0,0 +1,415 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.analysis;
+
+import de.featjar.feature.model.IConstraint;
+import de.featjar.feature.model.IFeatureModel;
+import de.featjar.formula.structure.IExpression;
+import de.featjar.formula.structure.connective.And;
+import de.featjar.formula.structure.connective.AtLeast;
+import de.featjar.formula.structure.connective.AtMost;
+import de.featjar.formula.structure.connective.Between;
+import de.featjar.formula.structure.connective.BiImplies;
+import de.featjar.formula.structure.connective.Choose;
+import de.featjar.formula.structure.connective.Implies;
+import de.featjar.formula.structure.connective.Not;
+import de.featjar.formula.structure.connective.Or;
+import de.featjar.formula.structure.connective.Reference;
+import de.featjar.formula.structure.predicate.False;
+import de.featjar.formula.structure.predicate.Literal;
+import de.featjar.formula.structure.predicate.True;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The constraints of a feature model compiled to a flat program over the ordinals of a {@link FlatFeatureTree},
+ * which evaluates constraints against configurations given as bitsets without walking formula trees.
+ * In a configuration, bit {@code i} of word {@code i / 64} is set if the feature with ordinal {@code i} is selected.
+ * <p>
+ * Every distinct subexpression of all constraints is compiled to a single instruction that writes its value to a
+ * register; instructions are ordered such that operands come first, so evaluating all constraints is one linear pass.
+ * Subexpressions are identified up to the order of operands of symmetric operators and shared across constraints.
+ * Evaluation needs at least {@link #getRegisterCount()} registers, which callers provide so that evaluation does not
+ * allocate and a compiled instance can be shared between threads.
+ */
+public class CompiledConstraints {
+
+    private static final int TRUE = 0;
+    private static final int FALSE = 1;
+    private static final int SELECTED = 2;
+    private static final int DESELECTED = 3;
+    private static final int NOT = 4;
+    private static final int AND = 5;
+    private static final int OR = 6;
+    private static final int IMPLIES = 7;
+    private static final int BIIMPLIES = 8;
+    private static final int AT_LEAST = 9;
+    private static final int AT_MOST = 10;
+    private static final int BETWEEN = 11;
+    private static final int CHOOSE = 12;
+
+    private final List<IConstraint> constraints;
+    private final int[] code;
+    private final int[] instructionStarts;
+    private final int[] roots;
+    private final int[] scheduleStarts;
+    private final int[] schedules;
+    private final int[] lastOrdinals;
+
+    /**
+     * Compiles all constraints of a feature model.
+     *
+     * @param featureModel the feature model
+     * @param tree the flat feature tree of the feature model
+     * @throws IllegalArgumentException if a constraint references an unknown feature or contains an unsupported
+     *     expression
+     */
+    public CompiledConstraints(IFeatureModel featureModel, FlatFeatureTree tree) {
+        constraints = new ArrayList<>(featureModel.getConstraints());
+        roots = new int[constraints.size()];
+        lastOrdinals = new int[constraints.size()];
+        Compiler compiler = new Compiler(tree);
+        for (int i = 0; i < constraints.size(); i++) {
+            roots[i] = compiler.compile(constraints.get(i).getFormula());
+            lastOrdinals[i] = compiler.lastOrdinals.get(roots[i]);
+        }
+        int registerCount = compiler.operands.size();
+        code = Arrays.copyOf(compiler.code, compiler.length);
+        instructionStarts = new int[registerCount + 1];
+        for (int register = 0; register < registerCount; register++) {
+            instructionStarts[register] = compiler.instructionStarts.get(register);
+        }
+        instructionStarts[registerCount] = compiler.length;
+
+        scheduleStarts = new int[constraints.size() + 1];
+        int[] marks = new int[registerCount];
+        Arrays.fill(marks, -1);
+        int[] schedule = new int[registerCount];
+        List<int[]> constraintSchedules = new ArrayList<>(constraints.size());
+        for (int i = 0; i < constraints.size(); i++) {
+            int length = mark(roots[i], i, compiler.operands, marks, schedule, 0);
+            int[] constraintSchedule = Arrays.copyOf(schedule, length);
+            Arrays.sort(constraintSchedule);
+            constraintSchedules.add(constraintSchedule);
+            scheduleStarts[i + 1] = scheduleStarts[i] + length;
+        }
+        schedules = new int[scheduleStarts[constraints.size()]];
+        for (int i = 0; i < constraints.size(); i++) {
+            int[] constraintSchedule = constraintSchedules.get(i);
+            System.arraycopy(constraintSchedule, 0, schedules, scheduleStarts[i], constraintSchedule.length);
+        }
+    }
+
+    /**
+     * Collects all registers a register depends on, including itself.
+     */
+    private static int mark(int register, int mark, List<int[]> operands, int[] marks, int[] schedule, int length) {
+        if (marks[register] == mark) {
+            return length;
+        }
+        marks[register] = mark;
+        schedule[length++] = register;
+        for (int operand : operands.get(register)) {
+            length = mark(operand, mark, operands, marks, schedule, length);
+        }
+        return length;
+    }
+
+    private static final class Compiler {
+        private final FlatFeatureTree tree;
+        private final Map<Instruction, Integer> registers = new HashMap<>();
+        private final List<Integer> instructionStarts = new ArrayList<>();
+        private final List<Integer> lastOrdinals = new ArrayList<>();
+        private final List<int[]> operands = new ArrayList<>();
+        private int[] code = new int[64];
+        private int length;
+
+        private Compiler(FlatFeatureTree tree) {
+            this.tree = tree;
+        }
+
+        /**
+         * Compiles an expression and returns the register holding its value.
+         */
+        private int compile(IExpression expression) {
+            if (expression instanceof Reference) {
+                return compile(expression.getChildren().get(0));
+            } else if (expression instanceof True) {
+                return emit(new int[] {TRUE}, new int[0], -1);
+            } else if (expression instanceof False) {
+                return emit(new int[] {FALSE}, new int[0], -1);
+            } else if (expression instanceof Literal) {
+                Literal literal = (Literal) expression;
+                int ordinal = tree.getOrdinal(literal.getName());
+                if (ordinal < 0) {
+                    throw new IllegalArgumentException("unknown feature " + literal.getName());
+                }
+                return emit(new int[] {literal.isPositive() ? SELECTED : DESELECTED, ordinal}, new int[0], ordinal);
+            } else if (expression instanceof Not) {
+                return emit(NOT, compileChildren(expression, false));
+            } else if (expression instanceof Implies) {
+                return emit(IMPLIES, compileChildren(expression, false));
+            } else if (expression instanceof BiImplies) {
+                return emit(BIIMPLIES, compileChildren(expression, true));
+            } else if (expression instanceof And || expression instanceof Or) {
+                return emitCardinality(expression instanceof And ? AND : OR, compileChildren(expression, true));
+            } else if (expression instanceof AtLeast) {
+                int[] children = compileChildren(expression, true);
+                return emitCardinality(AT_LEAST, children, ((AtLeast) expression).getMinimum());
+            } else if (expression instanceof AtMost) {
+                int[] children = compileChildren(expression, true);
+                return emitCardinality(AT_MOST, children, ((AtMost) expression).getMaximum());
+            } else if (expression instanceof Between) {
+                int[] children = compileChildren(expression, true);
+                Between between = (Between) expression;
+                return emitCardinality(BETWEEN, children, between.getMinimum(), between.getMaximum());
+            } else if (expression instanceof Choose) {
+                int[] children = compileChildren(expression, true);
+                return emitCardinality(CHOOSE, children, ((Choose) expression).getBound());
+            } else {
+                throw new IllegalArgumentException("unsupported expression " + expression);
+            }
+        }
+
+        /**
+         * Compiles the children of an expression, sorting their registers if the operator is symmetric.
+         */
+        private int[] compileChildren(IExpression expression, boolean symmetric) {
+            List<? extends IExpression> children = expression.getChildren();
+            int[] childRegisters = new int[children.size()];
+            for (int i = 0; i < childRegisters.length; i++) {
+                childRegisters[i] = compile(children.get(i));
+            }
+            if (symmetric) {
+                Arrays.sort(childRegisters);
+            }
+            return childRegisters;
+        }
+
+        private int emit(int operation, int[] childRegisters) {
+            int[] instruction = new int[childRegisters.length + 1];
+            instruction[0] = operation;
+            System.arraycopy(childRegisters, 0, instruction, 1, childRegisters.length);
+            return emit(instruction, childRegisters, getLastOrdinal(childRegisters));
+        }
+
+        /**
+         * Emits an operation followed by its arguments, its number of operands, and its operands.
+         */
+        private int emitCardinality(int operation, int[] childRegisters, int... arguments) {
+            int[] instruction = new int[arguments.length + childRegisters.length + 2];
+            instruction[0] = operation;
+            System.arraycopy(arguments, 0, instruction, 1, arguments.length);
+            instruction[arguments.length + 1] = childRegisters.length;
+            System.arraycopy(childRegisters, 0, instruction, arguments.length + 2, childRegisters.length);
+            return emit(instruction, childRegisters, getLastOrdinal(childRegisters));
+        }
+
+        private int getLastOrdinal(int[] childRegisters) {
+            int lastOrdinal = -1;
+            for (int childRegister : childRegisters) {
+                lastOrdinal = Math.max(lastOrdinal, lastOrdinals.get(childRegister));
+            }
+            return lastOrdinal;
+        }
+
+        /**
+         * Returns the register of an instruction, appending the instruction to the program if it is new.
+         */
+        private int emit(int[] instruction, int[] childRegisters, int lastOrdinal) {
+            Instruction key = new Instruction(instruction);
+            Integer register = registers.get(key);
+            if (register != null) {
+                return register;
+            }
+            register = operands.size();
+            registers.put(key, register);
+            instructionStarts.add(length);
+            lastOrdinals.add(lastOrdinal);
+            operands.add(childRegisters);
+            if (length + instruction.length > code.length) {
+                code = Arrays.copyOf(code, Math.max(2 * code.length, length + instruction.length));
+            }
+            System.arraycopy(instruction, 0, code, length, instruction.length);
+            length += instruction.length;
+            return register;
+        }
+    }
+
+    private static final class Instruction {
+        private final int[] code;
+        private final int hashCode;
+
+        private Instruction(int[] code) {
+            this.code = code;
+            hashCode = Arrays.hashCode(code);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Instruction && Arrays.equals(code, ((Instruction) other).code);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    public int size() {
+        return constraints.size();
+    }
+
+    public IConstraint getConstraint(int index) {
+        return constraints.get(index);
+    }
+
+    /**
+     * Returns the largest ordinal of a feature referenced by a constraint.
+     * In a preorder traversal of the tree, the constraint can be evaluated as soon as this feature is decided.
+     *
+     * @param index the index of the constraint
+     * @return the largest ordinal, or -1 if the constraint references no feature
+     */
+    public int getLastOrdinal(int index) {
+        return lastOrdinals[index];
+    }
+
+    /**
+     * Returns the number of registers needed to evaluate constraints, which is the number of distinct
+     * subexpressions of all constraints.
+     *
+     * @return the number of registers
+     */
+    public int getRegisterCount() {
+        return instructionStarts.length - 1;
+    }
+
+    /**
+     * Evaluates a single constraint, computing only the registers it depends on.
+     *
+     * @param index the index of the constraint
+     * @param configuration the configuration
+     * @param registers the registers with at least {@link #getRegisterCount()} entries
+     * @return whether the configuration satisfies the constraint
+     */
+    public boolean evaluate(int index, long[] configuration, int[] registers) {
+        for (int i = scheduleStarts[index]; i < scheduleStarts[index + 1]; i++) {
+            int register = schedules[i];
+            registers[register] = execute(instructionStarts[register], configuration, registers);
+        }
+        return registers[roots[index]] != 0;
+    }
+
+    /**
+     * Evaluates all constraints in one pass, computing every shared subexpression once.
+     * Afterwards, {@link #isSatisfied(int, int[])} returns the value of each constraint.
+     *
+     * @param configuration the configuration
+     * @param registers the registers with at least {@link #getRegisterCount()} entries
+     */
+    public void evaluate(long[] configuration, int[] registers) {
+        int registerCount = instructionStarts.length - 1;
+        for (int register = 0; register < registerCount; register++) {
+            registers[register] = execute(instructionStarts[register], configuration, registers);
+        }
+    }
+
+    /**
+     * Returns the value of a constraint after it has been evaluated.
+     *
+     * @param index the index of the constraint
+     * @param registers the registers
+     * @return whether the configuration satisfies the constraint
+     */
+    public boolean isSatisfied(int index, int[] registers) {
+        return registers[roots[index]] != 0;
+    }
+
+    private int execute(int pc, long[] configuration, int[] registers) {
+        switch (code[pc]) {
+            case TRUE:
+                return 1;
+            case FALSE:
+                return 0;
+            case SELECTED: {
+                int ordinal = code[pc + 1];
+                return (int) (configuration[ordinal >>> 6] >>> ordinal) & 1;
+            }
+            case DESELECTED: {
+                int ordinal = code[pc + 1];
+                return (int) ~(configuration[ordinal >>> 6] >>> ordinal) & 1;
+            }
+            case NOT:
+                return registers[code[pc + 1]] ^ 1;
+            case IMPLIES:
+                return (registers[code[pc + 1]] ^ 1) | registers[code[pc + 2]];
+            case BIIMPLIES:
+                return registers[code[pc + 1]] ^ registers[code[pc + 2]] ^ 1;
+            case AND: {
+                int operandCount = code[pc + 1];
+                return sum(registers, pc + 2, operandCount) == operandCount ? 1 : 0;
+            }
+            case OR:
+                return sum(registers, pc + 2, code[pc + 1]) > 0 ? 1 : 0;
+            case AT_LEAST:
+                return sum(registers, pc + 3, code[pc + 2]) >= code[pc + 1] ? 1 : 0;
+            case AT_MOST:
+                return sum(registers, pc + 3, code[pc + 2]) <= code[pc + 1] ? 1 : 0;
+            case CHOOSE:
+                return sum(registers, pc + 3, code[pc + 2]) == code[pc + 1] ? 1 : 0;
+            case BETWEEN: {
+                int count = sum(registers, pc + 4, code[pc + 3]);
+                return count >= code[pc + 1] && count <= code[pc + 2] ? 1 : 0;
+            }
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    private int sum(int[] registers, int from, int operandCount) {
+        int sum = 0;
+        for (int i = from; i < from + operandCount; i++) {
+            sum += registers[code[i]];
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the index of the first constraint that a configuration violates.
+     *
+     * @param configuration the configuration
+     * @param registers the registers with at least {@link #getRegisterCount()} entries
+     * @return the index of the violated constraint, or -1 if all constraints are satisfied
+     */
+    public int findViolated(long[] configuration, int[] registers) {
+        evaluate(configuration, registers);
+        for (int i = 0; i < roots.length; i++) {
+            if (registers[roots[i]] == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
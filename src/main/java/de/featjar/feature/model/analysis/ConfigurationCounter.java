@@ -0,0 +1,307 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.analysis;
+
+import de.featjar.base.data.Problem;
+import de.featjar.base.data.Result;
+import de.featjar.feature.model.IConstraint;
+import de.featjar.feature.model.IFeatureModel;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Counts the valid configurations of feature trees by dynamic programming over a {@link FlatFeatureTree}.
+ * For every node, the number of configurations of its subtree in which the node is selected is the product over its
+ * groups of the number of ways to select between the lower and upper bound of the group's children.
+ * These are computed by multiplying the {@link Polynomials polynomials} {@code u + s * x} of the children, where
+ * {@code u} and {@code s} are the number of ways to deselect and select a child, truncated to the degrees that are
+ * needed.
+ * For and, or, and alternative groups this takes time linear in the size of the tree.
+ * <p>
+ * Counts are computed exactly with {@link BigInteger}, or approximately as natural logarithms in {@code double}
+ * arrays, which avoids big number arithmetic and suffices for comparing magnitudes or computing ratios.
+ * Cross-tree constraints are not considered: if a model has constraints, only the
+ * {@link #getConstraintFreeSubtrees() subtrees} that contain no feature referenced by a constraint can be counted in
+ * isolation, for example to split them off before handing the rest of the model to a #SAT solver.
+ */
+public class ConfigurationCounter {
+
+    private final FlatFeatureTree tree;
+    private final boolean[] constraintFree;
+    private final boolean hasConstraints;
+    private BigInteger[] counts;
+    private double[] logCounts;
+
+    /**
+     * Creates a counter for all feature trees of a feature model.
+     *
+     * @param featureModel the feature model
+     */
+    public ConfigurationCounter(IFeatureModel featureModel) {
+        FlatFeatureTree flatTree = new FlatFeatureTree(featureModel);
+        tree = flatTree;
+        int size = flatTree.size();
+        constraintFree = new boolean[size];
+        Arrays.fill(constraintFree, true);
+        boolean constraints = false;
+        for (IConstraint constraint : featureModel.getConstraints()) {
+            constraints = true;
+            constraint.getFormula().getVariableStream().forEach(variable -> {
+                int ordinal = flatTree.getOrdinal(variable.getName());
+                if (ordinal >= 0) {
+                    constraintFree[ordinal] = false;
+                }
+            });
+        }
+        hasConstraints = constraints;
+        for (int ordinal = size - 1; ordinal >= 0; ordinal--) {
+            int parent = flatTree.getParent(ordinal);
+            if (!constraintFree[ordinal] && parent >= 0) {
+                constraintFree[parent] = false;
+            }
+        }
+    }
+
+    public FlatFeatureTree getFlatFeatureTree() {
+        return tree;
+    }
+
+    /**
+     * Checks whether the feature model has cross-tree constraints, in which case only constraint-free subtrees can be
+     * counted.
+     *
+     * @return whether the feature model has constraints
+     */
+    public boolean hasConstraints() {
+        return hasConstraints;
+    }
+
+    /**
+     * Checks whether no feature in the subtree of a node is referenced by a constraint.
+     *
+     * @param ordinal the ordinal of the node
+     * @return whether the subtree is free of constraints
+     */
+    public boolean isConstraintFree(int ordinal) {
+        return constraintFree[ordinal];
+    }
+
+    /**
+     * Returns the ordinals of all maximal subtrees that contain no feature referenced by a constraint.
+     *
+     * @return the ordinals of the roots of the subtrees, in preorder
+     */
+    public int[] getConstraintFreeSubtrees() {
+        int[] subtrees = new int[tree.size()];
+        int count = 0;
+        for (int ordinal = 0; ordinal < tree.size(); ordinal++) {
+            if (constraintFree[ordinal]) {
+                subtrees[count++] = ordinal;
+                ordinal = tree.getSubtreeEnd(ordinal) - 1;
+            }
+        }
+        return Arrays.copyOf(subtrees, count);
+    }
+
+    /**
+     * Counts the valid configurations of the feature model.
+     *
+     * @return the number of configurations, or a problem if the model has constraints
+     */
+    public Result<BigInteger> count() {
+        if (hasConstraints) {
+            return Result.empty(getConstraintProblem());
+        }
+        BigInteger[] counts = getCounts();
+        BigInteger count = BigInteger.ONE;
+        for (int root : tree.getRoots()) {
+            count = count.multiply(getWeight(counts[root], root, false).add(getWeight(counts[root], root, true)));
+        }
+        return Result.of(count);
+    }
+
+    /**
+     * Computes the natural logarithm of the number of valid configurations of the feature model in log-space.
+     *
+     * @return the logarithm of the number of configurations ({@link Double#NEGATIVE_INFINITY} if there are none),
+     *     or a problem if the model has constraints
+     */
+    public Result<Double> logCount() {
+        if (hasConstraints) {
+            return Result.empty(getConstraintProblem());
+        }
+        double[] logCounts = getLogCounts();
+        double logCount = 0;
+        for (int root : tree.getRoots()) {
+            logCount += Polynomials.logAdd(
+                    getLogWeight(logCounts[root], root, false), getLogWeight(logCounts[root], root, true));
+        }
+        return Result.of(logCount);
+    }
+
+    private static Problem getConstraintProblem() {
+        return new Problem(
+                "feature model has cross-tree constraints, only constraint-free subtrees can be counted",
+                Problem.Severity.ERROR);
+    }
+
+    /**
+     * Counts the configurations of the subtree of a node in which the node is selected, ignoring constraints.
+     * The count is exact for the feature model if the subtree is {@link #isConstraintFree(int) constraint-free}.
+     *
+     * @param ordinal the ordinal of the node
+     * @return the number of configurations of the subtree
+     */
+    public BigInteger getSubtreeCount(int ordinal) {
+        return getCounts()[ordinal];
+    }
+
+    /**
+     * Counts the configurations of the subtree of a node in which the node is selected or deselected, ignoring
+     * constraints and taking the node's feature range into account.
+     *
+     * @param ordinal the ordinal of the node
+     * @param selected whether the node is selected
+     * @return the number of configurations of the subtree
+     */
+    public BigInteger getSubtreeCount(int ordinal, boolean selected) {
+        return getWeight(getCounts()[ordinal], ordinal, selected);
+    }
+
+    /**
+     * Computes the natural logarithm of {@link #getSubtreeCount(int)} in log-space.
+     *
+     * @param ordinal the ordinal of the node
+     * @return the logarithm of the number of configurations of the subtree
+     */
+    public double getLogSubtreeCount(int ordinal) {
+        return getLogCounts()[ordinal];
+    }
+
+    private BigInteger[] getCounts() {
+        if (counts == null) {
+            counts = computeCounts();
+        }
+        return counts;
+    }
+
+    private double[] getLogCounts() {
+        if (logCounts == null) {
+            logCounts = computeLogCounts();
+        }
+        return logCounts;
+    }
+
+    /**
+     * Returns the number of ways to select or deselect a node whose subtree has the given count.
+     */
+    private BigInteger getWeight(BigInteger count, int ordinal, boolean selected) {
+        if (selected) {
+            return tree.getFeatureUpperBound(ordinal) > 0 ? count : BigInteger.ZERO;
+        } else {
+            return tree.getFeatureLowerBound(ordinal) > 0 ? BigInteger.ZERO : BigInteger.ONE;
+        }
+    }
+
+    private double getLogWeight(double logCount, int ordinal, boolean selected) {
+        if (selected) {
+            return tree.getFeatureUpperBound(ordinal) > 0 ? logCount : Double.NEGATIVE_INFINITY;
+        } else {
+            return tree.getFeatureLowerBound(ordinal) > 0 ? Double.NEGATIVE_INFINITY : 0;
+        }
+    }
+
+    /**
+     * Returns the degree after which the polynomial of a group can be truncated, which is its upper bound if that is
+     * below the group size, and otherwise one less than its lower bound, as the count is then computed from the
+     * total.
+     */
+    private int getDegree(int group) {
+        int lowerBound = tree.getGroupLowerBound(group);
+        int upperBound = Math.min(tree.getGroupUpperBound(group), tree.getGroupSize(group));
+        return lowerBound > upperBound ? 0 : isBounded(group) ? upperBound : lowerBound - 1;
+    }
+
+    private boolean isBounded(int group) {
+        return tree.getGroupUpperBound(group) < tree.getGroupSize(group);
+    }
+
+    private BigInteger[] computeCounts() {
+        int size = tree.size();
+        BigInteger[] counts = new BigInteger[size];
+        for (int ordinal = size - 1; ordinal >= 0; ordinal--) {
+            int firstGroup = tree.getFirstGroup(ordinal);
+            BigInteger[][] polynomials = new BigInteger[tree.getGroupCount(ordinal)][];
+            for (int i = 0; i < polynomials.length; i++) {
+                polynomials[i] = Polynomials.one(getDegree(firstGroup + i));
+            }
+            int end = tree.getSubtreeEnd(ordinal);
+            for (int child = ordinal + 1; child < end; child = tree.getSubtreeEnd(child)) {
+                int i = tree.getGroup(child) - firstGroup;
+                polynomials[i] = Polynomials.extend(
+                        polynomials[i], getWeight(counts[child], child, false), getWeight(counts[child], child, true));
+            }
+            BigInteger count = BigInteger.ONE;
+            for (int i = 0; i < polynomials.length; i++) {
+                int group = firstGroup + i;
+                int lowerBound = tree.getGroupLowerBound(group);
+                int upperBound = Math.min(tree.getGroupUpperBound(group), tree.getGroupSize(group));
+                count = count.multiply(
+                        lowerBound > upperBound
+                                ? BigInteger.ZERO
+                                : Polynomials.sum(polynomials[i], lowerBound, upperBound, isBounded(group)));
+            }
+            counts[ordinal] = count;
+        }
+        return counts;
+    }
+
+    private double[] computeLogCounts() {
+        int size = tree.size();
+        double[] logCounts = new double[size];
+        for (int ordinal = size - 1; ordinal >= 0; ordinal--) {
+            int firstGroup = tree.getFirstGroup(ordinal);
+            double[][] polynomials = new double[tree.getGroupCount(ordinal)][];
+            for (int i = 0; i < polynomials.length; i++) {
+                polynomials[i] = Polynomials.logOne(getDegree(firstGroup + i));
+            }
+            int end = tree.getSubtreeEnd(ordinal);
+            for (int child = ordinal + 1; child < end; child = tree.getSubtreeEnd(child)) {
+                int i = tree.getGroup(child) - firstGroup;
+                polynomials[i] = Polynomials.logExtend(
+                        polynomials[i],
+                        getLogWeight(logCounts[child], child, false),
+                        getLogWeight(logCounts[child], child, true));
+            }
+            double logCount = 0;
+            for (int i = 0; i < polynomials.length; i++) {
+                int group = firstGroup + i;
+                int lowerBound = tree.getGroupLowerBound(group);
+                int upperBound = Math.min(tree.getGroupUpperBound(group), tree.getGroupSize(group));
+                logCount += lowerBound > upperBound
+                        ? Double.NEGATIVE_INFINITY
+                        : Polynomials.logSum(polynomials[i], lowerBound, upperBound, isBounded(group));
+            }
+            logCounts[ordinal] = logCount;
+        }
+        return logCounts;
+    }
+}
@@ -0,0 +1,475 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.analysis;
+
+import de.featjar.feature.model.IFeatureModel;
+import de.featjar.feature.model.StructuralHashes;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Enumerates all valid configurations of a feature model lazily by depth-first search over its feature tree.
+ * Features are decided in preorder, and only features whose parent is selected are decided explicitly; all
+ * features below a deselected feature are deselected.
+ * Decisions that cannot be completed to a valid configuration of the tree are never taken, as determined from the
+ * subtree counts of a {@link ConfigurationCounter}, so the search only backtracks on cross-tree constraints.
+ * Each constraint is evaluated as a {@link CompiledConstraints compiled program} as soon as the last feature it
+ * references is decided.
+ * <p>
+ * Configurations are bitsets of {@code long} words indexed by the ordinals of the
+ * {@link #getFlatFeatureTree() flat feature tree}.
+ * For performance, a {@link ConfigurationSpliterator} passes the same array to its consumer for every
+ * configuration, so consumers must copy configurations they keep.
+ * Spliterators can be split for parallel streams, and their position can be saved in a {@link Checkpoint} to stop
+ * and resume an enumeration later.
+ */
+public class ConfigurationEnumerator {
+
+    private final FlatFeatureTree tree;
+    private final CompiledConstraints constraints;
+    private final int[] subtreeEnds;
+    private final int[] groups;
+    private final int[] firstGroups;
+    private final int[] offsets;
+    private final int[] caps;
+    private final boolean[] selectable;
+    private final boolean[] deselectable;
+    private final int[] constraintStarts;
+    private final int[] constraintIndices;
+    private final long structuralHash;
+
+    /**
+     * Creates an enumerator for a feature model.
+     *
+     * @param featureModel the feature model
+     * @throws IllegalArgumentException if a constraint references an unknown feature or contains an unsupported
+     *     expression
+     */
+    public ConfigurationEnumerator(IFeatureModel featureModel) {
+        ConfigurationCounter counter = new ConfigurationCounter(featureModel);
+        SelectionTable table = new SelectionTable(counter);
+        tree = counter.getFlatFeatureTree();
+        constraints = new CompiledConstraints(featureModel, tree);
+        structuralHash = StructuralHashes.ofFeatureModel(featureModel);
+        int size = tree.size();
+        subtreeEnds = new int[size];
+        groups = new int[size];
+        firstGroups = new int[size + 1];
+        offsets = new int[size];
+        caps = new int[size];
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            subtreeEnds[ordinal] = tree.getSubtreeEnd(ordinal);
+            groups[ordinal] = tree.getGroup(ordinal);
+            offsets[ordinal] = table.getOffset(ordinal);
+            caps[ordinal] = table.getCap(ordinal);
+        }
+        for (int ordinal = 0; ordinal <= size; ordinal++) {
+            firstGroups[ordinal] = tree.getFirstGroup(ordinal);
+        }
+        selectable = new boolean[table.size()];
+        deselectable = new boolean[table.size()];
+        for (int i = 0; i < table.size(); i++) {
+            selectable[i] = table.getSelectedCount(i).signum() > 0;
+            deselectable[i] = table.getDeselectedCount(i).signum() > 0;
+        }
+
+        // constraints are bucketed by their last ordinal, constraints without features are checked first
+        constraintStarts = new int[size + 2];
+        for (int i = 0; i < constraints.size(); i++) {
+            constraintStarts[constraints.getLastOrdinal(i) + 2]++;
+        }
+        for (int i = 0; i <= size; i++) {
+            constraintStarts[i + 1] += constraintStarts[i];
+        }
+        constraintIndices = new int[constraints.size()];
+        int[] next = Arrays.copyOf(constraintStarts, size + 1);
+        for (int i = 0; i < constraints.size(); i++) {
+            constraintIndices[next[constraints.getLastOrdinal(i) + 1]++] = i;
+        }
+    }
+
+    public FlatFeatureTree getFlatFeatureTree() {
+        return tree;
+    }
+
+    /**
+     * Returns the number of {@code long} words of a configuration.
+     *
+     * @return the number of words
+     */
+    public int getWordCount() {
+        return (tree.size() + 63) >>> 6;
+    }
+
+    /**
+     * Returns a spliterator over all valid configurations.
+     *
+     * @return a new spliterator
+     */
+    public ConfigurationSpliterator spliterator() {
+        return new ConfigurationSpliterator();
+    }
+
+    /**
+     * Returns a spliterator that resumes an enumeration from a checkpoint.
+     * The spliterator enumerates exactly the configurations that the spliterator the checkpoint was taken from
+     * would have enumerated after it.
+     *
+     * @param checkpoint the checkpoint
+     * @return a new spliterator
+     * @throws IllegalArgumentException if the checkpoint was taken for another feature model or is invalid
+     */
+    public ConfigurationSpliterator spliterator(Checkpoint checkpoint) {
+        return new ConfigurationSpliterator(checkpoint);
+    }
+
+    /**
+     * Returns an iterator over all valid configurations, which returns the same array for every configuration.
+     *
+     * @return a new iterator
+     */
+    public Iterator<long[]> iterator() {
+        return Spliterators.iterator(spliterator());
+    }
+
+    /**
+     * Returns a stream of all valid configurations, each of which is a new array.
+     *
+     * @param parallel whether the stream is parallel
+     * @return a new stream
+     */
+    public Stream<long[]> stream(boolean parallel) {
+        return StreamSupport.stream(spliterator(), parallel).map(long[]::clone);
+    }
+
+    /**
+     * A spliterator over valid configurations that owns its search state.
+     */
+    public final class ConfigurationSpliterator implements Spliterator<long[]> {
+
+        private final long[] configuration = new long[getWordCount()];
+        private final int[] groupStates = new int[firstGroups[tree.size()]];
+        private final int[] registers = new int[constraints.getRegisterCount()];
+        private int[] decisions = new int[16];
+        private boolean[] values = new boolean[16];
+        private boolean[] open = new boolean[16];
+        private int depth;
+        private int fixedDepth;
+        private int frontier;
+        private boolean backtracking;
+        private boolean emitted;
+        private boolean exhausted;
+
+        private ConfigurationSpliterator() {
+            backtracking = !checkConstraints(-1, 0);
+        }
+
+        private ConfigurationSpliterator(Checkpoint checkpoint) {
+            this();
+            if (checkpoint.structuralHash != structuralHash || checkpoint.variableCount != tree.size()) {
+                throw new IllegalArgumentException("checkpoint was taken for another feature model");
+            }
+            if (checkpoint.fixedDepth > checkpoint.values.length) {
+                throw new IllegalArgumentException("invalid checkpoint");
+            }
+            replay(checkpoint.values, checkpoint.open, checkpoint.values.length);
+            fixedDepth = checkpoint.fixedDepth;
+            emitted = checkpoint.emitted && !backtracking;
+            exhausted = checkpoint.exhausted;
+        }
+
+        /**
+         * Creates a spliterator for the subtree of the search that begins with some decisions of another
+         * spliterator and the other alternative of its next decision.
+         */
+        private ConfigurationSpliterator(ConfigurationSpliterator other, int index) {
+            this();
+            boolean[] otherOpen = new boolean[index + 1];
+            replay(other.values, otherOpen, index);
+            if (!backtracking) {
+                backtracking = !decide(other.decisions[index], !other.values[index], false);
+            }
+            fixedDepth = index + 1;
+        }
+
+        private void replay(boolean[] values, boolean[] open, int count) {
+            for (int i = 0; i < count && !backtracking; i++) {
+                if (frontier >= tree.size()) {
+                    throw new IllegalArgumentException("invalid checkpoint");
+                }
+                backtracking = !decide(frontier, values[i], open[i]);
+            }
+        }
+
+        /**
+         * Decides the value of a feature and checks all constraints whose features are now decided.
+         *
+         * @return whether no constraint is violated
+         */
+        private boolean decide(int ordinal, boolean value, boolean otherOpen) {
+            if (depth == decisions.length) {
+                decisions = Arrays.copyOf(decisions, 2 * depth);
+                values = Arrays.copyOf(values, 2 * depth);
+                open = Arrays.copyOf(open, 2 * depth);
+            }
+            decisions[depth] = ordinal;
+            values[depth] = value;
+            open[depth] = otherOpen;
+            depth++;
+            if (value) {
+                configuration[ordinal >>> 6] |= 1L << ordinal;
+                if (groups[ordinal] >= 0) {
+                    groupStates[groups[ordinal]]++;
+                }
+                for (int group = firstGroups[ordinal]; group < firstGroups[ordinal + 1]; group++) {
+                    groupStates[group] = 0;
+                }
+                frontier = ordinal + 1;
+            } else {
+                frontier = subtreeEnds[ordinal];
+            }
+            return checkConstraints(ordinal, frontier);
+        }
+
+        private boolean checkConstraints(int fromOrdinal, int toOrdinal) {
+            for (int i = constraintStarts[fromOrdinal + 1]; i < constraintStarts[toOrdinal + 1]; i++) {
+                if (!constraints.evaluate(constraintIndices[i], configuration, registers)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void undo() {
+            depth--;
+            int ordinal = decisions[depth];
+            if (values[depth]) {
+                configuration[ordinal >>> 6] &= ~(1L << ordinal);
+                if (groups[ordinal] >= 0) {
+                    groupStates[groups[ordinal]]--;
+                }
+            }
+            frontier = ordinal;
+        }
+
+        /**
+         * Takes one decision or goes back to the deepest open decision and takes its other alternative.
+         */
+        private void step() {
+            if (backtracking) {
+                while (depth > fixedDepth && !open[depth - 1]) {
+                    undo();
+                }
+                if (depth == fixedDepth) {
+                    exhausted = true;
+                    return;
+                }
+                int ordinal = decisions[depth - 1];
+                boolean value = !values[depth - 1];
+                undo();
+                backtracking = !decide(ordinal, value, false);
+                return;
+            }
+            int ordinal = frontier;
+            int group = groups[ordinal];
+            int index = offsets[ordinal] + (group < 0 ? 0 : Math.min(groupStates[group], caps[ordinal]));
+            if (deselectable[index]) {
+                backtracking = !decide(ordinal, false, selectable[index]);
+            } else if (selectable[index]) {
+                backtracking = !decide(ordinal, true, false);
+            } else {
+                backtracking = true;
+            }
+        }
+
+        private boolean isComplete() {
+            return !backtracking && frontier == tree.size();
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super long[]> action) {
+            if (exhausted) {
+                return false;
+            }
+            if (emitted) {
+                backtracking = true;
+                emitted = false;
+            }
+            while (!isComplete()) {
+                step();
+                if (exhausted) {
+                    return false;
+                }
+            }
+            emitted = true;
+            action.accept(configuration);
+            return true;
+        }
+
+        /**
+         * Splits off the other alternative of the earliest open decision, which is the largest part of the
+         * remaining search.
+         */
+        @Override
+        public ConfigurationSpliterator trySplit() {
+            if (!emitted) {
+                while (!exhausted && !isComplete() && findOpenDecision() < 0) {
+                    step();
+                }
+            }
+            if (exhausted) {
+                return null;
+            }
+            int index = findOpenDecision();
+            if (index < 0) {
+                return null;
+            }
+            ConfigurationSpliterator split = new ConfigurationSpliterator(this, index);
+            open[index] = false;
+            return split;
+        }
+
+        private int findOpenDecision() {
+            for (int i = fixedDepth; i < depth; i++) {
+                if (open[i]) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public long estimateSize() {
+            return exhausted ? 0 : Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL;
+        }
+
+        /**
+         * Saves the position of this spliterator.
+         *
+         * @return a new checkpoint
+         */
+        public Checkpoint getCheckpoint() {
+            return new Checkpoint(
+                    structuralHash,
+                    tree.size(),
+                    Arrays.copyOf(values, depth),
+                    Arrays.copyOf(open, depth),
+                    fixedDepth,
+                    emitted,
+                    exhausted);
+        }
+    }
+
+    /**
+     * The position of a {@link ConfigurationSpliterator}, given by its current decisions, which of them still have
+     * an unexplored alternative, and how many of them are fixed because the spliterator was split off another one.
+     * The structural hash and number of features of the feature model identify the model it can be resumed on.
+     */
+    public static final class Checkpoint {
+
+        private final long structuralHash;
+        private final int variableCount;
+        private final boolean[] values;
+        private final boolean[] open;
+        private final int fixedDepth;
+        private final boolean emitted;
+        private final boolean exhausted;
+
+        private Checkpoint(
+                long structuralHash,
+                int variableCount,
+                boolean[] values,
+                boolean[] open,
+                int fixedDepth,
+                boolean emitted,
+                boolean exhausted) {
+            this.structuralHash = structuralHash;
+            this.variableCount = variableCount;
+            this.values = values;
+            this.open = open;
+            this.fixedDepth = fixedDepth;
+            this.emitted = emitted;
+            this.exhausted = exhausted;
+        }
+
+        public boolean isExhausted() {
+            return exhausted;
+        }
+
+        /**
+         * Writes this checkpoint.
+         *
+         * @param out the output
+         * @throws IOException if writing fails
+         */
+        public void write(DataOutput out) throws IOException {
+            out.writeLong(structuralHash);
+            out.writeInt(variableCount);
+            out.writeInt(values.length);
+            out.writeInt(fixedDepth);
+            out.writeBoolean(emitted);
+            out.writeBoolean(exhausted);
+            for (int i = 0; i < values.length; i++) {
+                out.writeByte((values[i] ? 1 : 0) | (open[i] ? 2 : 0));
+            }
+        }
+
+        /**
+         * Reads a checkpoint written by {@link #write(DataOutput)}.
+         *
+         * @param in the input
+         * @return the checkpoint
+         * @throws IOException if reading fails
+         */
+        public static Checkpoint read(DataInput in) throws IOException {
+            long structuralHash = in.readLong();
+            int variableCount = in.readInt();
+            int depth = in.readInt();
+            int fixedDepth = in.readInt();
+            if (variableCount < 0 || depth < 0 || fixedDepth < 0 || fixedDepth > depth) {
+                throw new IOException("invalid checkpoint");
+            }
+            boolean emitted = in.readBoolean();
+            boolean exhausted = in.readBoolean();
+            boolean[] values = new boolean[depth];
+            boolean[] open = new boolean[depth];
+            for (int i = 0; i < depth; i++) {
+                int flags = in.readByte();
+                values[i] = (flags & 1) != 0;
+                open[i] = (flags & 2) != 0;
+            }
+            return new Checkpoint(structuralHash, variableCount, values, open, fixedDepth, emitted, exhausted);
+        }
+    }
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.analysis;
+
+import de.featjar.feature.model.IConstraint;
+import de.featjar.feature.model.IFeatureModel;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Validates configurations of a feature model given as bitsets, in which bit {@code i} of word {@code i / 64} is
+ * set if the feature with ordinal {@code i} in the {@link #getFlatFeatureTree() flat feature tree} is selected.
+ * The feature tree is compiled to primitive arrays and the constraints to {@link CompiledConstraints}, so
+ * validating a configuration takes one pass over the tree and the constraint programs without allocating.
+ * <p>
+ * Every check is a numbered rule, and validation returns the first rule a configuration violates, or {@link #VALID}.
+ * Rules are numbered by their {@link RuleType type}: first the rules of all features, then the groups, then the
+ * constraints.
+ * A validator is immutable and can be shared between threads.
+ */
+public class ConfigurationValidator {
+
+    /**
+     * The result of validating a configuration that violates no rule.
+     */
+    public static final int VALID = -1;
+
+    /**
+     * Types of rules.
+     */
+    public enum RuleType {
+        /**
+         * A selected feature requires its parent.
+         */
+        PARENT,
+        /**
+         * A mandatory feature is required by its parent, or a mandatory root is required.
+         */
+        MANDATORY,
+        /**
+         * A feature with an upper bound of zero must not be selected.
+         */
+        EXCLUDED,
+        /**
+         * The number of selected children of a group of a selected feature must be within the group's bounds.
+         */
+        GROUP,
+        /**
+         * A cross-tree constraint must be satisfied.
+         */
+        CONSTRAINT
+    }
+
+    private static final int RULES_PER_FEATURE = 3;
+
+    private final FlatFeatureTree tree;
+    private final CompiledConstraints constraints;
+    private final int size;
+    private final int groupCount;
+    private final int[] parents;
+    private final boolean[] mandatory;
+    private final boolean[] excluded;
+    private final int[] firstGroups;
+    private final int[] groupLowerBounds;
+    private final int[] groupUpperBounds;
+    private final int[] groupChildStarts;
+    private final int[] groupChildren;
+
+    /**
+     * Compiles a validator for a feature model.
+     *
+     * @param featureModel the feature model
+     * @throws IllegalArgumentException if a constraint references an unknown feature or contains an unsupported
+     *     expression
+     */
+    public ConfigurationValidator(IFeatureModel featureModel) {
+        tree = new FlatFeatureTree(featureModel);
+        constraints = new CompiledConstraints(featureModel, tree);
+        size = tree.size();
+        groupCount = tree.getFirstGroup(size);
+        parents = new int[size];
+        mandatory = new boolean[size];
+        excluded = new boolean[size];
+        firstGroups = new int[size + 1];
+        groupLowerBounds = new int[groupCount];
+        groupUpperBounds = new int[groupCount];
+        groupChildStarts = new int[groupCount + 1];
+        groupChildren = new int[Math.max(size - tree.getRoots().length, 0)];
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            parents[ordinal] = tree.getParent(ordinal);
+            mandatory[ordinal] = tree.getFeatureLowerBound(ordinal) > 0;
+            excluded[ordinal] = tree.getFeatureUpperBound(ordinal) == 0;
+            firstGroups[ordinal] = tree.getFirstGroup(ordinal);
+            if (parents[ordinal] >= 0) {
+                groupChildStarts[tree.getGroup(ordinal) + 1]++;
+            }
+        }
+        firstGroups[size] = groupCount;
+        for (int group = 0; group < groupCount; group++) {
+            groupLowerBounds[group] = tree.getGroupLowerBound(group);
+            groupUpperBounds[group] = tree.getGroupUpperBound(group);
+            groupChildStarts[group + 1] += groupChildStarts[group];
+        }
+        int[] next = Arrays.copyOf(groupChildStarts, groupCount);
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            if (parents[ordinal] >= 0) {
+                groupChildren[next[tree.getGroup(ordinal)]++] = ordinal;
+            }
+        }
+    }
+
+    public FlatFeatureTree getFlatFeatureTree() {
+        return tree;
+    }
+
+    public CompiledConstraints getCompiledConstraints() {
+        return constraints;
+    }
+
+    /**
+     * Returns the number of {@code long} words of a configuration.
+     *
+     * @return the number of words
+     */
+    public int getWordCount() {
+        return (size + 63) >>> 6;
+    }
+
+    /**
+     * Returns the number of registers needed by {@link #validate(long[], int[])}.
+     *
+     * @return the number of registers
+     */
+    public int getRegisterCount() {
+        return constraints.getRegisterCount();
+    }
+
+    /**
+     * Validates a configuration.
+     *
+     * @param configuration the configuration
+     * @return the first violated rule, or {@link #VALID}
+     */
+    public int validate(long[] configuration) {
+        return validate(configuration, new int[getRegisterCount()]);
+    }
+
+    /**
+     * Validates a configuration without allocating.
+     *
+     * @param configuration the configuration
+     * @param registers the registers with at least {@link #getRegisterCount()} entries
+     * @return the first violated rule, or {@link #VALID}
+     */
+    public int validate(long[] configuration, int[] registers) {
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            boolean selected = isSelected(configuration, ordinal);
+            int parent = parents[ordinal];
+            if (selected) {
+                if (parent >= 0 && !isSelected(configuration, parent)) {
+                    return RULES_PER_FEATURE * ordinal;
+                }
+                if (excluded[ordinal]) {
+                    return RULES_PER_FEATURE * ordinal + 2;
+                }
+                for (int group = firstGroups[ordinal]; group < firstGroups[ordinal + 1]; group++) {
+                    int count = 0;
+                    for (int i = groupChildStarts[group]; i < groupChildStarts[group + 1]; i++) {
+                        if (isSelected(configuration, groupChildren[i])) {
+                            count++;
+                        }
+                    }
+                    if (count < groupLowerBounds[group] || count > groupUpperBounds[group]) {
+                        return RULES_PER_FEATURE * size + group;
+                    }
+                }
+            } else if (mandatory[ordinal] && (parent < 0 || isSelected(configuration, parent))) {
+                return RULES_PER_FEATURE * ordinal + 1;
+            }
+        }
+        int violated = constraints.findViolated(configuration, registers);
+        return violated < 0 ? VALID : RULES_PER_FEATURE * size + groupCount + violated;
+    }
+
+    private static boolean isSelected(long[] configuration, int ordinal) {
+        return (configuration[ordinal >>> 6] & (1L << ordinal)) != 0;
+    }
+
+    /**
+     * Validates a batch of configurations.
+     *
+     * @param configurations the configurations
+     * @param results the array to store the first violated rule or {@link #VALID} for each configuration in
+     */
+    public void validate(long[][] configurations, int[] results) {
+        validate(configurations, results, 0, configurations.length, new int[getRegisterCount()]);
+    }
+
+    private void validate(long[][] configurations, int[] results, int from, int to, int[] registers) {
+        for (int i = from; i < to; i++) {
+            results[i] = validate(configurations[i], registers);
+        }
+    }
+
+    /**
+     * Validates a batch of configurations in parallel, split into smaller batches of the given size.
+     *
+     * @param configurations the configurations
+     * @param results the array to store the first violated rule or {@link #VALID} for each configuration in
+     * @param batchSize the number of configurations validated by one task
+     */
+    public void validateParallel(long[][] configurations, int[] results, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException(String.valueOf(batchSize));
+        }
+        int batchCount = (configurations.length + batchSize - 1) / batchSize;
+        IntStream.range(0, batchCount).parallel().forEach(batch -> {
+            int from = batch * batchSize;
+            int to = Math.min(from + batchSize, configurations.length);
+            validate(configurations, results, from, to, new int[getRegisterCount()]);
+        });
+    }
+
+    /**
+     * Returns the number of rules.
+     *
+     * @return the number of rules
+     */
+    public int getRuleCount() {
+        return RULES_PER_FEATURE * size + groupCount + constraints.size();
+    }
+
+    /**
+     * Returns the type of a rule.
+     *
+     * @param rule the rule
+     * @return the type
+     */
+    public RuleType getRuleType(int rule) {
+        if (rule < RULES_PER_FEATURE * size) {
+            return RuleType.values()[rule % RULES_PER_FEATURE];
+        } else if (rule < RULES_PER_FEATURE * size + groupCount) {
+            return RuleType.GROUP;
+        } else {
+            return RuleType.CONSTRAINT;
+        }
+    }
+
+    /**
+     * Returns the ordinal of the feature a rule belongs to; for groups, this is the parent of the group.
+     *
+     * @param rule the rule
+     * @return the ordinal, or -1 for constraints
+     */
+    public int getRuleOrdinal(int rule) {
+        if (rule < RULES_PER_FEATURE * size) {
+            return rule / RULES_PER_FEATURE;
+        } else if (rule < RULES_PER_FEATURE * size + groupCount) {
+            int group = rule - RULES_PER_FEATURE * size;
+            int low = 0;
+            int high = size - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (firstGroups[middle] <= group) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return low;
+        } else {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the constraint checked by a rule.
+     *
+     * @param rule the rule
+     * @return the constraint, or {@code null} if the rule is no constraint
+     */
+    public IConstraint getRuleConstraint(int rule) {
+        int index = rule - RULES_PER_FEATURE * size - groupCount;
+        return index < 0 ? null : constraints.getConstraint(index);
+    }
+
+    /**
+     * Describes a rule.
+     *
+     * @param rule the rule
+     * @return a description of the rule
+     */
+    public String getRuleDescription(int rule) {
+        RuleType type = getRuleType(rule);
+        switch (type) {
+            case PARENT:
+                return tree.getName(getRuleOrdinal(rule)) + " requires its parent";
+            case MANDATORY:
+                return tree.getName(getRuleOrdinal(rule)) + " is mandatory";
+            case EXCLUDED:
+                return tree.getName(getRuleOrdinal(rule)) + " cannot be selected";
+            case GROUP: {
+                int group = rule - RULES_PER_FEATURE * size;
+                return "group of " + tree.getName(getRuleOrdinal(rule)) + " requires between "
+                        + groupLowerBounds[group] + " and " + groupUpperBounds[group] + " selected children";
+            }
+            default:
+                return "constraint " + getRuleConstraint(rule).getFormula();
+        }
+    }
+}
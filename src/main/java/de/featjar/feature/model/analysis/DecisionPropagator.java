@@ -0,0 +1,605 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.analysis;
+
+import de.featjar.feature.model.IConstraint;
+import de.featjar.feature.model.IFeatureModel;
+import de.featjar.formula.structure.IExpression;
+import de.featjar.formula.structure.connective.And;
+import de.featjar.formula.structure.connective.BiImplies;
+import de.featjar.formula.structure.connective.Implies;
+import de.featjar.formula.structure.connective.Not;
+import de.featjar.formula.structure.connective.Or;
+import de.featjar.formula.structure.connective.Reference;
+import de.featjar.formula.structure.predicate.False;
+import de.featjar.formula.structure.predicate.Literal;
+import de.featjar.formula.structure.predicate.True;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Propagates decisions in a feature model by unit propagation, for interactive configuration.
+ * The feature tree and all constraints that are clauses or conjunctions of clauses are compiled once into clauses
+ * over the ordinals of a {@link FlatFeatureTree}, which {@link Session sessions} propagate with two watched literals
+ * per clause.
+ * Groups with an upper bound of one are not expanded into pairwise clauses; selecting a child of such a group
+ * deselects all its siblings directly.
+ * <p>
+ * The tree contributes that a child requires its parent, that a mandatory child is required by its parent, that a
+ * group with a positive lower bound requires one of its children, and that a group with an upper bound of one
+ * allows at most one of its children.
+ * Other group cardinalities and constraints that are not clausal are not propagated, so propagation is sound, but
+ * may miss some implications; {@link #getSkippedConstraints()} lists the constraints that are not propagated.
+ * A propagator is immutable and can be shared between threads, while each session must be used by one thread.
+ */
+public class DecisionPropagator {
+
+    private final FlatFeatureTree tree;
+    private final List<IConstraint> skippedConstraints;
+    private final int[] clauseStarts;
+    private final int[] clauseLiterals;
+    private final int[] units;
+    private final boolean inconsistent;
+    private final int[][] watches;
+    private final int[] watchSizes;
+    private final int[] exclusionGroups;
+    private final int[] exclusionGroupStarts;
+    private final int[] exclusionGroupChildren;
+
+    /**
+     * Compiles the rules of a feature model.
+     *
+     * @param featureModel the feature model
+     * @throws IllegalArgumentException if a constraint references an unknown feature
+     */
+    public DecisionPropagator(IFeatureModel featureModel) {
+        tree = new FlatFeatureTree(featureModel);
+        int size = tree.size();
+        List<int[]> clauses = new ArrayList<>();
+        List<IConstraint> skipped = new ArrayList<>();
+
+        int groupCount = tree.getFirstGroup(size);
+        List<List<Integer>> groupChildren = new ArrayList<>(groupCount);
+        for (int group = 0; group < groupCount; group++) {
+            groupChildren.add(new ArrayList<>());
+        }
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            int parent = tree.getParent(ordinal);
+            if (parent >= 0) {
+                groupChildren.get(tree.getGroup(ordinal)).add(ordinal);
+                clauses.add(new int[] {negative(ordinal), positive(parent)});
+                if (tree.getFeatureLowerBound(ordinal) > 0) {
+                    clauses.add(new int[] {negative(parent), positive(ordinal)});
+                }
+            } else if (tree.getFeatureLowerBound(ordinal) > 0) {
+                clauses.add(new int[] {positive(ordinal)});
+            }
+            if (tree.getFeatureUpperBound(ordinal) == 0) {
+                clauses.add(new int[] {negative(ordinal)});
+            }
+        }
+        exclusionGroups = new int[size];
+        Arrays.fill(exclusionGroups, -1);
+        List<Integer> exclusionGroupList = new ArrayList<>();
+        for (int group = 0; group < groupCount; group++) {
+            List<Integer> children = groupChildren.get(group);
+            if (children.isEmpty()) {
+                continue;
+            }
+            int parent = tree.getParent(children.get(0));
+            if (tree.getGroupLowerBound(group) > 0) {
+                int[] clause = new int[children.size() + 1];
+                clause[0] = negative(parent);
+                for (int i = 0; i < children.size(); i++) {
+                    clause[i + 1] = positive(children.get(i));
+                }
+                clauses.add(clause);
+            }
+            if (tree.getGroupUpperBound(group) == 1 && children.size() > 1) {
+                for (int child : children) {
+                    exclusionGroups[child] = exclusionGroupList.size();
+                }
+                exclusionGroupList.add(group);
+            }
+        }
+        exclusionGroupStarts = new int[exclusionGroupList.size() + 1];
+        for (int i = 0; i < exclusionGroupList.size(); i++) {
+            exclusionGroupStarts[i + 1] =
+                    exclusionGroupStarts[i] + groupChildren.get(exclusionGroupList.get(i)).size();
+        }
+        exclusionGroupChildren = new int[exclusionGroupStarts[exclusionGroupList.size()]];
+        for (int i = 0; i < exclusionGroupList.size(); i++) {
+            List<Integer> children = groupChildren.get(exclusionGroupList.get(i));
+            for (int j = 0; j < children.size(); j++) {
+                exclusionGroupChildren[exclusionGroupStarts[i] + j] = children.get(j);
+            }
+        }
+
+        for (IConstraint constraint : featureModel.getConstraints()) {
+            List<int[]> constraintClauses = new ArrayList<>();
+            if (toClauses(constraint.getFormula(), true, constraintClauses)) {
+                clauses.addAll(constraintClauses);
+            } else {
+                skipped.add(constraint);
+            }
+        }
+        skippedConstraints = Collections.unmodifiableList(skipped);
+
+        boolean empty = false;
+        List<Integer> unitList = new ArrayList<>();
+        int clauseCount = 0;
+        int literalCount = 0;
+        for (int[] clause : clauses) {
+            if (clause.length == 0) {
+                empty = true;
+            } else if (clause.length == 1) {
+                unitList.add(clause[0]);
+            } else {
+                clauseCount++;
+                literalCount += clause.length;
+            }
+        }
+        inconsistent = empty;
+        units = new int[unitList.size()];
+        for (int i = 0; i < units.length; i++) {
+            units[i] = unitList.get(i);
+        }
+        clauseStarts = new int[clauseCount + 1];
+        clauseLiterals = new int[literalCount];
+        watches = new int[2 * size][];
+        watchSizes = new int[2 * size];
+        int clause = 0;
+        for (int[] literals : clauses) {
+            if (literals.length > 1) {
+                clauseStarts[clause + 1] = clauseStarts[clause] + literals.length;
+                System.arraycopy(literals, 0, clauseLiterals, clauseStarts[clause], literals.length);
+                watchSizes[literals[0]]++;
+                watchSizes[literals[1]]++;
+                clause++;
+            }
+        }
+        for (int literal = 0; literal < watches.length; literal++) {
+            watches[literal] = new int[Math.max(watchSizes[literal], 1)];
+            watchSizes[literal] = 0;
+        }
+        for (clause = 0; clause < clauseStarts.length - 1; clause++) {
+            for (int i = clauseStarts[clause]; i < clauseStarts[clause] + 2; i++) {
+                int literal = clauseLiterals[i];
+                watches[literal][watchSizes[literal]++] = clause;
+            }
+        }
+    }
+
+    private static int positive(int ordinal) {
+        return 2 * ordinal;
+    }
+
+    private static int negative(int ordinal) {
+        return 2 * ordinal + 1;
+    }
+
+    /**
+     * Converts an expression (or its negation) to clauses, if it is a conjunction of clauses.
+     *
+     * @return whether the expression is a conjunction of clauses
+     */
+    private boolean toClauses(IExpression expression, boolean positive, List<int[]> clauses) {
+        if (expression instanceof Reference) {
+            return toClauses(expression.getChildren().get(0), positive, clauses);
+        } else if (expression instanceof True || expression instanceof False) {
+            if (positive != expression instanceof True) {
+                clauses.add(new int[0]);
+            }
+            return true;
+        } else if (expression instanceof Not) {
+            return toClauses(expression.getChildren().get(0), !positive, clauses);
+        } else if (positive ? expression instanceof And : expression instanceof Or) {
+            for (IExpression child : expression.getChildren()) {
+                if (!toClauses(child, positive, clauses)) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (!positive && expression instanceof Implies) {
+            return toClauses(expression.getChildren().get(0), true, clauses)
+                    && toClauses(expression.getChildren().get(1), false, clauses);
+        } else if (expression instanceof BiImplies) {
+            IExpression left = expression.getChildren().get(0);
+            IExpression right = expression.getChildren().get(1);
+            List<Integer> first = new ArrayList<>();
+            List<Integer> second = new ArrayList<>();
+            if (!toClause(left, false, first)
+                    || !toClause(right, positive, first)
+                    || !toClause(left, true, second)
+                    || !toClause(right, !positive, second)) {
+                return false;
+            }
+            addClause(first, clauses);
+            addClause(second, clauses);
+            return true;
+        } else {
+            List<Integer> clause = new ArrayList<>();
+            if (!toClause(expression, positive, clause)) {
+                return false;
+            }
+            addClause(clause, clauses);
+            return true;
+        }
+    }
+
+    /**
+     * Converts an expression (or its negation) to a single clause, if it is a disjunction of literals.
+     *
+     * @return whether the expression is a disjunction of literals
+     */
+    private boolean toClause(IExpression expression, boolean positive, List<Integer> clause) {
+        if (expression instanceof Reference) {
+            return toClause(expression.getChildren().get(0), positive, clause);
+        } else if (expression instanceof Literal) {
+            Literal literal = (Literal) expression;
+            int ordinal = tree.getOrdinal(literal.getName());
+            if (ordinal < 0) {
+                throw new IllegalArgumentException("unknown feature " + literal.getName());
+            }
+            clause.add(literal.isPositive() == positive ? positive(ordinal) : negative(ordinal));
+            return true;
+        } else if (expression instanceof Not) {
+            return toClause(expression.getChildren().get(0), !positive, clause);
+        } else if (positive ? expression instanceof Or : expression instanceof And) {
+            for (IExpression child : expression.getChildren()) {
+                if (!toClause(child, positive, clause)) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (positive && expression instanceof Implies) {
+            return toClause(expression.getChildren().get(0), false, clause)
+                    && toClause(expression.getChildren().get(1), true, clause);
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Adds a clause without duplicate literals, unless it is a tautology.
+     */
+    private static void addClause(List<Integer> literals, List<int[]> clauses) {
+        int[] clause = literals.stream().mapToInt(Integer::intValue).distinct().toArray();
+        for (int literal : clause) {
+            if (literals.contains(literal ^ 1)) {
+                return;
+            }
+        }
+        clauses.add(clause);
+    }
+
+    public FlatFeatureTree getFlatFeatureTree() {
+        return tree;
+    }
+
+    /**
+     * Returns the constraints that are not propagated because they are not conjunctions of clauses.
+     *
+     * @return the skipped constraints
+     */
+    public List<IConstraint> getSkippedConstraints() {
+        return skippedConstraints;
+    }
+
+    /**
+     * Returns the number of compiled clauses with at least two literals.
+     *
+     * @return the number of clauses
+     */
+    public int getClauseCount() {
+        return clauseStarts.length - 1;
+    }
+
+    /**
+     * Creates a new session, in which all unit clauses are propagated.
+     *
+     * @return the new session
+     */
+    public Session newSession() {
+        return new Session();
+    }
+
+    /**
+     * The decisions of one user and their implications.
+     * Literals on the trail are given as {@code ordinal + 1} for selected and {@code -(ordinal + 1)} for deselected
+     * features.
+     */
+    public final class Session {
+
+        private final int[] literals = clauseLiterals.clone();
+        private final int[][] sessionWatches = new int[watches.length][];
+        private final int[] sessionWatchSizes = watchSizes.clone();
+        private final byte[] values = new byte[tree.size()];
+        private final int[] trail = new int[tree.size()];
+        private int trailSize;
+        private int propagated;
+        private int[] decisions = new int[16];
+        private int[] levelStarts = new int[16];
+        private int decisionCount;
+        private final boolean consistent;
+
+        private Session() {
+            for (int literal = 0; literal < watches.length; literal++) {
+                sessionWatches[literal] = watches[literal].clone();
+            }
+            boolean unitsConsistent = !inconsistent;
+            for (int i = 0; i < units.length && unitsConsistent; i++) {
+                unitsConsistent = enqueue(units[i]);
+            }
+            consistent = unitsConsistent && propagate();
+        }
+
+        /**
+         * Returns whether propagating the unit clauses of the model does not lead to a conflict.
+         * If it does, no decision can be made.
+         *
+         * @return whether this session is consistent
+         */
+        public boolean isConsistent() {
+            return consistent;
+        }
+
+        public boolean isSelected(int ordinal) {
+            return values[ordinal] > 0;
+        }
+
+        public boolean isDeselected(int ordinal) {
+            return values[ordinal] < 0;
+        }
+
+        public boolean isOpen(int ordinal) {
+            return values[ordinal] == 0;
+        }
+
+        /**
+         * Returns whether a feature was decided by the user.
+         *
+         * @param ordinal the ordinal of the feature
+         * @return whether the feature was decided
+         */
+        public boolean isDecision(int ordinal) {
+            return findDecision(ordinal) >= 0;
+        }
+
+        public int getDecisionCount() {
+            return decisionCount;
+        }
+
+        public int getTrailSize() {
+            return trailSize;
+        }
+
+        /**
+         * Returns a literal on the trail.
+         * Literals are ordered by decision, so the literals implied by the last decision are at the end.
+         *
+         * @param index the index on the trail
+         * @return the literal
+         */
+        public int getTrailLiteral(int index) {
+            int literal = trail[index];
+            return (literal & 1) == 0 ? (literal >>> 1) + 1 : -((literal >>> 1) + 1);
+        }
+
+        /**
+         * Returns the index on the trail at which the literals of a decision begin.
+         *
+         * @param decision the index of the decision
+         * @return the index on the trail
+         */
+        public int getDecisionStart(int decision) {
+            return levelStarts[decision];
+        }
+
+        /**
+         * Decides a feature and propagates the decision.
+         * If the feature is already implied with the same value, the decision is recorded without propagating, so it
+         * persists when the decisions implying it are retracted.
+         *
+         * @param ordinal the ordinal of the feature
+         * @param selected whether the feature is selected
+         * @return whether the decision is consistent with all previous decisions; if not, it is not made
+         */
+        public boolean assign(int ordinal, boolean selected) {
+            if (!consistent) {
+                return false;
+            }
+            int literal = selected ? positive(ordinal) : negative(ordinal);
+            int value = getValue(literal);
+            if (value < 0) {
+                return false;
+            } else if (value > 0 && findDecision(ordinal) >= 0) {
+                return true;
+            }
+            if (decisionCount == decisions.length) {
+                decisions = Arrays.copyOf(decisions, 2 * decisionCount);
+                levelStarts = Arrays.copyOf(levelStarts, 2 * decisionCount);
+            }
+            decisions[decisionCount] = literal;
+            levelStarts[decisionCount] = trailSize;
+            decisionCount++;
+            if (value == 0 && !(enqueue(literal) && propagate())) {
+                undo(decisionCount - 1);
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Retracts the last decision and all its implications.
+         *
+         * @return whether there was a decision to retract
+         */
+        public boolean retract() {
+            if (decisionCount == 0) {
+                return false;
+            }
+            undo(decisionCount - 1);
+            return true;
+        }
+
+        /**
+         * Retracts the decision of a feature and all its implications, keeping all other decisions.
+         *
+         * @param ordinal the ordinal of the feature
+         * @return whether the feature was decided
+         */
+        public boolean retract(int ordinal) {
+            int decision = findDecision(ordinal);
+            if (decision < 0) {
+                return false;
+            }
+            int[] later = Arrays.copyOfRange(decisions, decision + 1, decisionCount);
+            undo(decision);
+            for (int literal : later) {
+                // propagation is monotone, so decisions consistent with more decisions remain consistent
+                assign(literal >>> 1, (literal & 1) == 0);
+            }
+            return true;
+        }
+
+        /**
+         * Retracts all decisions.
+         */
+        public void reset() {
+            if (decisionCount > 0) {
+                undo(0);
+            }
+        }
+
+        private int findDecision(int ordinal) {
+            for (int i = 0; i < decisionCount; i++) {
+                if (decisions[i] >>> 1 == ordinal) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void undo(int decision) {
+            int start = levelStarts[decision];
+            for (int i = start; i < trailSize; i++) {
+                values[trail[i] >>> 1] = 0;
+            }
+            trailSize = start;
+            propagated = start;
+            decisionCount = decision;
+        }
+
+        private int getValue(int literal) {
+            int value = values[literal >>> 1];
+            return (literal & 1) == 0 ? value : -value;
+        }
+
+        /**
+         * Makes a literal true, unless it is already decided.
+         *
+         * @return whether the literal is not false
+         */
+        private boolean enqueue(int literal) {
+            int value = getValue(literal);
+            if (value == 0) {
+                values[literal >>> 1] = (byte) ((literal & 1) == 0 ? 1 : -1);
+                trail[trailSize++] = literal;
+                return true;
+            }
+            return value > 0;
+        }
+
+        private boolean propagate() {
+            while (propagated < trailSize) {
+                int literal = trail[propagated++];
+                if ((literal & 1) == 0 && exclusionGroups[literal >>> 1] >= 0) {
+                    int group = exclusionGroups[literal >>> 1];
+                    for (int i = exclusionGroupStarts[group]; i < exclusionGroupStarts[group + 1]; i++) {
+                        int sibling = exclusionGroupChildren[i];
+                        if (sibling != literal >>> 1 && !enqueue(negative(sibling))) {
+                            return false;
+                        }
+                    }
+                }
+                if (!propagateWatches(literal ^ 1)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Visits all clauses watching a literal that just became false.
+         *
+         * @return whether no clause is violated
+         */
+        private boolean propagateWatches(int falseLiteral) {
+            int[] clauses = sessionWatches[falseLiteral];
+            int i = 0;
+            while (i < sessionWatchSizes[falseLiteral]) {
+                int clause = clauses[i];
+                int start = clauseStarts[clause];
+                int end = clauseStarts[clause + 1];
+                if (literals[start] == falseLiteral) {
+                    literals[start] = literals[start + 1];
+                    literals[start + 1] = falseLiteral;
+                }
+                int other = literals[start];
+                if (getValue(other) > 0) {
+                    i++;
+                    continue;
+                }
+                boolean moved = false;
+                for (int j = start + 2; j < end; j++) {
+                    int candidate = literals[j];
+                    if (getValue(candidate) >= 0) {
+                        literals[start + 1] = candidate;
+                        literals[j] = falseLiteral;
+                        watch(candidate, clause);
+                        clauses[i] = clauses[--sessionWatchSizes[falseLiteral]];
+                        moved = true;
+                        break;
+                    }
+                }
+                if (!moved) {
+                    if (!enqueue(other)) {
+                        return false;
+                    }
+                    i++;
+                }
+            }
+            return true;
+        }
+
+        private void watch(int literal, int clause) {
+            int[] clauses = sessionWatches[literal];
+            if (sessionWatchSizes[literal] == clauses.length) {
+                clauses = Arrays.copyOf(clauses, 2 * clauses.length);
+                sessionWatches[literal] = clauses;
+            }
+            clauses[sessionWatchSizes[literal]++] = clause;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.analysis;
+
+import de.featjar.base.data.Range;
+import de.featjar.feature.model.FeatureTree.Group;
+import de.featjar.feature.model.IFeatureModel;
+import de.featjar.feature.model.IFeatureTree;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of all feature trees of a feature model in primitive arrays, for analyses that visit every
+ * node.
+ * Nodes are numbered by their position in preorder (their ordinal), so the subtree of a node {@code i} consists of
+ * the ordinals from {@code i} to {@code getSubtreeEnd(i) - 1}, and its children are {@code i + 1},
+ * {@code getSubtreeEnd(i + 1)}, and so on.
+ * Groups are numbered consecutively by parent.
+ * Open bounds ({@link Range#OPEN}) are normalized to 0 for lower and {@link Integer#MAX_VALUE} for upper bounds.
+ * Later changes to the feature model are not reflected.
+ */
+public class FlatFeatureTree {
+
+    private final IFeatureTree[] nodes;
+    private final String[] names;
+    private final int[] parents;
+    private final int[] subtreeEnds;
+    private final int[] depths;
+    private final int[] featureLowerBounds;
+    private final int[] featureUpperBounds;
+    private final int[] groups;
+    private final int[] firstGroups;
+    private final int[] groupLowerBounds;
+    private final int[] groupUpperBounds;
+    private final int[] groupSizes;
+    private final int[] roots;
+    private final Map<String, Integer> ordinals;
+
+    /**
+     * Creates a snapshot of all feature trees of a feature model.
+     *
+     * @param featureModel the feature model
+     */
+    public FlatFeatureTree(IFeatureModel featureModel) {
+        List<IFeatureTree> rootList = featureModel.getRoots();
+        int size = 0;
+        int groupCount = 0;
+        ArrayDeque<IFeatureTree> stack = new ArrayDeque<>();
+        for (IFeatureTree root : rootList) {
+            stack.push(root);
+            while (!stack.isEmpty()) {
+                IFeatureTree node = stack.pop();
+                size++;
+                groupCount += node.getGroups().size();
+                for (IFeatureTree child : node.getChildren()) {
+                    stack.push(child);
+                }
+            }
+        }
+        nodes = new IFeatureTree[size];
+        names = new String[size];
+        parents = new int[size];
+        subtreeEnds = new int[size];
+        depths = new int[size];
+        featureLowerBounds = new int[size];
+        featureUpperBounds = new int[size];
+        groups = new int[size];
+        firstGroups = new int[size + 1];
+        groupLowerBounds = new int[groupCount];
+        groupUpperBounds = new int[groupCount];
+        groupSizes = new int[groupCount];
+        roots = new int[rootList.size()];
+        ordinals = new HashMap<>((int) (size * 1.5));
+
+        int ordinal = 0;
+        int group = 0;
+        ArrayDeque<Integer> parentStack = new ArrayDeque<>();
+        for (int r = 0; r < rootList.size(); r++) {
+            roots[r] = ordinal;
+            stack.push(rootList.get(r));
+            parentStack.push(-1);
+            while (!stack.isEmpty()) {
+                IFeatureTree node = stack.pop();
+                int parent = parentStack.pop();
+                nodes[ordinal] = node;
+                names[ordinal] = node.getFeature().getName().orElse("");
+                ordinals.putIfAbsent(names[ordinal], ordinal);
+                parents[ordinal] = parent;
+                depths[ordinal] = parent < 0 ? 0 : depths[parent] + 1;
+                featureLowerBounds[ordinal] = getLowerBound(node.getFeatureRangeLowerBound());
+                featureUpperBounds[ordinal] = getUpperBound(node.getFeatureRangeUpperBound());
+                firstGroups[ordinal] = group;
+                for (Group nodeGroup : node.getGroups()) {
+                    groupLowerBounds[group] = getLowerBound(nodeGroup.getLowerBound());
+                    groupUpperBounds[group] = getUpperBound(nodeGroup.getUpperBound());
+                    group++;
+                }
+                if (parent < 0) {
+                    groups[ordinal] = -1;
+                } else {
+                    groups[ordinal] = firstGroups[parent] + node.getGroupID();
+                    groupSizes[groups[ordinal]]++;
+                }
+                List<? extends IFeatureTree> children = node.getChildren();
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    stack.push(children.get(i));
+                    parentStack.push(ordinal);
+                }
+                ordinal++;
+            }
+        }
+        firstGroups[size] = group;
+        for (int i = size - 1; i >= 0; i--) {
+            int end = i + 1;
+            for (int child = i + 1; child < size && parents[child] == i; child = subtreeEnds[child]) {
+                end = subtreeEnds[child];
+            }
+            subtreeEnds[i] = end;
+        }
+    }
+
+    private static int getLowerBound(int bound) {
+        return bound == Range.OPEN ? 0 : bound;
+    }
+
+    private static int getUpperBound(int bound) {
+        return bound == Range.OPEN ? Integer.MAX_VALUE : bound;
+    }
+
+    public int size() {
+        return nodes.length;
+    }
+
+    public IFeatureTree getNode(int ordinal) {
+        return nodes[ordinal];
+    }
+
+    public String getName(int ordinal) {
+        return names[ordinal];
+    }
+
+    /**
+     * Returns the ordinal of the first node labeled with the given feature name, or -1 if there is none.
+     *
+     * @param name the feature name
+     * @return the ordinal
+     */
+    public int getOrdinal(String name) {
+        Integer ordinal = ordinals.get(name);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /**
+     * Returns the ordinal of the parent of a node, or -1 for roots.
+     *
+     * @param ordinal the ordinal
+     * @return the parent ordinal
+     */
+    public int getParent(int ordinal) {
+        return parents[ordinal];
+    }
+
+    /**
+     * Returns the ordinal after the last descendant of a node.
+     *
+     * @param ordinal the ordinal
+     * @return the end of the subtree, exclusive
+     */
+    public int getSubtreeEnd(int ordinal) {
+        return subtreeEnds[ordinal];
+    }
+
+    public int getDepth(int ordinal) {
+        return depths[ordinal];
+    }
+
+    /**
+     * Checks whether one node is an ancestor of another or the node itself.
+     *
+     * @param ancestor the ordinal of the potential ancestor
+     * @param ordinal the ordinal
+     * @return whether {@code ancestor} is an ancestor of {@code ordinal} or equal to it
+     */
+    public boolean isAncestorOrSelf(int ancestor, int ordinal) {
+        return ancestor <= ordinal && ordinal < subtreeEnds[ancestor];
+    }
+
+    public int getFeatureLowerBound(int ordinal) {
+        return featureLowerBounds[ordinal];
+    }
+
+    public int getFeatureUpperBound(int ordinal) {
+        return featureUpperBounds[ordinal];
+    }
+
+    /**
+     * Returns the group a node belongs to in its parent, or -1 for roots.
+     *
+     * @param ordinal the ordinal
+     * @return the group
+     */
+    public int getGroup(int ordinal) {
+        return groups[ordinal];
+    }
+
+    /**
+     * Returns the first group of a node; its groups range from this group to the first group of the next ordinal.
+     *
+     * @param ordinal the ordinal
+     * @return the first group
+     */
+    public int getFirstGroup(int ordinal) {
+        return firstGroups[ordinal];
+    }
+
+    public int getGroupCount(int ordinal) {
+        return firstGroups[ordinal + 1] - firstGroups[ordinal];
+    }
+
+    public int getGroupLowerBound(int group) {
+        return groupLowerBounds[group];
+    }
+
+    public int getGroupUpperBound(int group) {
+        return groupUpperBounds[group];
+    }
+
+    /**
+     * Returns the number of children in a group.
+     *
+     * @param group the group
+     * @return the number of children
+     */
+    public int getGroupSize(int group) {
+        return groupSizes[group];
+    }
+
+    /**
+     * Returns the ordinals of all roots.
+     *
+     * @return the roots
+     */
+    public int[] getRoots() {
+        return Arrays.copyOf(roots, roots.length);
+    }
+}
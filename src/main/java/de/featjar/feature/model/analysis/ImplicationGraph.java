@@ -0,0 +1,339 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.analysis;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A directed graph of implications between literals of binary clauses.
+ * The literals of a variable with ordinal {@code i} are {@code 2 * i} (selected) and {@code 2 * i + 1} (deselected),
+ * see {@link #getLiteral(int, boolean)}.
+ * Every clause is added together with its contrapositive, so the graph is skew-symmetric.
+ * <p>
+ * The transitive closure is computed on demand: strongly connected components are determined once, and the
+ * closure of each component is computed when first needed and cached as a bitset of literals.
+ */
+public class ImplicationGraph {
+
+    private final int variableCount;
+    private int[] edgeSources = new int[16];
+    private int[] edgeTargets = new int[16];
+    private int edgeCount;
+
+    private int[] edgeStarts;
+    private int[] adjacentLiterals;
+    private int[] components;
+    private int[] componentStarts;
+    private int[] componentLiterals;
+    private BitSet[] componentClosures;
+
+    /**
+     * Creates an empty implication graph.
+     *
+     * @param variableCount the number of variables
+     */
+    public ImplicationGraph(int variableCount) {
+        this.variableCount = variableCount;
+    }
+
+    public static int getLiteral(int ordinal, boolean positive) {
+        return positive ? 2 * ordinal : 2 * ordinal + 1;
+    }
+
+    public static int getOrdinal(int literal) {
+        return literal >>> 1;
+    }
+
+    public static boolean isPositive(int literal) {
+        return (literal & 1) == 0;
+    }
+
+    public static int negate(int literal) {
+        return literal ^ 1;
+    }
+
+    public int getVariableCount() {
+        return variableCount;
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Adds the implication {@code premise => conclusion} and its contrapositive.
+     *
+     * @param premise the premise literal
+     * @param conclusion the conclusion literal
+     */
+    public void addImplication(int premise, int conclusion) {
+        addEdge(premise, conclusion);
+        addEdge(negate(conclusion), negate(premise));
+    }
+
+    /**
+     * Adds the clause {@code literal1 | literal2}.
+     *
+     * @param literal1 the first literal
+     * @param literal2 the second literal
+     */
+    public void addClause(int literal1, int literal2) {
+        addImplication(negate(literal1), literal2);
+    }
+
+    private void addEdge(int source, int target) {
+        if (source < 0 || source >= 2 * variableCount || target < 0 || target >= 2 * variableCount) {
+            throw new IndexOutOfBoundsException(source + " => " + target);
+        }
+        if (edgeCount == edgeSources.length) {
+            edgeSources = Arrays.copyOf(edgeSources, 2 * edgeCount);
+            edgeTargets = Arrays.copyOf(edgeTargets, 2 * edgeCount);
+        }
+        edgeSources[edgeCount] = source;
+        edgeTargets[edgeCount] = target;
+        edgeCount++;
+        edgeStarts = null;
+        components = null;
+        componentClosures = null;
+    }
+
+    private void buildAdjacency() {
+        if (edgeStarts != null) {
+            return;
+        }
+        int literalCount = 2 * variableCount;
+        edgeStarts = new int[literalCount + 1];
+        for (int i = 0; i < edgeCount; i++) {
+            edgeStarts[edgeSources[i] + 1]++;
+        }
+        for (int i = 0; i < literalCount; i++) {
+            edgeStarts[i + 1] += edgeStarts[i];
+        }
+        adjacentLiterals = new int[edgeCount];
+        int[] next = Arrays.copyOf(edgeStarts, literalCount);
+        for (int i = 0; i < edgeCount; i++) {
+            adjacentLiterals[next[edgeSources[i]]++] = edgeTargets[i];
+        }
+    }
+
+    /**
+     * Returns all literals directly implied by a literal.
+     *
+     * @param literal the literal
+     * @return the implied literals
+     */
+    public int[] getSuccessors(int literal) {
+        buildAdjacency();
+        return Arrays.copyOfRange(adjacentLiterals, edgeStarts[literal], edgeStarts[literal + 1]);
+    }
+
+    /**
+     * Propagates literals along all implications, in time linear in the size of the graph.
+     *
+     * @param assigned the literals to propagate, extended by all implied literals
+     * @return whether both literals of some variable are assigned
+     */
+    public boolean propagate(BitSet assigned) {
+        buildAdjacency();
+        int[] queue = new int[2 * variableCount];
+        int size = 0;
+        for (int literal = assigned.nextSetBit(0); literal >= 0; literal = assigned.nextSetBit(literal + 1)) {
+            queue[size++] = literal;
+        }
+        for (int head = 0; head < size; head++) {
+            int literal = queue[head];
+            for (int i = edgeStarts[literal]; i < edgeStarts[literal + 1]; i++) {
+                int implied = adjacentLiterals[i];
+                if (!assigned.get(implied)) {
+                    assigned.set(implied);
+                    queue[size++] = implied;
+                }
+            }
+        }
+        for (int literal = assigned.nextSetBit(0); literal >= 0; literal = assigned.nextSetBit(literal + 1)) {
+            if (isPositive(literal) && assigned.get(negate(literal))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns all literals implied by a literal, including the literal itself.
+     *
+     * @param literal the literal
+     * @return a new bitset of implied literals
+     */
+    public BitSet getClosure(int literal) {
+        computeComponents();
+        return (BitSet) getComponentClosure(components[literal]).clone();
+    }
+
+    /**
+     * Checks whether one literal transitively implies another.
+     *
+     * @param premise the premise literal
+     * @param conclusion the conclusion literal
+     * @return whether {@code premise} implies {@code conclusion}
+     */
+    public boolean implies(int premise, int conclusion) {
+        computeComponents();
+        return getComponentClosure(components[premise]).get(conclusion);
+    }
+
+    /**
+     * Checks whether two literals imply each other, that is, always have the same value.
+     *
+     * @param literal1 the first literal
+     * @param literal2 the second literal
+     * @return whether both literals are equivalent
+     */
+    public boolean areEquivalent(int literal1, int literal2) {
+        computeComponents();
+        return components[literal1] == components[literal2];
+    }
+
+    private BitSet getComponentClosure(int component) {
+        if (componentClosures[component] != null) {
+            return componentClosures[component];
+        }
+        // components are numbered in reverse topological order, so successors have smaller numbers
+        int[] stack = new int[16];
+        int size = 0;
+        stack[size++] = component;
+        while (size > 0) {
+            int current = stack[size - 1];
+            if (componentClosures[current] != null) {
+                size--;
+                continue;
+            }
+            boolean ready = true;
+            for (int i = componentStarts[current]; i < componentStarts[current + 1]; i++) {
+                int literal = componentLiterals[i];
+                for (int j = edgeStarts[literal]; j < edgeStarts[literal + 1]; j++) {
+                    int successor = components[adjacentLiterals[j]];
+                    if (successor != current && componentClosures[successor] == null) {
+                        if (size == stack.length) {
+                            stack = Arrays.copyOf(stack, 2 * size);
+                        }
+                        stack[size++] = successor;
+                        ready = false;
+                    }
+                }
+            }
+            if (!ready) {
+                continue;
+            }
+            BitSet closure = new BitSet(2 * variableCount);
+            for (int i = componentStarts[current]; i < componentStarts[current + 1]; i++) {
+                int literal = componentLiterals[i];
+                closure.set(literal);
+                for (int j = edgeStarts[literal]; j < edgeStarts[literal + 1]; j++) {
+                    int successor = components[adjacentLiterals[j]];
+                    if (successor != current) {
+                        closure.or(componentClosures[successor]);
+                    }
+                }
+            }
+            componentClosures[current] = closure;
+            size--;
+        }
+        return componentClosures[component];
+    }
+
+    /**
+     * Computes strongly connected components with an iterative version of Tarjan's algorithm.
+     */
+    private void computeComponents() {
+        if (components != null) {
+            return;
+        }
+        buildAdjacency();
+        int literalCount = 2 * variableCount;
+        int[] indices = new int[literalCount];
+        int[] lowLinks = new int[literalCount];
+        int[] edgePositions = new int[literalCount];
+        boolean[] onStack = new boolean[literalCount];
+        int[] componentStack = new int[literalCount];
+        int[] callStack = new int[literalCount];
+        int[] componentOf = new int[literalCount];
+        Arrays.fill(indices, -1);
+        int index = 0;
+        int componentStackSize = 0;
+        int componentCount = 0;
+        for (int start = 0; start < literalCount; start++) {
+            if (indices[start] >= 0) {
+                continue;
+            }
+            int callStackSize = 0;
+            callStack[callStackSize++] = start;
+            indices[start] = lowLinks[start] = index++;
+            edgePositions[start] = edgeStarts[start];
+            componentStack[componentStackSize++] = start;
+            onStack[start] = true;
+            while (callStackSize > 0) {
+                int literal = callStack[callStackSize - 1];
+                if (edgePositions[literal] < edgeStarts[literal + 1]) {
+                    int successor = adjacentLiterals[edgePositions[literal]++];
+                    if (indices[successor] < 0) {
+                        indices[successor] = lowLinks[successor] = index++;
+                        edgePositions[successor] = edgeStarts[successor];
+                        componentStack[componentStackSize++] = successor;
+                        onStack[successor] = true;
+                        callStack[callStackSize++] = successor;
+                    } else if (onStack[successor]) {
+                        lowLinks[literal] = Math.min(lowLinks[literal], indices[successor]);
+                    }
+                    continue;
+                }
+                callStackSize--;
+                if (callStackSize > 0) {
+                    int caller = callStack[callStackSize - 1];
+                    lowLinks[caller] = Math.min(lowLinks[caller], lowLinks[literal]);
+                }
+                if (lowLinks[literal] == indices[literal]) {
+                    int member;
+                    do {
+                        member = componentStack[--componentStackSize];
+                        onStack[member] = false;
+                        componentOf[member] = componentCount;
+                    } while (member != literal);
+                    componentCount++;
+                }
+            }
+        }
+        componentStarts = new int[componentCount + 1];
+        for (int literal = 0; literal < literalCount; literal++) {
+            componentStarts[componentOf[literal] + 1]++;
+        }
+        for (int i = 0; i < componentCount; i++) {
+            componentStarts[i + 1] += componentStarts[i];
+        }
+        componentLiterals = new int[literalCount];
+        int[] next = Arrays.copyOf(componentStarts, componentCount);
+        for (int literal = 0; literal < literalCount; literal++) {
+            componentLiterals[next[componentOf[literal]]++] = literal;
+        }
+        componentClosures = new BitSet[componentCount];
+        components = componentOf;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.analysis;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Polynomials over big integers that are truncated after a given degree and additionally store the sum of all
+ * coefficients (including truncated ones) at their last index.
+ * The {@code log} variants work on natural logarithms of non-negative coefficients stored in doubles, where zero is
+ * {@link Double#NEGATIVE_INFINITY}, for approximate counts that exceed the range of doubles.
+ */
+final class Polynomials {
+
+    private Polynomials() {}
+
+    static BigInteger[] one(int degree) {
+        BigInteger[] polynomial = new BigInteger[degree + 2];
+        Arrays.fill(polynomial, BigInteger.ZERO);
+        if (degree >= 0) {
+            polynomial[0] = BigInteger.ONE;
+        }
+        polynomial[degree + 1] = BigInteger.ONE;
+        return polynomial;
+    }
+
+    /**
+     * Multiplies a polynomial with {@code deselected + selected * x}.
+     */
+    static BigInteger[] extend(BigInteger[] polynomial, BigInteger deselected, BigInteger selected) {
+        int total = polynomial.length - 1;
+        BigInteger[] result = new BigInteger[polynomial.length];
+        for (int i = 0; i < total; i++) {
+            result[i] = polynomial[i].multiply(deselected);
+            if (i > 0) {
+                result[i] = result[i].add(polynomial[i - 1].multiply(selected));
+            }
+        }
+        result[total] = polynomial[total].multiply(deselected.add(selected));
+        return result;
+    }
+
+    static BigInteger[] multiply(BigInteger[] polynomial1, BigInteger[] polynomial2) {
+        int total = polynomial1.length - 1;
+        BigInteger[] result = new BigInteger[polynomial1.length];
+        for (int i = 0; i < total; i++) {
+            BigInteger coefficient = BigInteger.ZERO;
+            for (int j = 0; j <= i; j++) {
+                coefficient = coefficient.add(polynomial1[j].multiply(polynomial2[i - j]));
+            }
+            result[i] = coefficient;
+        }
+        result[total] = polynomial1[total].multiply(polynomial2[total]);
+        return result;
+    }
+
+    /**
+     * Sums the coefficients between two degrees, where the upper degree is only considered if the polynomial is
+     * bounded, that is, truncated after it.
+     */
+    static BigInteger sum(BigInteger[] polynomial, int lowerDegree, int upperDegree, boolean bounded) {
+        BigInteger sum = BigInteger.ZERO;
+        if (bounded) {
+            for (int i = lowerDegree; i <= upperDegree; i++) {
+                sum = sum.add(polynomial[i]);
+            }
+            return sum;
+        }
+        for (int i = 0; i < lowerDegree; i++) {
+            sum = sum.add(polynomial[i]);
+        }
+        return polynomial[polynomial.length - 1].subtract(sum);
+    }
+
+    static double[] logOne(int degree) {
+        double[] polynomial = new double[degree + 2];
+        Arrays.fill(polynomial, Double.NEGATIVE_INFINITY);
+        if (degree >= 0) {
+            polynomial[0] = 0;
+        }
+        polynomial[degree + 1] = 0;
+        return polynomial;
+    }
+
+    /**
+     * Multiplies a polynomial in log-space with {@code deselected + selected * x}.
+     */
+    static double[] logExtend(double[] polynomial, double deselected, double selected) {
+        int total = polynomial.length - 1;
+        double[] result = new double[polynomial.length];
+        for (int i = 0; i < total; i++) {
+            result[i] = polynomial[i] + deselected;
+            if (i > 0) {
+                result[i] = logAdd(result[i], polynomial[i - 1] + selected);
+            }
+        }
+        result[total] = polynomial[total] + logAdd(deselected, selected);
+        return result;
+    }
+
+    /**
+     * Sums the coefficients of a polynomial in log-space, like {@link #sum(BigInteger[], int, int, boolean)}.
+     */
+    static double logSum(double[] polynomial, int lowerDegree, int upperDegree, boolean bounded) {
+        double sum = Double.NEGATIVE_INFINITY;
+        if (bounded) {
+            for (int i = lowerDegree; i <= upperDegree; i++) {
+                sum = logAdd(sum, polynomial[i]);
+            }
+            return sum;
+        }
+        for (int i = 0; i < lowerDegree; i++) {
+            sum = logAdd(sum, polynomial[i]);
+        }
+        return logSubtract(polynomial[polynomial.length - 1], sum);
+    }
+
+    static double logAdd(double a, double b) {
+        if (a == Double.NEGATIVE_INFINITY) {
+            return b;
+        }
+        if (b == Double.NEGATIVE_INFINITY) {
+            return a;
+        }
+        double max = Math.max(a, b);
+        return max + Math.log1p(Math.exp(Math.min(a, b) - max));
+    }
+
+    static double logSubtract(double a, double b) {
+        if (b == Double.NEGATIVE_INFINITY) {
+            return a;
+        }
+        if (b >= a) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        return a + Math.log1p(-Math.exp(b - a));
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.analysis;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * For every node of a {@link FlatFeatureTree} and every number of siblings selected before it in its group (its
+ * state), the number of ways to complete the node's subtree and the rest of its group when the node is selected or
+ * deselected, given that its parent is selected.
+ * States are capped at the group's upper bound, or at its lower bound if the upper bound is not below the group size,
+ * because all larger states have the same completions.
+ * Roots have a single state.
+ */
+final class SelectionTable {
+
+    private final FlatFeatureTree tree;
+    private final int[] offsets;
+    private final int[] caps;
+    private final BigInteger[] selectedCounts;
+    private final BigInteger[] deselectedCounts;
+
+    SelectionTable(ConfigurationCounter counter) {
+        tree = counter.getFlatFeatureTree();
+        int size = tree.size();
+        offsets = new int[size + 1];
+        caps = new int[size];
+        List<BigInteger[]> selectedTables = new ArrayList<>(size);
+        List<BigInteger[]> deselectedTables = new ArrayList<>(size);
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            selectedTables.add(null);
+            deselectedTables.add(null);
+        }
+        for (int root : tree.getRoots()) {
+            selectedTables.set(root, new BigInteger[] {counter.getSubtreeCount(root, true)});
+            deselectedTables.set(root, new BigInteger[] {counter.getSubtreeCount(root, false)});
+        }
+        List<List<Integer>> groupChildren = new ArrayList<>();
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            int firstGroup = tree.getFirstGroup(ordinal);
+            int groupCount = tree.getGroupCount(ordinal);
+            groupChildren.clear();
+            for (int i = 0; i < groupCount; i++) {
+                groupChildren.add(new ArrayList<>());
+            }
+            int end = tree.getSubtreeEnd(ordinal);
+            for (int child = ordinal + 1; child < end; child = tree.getSubtreeEnd(child)) {
+                groupChildren.get(tree.getGroup(child) - firstGroup).add(child);
+            }
+            for (int i = 0; i < groupCount; i++) {
+                addGroup(counter, firstGroup + i, groupChildren.get(i), selectedTables, deselectedTables);
+            }
+        }
+        int tableSize = 0;
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            offsets[ordinal] = tableSize;
+            caps[ordinal] = selectedTables.get(ordinal).length - 1;
+            tableSize += selectedTables.get(ordinal).length;
+        }
+        offsets[size] = tableSize;
+        selectedCounts = new BigInteger[tableSize];
+        deselectedCounts = new BigInteger[tableSize];
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            BigInteger[] selectedTable = selectedTables.get(ordinal);
+            System.arraycopy(selectedTable, 0, selectedCounts, offsets[ordinal], selectedTable.length);
+            BigInteger[] deselectedTable = deselectedTables.get(ordinal);
+            System.arraycopy(deselectedTable, 0, deselectedCounts, offsets[ordinal], deselectedTable.length);
+        }
+    }
+
+    private void addGroup(
+            ConfigurationCounter counter,
+            int group,
+            List<Integer> children,
+            List<BigInteger[]> selectedTables,
+            List<BigInteger[]> deselectedTables) {
+        int size = children.size();
+        int lowerBound = tree.getGroupLowerBound(group);
+        int upperBound = Math.min(tree.getGroupUpperBound(group), size);
+        boolean bounded = upperBound < size;
+        int degree = bounded ? upperBound : lowerBound - 1;
+        int cap = bounded ? upperBound : lowerBound;
+        BigInteger[] deselected = new BigInteger[size];
+        BigInteger[] selected = new BigInteger[size];
+        for (int i = 0; i < size; i++) {
+            deselected[i] = counter.getSubtreeCount(children.get(i), false);
+            selected[i] = counter.getSubtreeCount(children.get(i), true);
+        }
+        BigInteger[][] suffixes = new BigInteger[size + 1][];
+        suffixes[size] = Polynomials.one(degree);
+        for (int i = size - 1; i >= 0; i--) {
+            suffixes[i] = Polynomials.extend(suffixes[i + 1], deselected[i], selected[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            BigInteger[] selectedTable = new BigInteger[cap + 1];
+            BigInteger[] deselectedTable = new BigInteger[cap + 1];
+            for (int state = 0; state <= cap; state++) {
+                selectedTable[state] = selected[i].multiply(
+                        getCompletions(suffixes[i + 1], state + 1, lowerBound, upperBound, bounded));
+                deselectedTable[state] =
+                        deselected[i].multiply(getCompletions(suffixes[i + 1], state, lowerBound, upperBound, bounded));
+            }
+            selectedTables.set(children.get(i), selectedTable);
+            deselectedTables.set(children.get(i), deselectedTable);
+        }
+    }
+
+    /**
+     * Returns the number of ways to configure the remaining children of a group such that the group's bounds hold.
+     */
+    private static BigInteger getCompletions(
+            BigInteger[] suffix, int selected, int lowerBound, int upperBound, boolean bounded) {
+        if (selected > upperBound) {
+            return BigInteger.ZERO;
+        }
+        return Polynomials.sum(suffix, Math.max(lowerBound - selected, 0), upperBound - selected, bounded);
+    }
+
+    FlatFeatureTree getFlatFeatureTree() {
+        return tree;
+    }
+
+    /**
+     * Returns the index of the entry of a node in a given state.
+     *
+     * @param ordinal the ordinal of the node
+     * @param state the number of siblings selected before the node in its group, or 0 for roots
+     * @return the index
+     */
+    int getIndex(int ordinal, int state) {
+        return offsets[ordinal] + Math.min(state, caps[ordinal]);
+    }
+
+    int getOffset(int ordinal) {
+        return offsets[ordinal];
+    }
+
+    int getCap(int ordinal) {
+        return caps[ordinal];
+    }
+
+    int size() {
+        return selectedCounts.length;
+    }
+
+    BigInteger getSelectedCount(int index) {
+        return selectedCounts[index];
+    }
+
+    BigInteger getDeselectedCount(int index) {
+        return deselectedCounts[index];
+    }
+}
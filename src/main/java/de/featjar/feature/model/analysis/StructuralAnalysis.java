@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.analysis;
+
+import de.featjar.feature.model.IConstraint;
+import de.featjar.feature.model.IFeatureModel;
+import de.featjar.formula.structure.IExpression;
+import de.featjar.formula.structure.connective.And;
+import de.featjar.formula.structure.connective.BiImplies;
+import de.featjar.formula.structure.connective.Implies;
+import de.featjar.formula.structure.connective.Not;
+import de.featjar.formula.structure.connective.Or;
+import de.featjar.formula.structure.connective.Reference;
+import de.featjar.formula.structure.predicate.Literal;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Derives core and dead features from the feature tree and from unit and binary constraints, without a solver.
+ * Builds an {@link ImplicationGraph} over the features of a {@link FlatFeatureTree} with the tree edges (every
+ * feature implies its parent, and a parent implies its mandatory children) and all constraints that are unit or
+ * binary clauses (requires, excludes, equivalences, and disjunctions of two literals, also in conjunctions).
+ * Core features are derived by propagating mandatory roots and unit constraints; dead features additionally by
+ * propagating features with an upper bound of zero and features that exclude a feature they imply through the tree.
+ * All steps take time linear in the size of the model.
+ * <p>
+ * The result is sound but incomplete: every reported feature is core or dead, but a solver may find more.
+ * Solver-based analyses can skip all {@link #getDecidedLiterals() decided} variables.
+ */
+public class StructuralAnalysis {
+
+    private final FlatFeatureTree tree;
+    private final ImplicationGraph implicationGraph;
+    private final BitSet decidedLiterals;
+    private final boolean isVoid;
+
+    /**
+     * Analyzes a feature model.
+     *
+     * @param featureModel the feature model
+     */
+    public StructuralAnalysis(IFeatureModel featureModel) {
+        tree = new FlatFeatureTree(featureModel);
+        int size = tree.size();
+        implicationGraph = new ImplicationGraph(size);
+        decidedLiterals = new BitSet(2 * size);
+        int[] mandatoryAncestors = new int[size];
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            int parent = tree.getParent(ordinal);
+            int literal = ImplicationGraph.getLiteral(ordinal, true);
+            if (tree.getFeatureUpperBound(ordinal) == 0) {
+                decidedLiterals.set(ImplicationGraph.negate(literal));
+            }
+            mandatoryAncestors[ordinal] = ordinal;
+            if (parent < 0) {
+                if (tree.getFeatureLowerBound(ordinal) > 0) {
+                    decidedLiterals.set(literal);
+                }
+                continue;
+            }
+            int parentLiteral = ImplicationGraph.getLiteral(parent, true);
+            implicationGraph.addImplication(literal, parentLiteral);
+            int group = tree.getGroup(ordinal);
+            if (tree.getFeatureLowerBound(ordinal) > 0 || tree.getGroupLowerBound(group) >= tree.getGroupSize(group)) {
+                implicationGraph.addImplication(parentLiteral, literal);
+                mandatoryAncestors[ordinal] = mandatoryAncestors[parent];
+            }
+            if (tree.getGroupUpperBound(group) == 0) {
+                decidedLiterals.set(ImplicationGraph.negate(literal));
+            }
+        }
+
+        List<int[]> excludes = new ArrayList<>();
+        for (IConstraint constraint : featureModel.getConstraints()) {
+            addConstraint(constraint.getFormula(), excludes);
+        }
+        boolean conflict = implicationGraph.propagate(decidedLiterals);
+
+        // a feature that excludes a feature it implies through the tree is dead
+        boolean changed = false;
+        for (int[] exclude : excludes) {
+            for (int i = 0; i < 2; i++) {
+                int feature = exclude[i];
+                int excluded = exclude[1 - i];
+                if (tree.isAncestorOrSelf(mandatoryAncestors[excluded], feature)) {
+                    changed |= setDecided(ImplicationGraph.getLiteral(feature, false));
+                }
+            }
+        }
+        if (changed) {
+            conflict |= implicationGraph.propagate(decidedLiterals);
+        }
+        isVoid = conflict;
+    }
+
+    private boolean setDecided(int literal) {
+        if (decidedLiterals.get(literal)) {
+            return false;
+        }
+        decidedLiterals.set(literal);
+        return true;
+    }
+
+    private void addConstraint(IExpression formula, List<int[]> excludes) {
+        if (formula instanceof Reference || formula instanceof And) {
+            for (IExpression child : formula.getChildren()) {
+                addConstraint(child, excludes);
+            }
+            return;
+        }
+        int literal = getLiteral(formula);
+        if (literal >= 0) {
+            decidedLiterals.set(literal);
+            return;
+        }
+        List<? extends IExpression> children = formula.getChildren();
+        if (formula instanceof Not && children.get(0) instanceof And) {
+            List<? extends IExpression> conjuncts = children.get(0).getChildren();
+            if (conjuncts.size() == 2) {
+                addClause(
+                        ImplicationGraph.negate(getLiteral(conjuncts.get(0))),
+                        ImplicationGraph.negate(getLiteral(conjuncts.get(1))),
+                        excludes);
+            }
+        } else if (formula instanceof Or && children.size() == 1) {
+            addConstraint(children.get(0), excludes);
+        } else if (formula instanceof Or && children.size() == 2) {
+            addClause(getLiteral(children.get(0)), getLiteral(children.get(1)), excludes);
+        } else if (formula instanceof Implies) {
+            addClause(ImplicationGraph.negate(getLiteral(children.get(0))), getLiteral(children.get(1)), excludes);
+        } else if (formula instanceof BiImplies) {
+            int literal1 = getLiteral(children.get(0));
+            int literal2 = getLiteral(children.get(1));
+            addClause(ImplicationGraph.negate(literal1), literal2, excludes);
+            addClause(literal1, ImplicationGraph.negate(literal2), excludes);
+        }
+    }
+
+    private void addClause(int literal1, int literal2, List<int[]> excludes) {
+        if (literal1 < 0 || literal2 < 0) {
+            return;
+        }
+        implicationGraph.addClause(literal1, literal2);
+        if (!ImplicationGraph.isPositive(literal1) && !ImplicationGraph.isPositive(literal2)) {
+            excludes.add(new int[] {ImplicationGraph.getOrdinal(literal1), ImplicationGraph.getOrdinal(literal2)});
+        }
+    }
+
+    /**
+     * Returns the literal of a (possibly negated) feature literal, or a negative number if the expression is no
+     * literal of a feature in the tree.
+     */
+    private int getLiteral(IExpression expression) {
+        boolean positive = true;
+        while (expression instanceof Not) {
+            positive = !positive;
+            expression = expression.getChildren().get(0);
+        }
+        if (!(expression instanceof Literal)) {
+            return Integer.MIN_VALUE;
+        }
+        Literal literal = (Literal) expression;
+        int ordinal = tree.getOrdinal(literal.getName());
+        if (ordinal < 0) {
+            return Integer.MIN_VALUE;
+        }
+        return ImplicationGraph.getLiteral(ordinal, literal.isPositive() == positive);
+    }
+
+    public FlatFeatureTree getFlatFeatureTree() {
+        return tree;
+    }
+
+    /**
+     * Returns the implication graph over the ordinals of the {@link #getFlatFeatureTree() flat feature tree}.
+     *
+     * @return the implication graph
+     */
+    public ImplicationGraph getImplicationGraph() {
+        return implicationGraph;
+    }
+
+    /**
+     * Returns all literals whose value is decided, as defined by {@link ImplicationGraph#getLiteral(int, boolean)}.
+     *
+     * @return a new bitset of decided literals
+     */
+    public BitSet getDecidedLiterals() {
+        return (BitSet) decidedLiterals.clone();
+    }
+
+    /**
+     * Returns whether the analysis found a contradiction, in which case the model has no valid configuration.
+     *
+     * @return whether the model is void
+     */
+    public boolean isVoid() {
+        return isVoid;
+    }
+
+    /**
+     * Returns the ordinals of all core features found.
+     *
+     * @return a new bitset of ordinals
+     */
+    public BitSet getCoreFeatures() {
+        return getFeatures(true);
+    }
+
+    /**
+     * Returns the ordinals of all dead features found.
+     *
+     * @return a new bitset of ordinals
+     */
+    public BitSet getDeadFeatures() {
+        return getFeatures(false);
+    }
+
+    private BitSet getFeatures(boolean positive) {
+        BitSet features = new BitSet(tree.size());
+        for (int ordinal = 0; ordinal < tree.size(); ordinal++) {
+            if (decidedLiterals.get(ImplicationGraph.getLiteral(ordinal, positive))) {
+                features.set(ordinal);
+            }
+        }
+        return features;
+    }
+
+    public List<String> getCoreFeatureNames() {
+        return getNames(getCoreFeatures());
+    }
+
+    public List<String> getDeadFeatureNames() {
+        return getNames(getDeadFeatures());
+    }
+
+    private List<String> getNames(BitSet ordinals) {
+        List<String> names = new ArrayList<>(ordinals.cardinality());
+        for (int ordinal = ordinals.nextSetBit(0); ordinal >= 0; ordinal = ordinals.nextSetBit(ordinal + 1)) {
+            names.add(tree.getName(ordinal));
+        }
+        return names;
+    }
+}
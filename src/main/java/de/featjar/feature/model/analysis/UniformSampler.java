@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.analysis;
+
+import de.featjar.feature.model.IFeatureModel;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Draws valid configurations of feature models without cross-tree constraints uniformly at random.
+ * Configurations are bitsets of {@code long} words, in which bit {@code i} is set if the feature with ordinal
+ * {@code i} in the {@link #getFlatFeatureTree() flat feature tree} is selected.
+ * <p>
+ * The subtree counts of a {@link ConfigurationCounter} are turned into a table of selection probabilities once.
+ * For every child, the probability depends only on the number of children selected before it in the same group,
+ * which is capped at the group's upper bound (or its lower bound if the upper bound is not below the group size),
+ * so a sample is drawn in one pass over the selected part of the tree without allocating anything.
+ * Probabilities are stored as doubles, so the distribution is uniform up to rounding errors.
+ * <p>
+ * A sampler is not thread-safe; use {@link #withSeed(long)} to get independent samplers that share the table.
+ */
+public class UniformSampler {
+
+    private final FlatFeatureTree tree;
+    private final int[] subtreeEnds;
+    private final int[] groups;
+    private final int[] firstGroups;
+    private final int[] offsets;
+    private final int[] caps;
+    private final double[] probabilities;
+    private final int[] groupStates;
+    private final SplittableRandom random;
+
+    /**
+     * Creates a sampler for a feature model.
+     *
+     * @param featureModel the feature model
+     * @param seed the seed of the random number generator
+     * @throws IllegalArgumentException if the feature model has constraints or no valid configuration
+     */
+    public UniformSampler(IFeatureModel featureModel, long seed) {
+        this(new ConfigurationCounter(featureModel), seed);
+    }
+
+    /**
+     * Creates a sampler with the counts of a configuration counter.
+     *
+     * @param counter the configuration counter
+     * @param seed the seed of the random number generator
+     * @throws IllegalArgumentException if the feature model has constraints or no valid configuration
+     */
+    public UniformSampler(ConfigurationCounter counter, long seed) {
+        if (counter.hasConstraints()) {
+            throw new IllegalArgumentException("feature model has cross-tree constraints");
+        }
+        if (counter.count().orElseThrow().signum() == 0) {
+            throw new IllegalArgumentException("feature model has no valid configuration");
+        }
+        SelectionTable table = new SelectionTable(counter);
+        tree = counter.getFlatFeatureTree();
+        int size = tree.size();
+        subtreeEnds = new int[size];
+        groups = new int[size];
+        firstGroups = new int[size + 1];
+        offsets = new int[size];
+        caps = new int[size];
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            subtreeEnds[ordinal] = tree.getSubtreeEnd(ordinal);
+            groups[ordinal] = tree.getGroup(ordinal);
+            offsets[ordinal] = table.getOffset(ordinal);
+            caps[ordinal] = table.getCap(ordinal);
+        }
+        for (int ordinal = 0; ordinal <= size; ordinal++) {
+            firstGroups[ordinal] = tree.getFirstGroup(ordinal);
+        }
+        probabilities = new double[table.size()];
+        for (int i = 0; i < probabilities.length; i++) {
+            BigInteger selectedCount = table.getSelectedCount(i);
+            probabilities[i] = divide(selectedCount, selectedCount.add(table.getDeselectedCount(i)));
+        }
+        groupStates = new int[firstGroups[size]];
+        random = new SplittableRandom(seed);
+    }
+
+    private UniformSampler(UniformSampler other, long seed) {
+        tree = other.tree;
+        subtreeEnds = other.subtreeEnds;
+        groups = other.groups;
+        firstGroups = other.firstGroups;
+        offsets = other.offsets;
+        caps = other.caps;
+        probabilities = other.probabilities;
+        groupStates = new int[other.groupStates.length];
+        random = new SplittableRandom(seed);
+    }
+
+    private static double divide(BigInteger dividend, BigInteger divisor) {
+        if (divisor.signum() == 0) {
+            return 0;
+        }
+        return new BigDecimal(dividend)
+                .divide(new BigDecimal(divisor), MathContext.DECIMAL64)
+                .doubleValue();
+    }
+
+    /**
+     * Returns a new sampler that shares the probability table of this sampler but uses its own random number
+     * generator, for example to sample in parallel.
+     *
+     * @param seed the seed of the random number generator
+     * @return the new sampler
+     */
+    public UniformSampler withSeed(long seed) {
+        return new UniformSampler(this, seed);
+    }
+
+    public FlatFeatureTree getFlatFeatureTree() {
+        return tree;
+    }
+
+    /**
+     * Returns the number of {@code long} words of a configuration.
+     *
+     * @return the number of words
+     */
+    public int getWordCount() {
+        return (tree.size() + 63) >>> 6;
+    }
+
+    /**
+     * Draws a configuration.
+     *
+     * @return a new configuration
+     */
+    public long[] sample() {
+        long[] configuration = new long[getWordCount()];
+        sample(configuration);
+        return configuration;
+    }
+
+    /**
+     * Draws a configuration into an existing bitset, overwriting its contents.
+     *
+     * @param configuration the bitset with at least {@link #getWordCount()} words
+     */
+    public void sample(long[] configuration) {
+        Arrays.fill(configuration, 0L);
+        int size = subtreeEnds.length;
+        int ordinal = 0;
+        while (ordinal < size) {
+            int group = groups[ordinal];
+            int state = group < 0 ? 0 : Math.min(groupStates[group], caps[ordinal]);
+            if (random.nextDouble() < probabilities[offsets[ordinal] + state]) {
+                configuration[ordinal >>> 6] |= 1L << ordinal;
+                if (group >= 0) {
+                    groupStates[group]++;
+                }
+                for (int childGroup = firstGroups[ordinal]; childGroup < firstGroups[ordinal + 1]; childGroup++) {
+                    groupStates[childGroup] = 0;
+                }
+                ordinal++;
+            } else {
+                ordinal = subtreeEnds[ordinal];
+            }
+        }
+    }
+}
@@ -0,0 +1,618 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.diff;
+
+import de.featjar.base.data.Attribute;
+import de.featjar.base.data.IAttributable;
+import de.featjar.base.data.IAttribute;
+import de.featjar.base.data.Range;
+import de.featjar.base.tree.Trees;
+import de.featjar.feature.model.Attributes;
+import de.featjar.feature.model.FeatureModel;
+import de.featjar.feature.model.FeatureTree.Group;
+import de.featjar.feature.model.IConstraint;
+import de.featjar.feature.model.IFeature;
+import de.featjar.feature.model.IFeatureModel;
+import de.featjar.feature.model.IFeatureTree;
+import de.featjar.feature.model.StructuralHashes;
+import de.featjar.feature.model.jfr.MutationEvent;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Computes and applies edit scripts between two versions of a feature model.
+ * Features are matched by name, so identifiers may differ between the versions.
+ * An unmatched feature that takes the place of an unmatched feature below the same parent is considered renamed.
+ * Matched subtrees with equal {@link IFeatureTree#getStructuralHash() structural hashes} are skipped without
+ * traversal.
+ * Among the children of each parent, the longest subsequence that keeps its order stays in place, and only the
+ * remaining children are moved, so the number of moves is minimal for each parent.
+ * Constraints are matched by {@link IConstraint#getCanonicalHash() canonical hash}, then by explicit name, then in
+ * order; the order of constraints is not part of the diff.
+ * Only features in the feature tree are considered.
+ */
+public class FeatureModelDiff {
+
+    private final IFeatureModel oldFeatureModel;
+    private final IFeatureModel newFeatureModel;
+    private final Map<String, IFeatureTree> oldNodes = new HashMap<>();
+    private final Map<String, IFeatureTree> newNodes = new HashMap<>();
+    private final Set<String> renamedOldNames = new HashSet<>();
+    private final List<FeatureModelEdit> renames = new ArrayList<>();
+    private final List<FeatureModelEdit> treeEdits = new ArrayList<>();
+
+    private FeatureModelDiff(IFeatureModel oldFeatureModel, IFeatureModel newFeatureModel) {
+        this.oldFeatureModel = Objects.requireNonNull(oldFeatureModel);
+        this.newFeatureModel = Objects.requireNonNull(newFeatureModel);
+    }
+
+    /**
+     * Computes an edit script that transforms one feature model into another.
+     * Renames come first, followed by removals, then additions, moves, and changes in preorder of the new feature
+     * tree, and finally constraint edits.
+     *
+     * @param oldFeatureModel the old feature model
+     * @param newFeatureModel the new feature model
+     * @return the edit script
+     * @throws IllegalArgumentException if a feature name occurs more than once in a feature tree
+     */
+    public static List<FeatureModelEdit> diff(IFeatureModel oldFeatureModel, IFeatureModel newFeatureModel) {
+        return new FeatureModelDiff(oldFeatureModel, newFeatureModel).diff();
+    }
+
+    private List<FeatureModelEdit> diff() {
+        index(oldFeatureModel, oldNodes);
+        index(newFeatureModel, newNodes);
+
+        diffChildren(null, oldFeatureModel.getRoots(), null, newFeatureModel.getRoots());
+
+        List<FeatureModelEdit> edits = new ArrayList<>(renames);
+        for (IFeatureTree root : oldFeatureModel.getRoots()) {
+            ArrayDeque<IFeatureTree> stack = new ArrayDeque<>();
+            stack.push(root);
+            while (!stack.isEmpty()) {
+                IFeatureTree node = stack.pop();
+                String name = getName(node);
+                if (!newNodes.containsKey(name) && !renamedOldNames.contains(name)) {
+                    edits.add(FeatureModelEdit.removeFeature(name));
+                }
+                List<? extends IFeatureTree> children = node.getChildren();
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    stack.push(children.get(i));
+                }
+            }
+        }
+        edits.addAll(treeEdits);
+        diffConstraints(edits);
+        return edits;
+    }
+
+    private static void index(IFeatureModel featureModel, Map<String, IFeatureTree> nodes) {
+        featureModel.getFeatureTreeStream().forEach(node -> {
+            if (nodes.put(getName(node), node) != null) {
+                throw new IllegalArgumentException("duplicate feature name " + getName(node));
+            }
+        });
+    }
+
+    private static String getName(IFeatureTree node) {
+        return node.getFeature().getName().orElse("");
+    }
+
+    private IFeatureTree match(List<? extends IFeatureTree> oldChildren, IFeatureTree node, int index) {
+        IFeatureTree oldNode = oldNodes.get(getName(node));
+        if (oldNode != null) {
+            return oldNode;
+        }
+        if (index < oldChildren.size()) {
+            IFeatureTree candidate = oldChildren.get(index);
+            String candidateName = getName(candidate);
+            if (!newNodes.containsKey(candidateName) && renamedOldNames.add(candidateName)) {
+                renames.add(FeatureModelEdit.renameFeature(candidateName, getName(node)));
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private void diffChildren(
+            IFeatureTree oldParent,
+            List<? extends IFeatureTree> oldChildren,
+            IFeatureTree newParent,
+            List<? extends IFeatureTree> newChildren) {
+        int size = newChildren.size();
+        IFeatureTree[] matched = new IFeatureTree[size];
+        int[] oldIndices = new int[size];
+        Map<IFeatureTree, Integer> oldChildIndices = new IdentityHashMap<>(oldChildren.size() * 2);
+        for (int i = 0; i < oldChildren.size(); i++) {
+            oldChildIndices.put(oldChildren.get(i), i);
+        }
+        for (int i = 0; i < size; i++) {
+            matched[i] = oldParent == null && newParent != null
+                    ? oldNodes.get(getName(newChildren.get(i)))
+                    : match(oldChildren, newChildren.get(i), i);
+            Integer oldIndex = matched[i] == null ? null : oldChildIndices.get(matched[i]);
+            oldIndices[i] = oldIndex == null ? -1 : oldIndex;
+        }
+        boolean[] inPlace = longestIncreasingSubsequence(oldIndices);
+
+        String parentName = newParent == null ? null : getName(newParent);
+        for (int i = 0; i < size; i++) {
+            IFeatureTree node = newChildren.get(i);
+            IFeatureTree oldNode = matched[i];
+            String name = getName(node);
+            String predecessorName = i == 0 ? null : getName(newChildren.get(i - 1));
+            if (oldNode == null) {
+                treeEdits.add(FeatureModelEdit.addFeature(
+                        name,
+                        parentName,
+                        predecessorName,
+                        node.getGroupID(),
+                        Range.of(node.getFeatureRangeLowerBound(), node.getFeatureRangeUpperBound()),
+                        getGroupRanges(node),
+                        node.getFeature().getType(),
+                        getAttributes(node.getFeature()),
+                        getTreeAttributes(node)));
+                diffChildren(null, List.of(), node, node.getChildren());
+                continue;
+            }
+            if (!inPlace[i]) {
+                treeEdits.add(FeatureModelEdit.moveFeature(name, parentName, predecessorName, node.getGroupID()));
+            }
+            if (oldNode.getStructuralHash() == node.getStructuralHash()) {
+                continue;
+            }
+            boolean groupIDChanged = inPlace[i] && newParent != null && oldNode.getGroupID() != node.getGroupID();
+            if (groupIDChanged || !equalGroups(oldNode, node)) {
+                treeEdits.add(FeatureModelEdit.changeGroup(name, node.getGroupID(), getGroupRanges(node)));
+            }
+            if (oldNode.getFeatureRangeLowerBound() != node.getFeatureRangeLowerBound()
+                    || oldNode.getFeatureRangeUpperBound() != node.getFeatureRangeUpperBound()
+                    || !Objects.equals(oldNode.getFeature().getType(), node.getFeature().getType())
+                    || StructuralHashes.ofAttributes(getAttributes(oldNode.getFeature()), null)
+                            != StructuralHashes.ofAttributes(getAttributes(node.getFeature()), null)
+                    || StructuralHashes.ofAttributes(getTreeAttributes(oldNode), null)
+                            != StructuralHashes.ofAttributes(getTreeAttributes(node), null)) {
+                treeEdits.add(FeatureModelEdit.changeFeature(
+                        name,
+                        Range.of(node.getFeatureRangeLowerBound(), node.getFeatureRangeUpperBound()),
+                        node.getFeature().getType(),
+                        getAttributes(node.getFeature()),
+                        getTreeAttributes(node)));
+            }
+            diffChildren(oldNode, oldNode.getChildren(), node, node.getChildren());
+        }
+    }
+
+    /**
+     * Marks a longest strictly increasing subsequence of non-negative values in O(n log n).
+     */
+    private static boolean[] longestIncreasingSubsequence(int[] values) {
+        int n = values.length;
+        boolean[] marked = new boolean[n];
+        int[] tails = new int[n];
+        int[] predecessors = new int[n];
+        int length = 0;
+        for (int i = 0; i < n; i++) {
+            if (values[i] < 0) {
+                continue;
+            }
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (values[tails[middle]] < values[i]) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            predecessors[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+        for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = predecessors[i]) {
+            marked[i] = true;
+        }
+        return marked;
+    }
+
+    private static boolean equalGroups(IFeatureTree node, IFeatureTree otherNode) {
+        List<Group> groups = node.getGroups();
+        List<Group> otherGroups = otherNode.getGroups();
+        if (groups.size() != otherGroups.size()) {
+            return false;
+        }
+        for (int i = 0; i < groups.size(); i++) {
+            if (groups.get(i).getLowerBound() != otherGroups.get(i).getLowerBound()
+                    || groups.get(i).getUpperBound() != otherGroups.get(i).getUpperBound()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<Range> getGroupRanges(IFeatureTree node) {
+        List<Group> groups = node.getGroups();
+        List<Range> ranges = new ArrayList<>(groups.size());
+        for (Group group : groups) {
+            ranges.add(Range.of(group.getLowerBound(), group.getUpperBound()));
+        }
+        return ranges;
+    }
+
+    private static Map<IAttribute<?>, Object> getAttributes(IFeature feature) {
+        Map<IAttribute<?>, Object> attributes = new LinkedHashMap<>(feature.getAttributes().orElse(Map.of()));
+        attributes.remove(Attributes.NAME);
+        return attributes;
+    }
+
+    private static Map<IAttribute<?>, Object> getTreeAttributes(IFeatureTree node) {
+        return new LinkedHashMap<>(node.getAttributes().orElse(Map.of()));
+    }
+
+    private static Map<IAttribute<?>, Object> getAttributes(IConstraint constraint) {
+        return new LinkedHashMap<>(constraint.getAttributes().orElse(Map.of()));
+    }
+
+    private void diffConstraints(List<FeatureModelEdit> edits) {
+        List<IConstraint> oldConstraints = new ArrayList<>(oldFeatureModel.getConstraints());
+        List<IConstraint> newConstraints = new ArrayList<>(newFeatureModel.getConstraints());
+        boolean[] oldMatched = new boolean[oldConstraints.size()];
+        Map<Long, ArrayDeque<Integer>> oldByHash = new HashMap<>();
+        for (int i = 0; i < oldConstraints.size(); i++) {
+            oldByHash
+                    .computeIfAbsent(oldConstraints.get(i).getCanonicalHash(), h -> new ArrayDeque<>())
+                    .add(i);
+        }
+        List<Integer> unmatchedNew = new ArrayList<>();
+        for (int i = 0; i < newConstraints.size(); i++) {
+            IConstraint constraint = newConstraints.get(i);
+            ArrayDeque<Integer> candidates = oldByHash.get(constraint.getCanonicalHash());
+            if (candidates == null || candidates.isEmpty()) {
+                unmatchedNew.add(i);
+                continue;
+            }
+            int oldIndex = candidates.poll();
+            oldMatched[oldIndex] = true;
+            Map<IAttribute<?>, Object> attributes = getAttributes(constraint);
+            if (StructuralHashes.ofAttributes(getAttributes(oldConstraints.get(oldIndex)), null)
+                    != StructuralHashes.ofAttributes(attributes, null)) {
+                edits.add(FeatureModelEdit.modifyConstraint(oldIndex, constraint.getFormula(), attributes));
+            }
+        }
+
+        Map<Object, ArrayDeque<Integer>> oldByName = new HashMap<>();
+        for (int i = 0; i < oldConstraints.size(); i++) {
+            Object name = getAttributes(oldConstraints.get(i)).get(Attributes.NAME);
+            if (!oldMatched[i] && name != null) {
+                oldByName.computeIfAbsent(name, n -> new ArrayDeque<>()).add(i);
+            }
+        }
+        List<Integer> unnamedNew = new ArrayList<>();
+        for (int i : unmatchedNew) {
+            IConstraint constraint = newConstraints.get(i);
+            Object name = getAttributes(constraint).get(Attributes.NAME);
+            ArrayDeque<Integer> candidates = name == null ? null : oldByName.get(name);
+            if (candidates == null || candidates.isEmpty()) {
+                unnamedNew.add(i);
+                continue;
+            }
+            int oldIndex = candidates.poll();
+            oldMatched[oldIndex] = true;
+            edits.add(FeatureModelEdit.modifyConstraint(
+                    oldIndex, constraint.getFormula(), getAttributes(constraint)));
+        }
+
+        int next = 0;
+        List<Integer> removed = new ArrayList<>();
+        for (int i : unnamedNew) {
+            IConstraint constraint = newConstraints.get(i);
+            while (next < oldMatched.length && oldMatched[next]) {
+                next++;
+            }
+            if (next < oldMatched.length) {
+                oldMatched[next] = true;
+                edits.add(FeatureModelEdit.modifyConstraint(next, constraint.getFormula(), getAttributes(constraint)));
+            } else {
+                edits.add(FeatureModelEdit.addConstraint(constraint.getFormula(), getAttributes(constraint)));
+            }
+        }
+        for (int i = 0; i < oldMatched.length; i++) {
+            if (!oldMatched[i]) {
+                removed.add(i);
+            }
+        }
+        int firstAdd = edits.size();
+        while (firstAdd > 0 && edits.get(firstAdd - 1).getKind() == FeatureModelEdit.Kind.ADD_CONSTRAINT) {
+            firstAdd--;
+        }
+        List<FeatureModelEdit> removals = new ArrayList<>(removed.size());
+        for (int i : removed) {
+            removals.add(FeatureModelEdit.removeConstraint(i));
+        }
+        edits.addAll(firstAdd, removals);
+    }
+
+    /**
+     * Applies an edit script to a feature model.
+     * Constraint indices refer to the order of constraints before the script is applied.
+     * Features are looked up by name and tree nodes through their features, so the effort is proportional to the
+     * number of edits rather than to the size of the feature model.
+     *
+     * @param featureModel the feature model
+     * @param edits the edit script, as computed by {@link #diff(IFeatureModel, IFeatureModel)}
+     * @throws IllegalArgumentException if an edit refers to an unknown feature or constraint
+     */
+    public static void apply(IFeatureModel featureModel, List<FeatureModelEdit> edits) {
+        MutationEvent event = new MutationEvent();
+        event.begin();
+        List<IConstraint> constraints = null;
+        List<IConstraint> removedConstraints = new ArrayList<>();
+        for (FeatureModelEdit edit : edits) {
+            switch (edit.getKind()) {
+                case RENAME_FEATURE:
+                    getNode(featureModel, edit.getName()).getFeature().mutate().setName(edit.getNewName());
+                    break;
+                case REMOVE_FEATURE: {
+                    IFeatureTree node = getNode(featureModel, edit.getName());
+                    splice(featureModel, node);
+                    featureModel.mutate().removeFeature(node.getFeature());
+                    break;
+                }
+                case ADD_FEATURE: {
+                    IFeature feature = featureModel.mutate().addFeature(edit.getName());
+                    if (edit.getType() != null) {
+                        feature.mutate().setType(edit.getType());
+                    }
+                    setAttributes(featureModel, feature, edit.getAttributes());
+                    IFeatureTree node;
+                    if (edit.getParentName() == null) {
+                        node = featureModel.mutate().addFeatureTreeRoot(feature);
+                        insertRoot(featureModel, node, edit.getPredecessorName());
+                    } else {
+                        IFeatureTree parent = getNode(featureModel, edit.getParentName());
+                        node = parent.mutate()
+                                .addFeatureBelow(
+                                        feature,
+                                        getInsertionIndex(featureModel, parent, edit.getPredecessorName()),
+                                        edit.getGroupID());
+                    }
+                    node.mutate().setFeatureRange(edit.getFeatureRange());
+                    setGroups(node, edit.getGroups());
+                    setAttributes(featureModel, node, edit.getTreeAttributes());
+                    break;
+                }
+                case MOVE_FEATURE: {
+                    IFeatureTree node = getNode(featureModel, edit.getName());
+                    detach(featureModel, node);
+                    if (edit.getParentName() == null) {
+                        featureModel.mutate().addFeatureTreeRoot(node);
+                        insertRoot(featureModel, node, edit.getPredecessorName());
+                    } else {
+                        IFeatureTree parent = getNode(featureModel, edit.getParentName());
+                        parent.mutate()
+                                .addChild(getInsertionIndex(featureModel, parent, edit.getPredecessorName()), node);
+                        node.mutate().setGroupID(edit.getGroupID());
+                    }
+                    break;
+                }
+                case CHANGE_GROUP: {
+                    IFeatureTree node = getNode(featureModel, edit.getName());
+                    setGroups(node, edit.getGroups());
+                    if (node.getParent().isPresent()) {
+                        node.mutate().setGroupID(edit.getGroupID());
+                    }
+                    break;
+                }
+                case CHANGE_FEATURE: {
+                    IFeatureTree node = getNode(featureModel, edit.getName());
+                    node.mutate().setFeatureRange(edit.getFeatureRange());
+                    node.getFeature().mutate().setType(edit.getType());
+                    setAttributes(featureModel, node.getFeature(), edit.getAttributes());
+                    setAttributes(featureModel, node, edit.getTreeAttributes());
+                    break;
+                }
+                case MODIFY_CONSTRAINT: {
+                    if (constraints == null && !(featureModel instanceof FeatureModel)) {
+                        constraints = new ArrayList<>(featureModel.getConstraints());
+                    }
+                    IConstraint constraint = getConstraint(featureModel, constraints, edit.getConstraintIndex());
+                    constraint.mutate().setFormula(Trees.clone(edit.getFormula()));
+                    setAttributes(featureModel, constraint, edit.getAttributes());
+                    break;
+                }
+                case REMOVE_CONSTRAINT:
+                    if (constraints == null && !(featureModel instanceof FeatureModel)) {
+                        constraints = new ArrayList<>(featureModel.getConstraints());
+                    }
+                    removedConstraints.add(getConstraint(featureModel, constraints, edit.getConstraintIndex()));
+                    break;
+                case ADD_CONSTRAINT: {
+                    IConstraint constraint = featureModel.mutate().addConstraint(edit.getFormula());
+                    setAttributes(featureModel, constraint, edit.getAttributes());
+                    break;
+                }
+                default:
+                    throw new IllegalStateException(String.valueOf(edit.getKind()));
+            }
+        }
+        for (IConstraint constraint : removedConstraints) {
+            featureModel.mutate().removeConstraint(constraint);
+        }
+        if (event.shouldCommit()) {
+            event.operation = "apply";
+            event.elements = edits.size();
+            event.commit();
+        }
+    }
+
+    private static IFeatureTree getNode(IFeatureModel featureModel, String name) {
+        return featureModel
+                .getFeature(name)
+                .flatMap(IFeature::getFeatureTree)
+                .orElseThrow(p -> new IllegalArgumentException("unknown feature " + name));
+    }
+
+    /**
+     * Looks up a constraint by its index before the script is applied.
+     * Added constraints are appended and removed constraints are only removed after the script, so the indices stay
+     * valid throughout. A {@link FeatureModel} resolves them directly; other feature models through a copy of their
+     * constraints.
+     */
+    private static IConstraint getConstraint(IFeatureModel featureModel, List<IConstraint> constraints, int index) {
+        if (constraints == null) {
+            return ((FeatureModel) featureModel)
+                    .getConstraint(index)
+                    .orElseThrow(p -> new IllegalArgumentException("unknown constraint " + index));
+        }
+        if (index < 0 || index >= constraints.size()) {
+            throw new IllegalArgumentException("unknown constraint " + index);
+        }
+        return constraints.get(index);
+    }
+
+    private static void detach(IFeatureModel featureModel, IFeatureTree node) {
+        if (node.getParent().isPresent()) {
+            node.getParent().get().removeChild(node);
+        } else {
+            featureModel.mutate().removeFeatureTreeRoot(node);
+        }
+    }
+
+    /**
+     * Detaches a node and puts its children in its place, so that they stay reachable until they are moved or
+     * removed by later edits.
+     */
+    private static void splice(IFeatureModel featureModel, IFeatureTree node) {
+        List<IFeatureTree> children = new ArrayList<>(node.getChildren());
+        for (IFeatureTree child : children) {
+            node.removeChild(child);
+        }
+        if (node.getParent().isPresent()) {
+            IFeatureTree parent = node.getParent().get();
+            int index = parent.getChildIndex(node).orElseThrow();
+            parent.removeChild(node);
+            for (IFeatureTree child : children) {
+                parent.mutate().addChild(index++, child);
+            }
+        } else {
+            featureModel.mutate().removeFeatureTreeRoot(node);
+            for (IFeatureTree child : children) {
+                featureModel.mutate().addFeatureTreeRoot(child);
+            }
+        }
+    }
+
+    private static int getInsertionIndex(IFeatureModel featureModel, IFeatureTree parent, String predecessorName) {
+        if (predecessorName == null) {
+            return 0;
+        }
+        return parent.getChildIndex(getNode(featureModel, predecessorName)).orElseThrow() + 1;
+    }
+
+    private static void insertRoot(IFeatureModel featureModel, IFeatureTree root, String predecessorName) {
+        featureModel.mutate().removeFeatureTreeRoot(root);
+        int index = 0;
+        if (predecessorName != null) {
+            IFeatureTree predecessor = getNode(featureModel, predecessorName);
+            List<IFeatureTree> roots = featureModel.getRoots();
+            while (index < roots.size() && roots.get(index) != predecessor) {
+                index++;
+            }
+            if (index == roots.size()) {
+                throw new IllegalArgumentException("feature " + predecessorName + " is not a root");
+            }
+            index++;
+        }
+        featureModel.mutate().addFeatureTreeRoot(index, root);
+    }
+
+    private static void setGroups(IFeatureTree node, List<Range> groups) {
+        node.mutate().setGroups(List.of());
+        for (Range group : groups) {
+            node.mutate().addGroup(group);
+        }
+    }
+
+    /**
+     * Replaces all attributes of an element except its name, resolving features in attribute values by name.
+     */
+    @SuppressWarnings("unchecked")
+    private static void setAttributes(
+            IFeatureModel featureModel,
+            IAttributable element,
+            Map<IAttribute<?>, Object> attributes) {
+        Map<IAttribute<?>, Object> oldAttributes = element.getAttributes().orElse(Map.of());
+        for (IAttribute<?> attribute : new ArrayList<>(oldAttributes.keySet())) {
+            if (!attributes.containsKey(attribute) && !Attributes.NAME.equals(attribute)) {
+                element.mutate().removeAttributeValue((Attribute<?>) attribute);
+            }
+        }
+        for (Entry<IAttribute<?>, Object> entry : attributes.entrySet()) {
+            Object value = translate(featureModel, entry.getValue());
+            if (Attributes.NAME.equals(entry.getKey()) && element instanceof IConstraint) {
+                ((IConstraint) element).mutate().setName((String) value);
+            } else if (!Attributes.NAME.equals(entry.getKey())
+                    && !Objects.equals(value, oldAttributes.get(entry.getKey()))) {
+                element.mutate().setAttributeValue((Attribute<Object>) entry.getKey(), value);
+            }
+        }
+    }
+
+    private static Object translate(IFeatureModel featureModel, Object value) {
+        if (value instanceof LinkedHashSet) {
+            return new LinkedHashSet<>((Collection<?>) value);
+        } else if (value instanceof List) {
+            List<Object> list = new ArrayList<>(((List<?>) value).size());
+            for (Object element : (List<?>) value) {
+                if (element instanceof IFeature) {
+                    list.add(getFeature(featureModel, ((IFeature) element).getName().orElse("")));
+                } else if (element instanceof FeatureModelEdit.FeatureReference) {
+                    list.add(getFeature(featureModel, ((FeatureModelEdit.FeatureReference) element).getName()));
+                } else {
+                    list.add(element);
+                }
+            }
+            return list;
+        }
+        return value;
+    }
+
+    private static IFeature getFeature(IFeatureModel featureModel, String name) {
+        return featureModel
+                .getFeature(name)
+                .orElseThrow(p -> new IllegalArgumentException("unknown feature " + name));
+    }
+}
@@ -0,0 +1,425 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.diff;
+
+import de.featjar.base.data.IAttribute;
+import de.featjar.base.data.Range;
+import de.featjar.formula.structure.IFormula;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A single edit of a feature model, addressing features by name and constraints by their position in the edited
+ * model.
+ * Features are placed relative to their parent and preceding sibling, so edits stay valid regardless of which other
+ * children a parent has while an edit script is applied.
+ *
+ * @see FeatureModelDiff
+ */
+public final class FeatureModelEdit {
+
+    /**
+     * The kind of an edit.
+     */
+    public enum Kind {
+        /**
+         * Adds a feature and its tree node.
+         * Uses name, parent, predecessor, group ID, feature range, groups, type, and attributes.
+         */
+        ADD_FEATURE,
+        /**
+         * Removes a feature and detaches its tree node; uses name.
+         */
+        REMOVE_FEATURE,
+        /**
+         * Moves a tree node, including its subtree; uses name, parent, predecessor, and group ID.
+         */
+        MOVE_FEATURE,
+        /**
+         * Renames a feature; uses name and new name.
+         */
+        RENAME_FEATURE,
+        /**
+         * Changes the groups of a tree node and its group ID in its parent; uses name, group ID, and groups.
+         */
+        CHANGE_GROUP,
+        /**
+         * Changes the feature range, type, and attributes of a feature and its tree node.
+         */
+        CHANGE_FEATURE,
+        /**
+         * Adds a constraint; uses formula and attributes.
+         */
+        ADD_CONSTRAINT,
+        /**
+         * Removes a constraint; uses constraint index.
+         */
+        REMOVE_CONSTRAINT,
+        /**
+         * Replaces formula and attributes of a constraint; uses constraint index, formula, and attributes.
+         */
+        MODIFY_CONSTRAINT
+    }
+
+    /**
+     * A feature in an attribute value, referenced by name.
+     * Used where edits are read without the model they were computed from; resolved by name when applied.
+     */
+    public static final class FeatureReference {
+        private final String name;
+
+        public FeatureReference(String name) {
+            this.name = Objects.requireNonNull(name);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof FeatureReference && name.equals(((FeatureReference) other).name);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private final Kind kind;
+    private final String name;
+    private final String newName;
+    private final String parentName;
+    private final String predecessorName;
+    private final int groupID;
+    private final Range featureRange;
+    private final List<Range> groups;
+    private final Class<?> type;
+    private final Map<IAttribute<?>, Object> attributes;
+    private final Map<IAttribute<?>, Object> treeAttributes;
+    private final int constraintIndex;
+    private final IFormula formula;
+
+    private FeatureModelEdit(
+            Kind kind,
+            String name,
+            String newName,
+            String parentName,
+            String predecessorName,
+            int groupID,
+            Range featureRange,
+            List<Range> groups,
+            Class<?> type,
+            Map<IAttribute<?>, Object> attributes,
+            Map<IAttribute<?>, Object> treeAttributes,
+            int constraintIndex,
+            IFormula formula) {
+        this.kind = Objects.requireNonNull(kind);
+        this.name = name;
+        this.newName = newName;
+        this.parentName = parentName;
+        this.predecessorName = predecessorName;
+        this.groupID = groupID;
+        this.featureRange = featureRange;
+        this.groups = groups == null ? null : Collections.unmodifiableList(groups);
+        this.type = type;
+        this.attributes = attributes == null ? null : Collections.unmodifiableMap(attributes);
+        this.treeAttributes = treeAttributes == null ? null : Collections.unmodifiableMap(treeAttributes);
+        this.constraintIndex = constraintIndex;
+        this.formula = formula;
+    }
+
+    public static FeatureModelEdit addFeature(
+            String name,
+            String parentName,
+            String predecessorName,
+            int groupID,
+            Range featureRange,
+            List<Range> groups,
+            Class<?> type,
+            Map<IAttribute<?>, Object> attributes,
+            Map<IAttribute<?>, Object> treeAttributes) {
+        return new FeatureModelEdit(
+                Kind.ADD_FEATURE,
+                Objects.requireNonNull(name),
+                null,
+                parentName,
+                predecessorName,
+                groupID,
+                Objects.requireNonNull(featureRange),
+                Objects.requireNonNull(groups),
+                type,
+                Objects.requireNonNull(attributes),
+                Objects.requireNonNull(treeAttributes),
+                -1,
+                null);
+    }
+
+    public static FeatureModelEdit removeFeature(String name) {
+        return new FeatureModelEdit(
+                Kind.REMOVE_FEATURE,
+                Objects.requireNonNull(name),
+                null,
+                null,
+                null,
+                0,
+                null,
+                null,
+                null,
+                null,
+                null,
+                -1,
+                null);
+    }
+
+    public static FeatureModelEdit moveFeature(String name, String parentName, String predecessorName, int groupID) {
+        return new FeatureModelEdit(
+                Kind.MOVE_FEATURE,
+                Objects.requireNonNull(name),
+                null,
+                parentName,
+                predecessorName,
+                groupID,
+                null,
+                null,
+                null,
+                null,
+                null,
+                -1,
+                null);
+    }
+
+    public static FeatureModelEdit renameFeature(String name, String newName) {
+        return new FeatureModelEdit(
+                Kind.RENAME_FEATURE,
+                Objects.requireNonNull(name),
+                Objects.requireNonNull(newName),
+                null,
+                null,
+                0,
+                null,
+                null,
+                null,
+                null,
+                null,
+                -1,
+                null);
+    }
+
+    public static FeatureModelEdit changeGroup(String name, int groupID, List<Range> groups) {
+        return new FeatureModelEdit(
+                Kind.CHANGE_GROUP,
+                Objects.requireNonNull(name),
+                null,
+                null,
+                null,
+                groupID,
+                null,
+                Objects.requireNonNull(groups),
+                null,
+                null,
+                null,
+                -1,
+                null);
+    }
+
+    public static FeatureModelEdit changeFeature(
+            String name,
+            Range featureRange,
+            Class<?> type,
+            Map<IAttribute<?>, Object> attributes,
+            Map<IAttribute<?>, Object> treeAttributes) {
+        return new FeatureModelEdit(
+                Kind.CHANGE_FEATURE,
+                Objects.requireNonNull(name),
+                null,
+                null,
+                null,
+                0,
+                Objects.requireNonNull(featureRange),
+                null,
+                type,
+                Objects.requireNonNull(attributes),
+                Objects.requireNonNull(treeAttributes),
+                -1,
+                null);
+    }
+
+    public static FeatureModelEdit addConstraint(IFormula formula, Map<IAttribute<?>, Object> attributes) {
+        return new FeatureModelEdit(
+                Kind.ADD_CONSTRAINT,
+                null,
+                null,
+                null,
+                null,
+                0,
+                null,
+                null,
+                null,
+                Objects.requireNonNull(attributes),
+                null,
+                -1,
+                Objects.requireNonNull(formula));
+    }
+
+    public static FeatureModelEdit removeConstraint(int constraintIndex) {
+        return new FeatureModelEdit(
+                Kind.REMOVE_CONSTRAINT,
+                null,
+                null,
+                null,
+                null,
+                0,
+                null,
+                null,
+                null,
+                null,
+                null,
+                constraintIndex,
+                null);
+    }
+
+    public static FeatureModelEdit modifyConstraint(
+            int constraintIndex, IFormula formula, Map<IAttribute<?>, Object> attributes) {
+        return new FeatureModelEdit(
+                Kind.MODIFY_CONSTRAINT,
+                null,
+                null,
+                null,
+                null,
+                0,
+                null,
+                null,
+                null,
+                Objects.requireNonNull(attributes),
+                null,
+                constraintIndex,
+                Objects.requireNonNull(formula));
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns the name of the edited feature.
+     * For {@link Kind#RENAME_FEATURE} and {@link Kind#REMOVE_FEATURE}, this is the name in the edited model,
+     * otherwise it is the name after all renames.
+     *
+     * @return the name of the edited feature
+     */
+    public String getName() {
+        return name;
+    }
+
+    public String getNewName() {
+        return newName;
+    }
+
+    /**
+     * Returns the name of the new parent, or null if the feature becomes a root.
+     *
+     * @return the name of the new parent
+     */
+    public String getParentName() {
+        return parentName;
+    }
+
+    /**
+     * Returns the name of the preceding sibling, or null if the feature becomes the first child or root.
+     *
+     * @return the name of the preceding sibling
+     */
+    public String getPredecessorName() {
+        return predecessorName;
+    }
+
+    public int getGroupID() {
+        return groupID;
+    }
+
+    public Range getFeatureRange() {
+        return featureRange;
+    }
+
+    public List<Range> getGroups() {
+        return groups;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * Returns the attributes of the feature or constraint, excluding feature names.
+     *
+     * @return the attributes of the feature
+     */
+    public Map<IAttribute<?>, Object> getAttributes() {
+        return attributes;
+    }
+
+    public Map<IAttribute<?>, Object> getTreeAttributes() {
+        return treeAttributes;
+    }
+
+    public int getConstraintIndex() {
+        return constraintIndex;
+    }
+
+    public IFormula getFormula() {
+        return formula;
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case ADD_FEATURE:
+                return String.format(
+                        "%s(%s, parent=%s, after=%s, group=%d)", kind, name, parentName, predecessorName, groupID);
+            case MOVE_FEATURE:
+                return String.format(
+                        "%s(%s, parent=%s, after=%s, group=%d)", kind, name, parentName, predecessorName, groupID);
+            case RENAME_FEATURE:
+                return String.format("%s(%s -> %s)", kind, name, newName);
+            case CHANGE_GROUP:
+                return String.format("%s(%s, group=%d, groups=%s)", kind, name, groupID, groups);
+            case CHANGE_FEATURE:
+                return String.format("%s(%s, range=%s)", kind, name, featureRange);
+            case ADD_CONSTRAINT:
+                return String.format("%s(%s)", kind, formula);
+            case REMOVE_CONSTRAINT:
+                return String.format("%s(%d)", kind, constraintIndex);
+            case MODIFY_CONSTRAINT:
+                return String.format("%s(%d, %s)", kind, constraintIndex, formula);
+            default:
+                return String.format("%s(%s)", kind, name);
+        }
+    }
+}
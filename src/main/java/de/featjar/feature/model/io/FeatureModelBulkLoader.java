@@ -0,0 +1,437 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.io;
+
+import de.featjar.base.FeatJAR;
+import de.featjar.base.data.Problem;
+import de.featjar.base.data.Result;
+import de.featjar.base.io.IO;
+import de.featjar.base.io.format.AFormats;
+import de.featjar.base.io.format.IFormat;
+import de.featjar.feature.model.IFeatureModel;
+import de.featjar.feature.model.io.xml.XMLFeatureModelFormat;
+import de.featjar.feature.model.metrics.IMetricsListener;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Loads many feature model files concurrently.
+ * Files are discovered by the file extensions of the given formats,
+ * the format of each file is detected with {@link IFormat#getInputHeaderPattern()},
+ * and files are parsed concurrently with at most {@link #setMaxInFlight(int) a bounded number} of files in memory.
+ * On Java 21 and newer, each file is parsed on its own virtual thread; otherwise, a fixed thread pool is used.
+ * Each parsed feature model is passed to a consumer and not retained by the loader, so only the per-file status
+ * and problems are kept for the whole batch.
+ * A file that cannot be read or parsed only fails its own {@link FileResult}, never the whole batch.
+ */
+public class FeatureModelBulkLoader {
+
+    /**
+     * Number of bytes read from the start of a file to detect its format.
+     */
+    public static final int HEADER_SIZE = 4096;
+
+    /**
+     * The outcome of loading a single file.
+     */
+    public static final class FileResult {
+        private final Path path;
+        private final String formatName;
+        private final boolean success;
+        private final List<Problem> problems;
+        private final long bytes;
+        private final long nanos;
+
+        private FileResult(
+                Path path, String formatName, boolean success, List<Problem> problems, long bytes, long nanos) {
+            this.path = path;
+            this.formatName = formatName;
+            this.success = success;
+            this.problems = Collections.unmodifiableList(problems);
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+
+        private FileResult(Path path, Problem problem) {
+            this(path, null, false, List.of(problem), 0, 0);
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * @return the name of the detected format, or {@code null} if no format was detected
+         */
+        public String getFormatName() {
+            return formatName;
+        }
+
+        public List<Problem> getProblems() {
+            return problems;
+        }
+
+        /**
+         * @return whether the file was parsed and its feature model was accepted by the consumer
+         */
+        public boolean isSuccess() {
+            return success;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "FileResult{path=%s, format=%s, success=%s, problems=%s}",
+                    path, formatName, isSuccess(), getProblems());
+        }
+    }
+
+    /**
+     * The outcome of loading a batch of files, including aggregate throughput.
+     */
+    public static final class Summary {
+        private final List<FileResult> results;
+        private final long nanos;
+
+        private Summary(List<FileResult> results, long nanos) {
+            this.results = Collections.unmodifiableList(results);
+            this.nanos = nanos;
+        }
+
+        public List<FileResult> getResults() {
+            return results;
+        }
+
+        public List<FileResult> getFailures() {
+            return results.stream().filter(r -> !r.isSuccess()).collect(Collectors.toList());
+        }
+
+        public int getSuccessCount() {
+            return (int) results.stream().filter(FileResult::isSuccess).count();
+        }
+
+        public int getFailureCount() {
+            return results.size() - getSuccessCount();
+        }
+
+        public long getBytes() {
+            return results.stream().mapToLong(FileResult::getBytes).sum();
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public double getFilesPerSecond() {
+            return nanos == 0 ? 0 : results.size() / (nanos / 1e9);
+        }
+
+        public double getMegabytesPerSecond() {
+            return nanos == 0 ? 0 : getBytes() / (1024.0 * 1024.0) / (nanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    Locale.ROOT,
+                    "loaded %d files (%d failed, %.1f MB) in %.2f s: %.1f files/s, %.2f MB/s",
+                    results.size(),
+                    getFailureCount(),
+                    getBytes() / (1024.0 * 1024.0),
+                    nanos / 1e9,
+                    getFilesPerSecond(),
+                    getMegabytesPerSecond());
+        }
+    }
+
+    private final List<IFormat<IFeatureModel>> formats;
+    private int maxInFlight = Math.max(2, 2 * Runtime.getRuntime().availableProcessors());
+    private IMetricsListener metricsListener = IMetricsListener.NONE;
+
+    /**
+     * Creates a bulk loader for all parsing formats registered at the given extension point,
+     * typically {@link FeatureModelFormats}.
+     *
+     * @param formats the extension point
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public FeatureModelBulkLoader(AFormats<?> formats) {
+        this((List) formats.getExtensions());
+    }
+
+    /**
+     * Creates a bulk loader for the given formats.
+     * Formats that do not support parsing are ignored.
+     *
+     * @param formats the formats, in order of precedence for format detection
+     */
+    public FeatureModelBulkLoader(List<? extends IFormat<IFeatureModel>> formats) {
+        this.formats = formats.stream().filter(IFormat::supportsParse).collect(Collectors.toList());
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Sets the maximum number of files that are parsed at the same time, which bounds memory consumption.
+     *
+     * @param maxInFlight the maximum number of concurrently parsed files
+     * @return this loader
+     */
+    public FeatureModelBulkLoader setMaxInFlight(int maxInFlight) {
+        if (maxInFlight < 1) throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * Sets a listener that receives the size of each loaded file,
+     * and is passed to formats that support metrics listeners.
+     *
+     * @param metricsListener the metrics listener
+     * @return this loader
+     */
+    public FeatureModelBulkLoader setMetricsListener(IMetricsListener metricsListener) {
+        this.metricsListener = Objects.requireNonNull(metricsListener);
+        return this;
+    }
+
+    /**
+     * Recursively finds all regular files in a directory whose extension belongs to one of the formats.
+     *
+     * @param directory the directory
+     * @return the sorted list of files
+     * @throws IOException if the directory cannot be walked
+     */
+    public List<Path> discover(Path directory) throws IOException {
+        Set<String> extensions = new LinkedHashSet<>();
+        for (IFormat<IFeatureModel> format : formats) {
+            if (format.getFileExtension() != null) {
+                extensions.add(format.getFileExtension().toLowerCase(Locale.ROOT));
+            }
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(path -> extensions.contains(getFileExtension(path)))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Detects the format of a file by matching its first {@link #HEADER_SIZE} bytes
+     * against the input header pattern of each format.
+     * Formats without a header pattern match any file with their file extension.
+     *
+     * @param file the file
+     * @return the first matching format, or an empty result if no format matches
+     */
+    public Result<IFormat<IFeatureModel>> detectFormat(Path file) {
+        byte[] header;
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            header = inputStream.readNBytes(HEADER_SIZE);
+        } catch (IOException e) {
+            return Result.empty(new Problem(e));
+        }
+        String headerString = new String(header, StandardCharsets.UTF_8);
+        String extension = getFileExtension(file);
+        IFormat<IFeatureModel> fallback = null;
+        for (IFormat<IFeatureModel> format : formats) {
+            Pattern pattern = format.getInputHeaderPattern();
+            if (pattern != null) {
+                if (pattern.matcher(headerString).find()) {
+                    return Result.of(format);
+                }
+            } else if (fallback == null && extension.equalsIgnoreCase(format.getFileExtension())) {
+                fallback = format;
+            }
+        }
+        if (fallback == null) {
+            return Result.empty(new Problem("no format detected for " + file, Problem.Severity.ERROR));
+        }
+        return Result.of(fallback);
+    }
+
+    /**
+     * Discovers and loads all feature model files in a directory.
+     *
+     * @param directory the directory
+     * @param consumer receives the path and feature model of each parsed file, concurrently
+     * @return the summary of the batch
+     * @throws IOException if the directory cannot be walked
+     */
+    public Summary load(Path directory, BiConsumer<Path, IFeatureModel> consumer) throws IOException {
+        return load(discover(directory), consumer);
+    }
+
+    /**
+     * Loads the given files concurrently.
+     * The consumer is called from the loading threads as soon as a file is parsed, so it must be thread-safe.
+     * A consumer that throws an exception fails the result of that file.
+     * The results are in the same order as the files.
+     *
+     * @param files the files
+     * @param consumer receives the path and feature model of each parsed file, concurrently
+     * @return the summary of the batch
+     */
+    public Summary load(List<Path> files, BiConsumer<Path, IFeatureModel> consumer) {
+        Objects.requireNonNull(consumer);
+        FileResult[] results = new FileResult[files.size()];
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        long start = System.nanoTime();
+        ExecutorService executor = newExecutor(maxInFlight);
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                final int index = i;
+                final Path file = files.get(i);
+                try {
+                    inFlight.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    for (int j = index; j < files.size(); j++) {
+                        results[j] = new FileResult(files.get(j), new Problem(e));
+                    }
+                    break;
+                }
+                try {
+                    executor.execute(() -> {
+                        try {
+                            results[index] = loadFile(file, consumer);
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    inFlight.release();
+                    results[index] = new FileResult(file, new Problem(e));
+                }
+            }
+        } finally {
+            executor.shutdown();
+            try {
+                while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    FeatJAR.log().debug("waiting for %d files to be parsed", maxInFlight - inFlight.availablePermits());
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                results[i] =
+                        new FileResult(files.get(i), new Problem("loading was interrupted", Problem.Severity.ERROR));
+            }
+        }
+        Summary summary = new Summary(new ArrayList<>(Arrays.asList(results)), System.nanoTime() - start);
+        FeatJAR.log().info(summary.toString());
+        return summary;
+    }
+
+    protected FileResult loadFile(Path file, BiConsumer<Path, IFeatureModel> consumer) {
+        long start = System.nanoTime();
+        long bytes = 0;
+        String formatName = null;
+        boolean reportsBytes = false;
+        boolean success = false;
+        List<Problem> problems = new ArrayList<>();
+        try {
+            bytes = Files.size(file);
+            Result<IFormat<IFeatureModel>> format = detectFormat(file);
+            problems.addAll(format.getProblems());
+            if (format.isPresent()) {
+                formatName = format.get().getName();
+                IFormat<IFeatureModel> instance = getInstance(format.get());
+                reportsBytes = instance instanceof XMLFeatureModelFormat;
+                Result<IFeatureModel> featureModel = IO.load(file, instance);
+                problems.addAll(featureModel.getProblems());
+                if (featureModel.isPresent()) {
+                    consumer.accept(file, featureModel.get());
+                    success = true;
+                }
+            }
+        } catch (Exception e) {
+            problems.add(new Problem(e));
+        }
+        if (metricsListener.isEnabled() && !reportsBytes) {
+            // the XML format reports the size of its input itself
+            metricsListener.onBytes(formatName != null ? formatName : file.toString(), bytes);
+        }
+        return new FileResult(file, formatName, success, problems, bytes, System.nanoTime() - start);
+    }
+
+    @SuppressWarnings("unchecked")
+    private IFormat<IFeatureModel> getInstance(IFormat<IFeatureModel> format) {
+        IFormat<IFeatureModel> instance = (IFormat<IFeatureModel>) format.getInstance();
+        if (instance instanceof XMLFeatureModelFormat) {
+            ((XMLFeatureModelFormat) instance).setMetricsListener(metricsListener);
+        }
+        return instance;
+    }
+
+    private static String getFileExtension(Path path) {
+        String fileName = path.getFileName().toString();
+        int index = fileName.lastIndexOf('.');
+        return index < 0 ? "" : fileName.substring(index + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private static ExecutorService newExecutor(int parallelism) {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(parallelism, runnable -> {
+                Thread thread = new Thread(runnable, "feature-model-bulk-loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
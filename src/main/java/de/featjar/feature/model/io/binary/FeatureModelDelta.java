@@ -0,0 +1,411 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.io.binary;
+
+import de.featjar.base.data.IAttribute;
+import de.featjar.base.data.Problem;
+import de.featjar.base.data.Range;
+import de.featjar.base.data.Result;
+import de.featjar.feature.model.IFeatureModel;
+import de.featjar.feature.model.StructuralHashes;
+import de.featjar.feature.model.diff.FeatureModelDiff;
+import de.featjar.feature.model.diff.FeatureModelEdit;
+import de.featjar.feature.model.diff.FeatureModelEdit.Kind;
+import de.featjar.feature.model.io.AttributeIO;
+import de.featjar.formula.structure.IFormula;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary delta between two versions of a feature model, for shipping changes instead of whole models.
+ * A delta consists of an {@link FeatureModelDiff edit script} that addresses features by name and constraints by
+ * ordinal, together with the {@link StructuralHashes#ofFeatureModel(IFeatureModel) fingerprints} of the model it
+ * applies to and of the model it produces.
+ * Applying a delta to any other model fails before the model is changed.
+ * Integers are written as variable-length quantities and attributes as in {@link FeatureModelSnapshot}, so a delta
+ * is usually much smaller than a snapshot of the changed model.
+ */
+public class FeatureModelDelta {
+
+    /**
+     * Magic number at the start of every delta ("FMD1").
+     */
+    public static final int MAGIC = 0x464D4431;
+
+    /**
+     * Version of the encoding, increased on every incompatible change.
+     */
+    public static final int VERSION = 2;
+
+    private final long baseFingerprint;
+    private final long targetFingerprint;
+    private final List<FeatureModelEdit> edits;
+
+    public FeatureModelDelta(long baseFingerprint, long targetFingerprint, List<FeatureModelEdit> edits) {
+        this.baseFingerprint = baseFingerprint;
+        this.targetFingerprint = targetFingerprint;
+        this.edits = Collections.unmodifiableList(new ArrayList<>(edits));
+    }
+
+    /**
+     * Computes the delta that transforms one feature model into another.
+     *
+     * @param oldFeatureModel the old feature model
+     * @param newFeatureModel the new feature model
+     * @return the delta
+     * @throws IllegalArgumentException if a feature name occurs more than once in a feature tree
+     */
+    public static FeatureModelDelta diff(IFeatureModel oldFeatureModel, IFeatureModel newFeatureModel) {
+        return new FeatureModelDelta(
+                StructuralHashes.ofFeatureModel(oldFeatureModel),
+                StructuralHashes.ofFeatureModel(newFeatureModel),
+                FeatureModelDiff.diff(oldFeatureModel, newFeatureModel));
+    }
+
+    public long getBaseFingerprint() {
+        return baseFingerprint;
+    }
+
+    public long getTargetFingerprint() {
+        return targetFingerprint;
+    }
+
+    public List<FeatureModelEdit> getEdits() {
+        return edits;
+    }
+
+    public boolean isEmpty() {
+        return edits.isEmpty();
+    }
+
+    /**
+     * Applies this delta to a feature model in place.
+     * Fails without changes if the model's fingerprint differs from the base fingerprint.
+     * If the resulting model's fingerprint differs from the target fingerprint, the model has been changed and
+     * should be discarded.
+     *
+     * @param featureModel the feature model
+     * @return the changed feature model, or a problem
+     */
+    public Result<IFeatureModel> apply(IFeatureModel featureModel) {
+        long fingerprint = StructuralHashes.ofFeatureModel(featureModel);
+        if (fingerprint != baseFingerprint) {
+            return Result.empty(new Problem(
+                    String.format("delta expects base model %016x, but got %016x", baseFingerprint, fingerprint),
+                    Problem.Severity.ERROR));
+        }
+        try {
+            FeatureModelDiff.apply(featureModel, edits);
+        } catch (RuntimeException e) {
+            return Result.empty(new Problem(e));
+        }
+        fingerprint = StructuralHashes.ofFeatureModel(featureModel);
+        if (fingerprint != targetFingerprint) {
+            return Result.empty(new Problem(
+                    String.format("delta produced model %016x instead of %016x", fingerprint, targetFingerprint),
+                    Problem.Severity.ERROR));
+        }
+        return Result.of(featureModel);
+    }
+
+    public byte[] toBytes() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            write(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static FeatureModelDelta fromBytes(byte[] bytes) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Writes this delta.
+     *
+     * @param out the output
+     * @throws IOException if writing fails
+     * @throws IllegalArgumentException if an edit contains an unsupported formula
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(baseFingerprint);
+        out.writeLong(targetFingerprint);
+        writeVarInt(edits.size(), out);
+        for (FeatureModelEdit edit : edits) {
+            writeEdit(edit, out);
+        }
+    }
+
+    /**
+     * Reads a delta.
+     * Features in attribute values are read as {@link FeatureModelEdit.FeatureReference references} and resolved
+     * when the delta is applied.
+     *
+     * @param in the input
+     * @return the delta
+     * @throws IOException if reading fails or the input is not a valid delta
+     */
+    public static FeatureModelDelta read(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a feature model delta");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported delta version " + version);
+        }
+        long baseFingerprint = in.readLong();
+        long targetFingerprint = in.readLong();
+        try {
+            int count = readCount(in);
+            List<FeatureModelEdit> edits = new ArrayList<>(Math.min(count, 1024));
+            for (int i = 0; i < count; i++) {
+                edits.add(readEdit(in));
+            }
+            return new FeatureModelDelta(baseFingerprint, targetFingerprint, edits);
+        } catch (RuntimeException e) {
+            throw new IOException("invalid feature model delta", e);
+        }
+    }
+
+    private static void writeEdit(FeatureModelEdit edit, DataOutput out) throws IOException {
+        out.writeByte(edit.getKind().ordinal());
+        switch (edit.getKind()) {
+            case ADD_FEATURE:
+                out.writeUTF(edit.getName());
+                writeOptionalString(edit.getParentName(), out);
+                writeOptionalString(edit.getPredecessorName(), out);
+                writeVarInt(edit.getGroupID(), out);
+                writeRange(edit.getFeatureRange(), out);
+                writeRanges(edit.getGroups(), out);
+                writeType(edit.getType(), out);
+                FeatureModelSnapshot.writeAttributes(edit.getAttributes(), out);
+                FeatureModelSnapshot.writeAttributes(edit.getTreeAttributes(), out);
+                break;
+            case REMOVE_FEATURE:
+                out.writeUTF(edit.getName());
+                break;
+            case MOVE_FEATURE:
+                out.writeUTF(edit.getName());
+                writeOptionalString(edit.getParentName(), out);
+                writeOptionalString(edit.getPredecessorName(), out);
+                writeVarInt(edit.getGroupID(), out);
+                break;
+            case RENAME_FEATURE:
+                out.writeUTF(edit.getName());
+                out.writeUTF(edit.getNewName());
+                break;
+            case CHANGE_GROUP:
+                out.writeUTF(edit.getName());
+                writeVarInt(edit.getGroupID(), out);
+                writeRanges(edit.getGroups(), out);
+                break;
+            case CHANGE_FEATURE:
+                out.writeUTF(edit.getName());
+                writeRange(edit.getFeatureRange(), out);
+                writeType(edit.getType(), out);
+                FeatureModelSnapshot.writeAttributes(edit.getAttributes(), out);
+                FeatureModelSnapshot.writeAttributes(edit.getTreeAttributes(), out);
+                break;
+            case ADD_CONSTRAINT:
+                FeatureModelSnapshot.writeFormula(edit.getFormula(), out);
+                FeatureModelSnapshot.writeAttributes(edit.getAttributes(), out);
+                break;
+            case REMOVE_CONSTRAINT:
+                writeVarInt(edit.getConstraintIndex(), out);
+                break;
+            case MODIFY_CONSTRAINT:
+                writeVarInt(edit.getConstraintIndex(), out);
+                FeatureModelSnapshot.writeFormula(edit.getFormula(), out);
+                FeatureModelSnapshot.writeAttributes(edit.getAttributes(), out);
+                break;
+            default:
+                throw new IllegalStateException(String.valueOf(edit.getKind()));
+        }
+    }
+
+    private static FeatureModelEdit readEdit(DataInput in) throws IOException {
+        int ordinal = in.readUnsignedByte();
+        Kind[] kinds = Kind.values();
+        if (ordinal >= kinds.length) {
+            throw new IOException("invalid edit kind " + ordinal);
+        }
+        switch (kinds[ordinal]) {
+            case ADD_FEATURE: {
+                String name = in.readUTF();
+                String parentName = readOptionalString(in);
+                String predecessorName = readOptionalString(in);
+                int groupID = readVarInt(in);
+                Range featureRange = readRange(in);
+                List<Range> groups = readRanges(in);
+                Class<?> type = readType(in);
+                Map<IAttribute<?>, Object> attributes = readAttributes(in);
+                Map<IAttribute<?>, Object> treeAttributes = readAttributes(in);
+                return FeatureModelEdit.addFeature(
+                        name, parentName, predecessorName, groupID, featureRange, groups, type, attributes,
+                        treeAttributes);
+            }
+            case REMOVE_FEATURE:
+                return FeatureModelEdit.removeFeature(in.readUTF());
+            case MOVE_FEATURE: {
+                String name = in.readUTF();
+                String parentName = readOptionalString(in);
+                String predecessorName = readOptionalString(in);
+                return FeatureModelEdit.moveFeature(name, parentName, predecessorName, readVarInt(in));
+            }
+            case RENAME_FEATURE: {
+                String name = in.readUTF();
+                return FeatureModelEdit.renameFeature(name, in.readUTF());
+            }
+            case CHANGE_GROUP: {
+                String name = in.readUTF();
+                int groupID = readVarInt(in);
+                return FeatureModelEdit.changeGroup(name, groupID, readRanges(in));
+            }
+            case CHANGE_FEATURE: {
+                String name = in.readUTF();
+                Range featureRange = readRange(in);
+                Class<?> type = readType(in);
+                Map<IAttribute<?>, Object> attributes = readAttributes(in);
+                return FeatureModelEdit.changeFeature(name, featureRange, type, attributes, readAttributes(in));
+            }
+            case ADD_CONSTRAINT: {
+                IFormula formula = FeatureModelSnapshot.readFormula(in);
+                return FeatureModelEdit.addConstraint(formula, readAttributes(in));
+            }
+            case REMOVE_CONSTRAINT:
+                return FeatureModelEdit.removeConstraint(readCount(in));
+            case MODIFY_CONSTRAINT: {
+                int constraintIndex = readCount(in);
+                IFormula formula = FeatureModelSnapshot.readFormula(in);
+                return FeatureModelEdit.modifyConstraint(constraintIndex, formula, readAttributes(in));
+            }
+            default:
+                throw new IllegalStateException(String.valueOf(kinds[ordinal]));
+        }
+    }
+
+    private static Map<IAttribute<?>, Object> readAttributes(DataInput in) throws IOException {
+        return FeatureModelSnapshot.readAttributes(in, FeatureModelEdit.FeatureReference::new);
+    }
+
+    private static void writeOptionalString(String string, DataOutput out) throws IOException {
+        out.writeBoolean(string != null);
+        if (string != null) {
+            out.writeUTF(string);
+        }
+    }
+
+    private static String readOptionalString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeType(Class<?> type, DataOutput out) throws IOException {
+        writeOptionalString(type == null ? null : AttributeIO.getTypeString(type).orElse(null), out);
+    }
+
+    private static Class<?> readType(DataInput in) throws IOException {
+        String typeString = readOptionalString(in);
+        if (typeString == null) {
+            return null;
+        }
+        Result<Class<?>> type = AttributeIO.getType(typeString);
+        if (type.isEmpty()) {
+            throw new IOException("invalid feature type " + typeString);
+        }
+        return type.get();
+    }
+
+    private static void writeRange(Range range, DataOutput out) throws IOException {
+        writeVarInt(range.getLowerBound(), out);
+        writeVarInt(range.getUpperBound(), out);
+    }
+
+    private static Range readRange(DataInput in) throws IOException {
+        int lowerBound = readVarInt(in);
+        return Range.of(lowerBound, readVarInt(in));
+    }
+
+    private static void writeRanges(List<Range> ranges, DataOutput out) throws IOException {
+        writeVarInt(ranges.size(), out);
+        for (Range range : ranges) {
+            writeRange(range, out);
+        }
+    }
+
+    private static List<Range> readRanges(DataInput in) throws IOException {
+        int count = readCount(in);
+        List<Range> ranges = new ArrayList<>(Math.min(count, 1024));
+        for (int i = 0; i < count; i++) {
+            ranges.add(readRange(in));
+        }
+        return ranges;
+    }
+
+    /**
+     * Writes an integer in zigzag encoding with seven bits per byte, so small magnitudes take a single byte.
+     */
+    private static void writeVarInt(int value, DataOutput out) throws IOException {
+        int bits = (value << 1) ^ (value >> 31);
+        while ((bits & ~0x7F) != 0) {
+            out.writeByte((bits & 0x7F) | 0x80);
+            bits >>>= 7;
+        }
+        out.writeByte(bits);
+    }
+
+    private static int readVarInt(DataInput in) throws IOException {
+        int bits = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            bits |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (bits >>> 1) ^ -(bits & 1);
+            }
+        }
+        throw new IOException("invalid variable-length integer");
+    }
+
+    private static int readCount(DataInput in) throws IOException {
+        int count = readVarInt(in);
+        if (count < 0) {
+            throw new IOException("invalid count " + count);
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FeatureModelDelta(%016x -> %016x, %s)", baseFingerprint, targetFingerprint, edits);
+    }
+}
@@ -0,0 +1,652 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.io.binary;
+
+import de.featjar.base.data.Attribute;
+import de.featjar.base.data.IAttributable;
+import de.featjar.base.data.IAttribute;
+import de.featjar.base.data.Range;
+import de.featjar.base.data.Result;
+import de.featjar.base.data.identifier.Identifiers;
+import de.featjar.feature.model.Attributes;
+import de.featjar.feature.model.FeatureModel;
+import de.featjar.feature.model.FeatureTree.Group;
+import de.featjar.feature.model.IConstraint;
+import de.featjar.feature.model.IFeature;
+import de.featjar.feature.model.IFeatureModel;
+import de.featjar.feature.model.IFeatureTree;
+import de.featjar.feature.model.RecursiveAttribute;
+import de.featjar.feature.model.diff.FeatureModelEdit;
+import de.featjar.feature.model.io.AttributeIO;
+import de.featjar.formula.structure.Expressions;
+import de.featjar.formula.structure.IExpression;
+import de.featjar.formula.structure.IFormula;
+import de.featjar.formula.structure.connective.And;
+import de.featjar.formula.structure.connective.AtLeast;
+import de.featjar.formula.structure.connective.AtMost;
+import de.featjar.formula.structure.connective.Between;
+import de.featjar.formula.structure.connective.BiImplies;
+import de.featjar.formula.structure.connective.Choose;
+import de.featjar.formula.structure.connective.Implies;
+import de.featjar.formula.structure.connective.Not;
+import de.featjar.formula.structure.connective.Or;
+import de.featjar.formula.structure.predicate.False;
+import de.featjar.formula.structure.predicate.Literal;
+import de.featjar.formula.structure.predicate.True;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Compact binary encoding of a {@link IFeatureModel}.
+ * Snapshots contain features, the feature tree (feature ranges, groups, and group IDs), constraints, and all
+ * attributes of primitive type, string sets, or feature lists, as well as which attributes are
+ * {@link FeatureModel#isRecursive(IAttribute) recursive}.
+ * Identifiers are not part of a snapshot, so a read model receives fresh identifiers.
+ * Trees are encoded in preorder without recursion, so arbitrarily deep models can be written and read.
+ *
+ * @see de.featjar.feature.model.io.cache.FeatureModelParseCache
+ */
+public class FeatureModelSnapshot {
+
+    /**
+     * Magic number at the start of every snapshot ("FMS1").
+     */
+    public static final int MAGIC = 0x464D5331;
+
+    /**
+     * Version of the encoding, increased on every incompatible change.
+     */
+    public static final int VERSION = 2;
+
+    private static final byte ATTRIBUTE_STRING = 0;
+    private static final byte ATTRIBUTE_BOOLEAN = 1;
+    private static final byte ATTRIBUTE_INTEGER = 2;
+    private static final byte ATTRIBUTE_LONG = 3;
+    private static final byte ATTRIBUTE_FLOAT = 4;
+    private static final byte ATTRIBUTE_DOUBLE = 5;
+    private static final byte ATTRIBUTE_STRING_SET = 6;
+    private static final byte ATTRIBUTE_FEATURE_LIST = 7;
+
+    private static final byte FORMULA_TRUE = 0;
+    private static final byte FORMULA_FALSE = 1;
+    private static final byte FORMULA_LITERAL = 2;
+    private static final byte FORMULA_NOT = 3;
+    private static final byte FORMULA_AND = 4;
+    private static final byte FORMULA_OR = 5;
+    private static final byte FORMULA_IMPLIES = 6;
+    private static final byte FORMULA_BIIMPLIES = 7;
+    private static final byte FORMULA_AT_LEAST = 8;
+    private static final byte FORMULA_AT_MOST = 9;
+    private static final byte FORMULA_BETWEEN = 10;
+    private static final byte FORMULA_CHOOSE = 11;
+
+    public static byte[] toBytes(IFeatureModel featureModel) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            write(featureModel, out);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static IFeatureModel fromBytes(byte[] bytes) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Writes a feature model.
+     *
+     * @param featureModel the feature model
+     * @param out the output
+     * @throws IOException if writing fails
+     * @throws IllegalArgumentException if a constraint contains an unsupported formula or an attribute has a value
+     *     that cannot be encoded
+     */
+    public static void write(IFeatureModel featureModel, DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+
+        Collection<IFeature> features = featureModel.getFeatures();
+        Map<IFeature, Integer> featureIndices = new HashMap<>(features.size() * 2);
+        out.writeInt(features.size());
+        for (IFeature feature : features) {
+            featureIndices.put(feature, featureIndices.size());
+            out.writeUTF(feature.getName().orElse(""));
+            out.writeUTF(feature.getType() == null
+                    ? ""
+                    : AttributeIO.getTypeString(feature.getType()).orElse(""));
+        }
+        // feature attributes follow all feature headers, so that feature lists can be resolved when reading
+        for (IFeature feature : features) {
+            writeAttributes(feature, out);
+        }
+
+        List<IFeatureTree> roots = featureModel.getRoots();
+        out.writeInt(roots.size());
+        ArrayDeque<IFeatureTree> stack = new ArrayDeque<>();
+        for (IFeatureTree root : roots) {
+            stack.push(root);
+            while (!stack.isEmpty()) {
+                IFeatureTree node = stack.pop();
+                Integer featureIndex = featureIndices.get(node.getFeature());
+                if (featureIndex == null) {
+                    throw new IllegalArgumentException("feature tree contains unknown feature " + node.getFeature());
+                }
+                out.writeInt(featureIndex);
+                out.writeInt(node.getGroupID());
+                out.writeInt(node.getFeatureRangeLowerBound());
+                out.writeInt(node.getFeatureRangeUpperBound());
+                List<Group> groups = node.getGroups();
+                out.writeInt(groups.size());
+                for (Group group : groups) {
+                    out.writeInt(group.getLowerBound());
+                    out.writeInt(group.getUpperBound());
+                }
+                writeAttributes(node, out);
+                List<? extends IFeatureTree> children = node.getChildren();
+                out.writeInt(children.size());
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    stack.push(children.get(i));
+                }
+            }
+        }
+
+        Collection<IConstraint> constraints = featureModel.getConstraints();
+        out.writeInt(constraints.size());
+        for (IConstraint constraint : constraints) {
+            writeFormula(constraint.getFormula(), out);
+            writeAttributes(constraint, out);
+        }
+
+        writeAttributes(featureModel, out);
+
+        List<RecursiveAttribute<?>> recursiveAttributes = featureModel instanceof FeatureModel
+                ? ((FeatureModel) featureModel).getRecursiveAttributes()
+                : List.of();
+        out.writeInt(recursiveAttributes.size());
+        for (RecursiveAttribute<?> recursiveAttribute : recursiveAttributes) {
+            IAttribute<?> attribute = recursiveAttribute.getAttribute();
+            out.writeUTF(attribute.getNamespace());
+            out.writeUTF(attribute.getName());
+            out.writeUTF(AttributeIO.getTypeString(attribute.getType())
+                    .orElseThrow(p -> new IllegalArgumentException(
+                            "unsupported type of recursive attribute " + attribute)));
+        }
+    }
+
+    /**
+     * Reads a feature model.
+     *
+     * @param in the input
+     * @return the feature model
+     * @throws IOException if reading fails or the input is not a valid snapshot
+     */
+    public static IFeatureModel read(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a feature model snapshot");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported snapshot version " + version);
+        }
+        try {
+            FeatureModel featureModel = new FeatureModel(Identifiers.newCounterIdentifier());
+
+            int featureCount = readCount(in);
+            List<IFeature> features = new ArrayList<>(featureCount);
+            for (int i = 0; i < featureCount; i++) {
+                IFeature feature = featureModel.mutate().addFeature(in.readUTF());
+                String typeString = in.readUTF();
+                if (!typeString.isEmpty()) {
+                    Result<Class<?>> type = AttributeIO.getType(typeString);
+                    if (type.isEmpty()) {
+                        throw new IOException("invalid feature type " + typeString);
+                    }
+                    feature.mutate().setType(type.get());
+                }
+                features.add(feature);
+            }
+            for (IFeature feature : features) {
+                readAttributes(in, feature, feature.mutate()::setName, featureModel);
+            }
+
+            int rootCount = readCount(in);
+            ArrayDeque<IFeatureTree> parents = new ArrayDeque<>();
+            ArrayDeque<int[]> remainingChildren = new ArrayDeque<>();
+            for (int i = 0; i < rootCount; i++) {
+                IFeatureTree root = readTreeNode(in, featureModel, null, features);
+                pushChildren(in, root, parents, remainingChildren);
+                while (!parents.isEmpty()) {
+                    int[] remaining = remainingChildren.peek();
+                    if (remaining[0] == 0) {
+                        parents.pop();
+                        remainingChildren.pop();
+                        continue;
+                    }
+                    remaining[0]--;
+                    IFeatureTree node = readTreeNode(in, featureModel, parents.peek(), features);
+                    pushChildren(in, node, parents, remainingChildren);
+                }
+            }
+
+            int constraintCount = readCount(in);
+            for (int i = 0; i < constraintCount; i++) {
+                IConstraint constraint = featureModel.mutate().addConstraint(readFormula(in));
+                readAttributes(in, constraint, constraint.mutate()::setName, featureModel);
+            }
+
+            readAttributes(in, featureModel, featureModel.mutate()::setName, featureModel);
+
+            int recursiveAttributeCount = readCount(in);
+            for (int i = 0; i < recursiveAttributeCount; i++) {
+                String namespace = in.readUTF();
+                String name = in.readUTF();
+                String typeString = in.readUTF();
+                Result<Attribute<?>> attribute = AttributeIO.parseAttribute(namespace, name, typeString);
+                if (attribute.isEmpty()) {
+                    throw new IOException("invalid recursive attribute type " + typeString);
+                }
+                featureModel.createRecursiveAttribute(attribute.get());
+            }
+            return featureModel;
+        } catch (RuntimeException e) {
+            throw new IOException("invalid feature model snapshot", e);
+        }
+    }
+
+    private static void pushChildren(
+            DataInput in, IFeatureTree node, ArrayDeque<IFeatureTree> parents, ArrayDeque<int[]> remainingChildren)
+            throws IOException {
+        int childCount = readCount(in);
+        if (childCount > 0) {
+            parents.push(node);
+            remainingChildren.push(new int[] {childCount});
+        }
+    }
+
+    private static IFeatureTree readTreeNode(
+            DataInput in, IFeatureModel featureModel, IFeatureTree parent, List<IFeature> features)
+            throws IOException {
+        int featureIndex = in.readInt();
+        if (featureIndex < 0 || featureIndex >= features.size()) {
+            throw new IOException("invalid feature index " + featureIndex);
+        }
+        IFeature feature = features.get(featureIndex);
+        int groupID = in.readInt();
+        IFeatureTree node = parent == null
+                ? featureModel.mutate().addFeatureTreeRoot(feature)
+                : parent.mutate().addFeatureBelow(feature, parent.getChildren().size(), groupID);
+        int lowerBound = in.readInt();
+        int upperBound = in.readInt();
+        node.mutate().setFeatureRange(Range.of(lowerBound, upperBound));
+        int groupCount = readCount(in);
+        node.mutate().setGroups(List.of());
+        for (int i = 0; i < groupCount; i++) {
+            int groupLowerBound = in.readInt();
+            int groupUpperBound = in.readInt();
+            node.mutate().addGroup(groupLowerBound, groupUpperBound);
+        }
+        readAttributes(in, node, null, featureModel);
+        return node;
+    }
+
+    private static int readCount(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("invalid count " + count);
+        }
+        return count;
+    }
+
+    private static void writeAttributes(IAttributable attributable, DataOutput out) throws IOException {
+        writeAttributes(attributable.getAttributes().orElse(Map.of()), out);
+    }
+
+    /**
+     * Writes attributes of primitive type, string sets, and feature lists; attributes without a value are skipped.
+     * Features in feature lists are written by name, and may also be given as
+     * {@link FeatureModelEdit.FeatureReference references}.
+     *
+     * @param attributes the attributes
+     * @param out the output
+     * @throws IOException if writing fails
+     * @throws IllegalArgumentException if an attribute has a value of another type, which could not be read back
+     */
+    public static void writeAttributes(Map<IAttribute<?>, Object> attributes, DataOutput out) throws IOException {
+        List<Entry<IAttribute<?>, Object>> entries = new ArrayList<>(attributes.size());
+        for (Entry<IAttribute<?>, Object> entry : attributes.entrySet()) {
+            if (entry.getValue() != null) {
+                if (getAttributeTag(entry.getValue()) < 0) {
+                    throw new IllegalArgumentException(String.format(
+                            "cannot encode value of attribute %s: %s",
+                            entry.getKey().getName(),
+                            entry.getValue().getClass().getName()));
+                }
+                entries.add(entry);
+            }
+        }
+        out.writeInt(entries.size());
+        for (Entry<IAttribute<?>, Object> entry : entries) {
+            Object value = entry.getValue();
+            byte tag = getAttributeTag(value);
+            out.writeUTF(entry.getKey().getNamespace());
+            out.writeUTF(entry.getKey().getName());
+            out.writeByte(tag);
+            switch (tag) {
+                case ATTRIBUTE_STRING:
+                    out.writeUTF((String) value);
+                    break;
+                case ATTRIBUTE_BOOLEAN:
+                    out.writeBoolean((Boolean) value);
+                    break;
+                case ATTRIBUTE_INTEGER:
+                    out.writeInt((Integer) value);
+                    break;
+                case ATTRIBUTE_LONG:
+                    out.writeLong((Long) value);
+                    break;
+                case ATTRIBUTE_FLOAT:
+                    out.writeFloat((Float) value);
+                    break;
+                case ATTRIBUTE_DOUBLE:
+                    out.writeDouble((Double) value);
+                    break;
+                case ATTRIBUTE_STRING_SET:
+                    Collection<?> strings = (Collection<?>) value;
+                    out.writeInt(strings.size());
+                    for (Object string : strings) {
+                        out.writeUTF((String) string);
+                    }
+                    break;
+                case ATTRIBUTE_FEATURE_LIST:
+                    Collection<?> featureList = (Collection<?>) value;
+                    out.writeInt(featureList.size());
+                    for (Object feature : featureList) {
+                        out.writeUTF(
+                                feature instanceof IFeature
+                                        ? ((IFeature) feature).getName().orElse("")
+                                        : ((FeatureModelEdit.FeatureReference) feature).getName());
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException(String.valueOf(tag));
+            }
+        }
+    }
+
+    private static byte getAttributeTag(Object value) {
+        if (value instanceof String) {
+            return ATTRIBUTE_STRING;
+        } else if (value instanceof Boolean) {
+            return ATTRIBUTE_BOOLEAN;
+        } else if (value instanceof Integer) {
+            return ATTRIBUTE_INTEGER;
+        } else if (value instanceof Long) {
+            return ATTRIBUTE_LONG;
+        } else if (value instanceof Float) {
+            return ATTRIBUTE_FLOAT;
+        } else if (value instanceof Double) {
+            return ATTRIBUTE_DOUBLE;
+        } else if (value instanceof LinkedHashSet
+                && ((LinkedHashSet<?>) value).stream().allMatch(e -> e instanceof String)) {
+            return ATTRIBUTE_STRING_SET;
+        } else if (value instanceof List
+                && ((List<?>) value)
+                        .stream()
+                        .allMatch(e -> e instanceof IFeature || e instanceof FeatureModelEdit.FeatureReference)) {
+            return ATTRIBUTE_FEATURE_LIST;
+        }
+        return -1;
+    }
+
+    private static void readAttributes(
+            DataInput in, IAttributable attributable, Consumer<String> nameSetter, IFeatureModel featureModel)
+            throws IOException {
+        Map<IAttribute<?>, Object> attributes =
+                readAttributes(in, name -> featureModel.getFeature(name).orElse(null));
+        for (Entry<IAttribute<?>, Object> entry : attributes.entrySet()) {
+            if (Attributes.NAME.equals(entry.getKey())) {
+                if (nameSetter != null) {
+                    nameSetter.accept((String) entry.getValue());
+                }
+            } else {
+                @SuppressWarnings("unchecked")
+                Attribute<Object> attribute = (Attribute<Object>) entry.getKey();
+                attributable.mutate().setAttributeValue(attribute, entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Reads attributes written by {@link #writeAttributes(Map, DataOutput)}.
+     *
+     * @param in the input
+     * @param featureResolver resolves names in feature lists, returns null for unknown features
+     * @return the attributes, in the order they were written
+     * @throws IOException if reading fails, the input is invalid, or a feature cannot be resolved
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<IAttribute<?>, Object> readAttributes(DataInput in, Function<String, ?> featureResolver)
+            throws IOException {
+        int count = readCount(in);
+        Map<IAttribute<?>, Object> attributes = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            String namespace = in.readUTF();
+            String name = in.readUTF();
+            byte tag = in.readByte();
+            Object value;
+            Class<?> type;
+            switch (tag) {
+                case ATTRIBUTE_STRING:
+                    value = in.readUTF();
+                    type = String.class;
+                    break;
+                case ATTRIBUTE_BOOLEAN:
+                    value = in.readBoolean();
+                    type = Boolean.class;
+                    break;
+                case ATTRIBUTE_INTEGER:
+                    value = in.readInt();
+                    type = Integer.class;
+                    break;
+                case ATTRIBUTE_LONG:
+                    value = in.readLong();
+                    type = Long.class;
+                    break;
+                case ATTRIBUTE_FLOAT:
+                    value = in.readFloat();
+                    type = Float.class;
+                    break;
+                case ATTRIBUTE_DOUBLE:
+                    value = in.readDouble();
+                    type = Double.class;
+                    break;
+                case ATTRIBUTE_STRING_SET:
+                    int size = readCount(in);
+                    LinkedHashSet<String> strings = new LinkedHashSet<>();
+                    for (int j = 0; j < size; j++) {
+                        strings.add(in.readUTF());
+                    }
+                    value = strings;
+                    type = LinkedHashSet.class;
+                    break;
+                case ATTRIBUTE_FEATURE_LIST:
+                    int length = readCount(in);
+                    List<Object> featureList = new ArrayList<>(length);
+                    for (int j = 0; j < length; j++) {
+                        String featureName = in.readUTF();
+                        Object feature = featureResolver.apply(featureName);
+                        if (feature == null) {
+                            throw new IOException("unknown feature " + featureName);
+                        }
+                        featureList.add(feature);
+                    }
+                    value = featureList;
+                    type = List.class;
+                    break;
+                default:
+                    throw new IOException("invalid attribute tag " + tag);
+            }
+            attributes.put(new Attribute<>(namespace, name, (Class<Object>) type), value);
+        }
+        return attributes;
+    }
+
+    /**
+     * Writes a propositional formula in prefix notation.
+     *
+     * @param formula the formula
+     * @param out the output
+     * @throws IOException if writing fails
+     * @throws IllegalArgumentException if the formula contains an unsupported expression
+     */
+    public static void writeFormula(IFormula formula, DataOutput out) throws IOException {
+        if (formula instanceof True) {
+            out.writeByte(FORMULA_TRUE);
+        } else if (formula instanceof False) {
+            out.writeByte(FORMULA_FALSE);
+        } else if (formula instanceof Literal) {
+            Literal literal = (Literal) formula;
+            out.writeByte(FORMULA_LITERAL);
+            out.writeBoolean(literal.isPositive());
+            out.writeUTF(literal.getName());
+        } else if (formula instanceof Not) {
+            out.writeByte(FORMULA_NOT);
+            writeFormula(getChild(formula, 0), out);
+        } else if (formula instanceof Implies) {
+            out.writeByte(FORMULA_IMPLIES);
+            writeFormula(getChild(formula, 0), out);
+            writeFormula(getChild(formula, 1), out);
+        } else if (formula instanceof BiImplies) {
+            out.writeByte(FORMULA_BIIMPLIES);
+            writeFormula(getChild(formula, 0), out);
+            writeFormula(getChild(formula, 1), out);
+        } else if (formula instanceof And) {
+            out.writeByte(FORMULA_AND);
+            writeChildren(formula, out);
+        } else if (formula instanceof Or) {
+            out.writeByte(FORMULA_OR);
+            writeChildren(formula, out);
+        } else if (formula instanceof AtLeast) {
+            out.writeByte(FORMULA_AT_LEAST);
+            out.writeInt(((AtLeast) formula).getMinimum());
+            writeChildren(formula, out);
+        } else if (formula instanceof AtMost) {
+            out.writeByte(FORMULA_AT_MOST);
+            out.writeInt(((AtMost) formula).getMaximum());
+            writeChildren(formula, out);
+        } else if (formula instanceof Between) {
+            out.writeByte(FORMULA_BETWEEN);
+            out.writeInt(((Between) formula).getMinimum());
+            out.writeInt(((Between) formula).getMaximum());
+            writeChildren(formula, out);
+        } else if (formula instanceof Choose) {
+            out.writeByte(FORMULA_CHOOSE);
+            out.writeInt(((Choose) formula).getBound());
+            writeChildren(formula, out);
+        } else {
+            throw new IllegalArgumentException("unsupported formula " + formula);
+        }
+    }
+
+    private static IFormula getChild(IFormula formula, int index) {
+        return (IFormula) formula.getChildren().get(index);
+    }
+
+    private static void writeChildren(IFormula formula, DataOutput out) throws IOException {
+        List<? extends IExpression> children = formula.getChildren();
+        out.writeInt(children.size());
+        for (IExpression child : children) {
+            writeFormula((IFormula) child, out);
+        }
+    }
+
+    /**
+     * Reads a propositional formula written by {@link #writeFormula(IFormula, DataOutput)}.
+     *
+     * @param in the input
+     * @return the formula
+     * @throws IOException if reading fails or the input is not a valid formula
+     */
+    public static IFormula readFormula(DataInput in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case FORMULA_TRUE:
+                return Expressions.True;
+            case FORMULA_FALSE:
+                return Expressions.False;
+            case FORMULA_LITERAL:
+                boolean positive = in.readBoolean();
+                return Expressions.literal(positive, in.readUTF());
+            case FORMULA_NOT:
+                return new Not(readFormula(in));
+            case FORMULA_IMPLIES:
+                return new Implies(readFormula(in), readFormula(in));
+            case FORMULA_BIIMPLIES:
+                return new BiImplies(readFormula(in), readFormula(in));
+            case FORMULA_AND:
+                return new And(readChildren(in));
+            case FORMULA_OR:
+                return new Or(readChildren(in));
+            case FORMULA_AT_LEAST:
+                int minimum = in.readInt();
+                return new AtLeast(minimum, readChildren(in));
+            case FORMULA_AT_MOST:
+                int maximum = in.readInt();
+                return new AtMost(maximum, readChildren(in));
+            case FORMULA_BETWEEN:
+                int lowerBound = in.readInt();
+                int upperBound = in.readInt();
+                return new Between(lowerBound, upperBound, readChildren(in));
+            case FORMULA_CHOOSE:
+                int bound = in.readInt();
+                return new Choose(bound, readChildren(in));
+            default:
+                throw new IOException("invalid formula tag " + tag);
+        }
+    }
+
+    private static List<IFormula> readChildren(DataInput in) throws IOException {
+        int count = readCount(in);
+        List<IFormula> children = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            children.add(readFormula(in));
+        }
+        return children;
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.io.cache;
+
+import de.featjar.base.FeatJAR;
+import de.featjar.base.data.Problem;
+import de.featjar.base.data.Result;
+import de.featjar.base.io.IO;
+import de.featjar.base.io.format.IFormat;
+import de.featjar.base.io.input.StreamInputMapper;
+import de.featjar.feature.model.IFeatureModel;
+import de.featjar.feature.model.io.binary.FeatureModelSnapshot;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed on-disk cache in front of feature model formats.
+ * The key of a file is the SHA-256 hash of its bytes, the format name, and the {@link FeatureModelSnapshot snapshot}
+ * version, so a changed file, a different parser, or a new snapshot encoding never hits a stale entry.
+ * On a hit, the {@link FeatureModelSnapshot snapshot} is read instead of parsing the file again.
+ * Entries are written to a temporary file and atomically moved in place, so concurrent processes sharing a cache
+ * directory never observe partial entries; an unreadable entry is treated as a miss and replaced.
+ * If the file system does not support atomic moves, no entries are written.
+ * The total size of all entries is bounded, and least recently used entries are evicted first.
+ * The size is tracked as entries are written, so the directory is only listed when the limit is exceeded;
+ * entries written by other processes are accounted for at that point.
+ */
+public class FeatureModelParseCache {
+
+    /**
+     * File extension of cache entries.
+     */
+    public static final String ENTRY_EXTENSION = ".fms";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final Path directory;
+    private final long maxBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong size;
+    private volatile boolean atomicMoveSupported = true;
+
+    /**
+     * Creates a parse cache.
+     *
+     * @param directory the cache directory, created if it does not exist
+     * @param maxBytes the maximum total size of all cache entries
+     * @throws IOException if the cache directory cannot be created
+     */
+    public FeatureModelParseCache(Path directory, long maxBytes) throws IOException {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException(String.format("maxBytes must not be negative (%d)", maxBytes));
+        }
+        this.directory = Objects.requireNonNull(directory);
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+        size = new AtomicLong(getSize());
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+    }
+
+    /**
+     * Loads a feature model, from the cache if possible.
+     *
+     * @param file the file
+     * @param format the format used on a cache miss
+     * @return the feature model, or the problems that occurred while parsing
+     */
+    public Result<IFeatureModel> load(Path file, IFormat<IFeatureModel> format) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (IOException e) {
+            return Result.empty(new Problem(e));
+        }
+        String key = getKey(bytes, format);
+        Path entry = directory.resolve(key + ENTRY_EXTENSION);
+        Result<IFeatureModel> cached = readEntry(entry);
+        if (cached.isPresent()) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+        // parse the bytes that were hashed, as the file may have changed since, the same way IO.load parses files
+        Result<IFeatureModel> featureModel = format.getInstance()
+                .parse(new StreamInputMapper(
+                        new ByteArrayInputStream(bytes), IO.DEFAULT_CHARSET, format.getFileExtension()));
+        if (featureModel.isPresent()) {
+            writeEntry(key, entry, featureModel.get());
+        }
+        return featureModel;
+    }
+
+    /**
+     * Computes the cache key for the given file contents and format.
+     *
+     * @param bytes the file contents
+     * @param format the format
+     * @return the hex-encoded cache key
+     */
+    public static String getKey(byte[] bytes, IFormat<?> format) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(
+                (format.getName() + "\0" + FeatureModelSnapshot.VERSION + "\0").getBytes(StandardCharsets.UTF_8));
+        byte[] hash = digest.digest(bytes);
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX_DIGITS[hash[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    private Result<IFeatureModel> readEntry(Path entry) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry)))) {
+            IFeatureModel featureModel = FeatureModelSnapshot.read(in);
+            touch(entry);
+            return Result.of(featureModel);
+        } catch (NoSuchFileException e) {
+            return Result.empty();
+        } catch (IOException e) {
+            FeatJAR.log().debug("discarding unreadable cache entry %s: %s", entry, e.getMessage());
+            delete(entry);
+            return Result.empty(new Problem(e));
+        }
+    }
+
+    private void touch(Path entry) {
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // concurrently evicted, which only costs a miss on the next lookup
+        }
+    }
+
+    private void delete(Path entry) {
+        try {
+            long entrySize = Files.size(entry);
+            if (Files.deleteIfExists(entry)) {
+                size.addAndGet(-entrySize);
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void writeEntry(String key, Path entry, IFeatureModel featureModel) {
+        if (!atomicMoveSupported) {
+            return;
+        }
+        Path temporaryFile = null;
+        try {
+            temporaryFile = Files.createTempFile(directory, key, ".tmp");
+            try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+                OutputStream outputStream = Channels.newOutputStream(channel);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+                FeatureModelSnapshot.write(featureModel, out);
+                out.flush();
+                channel.force(true);
+            }
+            long entrySize = Files.size(temporaryFile);
+            Files.move(temporaryFile, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            temporaryFile = null;
+            if (size.addAndGet(entrySize) > maxBytes) {
+                evict();
+            }
+        } catch (AtomicMoveNotSupportedException e) {
+            atomicMoveSupported = false;
+            FeatJAR.log().warning("not caching in %s, which does not support atomic moves", directory);
+        } catch (IOException | RuntimeException e) {
+            FeatJAR.log().debug("could not cache %s: %s", entry, e.getMessage());
+        } finally {
+            if (temporaryFile != null) {
+                try {
+                    Files.deleteIfExists(temporaryFile);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private static final class EntryInfo {
+        private final Path path;
+        private final long size;
+        private final long lastModified;
+
+        private EntryInfo(Path path, long size, long lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * Evicts least recently used entries until the cache fits into its size limit.
+     * Lists the cache directory, which also corrects the tracked size for entries written or deleted by other
+     * processes.
+     *
+     * @throws IOException if the cache directory cannot be listed
+     */
+    public synchronized void evict() throws IOException {
+        List<EntryInfo> entries = new ArrayList<>();
+        long totalBytes = 0;
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path path : paths.filter(p -> p.getFileName().toString().endsWith(ENTRY_EXTENSION))
+                    .collect(Collectors.toList())) {
+                try {
+                    long size = Files.size(path);
+                    entries.add(new EntryInfo(
+                            path, size, Files.getLastModifiedTime(path).toMillis()));
+                    totalBytes += size;
+                } catch (NoSuchFileException e) {
+                    // concurrently evicted
+                }
+            }
+        }
+        if (totalBytes <= maxBytes) {
+            size.set(totalBytes);
+            return;
+        }
+        entries.sort(Comparator.comparingLong(e -> e.lastModified));
+        for (EntryInfo entry : entries) {
+            if (totalBytes <= maxBytes) {
+                break;
+            }
+            if (Files.deleteIfExists(entry.path)) {
+                evictions.incrementAndGet();
+            }
+            totalBytes -= entry.size;
+        }
+        size.set(totalBytes);
+    }
+
+    /**
+     * Computes the total size of all cache entries.
+     *
+     * @return the size in bytes
+     * @throws IOException if the cache directory cannot be listed
+     */
+    public long getSize() throws IOException {
+        long totalBytes = 0;
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path path : paths.filter(p -> p.getFileName().toString().endsWith(ENTRY_EXTENSION))
+                    .collect(Collectors.toList())) {
+                try {
+                    totalBytes += Files.size(path);
+                } catch (NoSuchFileException e) {
+                    // concurrently evicted
+                }
+            }
+        }
+        return totalBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "FeatureModelParseCache{directory=%s, hits=%d, misses=%d, evictions=%d}",
+                directory, hits.get(), misses.get(), evictions.get());
+    }
+}
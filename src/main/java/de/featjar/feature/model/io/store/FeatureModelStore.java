@@ -0,0 +1,445 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.io.store;
+
+import de.featjar.base.FeatJAR;
+import de.featjar.base.data.Problem;
+import de.featjar.base.data.Result;
+import de.featjar.base.data.identifier.Identifiers;
+import de.featjar.feature.model.FeatureModel;
+import de.featjar.feature.model.IFeatureModel;
+import de.featjar.feature.model.io.binary.FeatureModelDelta;
+import de.featjar.feature.model.io.binary.FeatureModelSnapshot;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * A file-based store for the version history of a feature model.
+ * Every version is appended to a log as a {@link FeatureModelDelta} to its predecessor (the first version as a delta
+ * to the empty model), and full {@link FeatureModelSnapshot snapshots} are written in the background every few
+ * versions, so that loading a version replays at most that many deltas.
+ * Versions are numbered from 1.
+ * <p>
+ * The log is authoritative and snapshots are only a cache.
+ * Each log record is forced to disk before {@link #commit(IFeatureModel)} returns and is protected by a checksum;
+ * when the store is opened, a torn or corrupt tail left by a crash is truncated, so the store always recovers the
+ * longest intact prefix of the history.
+ * Snapshots are written to temporary files, forced to disk, and atomically renamed, after which the directory is
+ * forced as well; a file system without atomic renames is not supported.
+ * Snapshots are protected by a checksum, too; a snapshot that turns out to be corrupt or truncated is deleted, and
+ * the version is replayed from the previous snapshot instead, or from the start of the log.
+ * The log itself is never shortened, as every version without a snapshot is only recorded there.
+ * <p>
+ * Log record layout: payload length (int), CRC-32 of the payload (int), payload (version as int, followed by the
+ * encoded delta).
+ * Snapshot file layout: CRC-32 of the encoded snapshot (int), followed by the encoded snapshot.
+ */
+public class FeatureModelStore implements AutoCloseable {
+
+    /**
+     * Name of the log file in the store directory.
+     */
+    public static final String LOG_FILE = "versions.log";
+
+    private static final Pattern SNAPSHOT_FILE = Pattern.compile("snapshot-(\\d+)\\.fms");
+    private static final int HEADER_SIZE = 8;
+
+    private final Path directory;
+    private final int snapshotInterval;
+    private final FileChannel log;
+    private final List<Long> recordOffsets = new ArrayList<>();
+    private final ConcurrentSkipListMap<Integer, Path> snapshots = new ConcurrentSkipListMap<>();
+    private final ExecutorService snapshotWriter;
+    private IFeatureModel head;
+    private int lastSnapshotVersion;
+
+    /**
+     * Opens or creates a store, recovering from a previous crash if necessary.
+     *
+     * @param directory the directory of the store, created if it does not exist
+     * @param snapshotInterval the maximum number of deltas to replay when loading a version
+     * @throws IOException if the store cannot be opened
+     */
+    public FeatureModelStore(Path directory, int snapshotInterval) throws IOException {
+        if (snapshotInterval < 1) {
+            throw new IllegalArgumentException("snapshot interval must be positive");
+        }
+        this.directory = directory;
+        this.snapshotInterval = snapshotInterval;
+        Files.createDirectories(directory);
+        boolean created = !Files.exists(directory.resolve(LOG_FILE));
+        log = FileChannel.open(
+                directory.resolve(LOG_FILE),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        snapshotWriter = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "feature-model-store-snapshots");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            if (created) {
+                forceDirectory();
+            }
+            recoverLog();
+            recoverSnapshots();
+            head = replay(getLatestVersion());
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+        writeMissingSnapshots();
+    }
+
+    private void recoverLog() throws IOException {
+        long size = log.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (position + HEADER_SIZE <= size) {
+            header.clear();
+            readFully(header, position);
+            int length = header.getInt(0);
+            if (length < Integer.BYTES || position + HEADER_SIZE + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, position + HEADER_SIZE);
+            if (getChecksum(payload.array()) != header.getInt(4) || payload.getInt(0) != recordOffsets.size() + 1) {
+                break;
+            }
+            recordOffsets.add(position);
+            position += HEADER_SIZE + length;
+        }
+        if (position < size) {
+            FeatJAR.log().info("truncating %d bytes of incomplete log records in %s", size - position, directory);
+            log.truncate(position);
+            log.force(true);
+        }
+    }
+
+    private void recoverSnapshots() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                Matcher matcher = SNAPSHOT_FILE.matcher(fileName);
+                if (matcher.matches()) {
+                    int version = Integer.parseInt(matcher.group(1));
+                    if (version >= 1 && version <= getLatestVersion()) {
+                        snapshots.put(version, file);
+                    } else {
+                        Files.delete(file);
+                    }
+                } else if (fileName.endsWith(".tmp")) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public int getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    /**
+     * Returns the latest committed version, or 0 if the store is empty.
+     *
+     * @return the latest version
+     */
+    public synchronized int getLatestVersion() {
+        return recordOffsets.size();
+    }
+
+    /**
+     * Returns the versions for which a snapshot has been written.
+     *
+     * @return the versions with snapshots, in ascending order
+     */
+    public List<Integer> getSnapshotVersions() {
+        return new ArrayList<>(snapshots.keySet());
+    }
+
+    /**
+     * Appends a new version.
+     * Attributes that cannot be encoded in a {@link FeatureModelSnapshot snapshot} are not stored.
+     * Returns only after the new log record has been forced to disk.
+     *
+     * @param featureModel the feature model
+     * @return the new version
+     * @throws IOException if the version cannot be written
+     */
+    public synchronized int commit(IFeatureModel featureModel) throws IOException {
+        byte[] snapshot = FeatureModelSnapshot.toBytes(featureModel);
+        IFeatureModel next = FeatureModelSnapshot.fromBytes(snapshot);
+        int version = getLatestVersion() + 1;
+        byte[] delta = FeatureModelDelta.diff(head, next).toBytes();
+
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + Integer.BYTES + delta.length);
+        record.putInt(Integer.BYTES + delta.length);
+        record.putInt(0);
+        record.putInt(version);
+        record.put(delta);
+        record.putInt(4, getChecksum(Arrays.copyOfRange(record.array(), HEADER_SIZE, record.capacity())));
+        record.flip();
+        long offset = log.size();
+        while (record.hasRemaining()) {
+            log.write(record, offset + record.position());
+        }
+        log.force(false);
+        recordOffsets.add(offset);
+        head = next;
+
+        if (version - lastSnapshotVersion >= snapshotInterval) {
+            scheduleSnapshot(version, snapshot);
+            lastSnapshotVersion = version;
+        }
+        return version;
+    }
+
+    /**
+     * Loads a version by replaying the log from the nearest snapshot.
+     *
+     * @param version the version
+     * @return the feature model with fresh identifiers, or a problem if the version does not exist
+     */
+    public Result<IFeatureModel> load(int version) {
+        if (version < 1 || version > getLatestVersion()) {
+            return Result.empty(new Problem("unknown version " + version, Problem.Severity.ERROR));
+        }
+        try {
+            return Result.of(replay(version));
+        } catch (IOException e) {
+            return Result.empty(new Problem(e));
+        }
+    }
+
+    /**
+     * Loads the latest version.
+     *
+     * @return the feature model with fresh identifiers, or a problem if the store is empty
+     */
+    public Result<IFeatureModel> loadLatest() {
+        return load(getLatestVersion());
+    }
+
+    private IFeatureModel replay(int version) throws IOException {
+        IFeatureModel featureModel = null;
+        int snapshotVersion = 0;
+        for (Entry<Integer, Path> snapshot = snapshots.floorEntry(version);
+                snapshot != null;
+                snapshot = snapshots.lowerEntry(snapshot.getKey())) {
+            featureModel = readSnapshot(snapshot.getKey(), snapshot.getValue());
+            if (featureModel != null) {
+                snapshotVersion = snapshot.getKey();
+                break;
+            }
+        }
+        if (featureModel == null) {
+            featureModel = new FeatureModel(Identifiers.newCounterIdentifier());
+        }
+        for (int i = snapshotVersion + 1; i <= version; i++) {
+            Result<IFeatureModel> result = readDelta(i).apply(featureModel);
+            if (result.isEmpty()) {
+                throw new IOException("cannot replay version " + i + ": " + result.getProblems());
+            }
+        }
+        return featureModel;
+    }
+
+    /**
+     * Reads a snapshot, or deletes it if it is corrupt or truncated.
+     *
+     * @return the feature model, or {@code null} if the snapshot cannot be read
+     */
+    private IFeatureModel readSnapshot(int version, Path file) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (buffer.remaining() < Integer.BYTES) {
+                throw new EOFException();
+            }
+            int checksum = buffer.getInt();
+            byte[] snapshot = Arrays.copyOfRange(buffer.array(), Integer.BYTES, buffer.capacity());
+            if (getChecksum(snapshot) != checksum) {
+                throw new IOException("checksum mismatch");
+            }
+            return FeatureModelSnapshot.fromBytes(snapshot);
+        } catch (IOException | RuntimeException e) {
+            FeatJAR.log().info("discarding unreadable snapshot %d in %s: %s", version, directory, e.getMessage());
+            snapshots.remove(version, file);
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                // removed from the index anyway, and overwritten when the snapshot is written again
+            }
+            return null;
+        }
+    }
+
+    private FeatureModelDelta readDelta(int version) throws IOException {
+        long offset;
+        synchronized (this) {
+            offset = recordOffsets.get(version - 1);
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(header, offset);
+        ByteBuffer payload = ByteBuffer.allocate(header.getInt(0));
+        readFully(payload, offset + HEADER_SIZE);
+        if (getChecksum(payload.array()) != header.getInt(4) || payload.getInt(0) != version) {
+            throw new IOException("corrupt log record for version " + version);
+        }
+        return FeatureModelDelta.fromBytes(
+                Arrays.copyOfRange(payload.array(), Integer.BYTES, payload.capacity()));
+    }
+
+    /**
+     * Writes missing snapshots in the background, so that no version needs more than the snapshot interval of
+     * deltas to be replayed.
+     * Called when the store is opened; afterwards, snapshots are written regularly on commit, so this is only
+     * needed if snapshots were deleted or discarded as unreadable.
+     *
+     * @return a future that completes when all snapshots are written
+     */
+    public synchronized Future<?> writeMissingSnapshots() {
+        List<Integer> versions = new ArrayList<>();
+        int previousSnapshotVersion = 0;
+        for (int version = 1; version <= getLatestVersion(); version++) {
+            if (snapshots.containsKey(version)) {
+                previousSnapshotVersion = version;
+            } else if (version - previousSnapshotVersion >= snapshotInterval) {
+                versions.add(version);
+                previousSnapshotVersion = version;
+            }
+        }
+        lastSnapshotVersion = Math.max(lastSnapshotVersion, previousSnapshotVersion);
+        return snapshotWriter.submit(() -> {
+            for (int version : versions) {
+                writeSnapshot(version, FeatureModelSnapshot.toBytes(replay(version)));
+            }
+            return null;
+        });
+    }
+
+    private void scheduleSnapshot(int version, byte[] snapshot) {
+        snapshotWriter.execute(() -> {
+            try {
+                writeSnapshot(version, snapshot);
+            } catch (IOException e) {
+                FeatJAR.log().debug("could not write snapshot %d in %s: %s", version, directory, e.getMessage());
+            }
+        });
+    }
+
+    private void writeSnapshot(int version, byte[] snapshot) throws IOException {
+        Path file = directory.resolve(String.format("snapshot-%010d.fms", version));
+        Path temporaryFile = Files.createTempFile(directory, "snapshot", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + snapshot.length);
+                buffer.putInt(getChecksum(snapshot));
+                buffer.put(snapshot);
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            temporaryFile = null;
+            forceDirectory();
+            snapshots.put(version, file);
+        } finally {
+            if (temporaryFile != null) {
+                Files.deleteIfExists(temporaryFile);
+            }
+        }
+    }
+
+    /**
+     * Forces the directory entries of the store to disk, so that created and renamed files survive a crash.
+     * Not all platforms can open directories; there, this is left to the file system.
+     */
+    private void forceDirectory() throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            FeatJAR.log().debug("cannot force directory %s: %s", directory, e.getMessage());
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (log.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    private static int getChecksum(byte[] bytes) {
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes, 0, bytes.length);
+        return (int) checksum.getValue();
+    }
+
+    /**
+     * Waits for pending snapshots and closes the log.
+     *
+     * @throws IOException if the log cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        snapshotWriter.shutdown();
+        try {
+            snapshotWriter.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            log.close();
+        }
+    }
+}
@@ -20,12 +20,22 @@
  */
 package de.featjar.feature.model.io.xml;
 
+import de.featjar.base.data.Problem;
 import de.featjar.base.data.Result;
 import de.featjar.base.io.format.IFormat;
 import de.featjar.feature.model.*;
-import java.util.Arrays;
+import de.featjar.feature.model.FeatureTree.Group;
+import de.featjar.feature.model.jfr.FormatEvent;
+import de.featjar.feature.model.metrics.IMetricsListener;
+import de.featjar.feature.model.metrics.IMetricsListener.Phase;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Objects;
 
 /**
  * Writes feature models to GraphViz DOT files.
@@ -33,6 +43,83 @@ import java.util.stream.Collectors;
  * @author Elias Kuiter
  */
 public class GraphVizFeatureModelFormat implements IFormat<IFeatureModel> {
+    protected IMetricsListener metricsListener = IMetricsListener.NONE;
+    protected int maxDepth = -1;
+    protected int maxNodes = -1;
+    protected String subtreeRoot;
+
+    @Override
+    public GraphVizFeatureModelFormat getInstance() {
+        return new GraphVizFeatureModelFormat()
+                .setMetricsListener(metricsListener)
+                .setMaxDepth(maxDepth)
+                .setMaxNodes(maxNodes)
+                .setSubtreeRoot(subtreeRoot);
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Limits the exported tree to the given depth, where the exported roots have depth zero.
+     * Deeper subtrees are collapsed into summary nodes.
+     *
+     * @param maxDepth the maximum depth, or a negative value for no limit
+     * @return this format
+     */
+    public GraphVizFeatureModelFormat setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    public int getMaxNodes() {
+        return maxNodes;
+    }
+
+    /**
+     * Limits the number of exported features.
+     * Children of a feature are either exported all together or collapsed into one summary node,
+     * and the exported roots are always included.
+     *
+     * @param maxNodes the maximum number of features, or a negative value for no limit
+     * @return this format
+     */
+    public GraphVizFeatureModelFormat setMaxNodes(int maxNodes) {
+        this.maxNodes = maxNodes;
+        return this;
+    }
+
+    public String getSubtreeRoot() {
+        return subtreeRoot;
+    }
+
+    /**
+     * Restricts the export to the subtree rooted at the given feature.
+     *
+     * @param subtreeRoot the name of the root feature of the subtree, or {@code null} to export all roots
+     * @return this format
+     */
+    public GraphVizFeatureModelFormat setSubtreeRoot(String subtreeRoot) {
+        this.subtreeRoot = subtreeRoot;
+        return this;
+    }
+
+    public IMetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    /**
+     * Sets a listener that receives the wall time, number of written features, and output size of each export.
+     *
+     * @param metricsListener the metrics listener
+     * @return this format
+     */
+    public GraphVizFeatureModelFormat setMetricsListener(IMetricsListener metricsListener) {
+        this.metricsListener = Objects.requireNonNull(metricsListener);
+        return this;
+    }
+
     @Override
     public String getFileExtension() {
         return "dot";
@@ -50,93 +137,327 @@ public class GraphVizFeatureModelFormat implements IFormat<IFeatureModel> {
 
     @Override
     public Result<String> serialize(IFeatureModel featureModel) {
-        // TODO take multiple roots into account
-        List<IFeatureTree> features = featureModel.getFeatureTreeStream().collect(Collectors.toList());
-        return Result.of(String.format(
-                "digraph {\n  graph%s;\n  node%s;\n  edge%s;\n%s\n%s\n}",
-                options(option("splines", "false"), option("ranksep", "0.2")),
-                options(
-                        option("fontname", "Arial"),
-                        option("style", "filled"),
-                        option("fillcolor", "#ccccff"),
-                        option("shape", "box")),
-                options(option("arrowhead", "none")),
-                features.stream().map(this::getNode).collect(Collectors.joining("\n")),
-                features.stream().map(this::getEdge).filter(s -> !s.isEmpty()).collect(Collectors.joining("\n"))));
+        StringWriter writer = new StringWriter();
+        try {
+            serialize(featureModel, writer);
+        } catch (IOException | IllegalArgumentException e) {
+            return Result.empty(new Problem(e));
+        }
+        return Result.of(writer.toString());
+    }
+
+    /**
+     * Streams a feature model to a writer in DOT format without building the whole output in memory.
+     * All feature tree roots are exported, unless a {@link #setSubtreeRoot(String) subtree root} is set.
+     * The tree is written level by level, and subtrees that exceed the {@link #setMaxDepth(int) maximum depth}
+     * or the {@link #setMaxNodes(int) maximum number of nodes} are collapsed into a summary node
+     * that is labeled with the number of omitted features.
+     *
+     * @param featureModel the feature model
+     * @param writer the writer
+     * @return the number of written features, excluding summary nodes
+     * @throws IOException if the writer throws
+     * @throws IllegalArgumentException if the subtree root does not exist in the feature model
+     */
+    public int serialize(IFeatureModel featureModel, Writer writer) throws IOException {
+        FormatEvent event = new FormatEvent();
+        event.begin();
+        long start = metricsListener.isEnabled() ? System.nanoTime() : 0;
+        CountingWriter out = new CountingWriter(writer);
+        List<IFeatureTree> roots;
+        if (subtreeRoot != null) {
+            roots = List.of(featureModel
+                    .getFeatureTree(subtreeRoot)
+                    .orElseThrow(p -> new IllegalArgumentException("unknown subtree root " + subtreeRoot)));
+        } else {
+            roots = featureModel.getRoots();
+        }
+
+        out.write("digraph {\n  graph");
+        writeOptions(out, "splines", "false", "ranksep", "0.2");
+        out.write(";\n  node");
+        writeOptions(out, "fontname", "Arial", "style", "filled", "fillcolor", "#ccccff", "shape", "box");
+        out.write(";\n  edge");
+        writeOptions(out, "arrowhead", "none");
+        out.write(";\n");
+
+        int written = 0;
+        int scheduled = roots.size();
+        ArrayDeque<IFeatureTree> queue = new ArrayDeque<>(roots);
+        ArrayDeque<IFeatureTree> omitted = new ArrayDeque<>();
+        for (int depth = 0; !queue.isEmpty(); depth++) {
+            for (int levelSize = queue.size(); levelSize > 0; levelSize--) {
+                IFeatureTree tree = queue.poll();
+                writeFeature(out, tree, depth > 0);
+                written++;
+                List<? extends IFeatureTree> children = tree.getChildren();
+                if (!children.isEmpty()) {
+                    if ((maxDepth < 0 || depth < maxDepth)
+                            && (maxNodes < 0 || scheduled + children.size() <= maxNodes)) {
+                        queue.addAll(children);
+                        scheduled += children.size();
+                    } else {
+                        // collapsed subtrees are disjoint, so counting them visits each feature at most once
+                        long omittedFeatures = 0;
+                        omitted.addAll(children);
+                        while (!omitted.isEmpty()) {
+                            omittedFeatures++;
+                            omitted.addAll(omitted.poll().getChildren());
+                        }
+                        writeSummary(out, tree, omittedFeatures);
+                    }
+                }
+            }
+        }
+        out.write("}");
+        out.flush();
+
+        if (metricsListener.isEnabled()) {
+            metricsListener.onPhase(getName(), Phase.WRITE, System.nanoTime() - start, written);
+            metricsListener.onBytes(getName(), out.count);
+            metricsListener.onProblems(getName(), List.of());
+        }
+        if (event.shouldCommit()) {
+            event.format = getName();
+            event.operation = FormatEvent.SERIALIZE;
+            event.bytes = out.count;
+            event.features = written;
+            event.success = true;
+            event.commit();
+        }
+        return written;
+    }
+
+    protected void writeFeature(Writer out, IFeatureTree tree, boolean writeParentEdge) throws IOException {
+        writeNode(out, tree);
+        writeEdges(out, tree, writeParentEdge);
+    }
+
+    protected void writeNode(Writer out, IFeatureTree tree) throws IOException {
+        String node = tree.getFeature().getIdentifier().toString();
+        Group group = tree.getGroup();
+        out.write("  ");
+        writeQuoted(out, node, "");
+        writeOptions(
+                out,
+                "label",
+                tree.getFeature().getName().orElse(""),
+                "fillcolor",
+                tree.getFeature().isAbstract() ? "#f2f2ff" : null);
+        out.write(";\n  ");
+        writeQuoted(out, node, "_group");
+        writeOptions(
+                out,
+                "shape",
+                "diamond",
+                "style",
+                !group.isAnd() ? "invis" : group.isAlternative() ? "" : null,
+                "fillcolor",
+                group.isOr() ? "#000000" : null,
+                "label",
+                "",
+                "width",
+                ".15",
+                "height",
+                ".15");
+        out.write(";\n");
     }
 
+    protected void writeEdges(Writer out, IFeatureTree tree, boolean writeParentEdge) throws IOException {
+        String node = tree.getFeature().getIdentifier().toString();
+        Group group = tree.getGroup();
+        Result<IFeatureTree> parent = tree.getParent();
+        if (writeParentEdge && parent.isPresent()) {
+            String parentNode = parent.get().getFeature().getIdentifier().toString();
+            boolean parentAnd = parent.get().getGroup().isAnd();
+            String arrowhead = parentAnd ? null : tree.isMandatory() ? "dot" : "odot";
+            writeEdge(out, parentNode, "_group", node, "arrowhead", arrowhead, "style", parentAnd ? null : "invis");
+            if (!parentAnd) {
+                writeEdge(out, parentNode, "", node, "arrowhead", arrowhead);
+            }
+        }
+        writeEdge(out, node, "", node + "_group", "style", group.isAnd() ? null : "invis");
+    }
+
+    protected void writeSummary(Writer out, IFeatureTree tree, long omittedFeatures) throws IOException {
+        String node = tree.getFeature().getIdentifier().toString();
+        out.write("  ");
+        writeQuoted(out, node, "_more");
+        writeOptions(
+                out,
+                "label",
+                "+" + omittedFeatures + (omittedFeatures == 1 ? " feature" : " features"),
+                "style",
+                "dashed",
+                "shape",
+                "box");
+        out.write(";\n");
+        writeEdge(out, node, "", node + "_more", "style", "dashed");
+    }
+
+    protected void writeEdge(Writer out, String from, String fromSuffix, String to, String... options)
+            throws IOException {
+        out.write("  ");
+        writeQuoted(out, from, fromSuffix);
+        out.write(":s -> ");
+        writeQuoted(out, to, "");
+        out.write(":n");
+        writeOptions(out, options);
+        out.write(";\n");
+    }
+
+    protected void writeQuoted(Writer out, String str, String suffix) throws IOException {
+        out.write('"');
+        out.write(str.replace("\"", "\\\""));
+        out.write(suffix);
+        out.write('"');
+    }
+
+    /**
+     * Writes a list of options in brackets, skipping all options with a {@code null} value.
+     *
+     * @param out the writer
+     * @param options alternating option names and values
+     * @throws IOException if the writer throws
+     */
+    protected void writeOptions(Writer out, String... options) throws IOException {
+        boolean first = true;
+        for (int i = 0; i < options.length; i += 2) {
+            if (options[i + 1] != null) {
+                out.write(first ? " [" : " ");
+                out.write(options[i]);
+                out.write('=');
+                writeQuoted(out, options[i + 1], "");
+                first = false;
+            }
+        }
+        if (!first) {
+            out.write(']');
+        }
+    }
+
+    /**
+     * Returns the DOT statements for a feature and its group node.
+     *
+     * @param feature the feature
+     * @return the statements
+     * @deprecated use {@link #serialize(IFeatureModel, Writer)}, which streams the output
+     */
+    @Deprecated
     public String getNode(IFeatureTree feature) {
-        String nodeString = "";
-        nodeString += String.format(
-                "  %s%s;",
-                quote(feature.getFeature().getIdentifier().toString()),
-                options(
-                        option("label", feature.getFeature().getName().orElse("")),
-                        option("fillcolor", feature.getFeature().isAbstract() ? "#f2f2ff" : null)));
-        nodeString += String.format(
-                "\n  %s%s;",
-                quote(feature.getFeature().getIdentifier().toString() + "_group"),
-                options(
-                        option("shape", "diamond"),
-                        option(
-                                "style",
-                                !feature.getGroup().isAnd()
-                                        ? "invis"
-                                        : feature.getGroup().isAlternative() ? "" : null),
-                        option("fillcolor", feature.getGroup().isOr() ? "#000000" : null),
-                        option("label", ""),
-                        option("width", ".15"),
-                        option("height", ".15")));
-        return nodeString;
+        return stripLineBreak(writeToString(out -> writeNode(out, feature)));
     }
 
+    /**
+     * Returns the DOT statements for the edges from a feature's parent to the feature and to its group node.
+     *
+     * @param feature the feature
+     * @return the statements
+     * @deprecated use {@link #serialize(IFeatureModel, Writer)}, which streams the output
+     */
+    @Deprecated
     public String getEdge(IFeatureTree feature) {
-        String edgeString = "";
-        if (feature.hasParent()) {
-            String parentNode =
-                    feature.getParent().get().getFeature().getIdentifier().toString();
-            edgeString += getEdge(
-                    parentNode + "_group",
-                    feature,
-                    option("style", feature.getParent().get().getGroup().isAnd() ? null : "invis"));
-            if (!feature.getParent().get().getGroup().isAnd())
-                edgeString += getEdge(
-                        parentNode + (feature.getParent().get().getGroup().isAnd() ? "_group" : ""), feature, "");
-        }
-        edgeString += String.format(
-                "  %s:s -> %s:n%s;",
-                quote(feature.getFeature().getIdentifier().toString()),
-                quote(feature.getFeature().getIdentifier().toString() + "_group"),
-                options(option("style", feature.getGroup().isAnd() ? null : "invis")));
-        return edgeString;
+        return stripLineBreak(writeToString(out -> writeEdges(out, feature, true)));
     }
 
+    /**
+     * Returns the DOT statement for an edge from a node to a feature.
+     *
+     * @param parentNode the node
+     * @param childFeature the feature
+     * @param option an additional option as returned by {@link #option(String, String)}
+     * @return the statement
+     * @deprecated use {@link #serialize(IFeatureModel, Writer)}, which streams the output
+     */
+    @Deprecated
     public String getEdge(String parentNode, IFeatureTree childFeature, String option) {
-        return String.format(
-                "  %s:s -> %s:n%s;\n",
-                quote(parentNode),
-                quote(childFeature.getFeature().getIdentifier().toString()),
-                options(
-                        option(
-                                "arrowhead",
-                                childFeature.getParent().get().getGroup().isAnd()
-                                        ? null
-                                        : childFeature.isMandatory() ? "dot" : "odot"),
-                        option));
+        String arrowhead = childFeature.getParent().get().getGroup().isAnd()
+                ? null
+                : childFeature.isMandatory() ? "dot" : "odot";
+        return writeToString(out -> {
+            out.write("  ");
+            writeQuoted(out, parentNode, "");
+            out.write(":s -> ");
+            writeQuoted(out, childFeature.getFeature().getIdentifier().toString(), "");
+            out.write(":n");
+            out.write(options(option("arrowhead", arrowhead), option));
+            out.write(";\n");
+        });
     }
 
+    /**
+     * @deprecated use {@link #writeQuoted(Writer, String, String)}
+     */
+    @Deprecated
     protected String quote(String str) {
-        return String.format("\"%s\"", str.replace("\"", "\\\""));
+        return writeToString(out -> writeQuoted(out, str, ""));
     }
 
+    /**
+     * @deprecated use {@link #writeOptions(Writer, String...)}
+     */
+    @Deprecated
     protected String options(String... options) {
-        List<String> optionsList =
-                Arrays.stream(options).filter(o -> !o.isEmpty()).collect(Collectors.toList());
-        if (String.join("", optionsList).trim().isEmpty()) return "";
-        return String.format(" [%s]", String.join(" ", optionsList));
+        StringBuilder optionsString = new StringBuilder();
+        for (String option : options) {
+            if (!option.isEmpty()) {
+                optionsString.append(optionsString.length() == 0 ? " [" : " ").append(option);
+            }
+        }
+        return optionsString.length() == 0 ? "" : optionsString.append(']').toString();
     }
 
+    /**
+     * @deprecated use {@link #writeOptions(Writer, String...)}
+     */
+    @Deprecated
     protected String option(String name, String value) {
-        return value != null ? String.format("%s=%s", name, quote(value)) : "";
+        String options = writeToString(out -> writeOptions(out, name, value));
+        // strips the brackets around the single option
+        return options.isEmpty() ? "" : options.substring(2, options.length() - 1);
+    }
+
+    private interface WriterAction {
+        void write(Writer out) throws IOException;
+    }
+
+    private static String writeToString(WriterAction action) {
+        StringWriter writer = new StringWriter();
+        try {
+            action.write(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    private static String stripLineBreak(String statements) {
+        return statements.endsWith("\n") ? statements.substring(0, statements.length() - 1) : statements;
+    }
+
+    private static final class CountingWriter extends FilterWriter {
+        private long count;
+
+        private CountingWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            out.write(c);
+            count++;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            out.write(cbuf, off, len);
+            count += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            out.write(str, off, len);
+            count += len;
+        }
     }
 }
@@ -21,14 +21,17 @@
 package de.featjar.feature.model.io.xml;
 
 import de.featjar.base.FeatJAR;
+import de.featjar.base.data.Attribute;
 import de.featjar.base.data.IAttribute;
 import de.featjar.base.data.Maps;
 import de.featjar.base.data.Problem;
 import de.featjar.base.data.Result;
 import de.featjar.base.data.identifier.IIdentifier;
 import de.featjar.base.data.identifier.Identifiers;
+import de.featjar.base.io.IO;
 import de.featjar.base.io.format.ParseException;
 import de.featjar.base.io.input.AInputMapper;
+import de.featjar.base.io.input.StreamInputMapper;
 import de.featjar.feature.model.Attributes;
 import de.featjar.feature.model.FeatureModel;
 import de.featjar.feature.model.IConstraint;
@@ -37,6 +40,9 @@ import de.featjar.feature.model.IFeatureModel;
 import de.featjar.feature.model.IFeatureModelElement;
 import de.featjar.feature.model.IFeatureTree;
 import de.featjar.feature.model.io.AttributeIO;
+import de.featjar.feature.model.jfr.FormatEvent;
+import de.featjar.feature.model.metrics.IMetricsListener;
+import de.featjar.feature.model.metrics.IMetricsListener.Phase;
 import de.featjar.formula.io.xml.AXMLFeatureModelFormat;
 import de.featjar.formula.structure.Expressions;
 import de.featjar.formula.structure.IExpression;
@@ -48,6 +54,9 @@ import de.featjar.formula.structure.connective.Not;
 import de.featjar.formula.structure.connective.Or;
 import de.featjar.formula.structure.predicate.Equals;
 import de.featjar.formula.structure.predicate.Literal;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
@@ -55,6 +64,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Supplier;
@@ -84,6 +94,7 @@ public class XMLFeatureModelFormat extends AXMLFeatureModelFormat<IFeatureModel,
     protected static final String VALUE = "value";
     protected static final String DATA_TYPE = "data-type";
     protected static final String NAMESPACE_TAG = "namespace";
+    protected static final String RECURSIVE = "recursive";
 
     protected static final String PROPERTIES = "properties";
     protected static final String CALCULATIONS = "calculations";
@@ -96,14 +107,34 @@ public class XMLFeatureModelFormat extends AXMLFeatureModelFormat<IFeatureModel,
     // EXTENDED_FEATURE_MODEL, STRUCT, FEATURE_ORDER, CONSTRAINTS, CONSTRAINT, COLLAPSED, FEATURES,
     // CHOSEN_LAYOUT_ALGORITHM, NAME, FALSE, SHOW_COLLAPSED_CONSTRAINTS, LEGEND, LEGEND_AUTO_LAYOUT,
     // LEGEND_HIDDEN, SHOW_SHORT_NAMES, HORIZONTAL_LAYOUT, RULE, UNKNOWN, ATMOST1, ATTRIBUTE,
-    // ATTRIBUTE_UNIT, ATTRIBUTE_TYPE, ATTRIBUTE_VALUE, ATTRIBUTE_RECURSIVE, ATTRIBUTE_CONFIGURABLE,
+    // ATTRIBUTE_UNIT, ATTRIBUTE_TYPE, ATTRIBUTE_VALUE, ATTRIBUTE_CONFIGURABLE,
 
     protected IFeatureModel featureModel;
     protected LinkedHashMap<String, IIdentifier> nameToIdentifierMap;
 
+    protected IMetricsListener metricsListener = IMetricsListener.NONE;
+    protected long documentNanos;
+
     @Override
     public XMLFeatureModelFormat getInstance() {
-        return new XMLFeatureModelFormat();
+        return new XMLFeatureModelFormat().setMetricsListener(metricsListener);
+    }
+
+    public IMetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    /**
+     * Sets a listener that receives the wall time and number of processed elements per parsing phase,
+     * the size of the input in bytes (encoded as UTF-8), as well as all parse problems.
+     * The listener is passed on to instances created by {@link #getInstance()}.
+     *
+     * @param metricsListener the metrics listener
+     * @return this format
+     */
+    public XMLFeatureModelFormat setMetricsListener(IMetricsListener metricsListener) {
+        this.metricsListener = Objects.requireNonNull(metricsListener);
+        return this;
     }
 
     @Override
@@ -127,14 +158,63 @@ public class XMLFeatureModelFormat extends AXMLFeatureModelFormat<IFeatureModel,
         return parse(inputMapper);
     }
 
+    @Override
+    public Result<IFeatureModel> parse(AInputMapper inputMapper) {
+        FormatEvent event = new FormatEvent();
+        event.begin();
+        final boolean measure = metricsListener.isEnabled();
+        documentNanos = 0;
+        long start = measure ? System.nanoTime() : 0;
+        long bytes = 0;
+        Result<IFeatureModel> result;
+        if (measure || event.isEnabled()) {
+            // count the bytes as the parser consumes the input, without buffering a copy of it
+            CountingInputStream inputStream = new CountingInputStream(inputMapper.get().getInputStream());
+            result = super.parse(new StreamInputMapper(inputStream, IO.DEFAULT_CHARSET, getFileExtension()));
+            bytes = inputStream.count;
+            if (measure) {
+                metricsListener.onBytes(getName(), bytes);
+            }
+        } else {
+            result = super.parse(inputMapper);
+        }
+        if (measure) {
+            metricsListener.onPhase(getName(), Phase.READ, System.nanoTime() - start - documentNanos, 1);
+            metricsListener.onProblems(getName(), result.getProblems());
+        }
+        if (event.shouldCommit()) {
+            event.format = getName();
+            event.operation = FormatEvent.PARSE;
+            event.bytes = bytes;
+            event.features = result.map(IFeatureModel::getNumberOfFeatures).orElse(0);
+            event.success = result.isPresent();
+            event.commit();
+        }
+        return result;
+    }
+
     @Override
     public IFeatureModel parseDocument(Document document) throws ParseException {
         if (featureModel == null) featureModel = new FeatureModel(Identifiers.newCounterIdentifier());
         nameToIdentifierMap = Maps.empty();
+        final boolean measure = metricsListener.isEnabled();
+        long start = measure ? System.nanoTime() : 0;
+        long phaseStart = start;
         final Element featureModelElement = getDocumentElement(document, FEATURE_MODEL, EXT_FEATURE_MODEL);
         parseFeatureTree(getElement(featureModelElement, STRUCT));
+        if (measure) {
+            long now = System.nanoTime();
+            metricsListener.onPhase(getName(), Phase.TREE, now - phaseStart, featureModel.getNumberOfFeatures());
+            phaseStart = now;
+        }
         Result<Element> element = getElementResult(featureModelElement, CONSTRAINTS);
         if (element.isPresent()) parseConstraints(element.get());
+        if (measure) {
+            long now = System.nanoTime();
+            metricsListener.onPhase(
+                    getName(), Phase.CONSTRAINTS, now - phaseStart, featureModel.getNumberOfConstraints());
+            phaseStart = now;
+        }
         element = getElementResult(featureModelElement, COMMENTS);
         if (element.isPresent()) parseComments(element.get());
         element = getElementResult(featureModelElement, FEATURE_ORDER);
@@ -143,6 +223,15 @@ public class XMLFeatureModelFormat extends AXMLFeatureModelFormat<IFeatureModel,
         if (element.isPresent()) parseFeatureModelProperties(element.get());
         element = getElementResult(featureModelElement, CALCULATIONS);
         element.ifPresent(this::parseCalculations);
+        if (measure) {
+            long now = System.nanoTime();
+            metricsListener.onPhase(
+                    getName(),
+                    Phase.ATTRIBUTES,
+                    now - phaseStart,
+                    featureModel.getAttributes().map(Map::size).orElse(0));
+            documentNanos = now - start;
+        }
         return featureModel;
     }
 
@@ -318,6 +407,12 @@ public class XMLFeatureModelFormat extends AXMLFeatureModelFormat<IFeatureModel,
             final String valueString = e.getAttribute(VALUE);
             parseProblems.addAll(AttributeIO.parseAndSetAttributeValue(
                     featureModelElement, namespace, name, typeString, valueString));
+            if (TRUE.equals(e.getAttribute(RECURSIVE))) {
+                Result<Attribute<?>> attribute = AttributeIO.parseAttribute(namespace, name, typeString);
+                if (attribute.isPresent() && featureModel instanceof FeatureModel) {
+                    ((FeatureModel) featureModel).createRecursiveAttribute(attribute.get());
+                }
+            }
         }
     }
 
@@ -528,7 +623,13 @@ public class XMLFeatureModelFormat extends AXMLFeatureModelFormat<IFeatureModel,
 
     protected void writeFeatureProperties(Document doc, Element node, IFeatureTree feat, final Element fnod) {
         addDescription(doc, feat.getFeature().getDescription().orElse(null), fnod);
-        addProperties(doc, feat.getAttributes().get(), fnod);
+        Map<IAttribute<?>, Object> properties = new LinkedHashMap<>();
+        for (Entry<IAttribute<?>, Object> attribute : feat.getFeature().getAttributes().get().entrySet()) {
+            if (!Attributes.NAMESPACE.equals(attribute.getKey().getNamespace())) {
+                properties.put(attribute.getKey(), attribute.getValue());
+            }
+        }
+        addProperties(doc, properties, fnod);
         writeAttributes(node, fnod, feat);
     }
 
@@ -555,6 +656,10 @@ public class XMLFeatureModelFormat extends AXMLFeatureModelFormat<IFeatureModel,
                         DATA_TYPE,
                         AttributeIO.getTypeString(property.getKey().getType())
                                 .orElseThrow(p -> new IllegalArgumentException()));
+                if (featureModel instanceof FeatureModel
+                        && ((FeatureModel) featureModel).isRecursive(property.getKey())) {
+                    propNode.setAttribute(RECURSIVE, TRUE);
+                }
             }
             propNode.setAttribute(KEY, property.getKey().getName());
             propNode.setAttribute(VALUE, property.getValue().toString()); // TODO
@@ -600,4 +705,42 @@ public class XMLFeatureModelFormat extends AXMLFeatureModelFormat<IFeatureModel,
 
         node.appendChild(fnod);
     }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
 }
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for translating a feature model into a formula.
+ * Disabled by default, enable it in a recording with {@code de.featjar.feature.model.ComputeFormula#enabled=true}.
+ */
+@Name("de.featjar.feature.model.ComputeFormula")
+@Label("Compute Formula")
+@Description("Translation of a feature model into a formula")
+@Category({"FeatJAR", "Feature Model"})
+@Enabled(false)
+@StackTrace(false)
+public class ComputeFormulaEvent extends Event {
+    @Label("Tree Nodes")
+    public int nodes;
+
+    @Label("Cross-Tree Constraints")
+    public int constraints;
+
+    @Label("Formula Clauses")
+    @Description("Number of top-level conjuncts in the resulting formula")
+    public int clauses;
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for a mutation that touches many elements of a feature model at once,
+ * such as applying an edit script with {@link de.featjar.feature.model.diff.FeatureModelDiff#apply}.
+ * Disabled by default, enable it in a recording with {@code de.featjar.feature.model.Mutation#enabled=true}.
+ */
+@Name("de.featjar.feature.model.Mutation")
+@Label("Feature Model Bulk Mutation")
+@Description("Mutation affecting several features or constraints")
+@Category({"FeatJAR", "Feature Model"})
+@Enabled(false)
+public class MutationEvent extends Event {
+    @Label("Operation")
+    public String operation;
+
+    @Label("Elements")
+    @Description("Number of edits applied by the mutation")
+    public int elements;
+}
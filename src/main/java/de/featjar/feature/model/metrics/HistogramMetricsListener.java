@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.metrics;
+
+import de.featjar.base.data.Problem;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregates reported metrics into thread-safe histograms with power-of-two buckets.
+ * Histograms are keyed by source, phase, and quantity (e.g., {@code FeatureIDE/TREE/nanos}),
+ * and can be inspected with {@link #getHistograms()} or dumped as text with {@link #dump()}.
+ */
+public class HistogramMetricsListener implements IMetricsListener {
+
+    /**
+     * A histogram of non-negative values with one bucket per power of two.
+     */
+    public static final class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE + 1);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+        public void record(long value) {
+            value = Math.max(0, value);
+            buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(value));
+            count.increment();
+            sum.add(value);
+            min.accumulateAndGet(value, Math::min);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getSum() {
+            return sum.sum();
+        }
+
+        public long getMin() {
+            return getCount() == 0 ? 0 : min.get();
+        }
+
+        public long getMax() {
+            return getCount() == 0 ? 0 : max.get();
+        }
+
+        public double getMean() {
+            long count = getCount();
+            return count == 0 ? 0 : (double) getSum() / count;
+        }
+
+        /**
+         * Estimates a percentile as the upper bound of the bucket that contains it.
+         *
+         * @param percentile the percentile in [0, 100]
+         * @return an upper bound for the percentile
+         */
+        public long getPercentile(double percentile) {
+            long count = getCount();
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(percentile / 100.0 * count);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(getMax(), i == 0 ? 0 : i >= Long.SIZE - 1 ? Long.MAX_VALUE : (1L << i) - 1);
+                }
+            }
+            return getMax();
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "count=%d sum=%d min=%d mean=%.1f p50<=%d p99<=%d max=%d",
+                    getCount(),
+                    getSum(),
+                    getMin(),
+                    getMean(),
+                    getPercentile(50),
+                    getPercentile(99),
+                    getMax());
+        }
+    }
+
+    private final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    @Override
+    public void onPhase(String source, Phase phase, long nanos, long elements) {
+        getHistogram(source + "/" + phase + "/nanos").record(nanos);
+        getHistogram(source + "/" + phase + "/elements").record(elements);
+    }
+
+    @Override
+    public void onBytes(String source, long bytes) {
+        getHistogram(source + "/bytes").record(bytes);
+    }
+
+    @Override
+    public void onProblems(String source, List<Problem> problems) {
+        getHistogram(source + "/problems").record(problems.size());
+        for (Problem problem : problems) {
+            getHistogram(source + "/problems/" + problem.getSeverity()).record(1);
+        }
+    }
+
+    /**
+     * @param key the key of the histogram
+     * @return the histogram for the given key, created if necessary
+     */
+    public Histogram getHistogram(String key) {
+        return histograms.computeIfAbsent(key, k -> new Histogram());
+    }
+
+    /**
+     * @return a sorted snapshot of all histograms
+     */
+    public Map<String, Histogram> getHistograms() {
+        return new TreeMap<>(histograms);
+    }
+
+    /**
+     * Removes all recorded metrics.
+     */
+    public void reset() {
+        histograms.clear();
+    }
+
+    /**
+     * @return a human-readable dump of all histograms, one per line
+     */
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Histogram> entry : getHistograms().entrySet()) {
+            sb.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return dump();
+    }
+}
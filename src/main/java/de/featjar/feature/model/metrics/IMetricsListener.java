@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.metrics;
+
+import de.featjar.base.data.Problem;
+import java.util.List;
+
+/**
+ * Receives phase-level metrics from parsers, writers, and transformers of feature models.
+ * Implementations must be thread-safe if they are shared between concurrently running formats or computations.
+ * Reporters check {@link #isEnabled()} once before measuring anything,
+ * so the {@link #NONE default listener} does not even read the clock.
+ */
+public interface IMetricsListener {
+
+    /**
+     * Phases of reading, writing, and translating a feature model.
+     */
+    enum Phase {
+        /**
+         * Reading and tokenizing the input (e.g., building the XML DOM).
+         */
+        READ,
+        /**
+         * Building or traversing the feature tree.
+         */
+        TREE,
+        /**
+         * Parsing or translating cross-tree constraints.
+         */
+        CONSTRAINTS,
+        /**
+         * Parsing attributes, properties, comments, and other metadata.
+         */
+        ATTRIBUTES,
+        /**
+         * Writing the output.
+         */
+        WRITE
+    }
+
+    /**
+     * A listener that ignores all metrics.
+     */
+    IMetricsListener NONE = new IMetricsListener() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public void onPhase(String source, Phase phase, long nanos, long elements) {}
+
+        @Override
+        public void onBytes(String source, long bytes) {}
+
+        @Override
+        public void onProblems(String source, List<Problem> problems) {}
+    };
+
+    /**
+     * @return whether this listener wants to receive metrics
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Reports that a phase has been completed.
+     *
+     * @param source the name of the reporting format or computation
+     * @param phase the phase
+     * @param nanos the wall time spent in the phase in nanoseconds
+     * @param elements the number of elements processed in the phase
+     */
+    void onPhase(String source, Phase phase, long nanos, long elements);
+
+    /**
+     * Reports the number of bytes read or written.
+     *
+     * @param source the name of the reporting format or computation
+     * @param bytes the number of bytes
+     */
+    void onBytes(String source, long bytes);
+
+    /**
+     * Reports problems that occurred while parsing or translating.
+     * Called once per run, possibly with an empty list.
+     *
+     * @param source the name of the reporting format or computation
+     * @param problems the problems
+     */
+    void onProblems(String source, List<Problem> problems);
+}
@@ -25,24 +25,34 @@ import de.featjar.base.computation.Dependency;
 import de.featjar.base.computation.IComputation;
 import de.featjar.base.computation.Progress;
 import de.featjar.base.data.Result;
+import de.featjar.base.tree.Trees;
 import de.featjar.feature.model.FeatureTree.Group;
 import de.featjar.feature.model.IConstraint;
 import de.featjar.feature.model.IFeature;
 import de.featjar.feature.model.IFeatureModel;
 import de.featjar.feature.model.IFeatureTree;
+import de.featjar.feature.model.analysis.AtomicSets;
+import de.featjar.feature.model.jfr.ComputeFormulaEvent;
+import de.featjar.feature.model.metrics.IMetricsListener;
+import de.featjar.feature.model.metrics.IMetricsListener.Phase;
 import de.featjar.formula.structure.Expressions;
+import de.featjar.formula.structure.IExpression;
 import de.featjar.formula.structure.IFormula;
 import de.featjar.formula.structure.connective.And;
 import de.featjar.formula.structure.connective.AtLeast;
 import de.featjar.formula.structure.connective.Between;
+import de.featjar.formula.structure.connective.BiImplies;
 import de.featjar.formula.structure.connective.Choose;
 import de.featjar.formula.structure.connective.Implies;
 import de.featjar.formula.structure.connective.Reference;
 import de.featjar.formula.structure.predicate.Literal;
 import de.featjar.formula.structure.term.value.Variable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Transforms a feature model into a boolean formula.
@@ -52,72 +62,190 @@ import java.util.List;
 public class ComputeFormula extends AComputation<IFormula> {
     protected static final Dependency<IFeatureModel> FEATURE_MODEL = Dependency.newDependency(IFeatureModel.class);
 
+    protected IMetricsListener metricsListener = IMetricsListener.NONE;
+
+    protected boolean simplifyAtomicSets;
+
     public ComputeFormula(IComputation<IFeatureModel> formula) {
         super(formula);
     }
 
     protected ComputeFormula(ComputeFormula other) {
         super(other);
+        metricsListener = other.metricsListener;
+        simplifyAtomicSets = other.simplifyAtomicSets;
+    }
+
+    public IMetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    /**
+     * Sets a listener that receives the wall time and number of processed elements
+     * for translating the feature tree and the cross-tree constraints.
+     *
+     * @param metricsListener the metrics listener
+     * @return this computation
+     */
+    public ComputeFormula setMetricsListener(IMetricsListener metricsListener) {
+        this.metricsListener = Objects.requireNonNull(metricsListener);
+        return this;
+    }
+
+    public boolean isSimplifyAtomicSets() {
+        return simplifyAtomicSets;
+    }
+
+    /**
+     * Sets whether features that always have the same value are represented by a single variable.
+     * Each {@link AtomicSets atomic set} is represented by its first feature in preorder, and implications
+     * between features of the same set are omitted.
+     * Solutions can be expanded to all features with {@link AtomicSets#expand(java.util.Map)} of
+     * {@code new AtomicSets(featureModel)}.
+     *
+     * @param simplifyAtomicSets whether to collapse atomic sets
+     * @return this computation
+     */
+    public ComputeFormula setSimplifyAtomicSets(boolean simplifyAtomicSets) {
+        this.simplifyAtomicSets = simplifyAtomicSets;
+        return this;
     }
 
     @Override
     public Result<IFormula> compute(List<Object> dependencyList, Progress progress) {
         IFeatureModel featureModel = FEATURE_MODEL.get(dependencyList);
-        HashSet<IFeatureModel> featureModels = new HashSet<>();
+        ComputeFormulaEvent event = new ComputeFormulaEvent();
+        event.begin();
+        final boolean measure = metricsListener.isEnabled();
+        long start = measure ? System.nanoTime() : 0;
+        AtomicSets atomicSets = simplifyAtomicSets ? new AtomicSets(featureModel) : null;
+        LinkedHashSet<IFeatureModel> featureModels = new LinkedHashSet<>();
         ArrayList<IFormula> constraints = new ArrayList<>();
         HashSet<Variable> variables = new HashSet<>();
+        HashSet<String> variableNames = new HashSet<>();
         featureModel.getFeatureTreeStream().forEach(tree -> {
             // TODO use better error value
             IFeature feature = tree.getFeature();
-            String featureName = feature.getName().orElse("");
-            Variable variable = new Variable(featureName, feature.getType());
-            variables.add(variable);
+            String featureName = getVariableName(atomicSets, feature);
+            if (variableNames.add(featureName)) {
+                variables.add(new Variable(featureName, feature.getType()));
+            }
 
-            // TODO take featureRanges into Account
+            // TODO take upper bounds of featureRanges into Account
             Result<IFeatureTree> potentialParentTree = tree.getParent();
             if (potentialParentTree.isEmpty()) {
                 if (tree.isMandatory()) {
                     constraints.add(Expressions.literal(featureName));
                 }
             } else {
-                IFeatureTree parentTree = potentialParentTree.get();
-                Literal literal = Expressions.literal(featureName);
-                Literal parentLiteral =
-                        Expressions.literal(parentTree.getFeature().getName().orElse(""));
-                constraints.add(new Implies(literal, parentLiteral));
-                for (Group group : parentTree.getGroups()) {
-                    if (!group.isAnd()) {
-                        List<IFormula> groupLiterals = new ArrayList<>();
-                        for (IFeatureTree childTree : parentTree.getChildren()) {
-                            if (childTree.getGroup() == group) {
-                                groupLiterals.add(Expressions.literal(
-                                        childTree.getFeature().getName().orElse("")));
-                            }
-                        }
-                        if (group.isOr()) {
-                            constraints.add(new Implies(parentLiteral, new AtLeast(1, groupLiterals)));
-                        } else if (group.isAlternative()) {
-                            constraints.add(new Implies(parentLiteral, new Choose(1, groupLiterals)));
-                        } else {
-                            constraints.add(new Implies(
-                                    parentLiteral,
-                                    new Between(group.getLowerBound(), group.getUpperBound(), groupLiterals)));
-                        }
+                String parentName = getVariableName(atomicSets, potentialParentTree.get().getFeature());
+                if (!featureName.equals(parentName)) {
+                    Literal literal = Expressions.literal(featureName);
+                    Literal parentLiteral = Expressions.literal(parentName);
+                    constraints.add(new Implies(literal, parentLiteral));
+                    if (tree.isMandatory()) {
+                        constraints.add(new Implies(parentLiteral, literal));
                     }
                 }
             }
-            for (IFeatureTree child : tree.getChildren()) {
-                child.getGroup();
-            }
-            IFeatureModel featureModel2 = feature.getFeatureModel();
-            if (featureModels.add(featureModel)) {
-                featureModel2.getConstraints().stream()
-                        .map(IConstraint::getFormula)
-                        .forEach(constraints::add);
+            List<Group> groups = tree.getGroups();
+            for (int i = 0; i < groups.size(); i++) {
+                Group group = groups.get(i);
+                if (!group.isAnd()) {
+                    List<IFormula> groupLiterals = new ArrayList<>();
+                    for (IFeatureTree childTree : tree.getChildren()) {
+                        if (childTree.getGroupID() == i) {
+                            groupLiterals.add(Expressions.literal(getVariableName(atomicSets, childTree.getFeature())));
+                        }
+                    }
+                    Literal parentLiteral = Expressions.literal(featureName);
+                    if (group.isOr()) {
+                        constraints.add(new Implies(parentLiteral, new AtLeast(1, groupLiterals)));
+                    } else if (group.isAlternative()) {
+                        constraints.add(new Implies(parentLiteral, new Choose(1, groupLiterals)));
+                    } else {
+                        constraints.add(new Implies(
+                                parentLiteral,
+                                new Between(group.getLowerBound(), group.getUpperBound(), groupLiterals)));
+                    }
+                }
             }
+            featureModels.add(feature.getFeatureModel());
         });
+        long treeEnd = measure ? System.nanoTime() : 0;
+        int treeConstraintCount = constraints.size();
+        for (IFeatureModel constraintModel : featureModels) {
+            for (IConstraint constraint : constraintModel.getConstraints()) {
+                IFormula formula = constraint.getFormula();
+                if (atomicSets != null) {
+                    formula = replaceRepresentatives(atomicSets, formula);
+                    if (formula == null) {
+                        continue;
+                    }
+                }
+                constraints.add(formula);
+            }
+        }
         Reference reference = new Reference(new And(constraints));
         reference.setFreeVariables(variables);
+        if (measure) {
+            metricsListener.onPhase(getClass().getSimpleName(), Phase.TREE, treeEnd - start, variables.size());
+            metricsListener.onPhase(
+                    getClass().getSimpleName(),
+                    Phase.CONSTRAINTS,
+                    System.nanoTime() - treeEnd,
+                    constraints.size() - treeConstraintCount);
+            metricsListener.onProblems(getClass().getSimpleName(), List.of());
+        }
+        if (event.shouldCommit()) {
+            event.nodes = variables.size();
+            event.constraints = constraints.size() - treeConstraintCount;
+            event.clauses = constraints.size();
+            event.commit();
+        }
         return Result.of(reference);
     }
+
+    private static String getVariableName(AtomicSets atomicSets, IFeature feature) {
+        String name = feature.getName().orElse("");
+        return atomicSets == null ? name : atomicSets.getRepresentative(name);
+    }
+
+    /**
+     * Returns a copy of a formula with every feature replaced by the representative of its atomic set, or null if
+     * the formula becomes a trivial equivalence.
+     */
+    private static IFormula replaceRepresentatives(AtomicSets atomicSets, IFormula formula) {
+        if (formula instanceof Literal) {
+            Literal literal = (Literal) formula;
+            return Expressions.literal(literal.isPositive(), atomicSets.getRepresentative(literal.getName()));
+        }
+        IFormula copy = (IFormula) Trees.clone(formula);
+        ArrayDeque<IExpression> stack = new ArrayDeque<>();
+        stack.push(copy);
+        while (!stack.isEmpty()) {
+            IExpression expression = stack.pop();
+            for (IExpression child : new ArrayList<>(expression.getChildren())) {
+                if (child instanceof Literal) {
+                    Literal literal = (Literal) child;
+                    String representative = atomicSets.getRepresentative(literal.getName());
+                    if (!representative.equals(literal.getName())) {
+                        expression.replaceChild(child, Expressions.literal(literal.isPositive(), representative));
+                    }
+                } else {
+                    stack.push(child);
+                }
+            }
+        }
+        if (copy instanceof BiImplies
+                && copy.getChildren().get(0) instanceof Literal
+                && copy.getChildren().get(1) instanceof Literal) {
+            Literal literal1 = (Literal) copy.getChildren().get(0);
+            Literal literal2 = (Literal) copy.getChildren().get(1);
+            if (literal1.getName().equals(literal2.getName()) && literal1.isPositive() == literal2.isPositive()) {
+                return null;
+            }
+        }
+        return copy;
+    }
 }
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import de.featjar.base.data.identifier.Identifiers;
+import de.featjar.feature.model.io.xml.GraphVizFeatureModelFormat;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Measures the bytes allocated per invocation of core {@link FeatureModel} operations
+ * on a fixed model and compares them against recorded baselines.
+ * When an operation allocates more than its baseline plus {@link #TOLERANCE}, or has no baseline, the test fails
+ * with a diff of all measurements.
+ * Baselines are stored in {@value #BASELINES}.
+ * After an intentional change, run the test with {@code -D}{@value #RECORD_PROPERTY}{@code =<file>} to write the
+ * current measurements to a file and copy it over the baselines.
+ */
+public class AllocationBudgetTest {
+
+    private static final int BRANCHING = 4;
+    private static final int DEPTH = 4;
+    private static final int WARMUP_ITERATIONS = 50;
+    private static final int MEASURED_ITERATIONS = 200;
+
+    /**
+     * Allowed relative increase over a baseline, which absorbs differences between JVM versions and JIT decisions.
+     */
+    private static final double TOLERANCE = 0.10;
+
+    /**
+     * Allowed absolute increase over a baseline, for operations whose baseline is only a few objects.
+     */
+    private static final long SLACK = 64;
+
+    private static final String BASELINES = "allocation-baselines.properties";
+    private static final String RECORD_PROPERTY = "featjar.allocation.record";
+
+    private FeatureModel featureModel;
+    private IFeatureTree rootTree;
+    private String lastFeatureName;
+
+    @BeforeEach
+    public void createFeatureModel() {
+        featureModel = new FeatureModel(Identifiers.newCounterIdentifier());
+        IFeature rootFeature = featureModel.mutate().addFeature("root");
+        rootTree = featureModel.mutate().addFeatureTreeRoot(rootFeature);
+        rootTree.mutate().setMandatory();
+        List<IFeatureTree> level = List.of(rootTree);
+        for (int depth = 1; depth <= DEPTH; depth++) {
+            List<IFeatureTree> nextLevel = new ArrayList<>();
+            for (IFeatureTree parent : level) {
+                if (depth % 2 == 0) {
+                    parent.mutate().setOr();
+                }
+                for (int i = 0; i < BRANCHING; i++) {
+                    lastFeatureName = parent.getFeature().getName().get() + "_" + i;
+                    IFeature feature = featureModel.mutate().addFeature(lastFeatureName);
+                    feature.mutate().setAbstract(i % 2 == 0);
+                    IFeatureTree child = parent.mutate().addFeatureBelow(feature);
+                    if (i == 0) {
+                        child.mutate().setMandatory();
+                    }
+                    nextLevel.add(child);
+                }
+            }
+            level = nextLevel;
+        }
+    }
+
+    @Test
+    public void allocationBudgets() throws IOException {
+        com.sun.management.ThreadMXBean threadBean = getThreadBean();
+        assumeTrue(threadBean != null, "per-thread allocation accounting is not supported by this JVM");
+
+        LinkedHashMap<String, Long> measured = new LinkedHashMap<>();
+        measured.put("getGroup (root)", measure(threadBean, () -> rootTree.getGroup()));
+        measured.put("getFeatureTreeStream", measure(threadBean, () -> featureModel.getFeatureTreeStream().count()));
+        measured.put("getTreeFeatures", measure(threadBean, () -> featureModel.getTreeFeatures()));
+        measured.put("getFeature (by name)", measure(threadBean, () -> featureModel.getFeature(lastFeatureName)));
+        measured.put("getAttributeValue (all features)", measure(threadBean, () -> {
+            int abstractCount = 0;
+            for (IFeature feature : featureModel.getFeatures()) {
+                if (feature.isAbstract()) {
+                    abstractCount++;
+                }
+            }
+            return abstractCount;
+        }));
+        measured.put("clone", measure(threadBean, () -> featureModel.clone()));
+        GraphVizFeatureModelFormat graphVizFormat = new GraphVizFeatureModelFormat();
+        measured.put("GraphViz serialize", measure(threadBean, () -> graphVizFormat.serialize(featureModel)));
+
+        String recordFile = System.getProperty(RECORD_PROPERTY);
+        if (recordFile != null) {
+            record(measured, Path.of(recordFile));
+        }
+
+        Properties baselines = loadBaselines();
+        StringBuilder diff = new StringBuilder();
+        boolean exceeded = false;
+        boolean missing = false;
+        for (Map.Entry<String, Long> entry : measured.entrySet()) {
+            long bytes = entry.getValue();
+            String baselineString = baselines.getProperty(toKey(entry.getKey()));
+            if (baselineString == null) {
+                missing = true;
+                diff.append("? ")
+                        .append(entry.getKey())
+                        .append(": ")
+                        .append(bytes)
+                        .append(" B/op (no baseline)\n");
+                continue;
+            }
+            long baseline = Long.parseLong(baselineString.trim());
+            long budget = Math.max((long) (baseline * (1 + TOLERANCE)), baseline + SLACK);
+            boolean over = bytes > budget;
+            exceeded |= over;
+            diff.append(over ? "+ " : "  ")
+                    .append(entry.getKey())
+                    .append(": ")
+                    .append(bytes)
+                    .append(" B/op (baseline ")
+                    .append(baseline)
+                    .append(" B/op, budget ")
+                    .append(budget)
+                    .append(" B/op, ")
+                    .append(String.format("%+.1f%%", 100.0 * (bytes - baseline) / Math.max(baseline, 1)))
+                    .append(")\n");
+        }
+        assertTrue(!exceeded, () -> "allocation budget exceeded:\n" + diff);
+        assertTrue(
+                !missing,
+                () -> "no baseline recorded, record with -D" + RECORD_PROPERTY + "=<file> and copy it to "
+                        + BASELINES + ":\n" + diff);
+    }
+
+    private static String toKey(String operation) {
+        return operation.replaceAll("[^A-Za-z0-9]+", ".").replaceAll("^\\.|\\.$", "");
+    }
+
+    private static Properties loadBaselines() throws IOException {
+        Properties baselines = new Properties();
+        try (InputStream inputStream = AllocationBudgetTest.class.getClassLoader().getResourceAsStream(BASELINES)) {
+            if (inputStream != null) {
+                baselines.load(inputStream);
+            }
+        }
+        return baselines;
+    }
+
+    private static void record(Map<String, Long> measured, Path file) throws IOException {
+        StringBuilder properties = new StringBuilder();
+        properties.append("# Bytes allocated per invocation, recorded by AllocationBudgetTest on Java ")
+                .append(System.getProperty("java.version"))
+                .append('\n');
+        for (Map.Entry<String, Long> entry : measured.entrySet()) {
+            properties.append(toKey(entry.getKey())).append('=').append(entry.getValue()).append('\n');
+        }
+        Files.write(file, properties.toString().getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static com.sun.management.ThreadMXBean getThreadBean() {
+        java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean sunThreadBean = (com.sun.management.ThreadMXBean) threadBean;
+        if (!sunThreadBean.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        sunThreadBean.setThreadAllocatedMemoryEnabled(true);
+        return sunThreadBean;
+    }
+
+    private static long measure(com.sun.management.ThreadMXBean threadBean, Operation operation) {
+        long threadId = Thread.currentThread().getId();
+        Object sink = null;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink = operation.run();
+        }
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            sink = operation.run();
+        }
+        long after = threadBean.getThreadAllocatedBytes(threadId);
+        if (sink == null) {
+            throw new IllegalStateException();
+        }
+        return (after - before) / MEASURED_ITERATIONS;
+    }
+
+    @FunctionalInterface
+    private interface Operation {
+        Object run();
+    }
+}
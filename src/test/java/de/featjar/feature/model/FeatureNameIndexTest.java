@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import de.featjar.base.data.identifier.Identifiers;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+public class FeatureNameIndexTest {
+
+    private static final String[] SYLLABLES = {"car", "ca", "body", "eng", "ine", "gear", "box", "e", "r"};
+
+    private static String randomName(Random random) {
+        StringBuilder name = new StringBuilder();
+        int length = 1 + random.nextInt(4);
+        for (int i = 0; i < length; i++) {
+            name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return name.toString();
+    }
+
+    private static String uniqueName(IFeatureModel featureModel, Random random) {
+        String name = randomName(random);
+        while (featureModel.getFeature(name).isPresent()) {
+            name = randomName(random);
+        }
+        return name;
+    }
+
+    private static int distance(String a, String b) {
+        int[] row = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            row[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            int[] nextRow = new int[b.length() + 1];
+            nextRow[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = row[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                nextRow[j] = Math.min(substitution, Math.min(row[j], nextRow[j - 1]) + 1);
+            }
+            row = nextRow;
+        }
+        return row[b.length()];
+    }
+
+    private static String key(IFeature feature) {
+        return feature.getName().get().toLowerCase(Locale.ROOT);
+    }
+
+    private static List<IFeature> expected(
+            IFeatureModel featureModel, Predicate<IFeature> filter, Comparator<IFeature> order, int limit) {
+        return featureModel.getFeatures().stream()
+                .filter(filter)
+                .sorted(order)
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void findsFeatures() {
+        IFeatureModel featureModel = new FeatureModel(Identifiers.newCounterIdentifier());
+        IFeatureTree root = featureModel.mutate().addFeatureTreeRoot(featureModel.mutate().addFeature("Car"));
+        IFeatureTree carBody = root.mutate().addFeatureBelow(featureModel.mutate().addFeature("Carbody"));
+        IFeatureTree engine = root.mutate().addFeatureBelow(featureModel.mutate().addFeature("Engine"));
+        IFeatureTree cargo = carBody.mutate().addFeatureBelow(featureModel.mutate().addFeature("Cargo"));
+        FeatureNameIndex index = featureModel.getFeatureNameIndex();
+
+        assertEquals(
+                List.of(root.getFeature(), carBody.getFeature(), cargo.getFeature()),
+                index.findByPrefix("car", 10));
+        assertEquals(List.of(root.getFeature(), carBody.getFeature()), index.findByPrefix("CAR", 2));
+        assertEquals(List.of(carBody.getFeature()), index.findBySubstring("body", 10));
+        assertEquals(List.of(engine.getFeature()), index.findFuzzy("engnie", 2, 10));
+        assertEquals(
+                List.of(carBody.getFeature(), cargo.getFeature()),
+                index.findByPrefix("car", 2, FeatureNameIndex.byScore(f -> key(f).length())));
+
+        engine.getFeature().mutate().setName("Motor");
+        featureModel.mutate().removeFeature(cargo.getFeature());
+        assertEquals(List.of(), index.findByPrefix("eng", 10));
+        assertEquals(List.of(engine.getFeature()), index.findBySubstring("oto", 10));
+        assertEquals(List.of(root.getFeature(), carBody.getFeature()), index.findByPrefix("car", 10));
+    }
+
+    @Test
+    public void matchesLinearSearch() {
+        Random random = new Random(2);
+        IFeatureModel featureModel = new FeatureModel(Identifiers.newCounterIdentifier());
+        List<IFeatureTree> nodes = new ArrayList<>();
+        nodes.add(featureModel.mutate().addFeatureTreeRoot(featureModel.mutate().addFeature("root")));
+        FeatureNameIndex index = featureModel.getFeatureNameIndex();
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 50; i++) {
+                IFeature feature = featureModel.mutate().addFeature(uniqueName(featureModel, random));
+                nodes.add(nodes.get(random.nextInt(nodes.size())).mutate().addFeatureBelow(feature));
+            }
+            for (int i = 0; i < 10; i++) {
+                IFeature feature = nodes.get(1 + random.nextInt(nodes.size() - 1)).getFeature();
+                feature.mutate().setName(uniqueName(featureModel, random));
+            }
+            for (int i = 0; i < 5; i++) {
+                IFeatureTree node = nodes.get(1 + random.nextInt(nodes.size() - 1));
+                if (node.getChildren().isEmpty()) {
+                    node.getParent().get().mutate().removeChild(node);
+                    featureModel.mutate().removeFeature(node.getFeature());
+                    nodes.remove(node);
+                }
+            }
+            assertEquals(featureModel.getNumberOfFeatures(), index.size());
+
+            Comparator<IFeature> byDepth = index.byDepth();
+            for (int i = 0; i < 20; i++) {
+                String query = randomName(random).substring(0, 1 + random.nextInt(3));
+                String key = query.toLowerCase(Locale.ROOT);
+                int limit = 1 + random.nextInt(20);
+                assertEquals(
+                        expected(featureModel, f -> key(f).startsWith(key), byDepth, limit),
+                        index.findByPrefix(query, limit));
+                assertEquals(
+                        expected(featureModel, f -> key(f).contains(key), byDepth, limit),
+                        index.findBySubstring(query, limit));
+                String fuzzyQuery = randomName(random);
+                String fuzzyKey = fuzzyQuery.toLowerCase(Locale.ROOT);
+                int maxDistance = random.nextInt(3);
+                assertEquals(
+                        expected(
+                                featureModel,
+                                f -> distance(key(f), fuzzyKey) <= maxDistance,
+                                Comparator.<IFeature>comparingInt(f -> distance(key(f), fuzzyKey))
+                                        .thenComparing(byDepth),
+                                limit),
+                        index.findFuzzy(fuzzyQuery, maxDistance, limit));
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.featjar.base.data.Attribute;
+import de.featjar.base.data.identifier.Identifiers;
+import de.featjar.formula.structure.Expressions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class FeatureQueryTest {
+
+    private static final Attribute<String> VENDOR = new Attribute<>("test", "vendor", String.class);
+
+    private static final Attribute<Integer> COST = new Attribute<>("test", "cost", Integer.class);
+
+    private static final String[] VENDORS = {"X", "Y", "Z"};
+
+    private static List<IFeatureTree> createModel(IFeatureModel featureModel, Random random, int size) {
+        List<IFeatureTree> nodes = new ArrayList<>();
+        nodes.add(featureModel.mutate().addFeatureTreeRoot(featureModel.mutate().addFeature("root")));
+        for (int i = 1; i < size; i++) {
+            IFeatureTree parent = nodes.get(random.nextInt(nodes.size()));
+            IFeature feature = featureModel.mutate().addFeature("F" + i);
+            setRandomValues(feature, random);
+            nodes.add(parent.mutate().addFeatureBelow(feature));
+        }
+        return nodes;
+    }
+
+    private static void setRandomValues(IFeature feature, Random random) {
+        if (random.nextInt(4) > 0) {
+            feature.mutate().setAttributeValue(VENDOR, VENDORS[random.nextInt(VENDORS.length)]);
+        }
+        if (random.nextInt(4) > 0) {
+            feature.mutate().setAttributeValue(COST, random.nextInt(200) - 50);
+        }
+        feature.mutate().setAbstract(random.nextBoolean());
+    }
+
+    private static FeatureQuery randomQuery(IFeatureModel featureModel, List<IFeatureTree> nodes, Random random) {
+        FeatureQuery query = featureModel.query();
+        if (random.nextBoolean()) {
+            query.equal(VENDOR, VENDORS[random.nextInt(VENDORS.length)]);
+        }
+        switch (random.nextInt(4)) {
+            case 0:
+                query.lessThan(COST, random.nextInt(200) - 50);
+                break;
+            case 1:
+                query.between(COST, random.nextInt(100), 50 + random.nextInt(100));
+                break;
+            case 2:
+                query.equal(COST, random.nextInt(20));
+                break;
+            default:
+                break;
+        }
+        if (random.nextBoolean()) {
+            query.concrete();
+        }
+        if (random.nextBoolean()) {
+            query.within(nodes.get(random.nextInt(nodes.size())));
+        }
+        return query;
+    }
+
+    @Test
+    public void findsFeatures() {
+        FeatureModel featureModel = new FeatureModel(Identifiers.newCounterIdentifier());
+        IFeatureTree root = featureModel.mutate().addFeatureTreeRoot(featureModel.mutate().addFeature("root"));
+        IFeatureTree a = root.mutate().addFeatureBelow(featureModel.mutate().addFeature("A"));
+        IFeatureTree a1 = a.mutate().addFeatureBelow(featureModel.mutate().addFeature("A1"));
+        IFeatureTree b = root.mutate().addFeatureBelow(featureModel.mutate().addFeature("B"));
+        a.getFeature().mutate().setAttributeValue(VENDOR, "X");
+        a1.getFeature().mutate().setAttributeValue(VENDOR, "X");
+        b.getFeature().mutate().setAttributeValue(VENDOR, "X");
+        a.getFeature().mutate().setAttributeValue(COST, 150);
+        a1.getFeature().mutate().setAttributeValue(COST, 20);
+        b.getFeature().mutate().setAttributeValue(COST, 10);
+        a.getFeature().mutate().setAbstract();
+        featureModel.createAttributeIndex(VENDOR);
+        assertTrue(featureModel.createAttributeIndex(COST).isSorted());
+        assertFalse(featureModel.getAttributeIndex(VENDOR).get().isSorted());
+
+        assertEquals(
+                List.of(a1.getFeature(), b.getFeature()),
+                featureModel.query().equal(VENDOR, "X").lessThan(COST, 100).find());
+        assertEquals(
+                List.of(a1.getFeature()),
+                featureModel.query().equal(VENDOR, "X").concrete().within(a).find());
+        assertEquals(List.of(a.getFeature()), featureModel.query().abstractOnly().find());
+
+        b.getFeature().mutate().setAttributeValue(VENDOR, "Y");
+        a1.getFeature().mutate().removeAttributeValue(COST);
+        assertEquals(List.of(), featureModel.query().equal(VENDOR, "X").lessThan(COST, 100).find());
+        assertEquals(List.of(b.getFeature()), featureModel.query().equal(VENDOR, "Y").find());
+    }
+
+    @Test
+    public void indexedResultsMatchScan() {
+        Random random = new Random(1);
+        FeatureModel featureModel = new FeatureModel(Identifiers.newCounterIdentifier());
+        List<IFeatureTree> nodes = createModel(featureModel, random, 300);
+        for (int round = 0; round < 20; round++) {
+            if (round == 5) {
+                featureModel.createAttributeIndex(VENDOR);
+                featureModel.createAttributeIndex(COST);
+            } else if (round == 10) {
+                featureModel.createAttributeIndex(Attributes.ABSTRACT);
+            } else if (round == 15) {
+                featureModel.dropAttributeIndex(COST);
+            }
+            for (int i = 0; i < 50; i++) {
+                FeatureQuery query = randomQuery(featureModel, nodes, random);
+                assertEquals(query.scan(), query.find());
+            }
+            for (int i = 0; i < 10; i++) {
+                setRandomValues(nodes.get(1 + random.nextInt(nodes.size() - 1)).getFeature(), random);
+            }
+            IFeatureTree node = nodes.get(1 + random.nextInt(nodes.size() - 1));
+            IFeatureTree newParent = nodes.get(random.nextInt(nodes.size()));
+            if (!isAncestorOrSelf(node, newParent)) {
+                node.getParent().get().mutate().removeChild(node);
+                newParent.mutate().addChild(node);
+            }
+            IFeature feature = featureModel.mutate().addFeature("G" + round);
+            setRandomValues(feature, random);
+            nodes.add(nodes.get(random.nextInt(nodes.size())).mutate().addFeatureBelow(feature));
+        }
+    }
+
+    private static boolean isAncestorOrSelf(IFeatureTree ancestor, IFeatureTree node) {
+        for (IFeatureTree current = node; current != null; current = current.getParent().orElse(null)) {
+            if (current == ancestor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void updatesIndexesOfClone() {
+        FeatureModel featureModel = new FeatureModel(Identifiers.newCounterIdentifier());
+        IFeatureTree root = featureModel.mutate().addFeatureTreeRoot(featureModel.mutate().addFeature("root"));
+        IFeature a = featureModel.mutate().addFeature("A");
+        root.mutate().addFeatureBelow(a);
+        a.mutate().setAttributeValue(VENDOR, "X");
+        featureModel.mutate().addConstraint(Expressions.literal("A"));
+        featureModel.createAttributeIndex(VENDOR);
+
+        IFeatureModel clone = featureModel.clone();
+        IFeature cloneA = clone.getFeature("A").orElseThrow();
+        assertSame(clone, cloneA.getFeatureModel());
+        assertSame(clone, clone.getConstraints().iterator().next().getFeatureModel());
+        cloneA.mutate().setName("B");
+        cloneA.mutate().setAttributeValue(VENDOR, "Y");
+
+        assertTrue(clone.getFeature("A").isEmpty());
+        assertSame(cloneA, clone.getFeature("B").orElseThrow());
+        assertEquals(List.of(cloneA), clone.query().equal(VENDOR, "Y").find());
+        assertTrue(clone.query().equal(VENDOR, "X").find().isEmpty());
+
+        assertSame(a, featureModel.getFeature("A").orElseThrow());
+        assertTrue(featureModel.getFeature("B").isEmpty());
+        assertEquals(List.of(a), featureModel.query().equal(VENDOR, "X").find());
+        assertTrue(featureModel.query().equal(VENDOR, "Y").find().isEmpty());
+    }
+}
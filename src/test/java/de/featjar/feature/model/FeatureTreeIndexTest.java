@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.featjar.base.data.Result;
+import de.featjar.base.data.identifier.Identifiers;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class FeatureTreeIndexTest {
+
+    private static List<IFeatureTree> getAncestorsOrSelf(IFeatureTree node) {
+        List<IFeatureTree> ancestors = new ArrayList<>();
+        for (IFeatureTree current = node; current != null; current = current.getParent().orElse(null)) {
+            ancestors.add(current);
+        }
+        return ancestors;
+    }
+
+    private static IFeatureTree getLowestCommonAncestor(IFeatureTree a, IFeatureTree b) {
+        List<IFeatureTree> ancestorsOfB = getAncestorsOrSelf(b);
+        for (IFeatureTree ancestor : getAncestorsOrSelf(a)) {
+            if (ancestorsOfB.stream().anyMatch(node -> node == ancestor)) {
+                return ancestor;
+            }
+        }
+        return null;
+    }
+
+    private static void assertMatchesParentChains(IFeatureModel featureModel, List<IFeatureTree> nodes) {
+        FeatureTreeIndex index = featureModel.getFeatureTreeIndex();
+        assertEquals(nodes.size(), index.size());
+        for (IFeatureTree a : nodes) {
+            List<IFeatureTree> ancestors = getAncestorsOrSelf(a);
+            assertEquals(ancestors.size() - 1, index.getDepth(a));
+            for (IFeatureTree b : nodes) {
+                boolean ancestorOrSelf = getAncestorsOrSelf(b).stream().anyMatch(node -> node == a);
+                assertEquals(ancestorOrSelf, index.isAncestorOrSelf(a, b));
+                assertEquals(ancestorOrSelf && a != b, index.isAncestor(a, b));
+                IFeatureTree lowestCommonAncestor = getLowestCommonAncestor(a, b);
+                Result<IFeatureTree> result = index.getLowestCommonAncestor(a, b);
+                if (lowestCommonAncestor == null) {
+                    assertTrue(result.isEmpty());
+                } else {
+                    assertSame(lowestCommonAncestor, result.get());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void answersAncestorQueries() {
+        IFeatureModel featureModel = new FeatureModel(Identifiers.newCounterIdentifier());
+        IFeatureTree root = featureModel.mutate().addFeatureTreeRoot(featureModel.mutate().addFeature("root"));
+        IFeatureTree a = root.mutate().addFeatureBelow(featureModel.mutate().addFeature("A"));
+        IFeatureTree a1 = a.mutate().addFeatureBelow(featureModel.mutate().addFeature("A1"));
+        IFeatureTree a2 = a.mutate().addFeatureBelow(featureModel.mutate().addFeature("A2"));
+        IFeatureTree b = root.mutate().addFeatureBelow(featureModel.mutate().addFeature("B"));
+        FeatureTreeIndex index = featureModel.getFeatureTreeIndex();
+
+        assertEquals(0, index.getPreorder(root));
+        assertEquals(4, index.getPreorder(b));
+        assertEquals(2, index.getDepth(a2));
+        assertTrue(index.isAncestor(root, a2));
+        assertTrue(index.isAncestorOrSelf(a, a));
+        assertEquals(Result.of(a), index.getLowestCommonAncestor(a1, a2));
+        assertEquals(Result.of(root), index.getLowestCommonAncestor(a2, b));
+        assertEquals(Result.of(a), index.getLowestCommonAncestor(a, a1));
+        assertSame(index, featureModel.getFeatureTreeIndex());
+
+        a.mutate().removeChild(a2);
+        b.mutate().addChild(a2);
+        FeatureTreeIndex newIndex = featureModel.getFeatureTreeIndex();
+        assertNotSame(index, newIndex);
+        assertEquals(Result.of(b), newIndex.getLowestCommonAncestor(a2, b));
+        assertEquals(Result.of(root), newIndex.getLowestCommonAncestor(a1, a2));
+    }
+
+    @Test
+    public void matchesParentChains() {
+        Random random = new Random(3);
+        IFeatureModel featureModel = new FeatureModel(Identifiers.newCounterIdentifier());
+        List<IFeatureTree> nodes = new ArrayList<>();
+        nodes.add(featureModel.mutate().addFeatureTreeRoot(featureModel.mutate().addFeature("root1")));
+        nodes.add(featureModel.mutate().addFeatureTreeRoot(featureModel.mutate().addFeature("root2")));
+        for (int i = 0; i < 60; i++) {
+            IFeatureTree parent = nodes.get(random.nextInt(nodes.size()));
+            nodes.add(parent.mutate().addFeatureBelow(featureModel.mutate().addFeature("F" + i)));
+        }
+        assertMatchesParentChains(featureModel, nodes);
+
+        for (int i = 0; i < 10; i++) {
+            IFeatureTree node = nodes.get(2 + random.nextInt(nodes.size() - 2));
+            IFeatureTree newParent = nodes.get(random.nextInt(nodes.size()));
+            if (getAncestorsOrSelf(newParent).stream().noneMatch(ancestor -> ancestor == node)) {
+                node.getParent().get().mutate().removeChild(node);
+                newParent.mutate().addChild(node);
+            }
+        }
+        assertMatchesParentChains(featureModel, nodes);
+    }
+}
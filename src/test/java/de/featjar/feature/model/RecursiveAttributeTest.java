@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.featjar.base.data.Attribute;
+import de.featjar.base.data.Result;
+import de.featjar.base.data.identifier.Identifiers;
+import de.featjar.base.io.IO;
+import de.featjar.feature.model.io.xml.XMLFeatureModelFormat;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class RecursiveAttributeTest {
+
+    private static final Attribute<String> LICENSE = new Attribute<>("test", "license", String.class);
+
+    private static final Attribute<Integer> PRIORITY = new Attribute<>("test", "priority", Integer.class);
+
+    private static final String RECURSIVE = "recursive=\"true\"";
+
+    private static final String MODEL = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n"
+            + "<featureModel>\n"
+            + "  <struct>\n"
+            + "    <and name=\"root\">\n"
+            + "      <property data-type=\"int\" key=\"priority\" namespace=\"test\" " + RECURSIVE
+            + " value=\"1\"/>\n"
+            + "      <feature name=\"A\">\n"
+            + "        <property data-type=\"string\" key=\"license\" namespace=\"test\" value=\"MIT\"/>\n"
+            + "      </feature>\n"
+            + "      <and name=\"B\">\n"
+            + "        <property data-type=\"int\" key=\"priority\" namespace=\"test\" value=\"2\"/>\n"
+            + "        <feature name=\"B1\"/>\n"
+            + "      </and>\n"
+            + "    </and>\n"
+            + "  </struct>\n"
+            + "</featureModel>\n";
+
+    @TempDir
+    Path directory;
+
+    private static FeatureTree getFeatureTree(IFeatureModel featureModel, String name) {
+        return (FeatureTree) featureModel.getFeature(name).orElseThrow().getFeatureTree().orElseThrow();
+    }
+
+    private static FeatureTree addFeature(IFeatureModel featureModel, IFeatureTree parent, String name) {
+        return (FeatureTree) parent.mutate().addFeatureBelow(featureModel.mutate().addFeature(name));
+    }
+
+    @Test
+    public void inheritsFromAncestors() {
+        FeatureModel featureModel = new FeatureModel(Identifiers.newCounterIdentifier());
+        FeatureTree root = (FeatureTree)
+                featureModel.mutate().addFeatureTreeRoot(featureModel.mutate().addFeature("root"));
+        FeatureTree a = addFeature(featureModel, root, "A");
+        FeatureTree a1 = addFeature(featureModel, a, "A1");
+        FeatureTree b = addFeature(featureModel, root, "B");
+        FeatureTree b1 = addFeature(featureModel, b, "B1");
+        RecursiveAttribute<String> license = featureModel.createRecursiveAttribute(LICENSE);
+        assertEquals(license, featureModel.createRecursiveAttribute(LICENSE));
+        assertTrue(featureModel.isRecursive(LICENSE));
+        assertFalse(new FeatureModel(Identifiers.newCounterIdentifier()).isRecursive(LICENSE));
+
+        assertTrue(a1.getRecursiveValue(license).isEmpty());
+        root.getFeature().mutate().setAttributeValue(LICENSE, "GPL");
+        a.getFeature().mutate().setAttributeValue(LICENSE, "MIT");
+        assertEquals(Result.of("GPL"), root.getRecursiveValue(license));
+        assertEquals(Result.of("MIT"), a1.getRecursiveValue(license));
+        assertEquals(Result.of("GPL"), b1.getRecursiveValue(license));
+
+        RecursiveAttribute<Integer> priority = featureModel.createRecursiveAttribute(PRIORITY);
+        b.getFeature().mutate().setAttributeValue(PRIORITY, 2);
+        assertEquals(Result.of(2), b1.getRecursiveValue(priority));
+        assertTrue(a1.getRecursiveValue(priority).isEmpty());
+        assertEquals(Result.of("GPL"), b1.getRecursiveValue(license));
+    }
+
+    @Test
+    public void invalidatesAffectedSubtree() {
+        FeatureModel featureModel = new FeatureModel(Identifiers.newCounterIdentifier());
+        FeatureTree root = (FeatureTree)
+                featureModel.mutate().addFeatureTreeRoot(featureModel.mutate().addFeature("root"));
+        FeatureTree a = addFeature(featureModel, root, "A");
+        FeatureTree a1 = addFeature(featureModel, a, "A1");
+        FeatureTree b = addFeature(featureModel, root, "B");
+        FeatureTree b1 = addFeature(featureModel, b, "B1");
+        RecursiveAttribute<String> license = featureModel.createRecursiveAttribute(LICENSE);
+        root.getFeature().mutate().setAttributeValue(LICENSE, "GPL");
+        assertEquals(Result.of("GPL"), a1.getRecursiveValue(license));
+        assertEquals(Result.of("GPL"), b1.getRecursiveValue(license));
+
+        a.getFeature().mutate().setAttributeValue(LICENSE, "MIT");
+        assertTrue(root.recursiveValuesValid);
+        assertFalse(a.recursiveValuesValid);
+        assertFalse(a1.recursiveValuesValid);
+        assertTrue(b1.recursiveValuesValid);
+        assertEquals(Result.of("MIT"), a1.getRecursiveValue(license));
+
+        a.mutate().removeChild(a1);
+        b.mutate().addChild(a1);
+        assertTrue(b1.recursiveValuesValid);
+        assertEquals(Result.of("GPL"), a1.getRecursiveValue(license));
+
+        b.getFeature().mutate().setAttributeValue(LICENSE, "BSD");
+        assertEquals(Result.of("BSD"), a1.getRecursiveValue(license));
+        assertEquals(Result.of("MIT"), a.getRecursiveValue(license));
+        b.getFeature().mutate().removeAttributeValue(LICENSE);
+        assertEquals(Result.of("GPL"), a1.getRecursiveValue(license));
+    }
+
+    @Test
+    public void roundTripsRecursiveFlag() throws IOException {
+        Path file = directory.resolve("model.xml");
+        Files.write(file, MODEL.getBytes(StandardCharsets.UTF_8));
+        FeatureModel featureModel = (FeatureModel)
+                IO.load(file, new XMLFeatureModelFormat()).orElseThrow();
+        assertTrue(featureModel.isRecursive(PRIORITY));
+        assertFalse(featureModel.isRecursive(LICENSE));
+        RecursiveAttribute<Integer> priority = featureModel.createRecursiveAttribute(PRIORITY);
+        assertEquals(Result.of(1), getFeatureTree(featureModel, "A").getRecursiveValue(priority));
+        assertEquals(Result.of(2), getFeatureTree(featureModel, "B1").getRecursiveValue(priority));
+
+        String xml = IO.print(featureModel, new XMLFeatureModelFormat());
+        Files.write(file, xml.getBytes(StandardCharsets.UTF_8));
+        FeatureModel copy = (FeatureModel) IO.load(file, new XMLFeatureModelFormat()).orElseThrow();
+        assertTrue(copy.isRecursive(PRIORITY));
+        assertFalse(copy.isRecursive(LICENSE));
+        assertEquals(
+                Result.of(2),
+                getFeatureTree(copy, "B1").getRecursiveValue(copy.createRecursiveAttribute(PRIORITY)));
+
+        FeatureModel other = new FeatureModel(Identifiers.newCounterIdentifier());
+        other.mutate().addFeatureTreeRoot(other.mutate().addFeature("root"));
+        other.getFeature("root").orElseThrow().mutate().setAttributeValue(PRIORITY, 1);
+        assertFalse(IO.print(other, new XMLFeatureModelFormat()).contains(RECURSIVE));
+    }
+
+    @Test
+    public void belongsToFeatureModel() {
+        FeatureModel featureModel = new FeatureModel(Identifiers.newCounterIdentifier());
+        FeatureTree root = (FeatureTree)
+                featureModel.mutate().addFeatureTreeRoot(featureModel.mutate().addFeature("root"));
+        RecursiveAttribute<String> license = featureModel.createRecursiveAttribute(LICENSE);
+        root.getFeature().mutate().setAttributeValue(LICENSE, "GPL");
+
+        FeatureModel clone = featureModel.clone();
+        assertTrue(clone.isRecursive(LICENSE));
+        FeatureTree cloneRoot = (FeatureTree) clone.getRoots().get(0);
+        assertThrows(IllegalArgumentException.class, () -> cloneRoot.getRecursiveValue(license));
+        assertEquals(Result.of("GPL"), cloneRoot.getRecursiveValue(clone.createRecursiveAttribute(LICENSE)));
+    }
+}
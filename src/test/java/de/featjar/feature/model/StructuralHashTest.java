@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.featjar.base.data.identifier.Identifiers;
+import de.featjar.formula.structure.Expressions;
+import de.featjar.formula.structure.connective.And;
+import de.featjar.formula.structure.connective.Implies;
+import org.junit.jupiter.api.Test;
+
+public class StructuralHashTest {
+
+    private static IFeatureModel createFeatureModel() {
+        IFeatureModel featureModel = new FeatureModel(Identifiers.newCounterIdentifier());
+        IFeatureTree root = featureModel.mutate().addFeatureTreeRoot(featureModel.mutate().addFeature("root"));
+        IFeatureTree a = root.mutate().addFeatureBelow(featureModel.mutate().addFeature("A"));
+        a.mutate().setMandatory();
+        IFeatureTree b = root.mutate().addFeatureBelow(featureModel.mutate().addFeature("B"));
+        b.mutate().setAlternative();
+        b.mutate().addFeatureBelow(featureModel.mutate().addFeature("B1"));
+        b.mutate().addFeatureBelow(featureModel.mutate().addFeature("B2"));
+        featureModel.mutate().addConstraint(new And(Expressions.literal("A"), Expressions.literal("B1")));
+        return featureModel;
+    }
+
+    @Test
+    public void identifierIndependent() {
+        IFeatureModel featureModel = createFeatureModel();
+        IFeatureModel otherFeatureModel = createFeatureModel();
+        assertNotEquals(featureModel.getIdentifier(), otherFeatureModel.getIdentifier());
+        assertEquals(
+                featureModel.getRoots().get(0).getStructuralHash(),
+                otherFeatureModel.getRoots().get(0).getStructuralHash());
+        assertEquals(
+                StructuralHashes.ofFeatureModel(featureModel), StructuralHashes.ofFeatureModel(otherFeatureModel));
+    }
+
+    @Test
+    public void invalidatedOnMutation() {
+        IFeatureModel featureModel = createFeatureModel();
+        IFeatureTree root = featureModel.getRoots().get(0);
+        IFeatureTree a = root.getChildren().get(0);
+        IFeatureTree b = root.getChildren().get(1);
+        long rootHash = root.getStructuralHash();
+        long aHash = a.getStructuralHash();
+        long bHash = b.getStructuralHash();
+
+        b.getChildren().get(0).mutate().setMandatory();
+        assertNotEquals(bHash, b.getStructuralHash());
+        assertNotEquals(rootHash, root.getStructuralHash());
+        assertEquals(aHash, a.getStructuralHash());
+        b.getChildren().get(0).mutate().setOptional();
+        assertEquals(rootHash, root.getStructuralHash());
+
+        b.getChildren().get(1).getFeature().mutate().setName("B3");
+        assertNotEquals(rootHash, root.getStructuralHash());
+        b.getChildren().get(1).getFeature().mutate().setName("B2");
+        assertEquals(rootHash, root.getStructuralHash());
+
+        b.getFeature().mutate().setAttributeValue(Attributes.ABSTRACT, true);
+        assertNotEquals(rootHash, root.getStructuralHash());
+        b.getFeature().mutate().removeAttributeValue(Attributes.ABSTRACT);
+        assertEquals(rootHash, root.getStructuralHash());
+
+        a.mutate().addFeatureBelow(featureModel.mutate().addFeature("A1"));
+        assertNotEquals(rootHash, root.getStructuralHash());
+        assertNotEquals(aHash, a.getStructuralHash());
+        assertEquals(bHash, b.getStructuralHash());
+    }
+
+    @Test
+    public void cloneInvalidatedOnMutation() {
+        IFeatureModel featureModel = createFeatureModel();
+        IFeatureModel clone = featureModel.clone();
+        IFeatureTree root = featureModel.getRoots().get(0);
+        IFeatureTree cloneRoot = clone.getRoots().get(0);
+        long rootHash = root.getStructuralHash();
+        assertEquals(rootHash, cloneRoot.getStructuralHash());
+
+        IFeatureTree cloneB2 = cloneRoot.getChildren().get(1).getChildren().get(1);
+        assertNotSame(root.getChildren().get(1).getChildren().get(1).getFeature(), cloneB2.getFeature());
+        assertSame(clone.getFeature("B2").orElseThrow(), cloneB2.getFeature());
+        cloneB2.getFeature().mutate().setName("B3");
+        IFeatureModel renamed = createFeatureModel();
+        renamed.getRoots().get(0).getChildren().get(1).getChildren().get(1).getFeature().mutate().setName("B3");
+        assertEquals(renamed.getRoots().get(0).getStructuralHash(), cloneRoot.getStructuralHash());
+        assertEquals(rootHash, root.getStructuralHash());
+
+        cloneRoot.getChildren().get(0).mutate().setOptional();
+        assertNotEquals(renamed.getRoots().get(0).getStructuralHash(), cloneRoot.getStructuralHash());
+        assertEquals(rootHash, root.getStructuralHash());
+    }
+
+    @Test
+    public void canonicalConstraintHash() {
+        IFeatureModel featureModel = createFeatureModel();
+        IConstraint constraint = featureModel.getConstraints().iterator().next();
+        IConstraint swapped = featureModel
+                .mutate()
+                .addConstraint(new And(Expressions.literal("B1"), Expressions.literal("A")));
+        assertEquals(constraint.getCanonicalHash(), swapped.getCanonicalHash());
+
+        IConstraint implies = featureModel
+                .mutate()
+                .addConstraint(new Implies(Expressions.literal("A"), Expressions.literal("B1")));
+        IConstraint reversed = featureModel
+                .mutate()
+                .addConstraint(new Implies(Expressions.literal("B1"), Expressions.literal("A")));
+        assertNotEquals(implies.getCanonicalHash(), reversed.getCanonicalHash());
+
+        long hash = implies.getCanonicalHash();
+        implies.mutate().setFormula(new Implies(Expressions.literal(false, "A"), Expressions.literal("B1")));
+        assertNotEquals(hash, implies.getCanonicalHash());
+    }
+
+    @Test
+    public void incrementalConstraintsHash() {
+        FeatureModel featureModel = (FeatureModel) createFeatureModel();
+        IConstraint implies = featureModel
+                .mutate()
+                .addConstraint(new Implies(Expressions.literal("A"), Expressions.literal("B1")));
+        long hash = StructuralHashes.ofFeatureModel(featureModel);
+        assertEquals(StructuralHashes.ofConstraints(featureModel.getConstraints()), featureModel.getConstraintsHash());
+
+        IConstraint added = featureModel.mutate().addConstraint(Expressions.literal("B2"));
+        implies.mutate().setFormula(new Implies(Expressions.literal("B1"), Expressions.literal("A")));
+        assertEquals(StructuralHashes.ofConstraints(featureModel.getConstraints()), featureModel.getConstraintsHash());
+        assertSame(added, featureModel.getConstraint(2).orElseThrow());
+
+        featureModel.mutate().removeConstraint(added);
+        implies.mutate().setFormula(new Implies(Expressions.literal("A"), Expressions.literal("B1")));
+        assertEquals(hash, StructuralHashes.ofFeatureModel(featureModel));
+        assertSame(implies, featureModel.getConstraint(1).orElseThrow());
+        assertTrue(featureModel.getConstraint(2).isEmpty());
+    }
+}
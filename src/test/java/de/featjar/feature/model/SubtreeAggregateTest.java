@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.featjar.base.data.Attribute;
+import de.featjar.base.data.identifier.Identifiers;
+import org.junit.jupiter.api.Test;
+
+public class SubtreeAggregateTest {
+
+    private static final Attribute<Integer> COST = new Attribute<>("test", "cost", Integer.class);
+
+    private static final Attribute<Double> LOC = new Attribute<>("test", "loc", Double.class);
+
+    private static FeatureTree addFeature(IFeatureModel featureModel, IFeatureTree parent, String name, int cost) {
+        IFeatureTree node = parent.mutate().addFeatureBelow(featureModel.mutate().addFeature(name));
+        node.getFeature().mutate().setAttributeValue(COST, cost);
+        return (FeatureTree) node;
+    }
+
+    @Test
+    public void aggregatesSubtrees() {
+        FeatureModel featureModel = new FeatureModel(Identifiers.newCounterIdentifier());
+        FeatureTree root = (FeatureTree)
+                featureModel.mutate().addFeatureTreeRoot(featureModel.mutate().addFeature("root"));
+        FeatureTree a = addFeature(featureModel, root, "A", 3);
+        addFeature(featureModel, a, "A1", -1);
+        addFeature(featureModel, a, "A2", 5);
+        FeatureTree b = addFeature(featureModel, root, "B", 2);
+        FeatureTree b1 = addFeature(featureModel, b, "B1", 7);
+        SubtreeAggregate cost = featureModel.createSubtreeAggregate(COST);
+        assertEquals(cost, featureModel.createSubtreeAggregate(COST));
+
+        assertEquals(16, root.getSubtreeSum(cost));
+        assertEquals(-1, root.getSubtreeMin(cost));
+        assertEquals(7, root.getSubtreeMax(cost));
+        assertEquals(5, root.getSubtreeCount(cost));
+        assertEquals(7, a.getSubtreeSum(cost));
+        assertEquals(9, b.getSubtreeSum(cost));
+
+        SubtreeAggregate loc = featureModel.createSubtreeAggregate(LOC);
+        b1.getFeature().mutate().setAttributeValue(LOC, 100.0);
+        assertEquals(100, root.getSubtreeSum(loc));
+        assertEquals(1, root.getSubtreeCount(loc));
+        assertEquals(Double.POSITIVE_INFINITY, a.getSubtreeMin(loc));
+        assertEquals(16, root.getSubtreeSum(cost));
+    }
+
+    @Test
+    public void updatesPathToRoot() {
+        FeatureModel featureModel = new FeatureModel(Identifiers.newCounterIdentifier());
+        FeatureTree root = (FeatureTree)
+                featureModel.mutate().addFeatureTreeRoot(featureModel.mutate().addFeature("root"));
+        FeatureTree a = addFeature(featureModel, root, "A", 3);
+        FeatureTree a1 = addFeature(featureModel, a, "A1", -1);
+        FeatureTree b = addFeature(featureModel, root, "B", 2);
+        SubtreeAggregate cost = featureModel.createSubtreeAggregate(COST);
+        assertEquals(4, root.getSubtreeSum(cost));
+
+        a1.getFeature().mutate().setAttributeValue(COST, 10);
+        assertFalse(root.aggregatesValid);
+        assertFalse(a.aggregatesValid);
+        assertTrue(b.aggregatesValid);
+        assertEquals(15, root.getSubtreeSum(cost));
+        assertEquals(2, root.getSubtreeMin(cost));
+
+        a.mutate().removeChild(a1);
+        assertEquals(5, root.getSubtreeSum(cost));
+        assertEquals(3, root.getSubtreeMax(cost));
+        b.mutate().addChild(a1);
+        assertEquals(15, root.getSubtreeSum(cost));
+        assertEquals(12, b.getSubtreeSum(cost));
+        assertEquals(3, a.getSubtreeSum(cost));
+
+        a.getFeature().mutate().removeAttributeValue(COST);
+        assertEquals(12, root.getSubtreeSum(cost));
+        assertEquals(2, root.getSubtreeCount(cost));
+    }
+
+    @Test
+    public void belongsToFeatureModel() {
+        FeatureModel featureModel = new FeatureModel(Identifiers.newCounterIdentifier());
+        FeatureTree root = (FeatureTree)
+                featureModel.mutate().addFeatureTreeRoot(featureModel.mutate().addFeature("root"));
+        addFeature(featureModel, root, "A", 3);
+        SubtreeAggregate cost = featureModel.createSubtreeAggregate(COST);
+        assertEquals(3, root.getSubtreeSum(cost));
+
+        FeatureModel clone = featureModel.clone();
+        FeatureTree cloneRoot = (FeatureTree) clone.getRoots().get(0);
+        assertThrows(IllegalArgumentException.class, () -> cloneRoot.getSubtreeSum(cost));
+        SubtreeAggregate cloneCost = clone.createSubtreeAggregate(COST);
+        assertEquals(cost.getAttribute(), cloneCost.getAttribute());
+        cloneRoot.getChildren().get(0).getFeature().mutate().setAttributeValue(COST, 4);
+        assertEquals(4, cloneRoot.getSubtreeSum(cloneCost));
+        assertEquals(3, root.getSubtreeSum(cost));
+
+        FeatureModel other = new FeatureModel(Identifiers.newCounterIdentifier());
+        assertEquals(0, other.getSubtreeAggregates().length);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.analysis;
+
+import de.featjar.base.data.Range;
+import de.featjar.base.data.identifier.Identifiers;
+import de.featjar.feature.model.FeatureModel;
+import de.featjar.feature.model.IFeatureModel;
+import de.featjar.feature.model.IFeatureTree;
+import de.featjar.formula.structure.Expressions;
+import de.featjar.formula.structure.connective.And;
+import de.featjar.formula.structure.connective.Implies;
+import de.featjar.formula.structure.connective.Not;
+
+/**
+ * Feature models shared by the analysis tests.
+ */
+final class AnalysisFixtures {
+
+    private AnalysisFixtures() {}
+
+    /**
+     * Creates a model with a mandatory root, an optional feature A, a mandatory feature B with an alternative group
+     * B1..B3, an optional feature C with an or-group C1, C2, and an optional feature D with a [2,3] group D1..D4,
+     * which has 2 (A) * 3 (B) * 4 (C) * 11 (D) = 264 configurations.
+     *
+     * @return a new feature model without constraints
+     */
+    static IFeatureModel createFeatureModel() {
+        IFeatureModel featureModel = new FeatureModel(Identifiers.newCounterIdentifier());
+        IFeatureTree root = featureModel.mutate().addFeatureTreeRoot(featureModel.mutate().addFeature("Root"));
+        root.mutate().setMandatory();
+        root.mutate().addFeatureBelow(featureModel.mutate().addFeature("A"));
+        IFeatureTree b = root.mutate().addFeatureBelow(featureModel.mutate().addFeature("B"));
+        b.mutate().setMandatory();
+        for (int i = 1; i <= 3; i++) {
+            b.mutate().addFeatureBelow(featureModel.mutate().addFeature("B" + i)).mutate().setAlternative();
+        }
+        IFeatureTree c = root.mutate().addFeatureBelow(featureModel.mutate().addFeature("C"));
+        for (int i = 1; i <= 2; i++) {
+            c.mutate().addFeatureBelow(featureModel.mutate().addFeature("C" + i)).mutate().setOr();
+        }
+        IFeatureTree d = root.mutate().addFeatureBelow(featureModel.mutate().addFeature("D"));
+        for (int i = 1; i <= 4; i++) {
+            d.mutate()
+                    .addFeatureBelow(featureModel.mutate().addFeature("D" + i))
+                    .mutate()
+                    .setGroupRange(Range.of(2, 3));
+        }
+        return featureModel;
+    }
+
+    /**
+     * Creates the {@link #createFeatureModel() model with 264 configurations} with the constraints A ⇒ B1 and
+     * ¬(C1 ∧ D1), which leave 4 (A, B) * 32 (C, D) = 128 configurations.
+     *
+     * @return a new feature model with two constraints
+     */
+    static IFeatureModel createConstrainedFeatureModel() {
+        IFeatureModel featureModel = createFeatureModel();
+        featureModel.mutate().addConstraint(new Implies(Expressions.literal("A"), Expressions.literal("B1")));
+        featureModel
+                .mutate()
+                .addConstraint(new Not(new And(Expressions.literal("C1"), Expressions.literal("D1"))));
+        return featureModel;
+    }
+}
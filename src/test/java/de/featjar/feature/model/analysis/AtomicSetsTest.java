@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import de.featjar.base.data.identifier.Identifiers;
+import de.featjar.feature.model.FeatureModel;
+import de.featjar.feature.model.IFeatureModel;
+import de.featjar.feature.model.IFeatureTree;
+import de.featjar.formula.structure.Expressions;
+import de.featjar.formula.structure.connective.And;
+import de.featjar.formula.structure.connective.BiImplies;
+import de.featjar.formula.structure.connective.Implies;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+public class AtomicSetsTest {
+
+    private static IFeatureModel createFeatureModel() {
+        IFeatureModel featureModel = new FeatureModel(Identifiers.newCounterIdentifier());
+        IFeatureTree root = featureModel.mutate().addFeatureTreeRoot(featureModel.mutate().addFeature("Root"));
+        root.mutate().setMandatory();
+        IFeatureTree a = root.mutate().addFeatureBelow(featureModel.mutate().addFeature("A"));
+        a.mutate().setMandatory();
+        a.mutate().addFeatureBelow(featureModel.mutate().addFeature("A1")).mutate().setMandatory();
+        a.mutate().addFeatureBelow(featureModel.mutate().addFeature("A2"));
+        IFeatureTree b = root.mutate().addFeatureBelow(featureModel.mutate().addFeature("B"));
+        b.mutate().addFeatureBelow(featureModel.mutate().addFeature("B1")).mutate().setAlternative();
+        root.mutate().addFeatureBelow(featureModel.mutate().addFeature("C"));
+        root.mutate().addFeatureBelow(featureModel.mutate().addFeature("D"));
+        featureModel
+                .mutate()
+                .addConstraint(new And(
+                        new BiImplies(Expressions.literal("C"), Expressions.literal("B1")),
+                        new Implies(Expressions.literal("D"), Expressions.literal("A2"))));
+        featureModel
+                .mutate()
+                .addConstraint(new BiImplies(Expressions.literal("D"), Expressions.literal(false, "A2")));
+        return featureModel;
+    }
+
+    @Test
+    public void atomicSets() {
+        AtomicSets atomicSets = new AtomicSets(createFeatureModel());
+        assertEquals(
+                List.of(List.of("Root", "A", "A1"), List.of("A2"), List.of("B", "B1", "C"), List.of("D")),
+                atomicSets.getSets());
+        assertEquals(4, atomicSets.size());
+        assertEquals("B", atomicSets.getRepresentative("C"));
+        assertEquals("Root", atomicSets.getRepresentative("A1"));
+        assertEquals("Unknown", atomicSets.getRepresentative("Unknown"));
+    }
+
+    @Test
+    public void expandSolutions() {
+        AtomicSets atomicSets = new AtomicSets(createFeatureModel());
+        assertEquals(Set.of("Root", "A", "A1", "B", "B1", "C"), atomicSets.expand(List.of("Root", "B")));
+        assertEquals(
+                Map.of("Root", true, "A", true, "A1", true, "D", false, "X", true),
+                atomicSets.expand(Map.of("Root", true, "D", false, "X", true)));
+    }
+}
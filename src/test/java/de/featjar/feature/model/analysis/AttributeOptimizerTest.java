@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.featjar.base.data.Attribute;
+import de.featjar.base.data.Range;
+import de.featjar.base.data.identifier.Identifiers;
+import de.featjar.feature.model.FeatureModel;
+import de.featjar.feature.model.IFeatureModel;
+import de.featjar.feature.model.IFeatureTree;
+import de.featjar.feature.model.analysis.AttributeOptimizer.Solution;
+import de.featjar.formula.structure.Expressions;
+import de.featjar.formula.structure.connective.Implies;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+public class AttributeOptimizerTest {
+
+    private static final Attribute<Integer> COST = new Attribute<>("test", "cost", Integer.class);
+
+    private static IFeatureTree addFeature(IFeatureModel featureModel, IFeatureTree parent, String name, int cost) {
+        IFeatureTree node = parent.mutate().addFeatureBelow(featureModel.mutate().addFeature(name));
+        node.getFeature().mutate().setAttributeValue(COST, cost);
+        return node;
+    }
+
+    /**
+     * Creates a model whose cheapest configuration is Root, B, B2, C, C1 with cost 1.
+     */
+    private static IFeatureModel createFeatureModel() {
+        IFeatureModel featureModel = new FeatureModel(Identifiers.newCounterIdentifier());
+        IFeatureTree root = featureModel.mutate().addFeatureTreeRoot(featureModel.mutate().addFeature("Root"));
+        root.mutate().setMandatory();
+        addFeature(featureModel, root, "A", 5);
+        IFeatureTree b = addFeature(featureModel, root, "B", 1);
+        b.mutate().setMandatory();
+        int[] bCosts = {3, 1, 2};
+        for (int i = 1; i <= 3; i++) {
+            addFeature(featureModel, b, "B" + i, bCosts[i - 1]).mutate().setAlternative();
+        }
+        IFeatureTree c = addFeature(featureModel, root, "C", -2);
+        int[] cCosts = {1, 4};
+        for (int i = 1; i <= 2; i++) {
+            addFeature(featureModel, c, "C" + i, cCosts[i - 1]).mutate().setOr();
+        }
+        IFeatureTree d = addFeature(featureModel, root, "D", 1);
+        int[] dCosts = {3, 1, 2, -1};
+        for (int i = 1; i <= 4; i++) {
+            addFeature(featureModel, d, "D" + i, dCosts[i - 1]).mutate().setGroupRange(Range.of(2, 3));
+        }
+        return featureModel;
+    }
+
+    private static List<Double> getSortedCosts(IFeatureModel featureModel, AttributeColumn costs, double budget) {
+        return new ConfigurationEnumerator(featureModel)
+                .stream(false)
+                .map(configuration -> {
+                    double cost = 0;
+                    for (int ordinal = 0; ordinal < costs.size(); ordinal++) {
+                        if ((configuration[ordinal >>> 6] & (1L << ordinal)) != 0) {
+                            cost += costs.get(ordinal);
+                        }
+                    }
+                    return cost;
+                })
+                .filter(cost -> cost <= budget)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void readsAttributeColumn() {
+        IFeatureModel featureModel = createFeatureModel();
+        AttributeOptimizer optimizer = new AttributeOptimizer(featureModel, COST);
+        FlatFeatureTree tree = optimizer.getFlatFeatureTree();
+        assertEquals(5, optimizer.getCosts().get(tree.getOrdinal("A")));
+        assertEquals(-1, optimizer.getCosts().get(tree.getOrdinal("D4")));
+        assertFalse(optimizer.getCosts().isPresent(tree.getOrdinal("Root")));
+    }
+
+    @Test
+    public void minimizesTree() {
+        AttributeOptimizer optimizer = new AttributeOptimizer(createFeatureModel(), COST);
+        FlatFeatureTree tree = optimizer.getFlatFeatureTree();
+        assertEquals(1, optimizer.getLowerBound());
+        Solution solution = optimizer.minimize().orElseThrow();
+        assertEquals(1, solution.getCost());
+        for (String name : new String[] {"Root", "B", "B2", "C", "C1"}) {
+            assertTrue(solution.isSelected(tree.getOrdinal(name)), name);
+        }
+        for (String name : new String[] {"A", "B1", "B3", "C2", "D"}) {
+            assertFalse(solution.isSelected(tree.getOrdinal(name)), name);
+        }
+    }
+
+    @Test
+    public void minimizesWithConstraints() {
+        IFeatureModel featureModel = createFeatureModel();
+        featureModel.mutate().addConstraint(new Implies(Expressions.literal("C"), Expressions.literal("B1")));
+        AttributeOptimizer optimizer = new AttributeOptimizer(featureModel, COST);
+        FlatFeatureTree tree = optimizer.getFlatFeatureTree();
+        assertEquals(1, optimizer.getLowerBound());
+        Solution solution = optimizer.minimize().orElseThrow();
+        assertEquals(2, solution.getCost());
+        assertTrue(solution.isSelected(tree.getOrdinal("B2")));
+        assertFalse(solution.isSelected(tree.getOrdinal("C")));
+    }
+
+    @Test
+    public void findsCheapestConfigurationsWithinBudget() {
+        IFeatureModel featureModel = createFeatureModel();
+        featureModel.mutate().addConstraint(new Implies(Expressions.literal("A"), Expressions.literal("D")));
+        AttributeOptimizer optimizer = new AttributeOptimizer(featureModel, COST);
+        List<Double> expected = getSortedCosts(featureModel, optimizer.getCosts(), 6);
+        assertTrue(expected.size() > 20);
+        List<Double> costs = optimizer.minimize(20, 6).stream()
+                .map(Solution::getCost)
+                .collect(Collectors.toList());
+        assertEquals(expected.subList(0, 20), costs);
+        assertEquals(expected.size(), optimizer.minimize(1000, 6).size());
+    }
+}
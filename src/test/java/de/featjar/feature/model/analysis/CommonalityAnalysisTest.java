@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import de.featjar.feature.model.IFeatureModel;
+import de.featjar.formula.structure.Expressions;
+import de.featjar.formula.structure.connective.Implies;
+import java.math.BigInteger;
+import org.junit.jupiter.api.Test;
+
+public class CommonalityAnalysisTest {
+
+    private static final double DELTA = 1e-12;
+
+    @Test
+    public void commonalities() {
+        CommonalityAnalysis analysis = new CommonalityAnalysis(AnalysisFixtures.createFeatureModel());
+        FlatFeatureTree tree = analysis.getConfigurationCounter().getFlatFeatureTree();
+        double[] commonalities = analysis.getCommonalities();
+        assertEquals(tree.size(), commonalities.length);
+        assertEquals(1.0, commonalities[tree.getOrdinal("Root")], DELTA);
+        assertEquals(0.5, commonalities[tree.getOrdinal("A")], DELTA);
+        assertEquals(1.0, commonalities[tree.getOrdinal("B")], DELTA);
+        assertEquals(1.0 / 3, commonalities[tree.getOrdinal("B2")], DELTA);
+        assertEquals(0.75, commonalities[tree.getOrdinal("C")], DELTA);
+        assertEquals(0.5, commonalities[tree.getOrdinal("C1")], DELTA);
+        assertEquals(240.0 / 264, commonalities[tree.getOrdinal("D")], DELTA);
+        assertEquals(144.0 / 264, commonalities[tree.getOrdinal("D4")], DELTA);
+        assertEquals(BigInteger.valueOf(144), analysis.getSelectedCount(tree.getOrdinal("D1")));
+    }
+
+    @Test
+    public void conditionalCommonalitiesOfConstraintFreeSubtrees() {
+        IFeatureModel featureModel = AnalysisFixtures.createFeatureModel();
+        featureModel.mutate().addConstraint(new Implies(Expressions.literal("A"), Expressions.literal("B1")));
+        CommonalityAnalysis analysis = new CommonalityAnalysis(featureModel);
+        FlatFeatureTree tree = analysis.getConfigurationCounter().getFlatFeatureTree();
+        assertEquals(Double.NaN, analysis.getCommonality(tree.getOrdinal("A")));
+        assertEquals(Double.NaN, analysis.getCommonality(tree.getOrdinal("B")));
+        assertEquals(1.0, analysis.getCommonality(tree.getOrdinal("C")), DELTA);
+        assertEquals(2.0 / 3, analysis.getCommonality(tree.getOrdinal("C2")), DELTA);
+        assertEquals(0.6, analysis.getCommonality(tree.getOrdinal("D3")), DELTA);
+    }
+}
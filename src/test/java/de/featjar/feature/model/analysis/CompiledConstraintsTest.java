@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import de.featjar.base.data.identifier.Identifiers;
+import de.featjar.feature.model.FeatureModel;
+import de.featjar.feature.model.IFeatureModel;
+import de.featjar.feature.model.IFeatureTree;
+import de.featjar.formula.structure.Expressions;
+import de.featjar.formula.structure.IExpression;
+import de.featjar.formula.structure.IFormula;
+import de.featjar.formula.structure.connective.And;
+import de.featjar.formula.structure.connective.AtLeast;
+import de.featjar.formula.structure.connective.AtMost;
+import de.featjar.formula.structure.connective.Between;
+import de.featjar.formula.structure.connective.BiImplies;
+import de.featjar.formula.structure.connective.Choose;
+import de.featjar.formula.structure.connective.Implies;
+import de.featjar.formula.structure.connective.Not;
+import de.featjar.formula.structure.connective.Or;
+import de.featjar.formula.structure.predicate.Literal;
+import de.featjar.formula.structure.term.value.Variable;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class CompiledConstraintsTest {
+
+    private static final String[] NAMES = {"A", "B", "C", "D", "E"};
+
+    private static IFeatureModel createFeatureModel() {
+        IFeatureModel featureModel = new FeatureModel(Identifiers.newCounterIdentifier());
+        IFeatureTree root = featureModel.mutate().addFeatureTreeRoot(featureModel.mutate().addFeature("Root"));
+        for (String name : NAMES) {
+            root.mutate().addFeatureBelow(featureModel.mutate().addFeature(name));
+        }
+        featureModel.mutate().addConstraint(new Implies(new And(literal("A"), literal("B")), literal("C")));
+        featureModel.mutate().addConstraint(new Or(new Not(new And(literal("B"), literal("A"))), literal("D")));
+        featureModel.mutate().addConstraint(new BiImplies(new And(literal("A"), literal("B")), literal("E")));
+        featureModel.mutate().addConstraint(new AtMost(1, List.<IFormula>of(literal("C"), literal("D"), literal("E"))));
+        return featureModel;
+    }
+
+    private static IFeatureModel createCardinalityFeatureModel() {
+        IFeatureModel featureModel = new FeatureModel(Identifiers.newCounterIdentifier());
+        IFeatureTree root = featureModel.mutate().addFeatureTreeRoot(featureModel.mutate().addFeature("Root"));
+        for (String name : NAMES) {
+            root.mutate().addFeatureBelow(featureModel.mutate().addFeature(name));
+        }
+        featureModel.mutate().addConstraint(new AtLeast(2, createOperands()));
+        featureModel.mutate().addConstraint(new Between(1, 2, createOperands()));
+        featureModel.mutate().addConstraint(new Choose(3, createOperands()));
+        featureModel.mutate().addConstraint(new Or(Expressions.False, literal("D")));
+        return featureModel;
+    }
+
+    private static List<IFormula> createOperands() {
+        return List.of(literal("A"), literal("B"), new Not(literal("C")), Expressions.True);
+    }
+
+    private static Literal literal(String name) {
+        return Expressions.literal(name);
+    }
+
+    /**
+     * Evaluates an expression with {@link IExpression#evaluate(List)} of the formula library, which only needs the
+     * values of variables to be supplied.
+     */
+    private static Object evaluate(IExpression expression, FlatFeatureTree tree, long configuration) {
+        if (expression instanceof Variable) {
+            return (configuration & (1L << tree.getOrdinal(((Variable) expression).getName()))) != 0;
+        }
+        List<Object> values = new ArrayList<>(expression.getChildrenCount());
+        for (IExpression child : expression.getChildren()) {
+            values.add(evaluate(child, tree, configuration));
+        }
+        return expression.evaluate(values);
+    }
+
+    private static void assertSameResults(IFeatureModel featureModel, int satisfying) {
+        FlatFeatureTree tree = new FlatFeatureTree(featureModel);
+        CompiledConstraints constraints = new CompiledConstraints(featureModel, tree);
+        int[] registers = new int[constraints.getRegisterCount()];
+        int count = 0;
+        for (long configuration = 0; configuration < 1L << tree.size(); configuration++) {
+            long[] bits = {configuration};
+            int violated = -1;
+            for (int i = 0; i < constraints.size(); i++) {
+                boolean expected =
+                        Boolean.TRUE.equals(evaluate(constraints.getConstraint(i).getFormula(), tree, configuration));
+                assertEquals(expected, constraints.evaluate(i, bits, registers));
+                if (!expected && violated < 0) {
+                    violated = i;
+                }
+            }
+            assertEquals(violated, constraints.findViolated(bits, registers));
+            if (violated < 0) {
+                count++;
+            }
+        }
+        assertEquals(satisfying, count);
+    }
+
+    @Test
+    public void matchesFormulaEvaluation() {
+        // A ∧ B would force C, D, and E, so three choices for A and B times three for C and D, with or without Root
+        assertSameResults(createFeatureModel(), 18);
+        // Choose demands two of A, B, and ¬C, while Between allows at most one
+        assertSameResults(createCardinalityFeatureModel(), 0);
+    }
+
+    @Test
+    public void sharesSubexpressions() {
+        IFeatureModel featureModel = createFeatureModel();
+        FlatFeatureTree tree = new FlatFeatureTree(featureModel);
+        CompiledConstraints constraints = new CompiledConstraints(featureModel, tree);
+        // A, B, A ∧ B, C, ⇒, ¬, D, ∨, E, ⇔, and AtMost
+        assertEquals(11, constraints.getRegisterCount());
+        assertEquals(tree.getOrdinal("E"), constraints.getLastOrdinal(2));
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.featjar.base.data.Result;
+import de.featjar.base.data.identifier.Identifiers;
+import de.featjar.feature.model.FeatureModel;
+import de.featjar.feature.model.IFeatureModel;
+import de.featjar.feature.model.IFeatureTree;
+import de.featjar.formula.structure.Expressions;
+import de.featjar.formula.structure.connective.Implies;
+import java.math.BigInteger;
+import org.junit.jupiter.api.Test;
+
+public class ConfigurationCounterTest {
+
+    @Test
+    public void countWithoutConstraints() {
+        ConfigurationCounter counter = new ConfigurationCounter(AnalysisFixtures.createFeatureModel());
+        assertEquals(BigInteger.valueOf(264), counter.count().orElseThrow());
+        assertEquals(Math.log(264), counter.logCount().orElseThrow(), 1e-9);
+        FlatFeatureTree tree = counter.getFlatFeatureTree();
+        assertEquals(BigInteger.valueOf(3), counter.getSubtreeCount(tree.getOrdinal("B")));
+        assertEquals(BigInteger.valueOf(3), counter.getSubtreeCount(tree.getOrdinal("C")));
+        assertEquals(BigInteger.valueOf(10), counter.getSubtreeCount(tree.getOrdinal("D")));
+    }
+
+    @Test
+    public void countConstraintFreeSubtrees() {
+        IFeatureModel featureModel = AnalysisFixtures.createFeatureModel();
+        featureModel.mutate().addConstraint(new Implies(Expressions.literal("A"), Expressions.literal("B1")));
+        ConfigurationCounter counter = new ConfigurationCounter(featureModel);
+        Result<BigInteger> count = counter.count();
+        assertTrue(count.isEmpty());
+        FlatFeatureTree tree = counter.getFlatFeatureTree();
+        assertArrayEquals(
+                new int[] {tree.getOrdinal("B2"), tree.getOrdinal("B3"), tree.getOrdinal("C"), tree.getOrdinal("D")},
+                counter.getConstraintFreeSubtrees());
+        assertEquals(BigInteger.valueOf(10), counter.getSubtreeCount(tree.getOrdinal("D")));
+    }
+
+    @Test
+    public void logSpaceForLargeModels() {
+        IFeatureModel featureModel = new FeatureModel(Identifiers.newCounterIdentifier());
+        IFeatureTree root = featureModel.mutate().addFeatureTreeRoot(featureModel.mutate().addFeature("Root"));
+        root.mutate().setMandatory();
+        for (int i = 0; i < 2000; i++) {
+            root.mutate().addFeatureBelow(featureModel.mutate().addFeature("F" + i));
+        }
+        ConfigurationCounter counter = new ConfigurationCounter(featureModel);
+        assertEquals(BigInteger.TWO.pow(2000), counter.count().orElseThrow());
+        assertEquals(2000 * Math.log(2), counter.logCount().orElseThrow(), 1e-6);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.featjar.feature.model.analysis.ConfigurationEnumerator.Checkpoint;
+import de.featjar.feature.model.analysis.ConfigurationEnumerator.ConfigurationSpliterator;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+public class ConfigurationEnumeratorTest {
+
+    @Test
+    public void enumeratesTree() {
+        ConfigurationEnumerator enumerator = new ConfigurationEnumerator(AnalysisFixtures.createFeatureModel());
+        Set<Long> configurations = new HashSet<>();
+        Iterator<long[]> iterator = enumerator.iterator();
+        while (iterator.hasNext()) {
+            assertTrue(configurations.add(iterator.next()[0]));
+        }
+        assertEquals(264, configurations.size());
+    }
+
+    @Test
+    public void enumeratesWithConstraints() {
+        ConfigurationEnumerator enumerator =
+                new ConfigurationEnumerator(AnalysisFixtures.createConstrainedFeatureModel());
+        FlatFeatureTree tree = enumerator.getFlatFeatureTree();
+        long a = 1L << tree.getOrdinal("A");
+        long b1 = 1L << tree.getOrdinal("B1");
+        long c1d1 = 1L << tree.getOrdinal("C1") | 1L << tree.getOrdinal("D1");
+        Set<Long> configurations =
+                enumerator.stream(false).map(configuration -> configuration[0]).collect(Collectors.toSet());
+        assertEquals(128, configurations.size());
+        for (long configuration : configurations) {
+            assertTrue((configuration & a) == 0 || (configuration & b1) != 0);
+            assertTrue((configuration & c1d1) != c1d1);
+        }
+        assertEquals(
+                configurations,
+                enumerator.stream(true).map(configuration -> configuration[0]).collect(Collectors.toSet()));
+    }
+
+    @Test
+    public void splitsIntoDisjointParts() {
+        ConfigurationEnumerator enumerator =
+                new ConfigurationEnumerator(AnalysisFixtures.createConstrainedFeatureModel());
+        ConfigurationSpliterator spliterator = enumerator.spliterator();
+        ConfigurationSpliterator split = spliterator.trySplit();
+        assertNotNull(split);
+        Set<Long> configurations = new HashSet<>();
+        spliterator.forEachRemaining(configuration -> assertTrue(configurations.add(configuration[0])));
+        int count = configurations.size();
+        split.forEachRemaining(configuration -> assertTrue(configurations.add(configuration[0])));
+        assertTrue(count > 0 && count < 128);
+        assertEquals(128, configurations.size());
+    }
+
+    @Test
+    public void resumesFromCheckpoint() throws IOException {
+        ConfigurationEnumerator enumerator =
+                new ConfigurationEnumerator(AnalysisFixtures.createConstrainedFeatureModel());
+        ConfigurationSpliterator spliterator = enumerator.spliterator();
+        Set<Long> configurations = new HashSet<>();
+        for (int i = 0; i < 50; i++) {
+            assertTrue(spliterator.tryAdvance(configuration -> configurations.add(configuration[0])));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        spliterator.getCheckpoint().write(new DataOutputStream(bytes));
+        Checkpoint checkpoint = Checkpoint.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertFalse(checkpoint.isExhausted());
+
+        ConfigurationSpliterator resumed = enumerator.spliterator(checkpoint);
+        resumed.forEachRemaining(configuration -> assertTrue(configurations.add(configuration[0])));
+        assertEquals(128, configurations.size());
+        assertTrue(resumed.getCheckpoint().isExhausted());
+    }
+
+    @Test
+    public void rejectsCheckpointOfOtherFeatureModel() {
+        ConfigurationSpliterator spliterator =
+                new ConfigurationEnumerator(AnalysisFixtures.createConstrainedFeatureModel()).spliterator();
+        assertTrue(spliterator.tryAdvance(configuration -> {}));
+        Checkpoint checkpoint = spliterator.getCheckpoint();
+        ConfigurationEnumerator other = new ConfigurationEnumerator(AnalysisFixtures.createFeatureModel());
+        assertThrows(IllegalArgumentException.class, () -> other.spliterator(checkpoint));
+    }
+}
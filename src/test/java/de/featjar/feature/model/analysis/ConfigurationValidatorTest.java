@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import de.featjar.feature.model.IFeatureModel;
+import de.featjar.feature.model.analysis.ConfigurationValidator.RuleType;
+import de.featjar.formula.structure.Expressions;
+import de.featjar.formula.structure.connective.Implies;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+public class ConfigurationValidatorTest {
+
+    /**
+     * Creates the {@link AnalysisFixtures#createFeatureModel() shared model} with the constraint A ⇒ B1.
+     */
+    private static IFeatureModel createFeatureModel() {
+        IFeatureModel featureModel = AnalysisFixtures.createFeatureModel();
+        featureModel.mutate().addConstraint(new Implies(Expressions.literal("A"), Expressions.literal("B1")));
+        return featureModel;
+    }
+
+    private static long[] configuration(FlatFeatureTree tree, String... names) {
+        long[] configuration = new long[(tree.size() + 63) >>> 6];
+        for (String name : names) {
+            int ordinal = tree.getOrdinal(name);
+            configuration[ordinal >>> 6] |= 1L << ordinal;
+        }
+        return configuration;
+    }
+
+    @Test
+    public void acceptsAllEnumeratedConfigurations() {
+        IFeatureModel featureModel = createFeatureModel();
+        ConfigurationValidator validator = new ConfigurationValidator(featureModel);
+        long[][] configurations = new ConfigurationEnumerator(featureModel).stream(false).toArray(long[][]::new);
+        assertEquals((3 + 1) * 4 * 11, configurations.length);
+        int[] results = new int[configurations.length];
+        validator.validate(configurations, results);
+        for (int result : results) {
+            assertEquals(ConfigurationValidator.VALID, result);
+        }
+    }
+
+    @Test
+    public void reportsViolatedRules() {
+        ConfigurationValidator validator = new ConfigurationValidator(createFeatureModel());
+        FlatFeatureTree tree = validator.getFlatFeatureTree();
+        int b = tree.getOrdinal("B");
+        int d = tree.getOrdinal("D");
+
+        int rule = validator.validate(configuration(tree, "Root", "B", "B2", "C1"));
+        assertEquals(RuleType.PARENT, validator.getRuleType(rule));
+        assertEquals(tree.getOrdinal("C1"), validator.getRuleOrdinal(rule));
+
+        rule = validator.validate(configuration(tree, "Root"));
+        assertEquals(RuleType.MANDATORY, validator.getRuleType(rule));
+        assertEquals(b, validator.getRuleOrdinal(rule));
+
+        rule = validator.validate(configuration(tree, "Root", "B", "B1", "B2"));
+        assertEquals(RuleType.GROUP, validator.getRuleType(rule));
+        assertEquals(b, validator.getRuleOrdinal(rule));
+
+        rule = validator.validate(configuration(tree, "Root", "B", "B1", "D", "D1"));
+        assertEquals(RuleType.GROUP, validator.getRuleType(rule));
+        assertEquals(d, validator.getRuleOrdinal(rule));
+
+        rule = validator.validate(configuration(tree, "Root", "A", "B", "B2"));
+        assertEquals(RuleType.CONSTRAINT, validator.getRuleType(rule));
+        assertEquals(-1, validator.getRuleOrdinal(rule));
+        assertEquals(validator.getCompiledConstraints().getConstraint(0), validator.getRuleConstraint(rule));
+    }
+
+    @Test
+    public void validatesInParallel() {
+        ConfigurationValidator validator = new ConfigurationValidator(createFeatureModel());
+        FlatFeatureTree tree = validator.getFlatFeatureTree();
+        long[][] configurations = new long[1000][];
+        for (int i = 0; i < configurations.length; i++) {
+            configurations[i] = i % 2 == 0
+                    ? configuration(tree, "Root", "B", "B1", "A")
+                    : configuration(tree, "Root", "B", "B2", "A");
+        }
+        int[] sequential = new int[configurations.length];
+        validator.validate(configurations, sequential);
+        int[] parallel = new int[configurations.length];
+        validator.validateParallel(configurations, parallel, 64);
+        assertEquals(ConfigurationValidator.VALID, sequential[0]);
+        assertEquals(RuleType.CONSTRAINT, validator.getRuleType(sequential[1]));
+        assertEquals(Arrays.toString(sequential), Arrays.toString(parallel));
+    }
+}
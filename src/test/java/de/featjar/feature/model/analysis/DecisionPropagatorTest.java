@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.featjar.feature.model.analysis.DecisionPropagator.Session;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+public class DecisionPropagatorTest {
+
+    @Test
+    public void propagatesDecisions() {
+        DecisionPropagator propagator = new DecisionPropagator(AnalysisFixtures.createConstrainedFeatureModel());
+        FlatFeatureTree tree = propagator.getFlatFeatureTree();
+        assertTrue(propagator.getSkippedConstraints().isEmpty());
+        Session session = propagator.newSession();
+        assertTrue(session.isConsistent());
+        assertTrue(session.isSelected(tree.getOrdinal("Root")));
+        assertTrue(session.isSelected(tree.getOrdinal("B")));
+        assertTrue(session.isOpen(tree.getOrdinal("B1")));
+
+        assertTrue(session.assign(tree.getOrdinal("A"), true));
+        assertTrue(session.isSelected(tree.getOrdinal("B1")));
+        assertTrue(session.isDeselected(tree.getOrdinal("B2")));
+        assertTrue(session.isDeselected(tree.getOrdinal("B3")));
+
+        int start = session.getTrailSize();
+        assertTrue(session.assign(tree.getOrdinal("C1"), true));
+        assertEquals(start, session.getDecisionStart(1));
+        List<Integer> implied = IntStream.range(start, session.getTrailSize())
+                .map(session::getTrailLiteral)
+                .boxed()
+                .collect(Collectors.toList());
+        assertTrue(implied.contains(tree.getOrdinal("C") + 1));
+        assertTrue(implied.contains(-(tree.getOrdinal("D1") + 1)));
+
+        assertFalse(session.assign(tree.getOrdinal("B2"), true));
+        assertEquals(2, session.getDecisionCount());
+        assertTrue(session.isSelected(tree.getOrdinal("B1")));
+    }
+
+    @Test
+    public void retractsDecisions() {
+        DecisionPropagator propagator = new DecisionPropagator(AnalysisFixtures.createConstrainedFeatureModel());
+        FlatFeatureTree tree = propagator.getFlatFeatureTree();
+        Session session = propagator.newSession();
+        assertTrue(session.assign(tree.getOrdinal("A"), true));
+        assertTrue(session.assign(tree.getOrdinal("B1"), true));
+        assertTrue(session.assign(tree.getOrdinal("D1"), true));
+        assertTrue(session.isDeselected(tree.getOrdinal("C1")));
+
+        assertTrue(session.retract(tree.getOrdinal("A")));
+        assertTrue(session.isOpen(tree.getOrdinal("A")));
+        assertTrue(session.isSelected(tree.getOrdinal("B1")));
+        assertTrue(session.isDecision(tree.getOrdinal("B1")));
+        assertTrue(session.isDeselected(tree.getOrdinal("C1")));
+
+        assertTrue(session.retract());
+        assertTrue(session.isOpen(tree.getOrdinal("C1")));
+        assertTrue(session.isOpen(tree.getOrdinal("D")));
+        session.reset();
+        assertEquals(0, session.getDecisionCount());
+        assertTrue(session.isOpen(tree.getOrdinal("B1")));
+        assertFalse(session.retract());
+    }
+
+    @Test
+    public void keepsSessionsIndependent() {
+        DecisionPropagator propagator = new DecisionPropagator(AnalysisFixtures.createConstrainedFeatureModel());
+        FlatFeatureTree tree = propagator.getFlatFeatureTree();
+        Session first = propagator.newSession();
+        Session second = propagator.newSession();
+        assertTrue(first.assign(tree.getOrdinal("B2"), true));
+        assertTrue(first.isDeselected(tree.getOrdinal("A")));
+        assertTrue(second.assign(tree.getOrdinal("A"), true));
+        assertTrue(second.isDeselected(tree.getOrdinal("B2")));
+        assertTrue(first.isSelected(tree.getOrdinal("B2")));
+    }
+}
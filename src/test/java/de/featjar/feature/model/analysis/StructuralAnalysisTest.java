@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.featjar.base.data.identifier.Identifiers;
+import de.featjar.feature.model.FeatureModel;
+import de.featjar.feature.model.IFeatureModel;
+import de.featjar.feature.model.IFeatureTree;
+import de.featjar.formula.structure.Expressions;
+import de.featjar.formula.structure.connective.And;
+import de.featjar.formula.structure.connective.Implies;
+import de.featjar.formula.structure.connective.Not;
+import de.featjar.formula.structure.connective.Or;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class StructuralAnalysisTest {
+
+    private static IFeatureModel createFeatureModel() {
+        IFeatureModel featureModel = new FeatureModel(Identifiers.newCounterIdentifier());
+        IFeatureTree root = featureModel.mutate().addFeatureTreeRoot(featureModel.mutate().addFeature("Root"));
+        root.mutate().setMandatory();
+        IFeatureTree a = root.mutate().addFeatureBelow(featureModel.mutate().addFeature("A"));
+        a.mutate().setMandatory();
+        a.mutate().addFeatureBelow(featureModel.mutate().addFeature("C")).mutate().setMandatory();
+        root.mutate().addFeatureBelow(featureModel.mutate().addFeature("B"));
+        root.mutate().addFeatureBelow(featureModel.mutate().addFeature("D"));
+        IFeatureTree f = root.mutate().addFeatureBelow(featureModel.mutate().addFeature("F"));
+        f.mutate().addFeatureBelow(featureModel.mutate().addFeature("G")).mutate().setMandatory();
+        root.mutate().addFeatureBelow(featureModel.mutate().addFeature("H"));
+        IFeatureTree i = root.mutate().addFeatureBelow(featureModel.mutate().addFeature("I"));
+        i.mutate().addFeatureBelow(featureModel.mutate().addFeature("J")).mutate().setAlternative();
+
+        featureModel.mutate().addConstraint(new Not(new And(Expressions.literal("D"), Expressions.literal("A"))));
+        featureModel.mutate().addConstraint(new Implies(Expressions.literal("F"), Expressions.literal(false, "G")));
+        featureModel.mutate().addConstraint(new Or(Expressions.literal("H"), Expressions.literal("D")));
+        featureModel.mutate().addConstraint(new Implies(Expressions.literal("H"), Expressions.literal("I")));
+        return featureModel;
+    }
+
+    @Test
+    public void coreAndDeadFeatures() {
+        StructuralAnalysis analysis = new StructuralAnalysis(createFeatureModel());
+        assertFalse(analysis.isVoid());
+        assertEquals(List.of("Root", "A", "C", "H", "I", "J"), analysis.getCoreFeatureNames());
+        assertEquals(List.of("D", "F", "G"), analysis.getDeadFeatureNames());
+    }
+
+    @Test
+    public void transitiveClosure() {
+        StructuralAnalysis analysis = new StructuralAnalysis(createFeatureModel());
+        FlatFeatureTree tree = analysis.getFlatFeatureTree();
+        ImplicationGraph graph = analysis.getImplicationGraph();
+        int c = ImplicationGraph.getLiteral(tree.getOrdinal("C"), true);
+        int a = ImplicationGraph.getLiteral(tree.getOrdinal("A"), true);
+        int root = ImplicationGraph.getLiteral(tree.getOrdinal("Root"), true);
+        int notD = ImplicationGraph.getLiteral(tree.getOrdinal("D"), false);
+        assertTrue(graph.getClosure(c).get(root));
+        assertTrue(graph.areEquivalent(a, c));
+        assertTrue(graph.implies(a, notD));
+        assertTrue(graph.implies(notD, ImplicationGraph.getLiteral(tree.getOrdinal("J"), true)));
+        assertFalse(graph.implies(root, ImplicationGraph.getLiteral(tree.getOrdinal("B"), true)));
+    }
+
+    @Test
+    public void flatFeatureTree() {
+        FlatFeatureTree tree = new FlatFeatureTree(createFeatureModel());
+        assertEquals(10, tree.size());
+        int root = tree.getOrdinal("Root");
+        int a = tree.getOrdinal("A");
+        int c = tree.getOrdinal("C");
+        assertEquals(0, root);
+        assertEquals(tree.size(), tree.getSubtreeEnd(root));
+        assertEquals(a, tree.getParent(c));
+        assertTrue(tree.isAncestorOrSelf(a, c));
+        assertFalse(tree.isAncestorOrSelf(c, a));
+        assertEquals(2, tree.getDepth(c));
+        int j = tree.getOrdinal("J");
+        assertEquals(1, tree.getGroupUpperBound(tree.getGroup(j)));
+        assertEquals(1, tree.getGroupSize(tree.getGroup(j)));
+    }
+}
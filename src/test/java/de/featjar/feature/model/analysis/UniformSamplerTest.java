@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.featjar.feature.model.IFeatureModel;
+import de.featjar.formula.structure.Expressions;
+import de.featjar.formula.structure.connective.Implies;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class UniformSamplerTest {
+
+    @Test
+    public void samplesAreUniform() {
+        UniformSampler sampler = new UniformSampler(AnalysisFixtures.createFeatureModel(), 42);
+        FlatFeatureTree tree = sampler.getFlatFeatureTree();
+        assertEquals(1, sampler.getWordCount());
+        long b = getMask(tree, "B1", "B2", "B3");
+        long c = getMask(tree, "C1", "C2");
+        long d = getMask(tree, "D1", "D2", "D3", "D4");
+        Map<Long, Integer> frequencies = new HashMap<>();
+        long[] configuration = new long[1];
+        for (int i = 0; i < 264_000; i++) {
+            sampler.sample(configuration);
+            long word = configuration[0];
+            assertEquals(1, Long.bitCount(word & b));
+            assertTrue(((word & getMask(tree, "C")) == 0) == ((word & c) == 0));
+            int dCount = Long.bitCount(word & d);
+            assertTrue((word & getMask(tree, "D")) == 0 ? dCount == 0 : dCount >= 2 && dCount <= 3);
+            frequencies.merge(word, 1, Integer::sum);
+        }
+        assertEquals(264, frequencies.size());
+        for (int frequency : frequencies.values()) {
+            assertTrue(frequency > 800 && frequency < 1200, String.valueOf(frequency));
+        }
+    }
+
+    @Test
+    public void samplesAreReproducible() {
+        UniformSampler sampler = new UniformSampler(AnalysisFixtures.createFeatureModel(), 1);
+        UniformSampler copy = sampler.withSeed(7);
+        UniformSampler other = new UniformSampler(AnalysisFixtures.createFeatureModel(), 7);
+        for (int i = 0; i < 100; i++) {
+            assertArrayEquals(other.sample(), copy.sample());
+        }
+    }
+
+    @Test
+    public void constraintsAreRejected() {
+        IFeatureModel featureModel = AnalysisFixtures.createFeatureModel();
+        featureModel.mutate().addConstraint(new Implies(Expressions.literal("A"), Expressions.literal("B1")));
+        assertThrows(IllegalArgumentException.class, () -> new UniformSampler(featureModel, 0));
+    }
+
+    private static long getMask(FlatFeatureTree tree, String... names) {
+        long mask = 0;
+        for (String name : names) {
+            mask |= 1L << tree.getOrdinal(name);
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.diff;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.featjar.Common;
+import de.featjar.base.data.Range;
+import de.featjar.base.data.identifier.Identifiers;
+import de.featjar.base.tree.Trees;
+import de.featjar.feature.model.Attributes;
+import de.featjar.feature.model.FeatureModel;
+import de.featjar.feature.model.IFeatureModel;
+import de.featjar.feature.model.IFeatureTree;
+import de.featjar.feature.model.StructuralHashes;
+import de.featjar.feature.model.diff.FeatureModelEdit.Kind;
+import de.featjar.feature.model.io.xml.XMLFeatureModelFormat;
+import de.featjar.formula.structure.Expressions;
+import de.featjar.formula.structure.connective.Implies;
+import de.featjar.formula.structure.connective.Or;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+public class FeatureModelDiffTest extends Common {
+
+    private static IFeatureModel createFeatureModel(int size, long seed) {
+        Random random = new Random(seed);
+        IFeatureModel featureModel = new FeatureModel(Identifiers.newCounterIdentifier());
+        IFeatureTree root = featureModel.mutate().addFeatureTreeRoot(featureModel.mutate().addFeature("F0"));
+        List<IFeatureTree> nodes = new ArrayList<>(List.of(root));
+        for (int i = 1; i < size; i++) {
+            IFeatureTree parent = nodes.get(random.nextInt(nodes.size()));
+            IFeatureTree node = parent.mutate().addFeatureBelow(featureModel.mutate().addFeature("F" + i));
+            if (random.nextInt(4) == 0) {
+                node.mutate().setMandatory();
+            }
+            nodes.add(node);
+        }
+        return featureModel;
+    }
+
+    private static List<IFeatureTree> getNodes(IFeatureModel featureModel) {
+        return featureModel.getFeatureTreeStream().collect(Collectors.toList());
+    }
+
+    private static void assertDiffApplies(IFeatureModel oldFeatureModel, IFeatureModel newFeatureModel) {
+        List<FeatureModelEdit> edits = FeatureModelDiff.diff(oldFeatureModel, newFeatureModel);
+        FeatureModelDiff.apply(oldFeatureModel, edits);
+        assertEquals(
+                StructuralHashes.ofFeatureModel(newFeatureModel),
+                StructuralHashes.ofFeatureModel(oldFeatureModel),
+                () -> edits.toString());
+        assertEquals(List.of(), FeatureModelDiff.diff(oldFeatureModel, newFeatureModel));
+    }
+
+    @Test
+    public void identicalModels() {
+        IFeatureModel featureModel = load("testFeatureModels/car.xml", new XMLFeatureModelFormat());
+        IFeatureModel otherFeatureModel = load("testFeatureModels/car.xml", new XMLFeatureModelFormat());
+        assertEquals(List.of(), FeatureModelDiff.diff(featureModel, otherFeatureModel));
+    }
+
+    @Test
+    public void typedEdits() {
+        IFeatureModel oldFeatureModel = createFeatureModel(40, 1);
+        IFeatureModel newFeatureModel = createFeatureModel(40, 1);
+        oldFeatureModel.mutate().addConstraint(new Implies(Expressions.literal("F1"), Expressions.literal("F2")));
+        oldFeatureModel.mutate().addConstraint(new Implies(Expressions.literal("F3"), Expressions.literal("F4")));
+        newFeatureModel.mutate().addConstraint(new Implies(Expressions.literal("F1"), Expressions.literal("F2")));
+        newFeatureModel.mutate().addConstraint(new Or(Expressions.literal("F3"), Expressions.literal("F5")));
+        newFeatureModel.mutate().addConstraint(new Or(Expressions.literal("F6"), Expressions.literal("F7")));
+
+        IFeatureTree root = newFeatureModel.getRoots().get(0);
+        List<IFeatureTree> nodes = getNodes(newFeatureModel);
+        IFeatureTree moved = nodes.get(nodes.size() - 1);
+        IFeatureTree movedParent = moved.getParent().get();
+        IFeatureTree renamed = nodes.stream()
+                .filter(node -> node != moved && node.getParent().isPresent())
+                .filter(node -> node.getParent().get() != root && node.getParent().get() != movedParent)
+                .filter(node -> Integer.parseInt(node.getFeature().getName().get().substring(1)) > 7)
+                .findFirst()
+                .get();
+        renamed.getFeature().mutate().setName("Renamed");
+        IFeatureTree added = root.mutate().addFeatureBelow(newFeatureModel.mutate().addFeature("Added"), 0);
+        movedParent.removeChild(moved);
+        added.mutate().addChild(moved);
+        root.mutate().setGroups(List.of());
+        root.mutate().addGroup(1, 1);
+        nodes.get(11).mutate().setFeatureRange(Range.of(1, 1));
+        nodes.get(12).getFeature().mutate().setAttributeValue(Attributes.ABSTRACT, true);
+
+        List<FeatureModelEdit> edits = FeatureModelDiff.diff(oldFeatureModel, newFeatureModel);
+        List<Kind> kinds = edits.stream().map(FeatureModelEdit::getKind).collect(Collectors.toList());
+        assertTrue(kinds.contains(Kind.ADD_FEATURE), kinds::toString);
+        assertTrue(kinds.contains(Kind.MOVE_FEATURE), kinds::toString);
+        assertTrue(kinds.contains(Kind.RENAME_FEATURE), kinds::toString);
+        assertTrue(kinds.contains(Kind.CHANGE_GROUP), kinds::toString);
+        assertTrue(kinds.contains(Kind.CHANGE_FEATURE), kinds::toString);
+        assertTrue(kinds.contains(Kind.MODIFY_CONSTRAINT), kinds::toString);
+        assertTrue(kinds.contains(Kind.ADD_CONSTRAINT), kinds::toString);
+        assertDiffApplies(oldFeatureModel, newFeatureModel);
+    }
+
+    @Test
+    public void identicalSubtreesProduceNoEdits() {
+        IFeatureModel oldFeatureModel = createFeatureModel(2000, 2);
+        IFeatureModel newFeatureModel = createFeatureModel(2000, 2);
+        List<IFeatureTree> nodes = getNodes(newFeatureModel);
+        nodes.get(1000).getFeature().mutate().setAttributeValue(Attributes.HIDDEN, true);
+        nodes.get(1000).getFeature().mutate().removeAttributeValue(Attributes.HIDDEN);
+        nodes.get(1500).getFeature().mutate().setName("Renamed");
+        List<FeatureModelEdit> edits = FeatureModelDiff.diff(oldFeatureModel, newFeatureModel);
+        assertEquals(1, edits.size(), edits::toString);
+        assertEquals(Kind.RENAME_FEATURE, edits.get(0).getKind());
+    }
+
+    @Test
+    public void randomEdits() {
+        for (long seed = 0; seed < 20; seed++) {
+            Random random = new Random(seed);
+            IFeatureModel oldFeatureModel = createFeatureModel(200, seed);
+            IFeatureModel newFeatureModel = createFeatureModel(200, seed);
+            for (int i = 0; i < 30; i++) {
+                List<IFeatureTree> nodes = getNodes(newFeatureModel);
+                IFeatureTree node = nodes.get(1 + random.nextInt(nodes.size() - 1));
+                switch (random.nextInt(6)) {
+                    case 0:
+                        node.getFeature().mutate().setName("R" + seed + "_" + i);
+                        break;
+                    case 1:
+                        IFeatureTree parent = nodes.get(random.nextInt(nodes.size()));
+                        if (Trees.preOrderStream(node).noneMatch(descendant -> descendant == parent)) {
+                            node.getParent().get().removeChild(node);
+                            parent.mutate().addChild(random.nextInt(parent.getChildren().size() + 1), node);
+                            node.mutate().setGroupID(0);
+                        }
+                        break;
+                    case 2:
+                        node.mutate()
+                                .addFeatureBelow(
+                                        newFeatureModel.mutate().addFeature("A" + seed + "_" + i),
+                                        random.nextInt(node.getChildren().size() + 1));
+                        break;
+                    case 3:
+                        if (node.getChildren().isEmpty()) {
+                            node.getParent().get().removeChild(node);
+                            newFeatureModel.mutate().removeFeature(node.getFeature());
+                        }
+                        break;
+                    case 4:
+                        node.mutate().setAlternative();
+                        break;
+                    default:
+                        if (node.isMandatory()) {
+                            node.mutate().setOptional();
+                        } else {
+                            node.mutate().setMandatory();
+                        }
+                }
+            }
+            assertDiffApplies(oldFeatureModel, newFeatureModel);
+        }
+    }
+}
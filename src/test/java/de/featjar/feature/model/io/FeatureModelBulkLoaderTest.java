@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.featjar.Common;
+import de.featjar.base.data.Problem;
+import de.featjar.feature.model.io.FeatureModelBulkLoader.FileResult;
+import de.featjar.feature.model.io.FeatureModelBulkLoader.Summary;
+import de.featjar.feature.model.io.xml.XMLFeatureModelFormat;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FeatureModelBulkLoaderTest extends Common {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void loadDirectory() throws IOException {
+        byte[] car;
+        try (InputStream inputStream =
+                getClass().getClassLoader().getResourceAsStream("testFeatureModels/car.xml")) {
+            assertNotNull(inputStream);
+            car = inputStream.readAllBytes();
+        }
+        Files.createDirectories(directory.resolve("nested"));
+        for (int i = 0; i < 8; i++) {
+            Files.write(directory.resolve(i % 2 == 0 ? "car" + i + ".xml" : "nested/car" + i + ".xml"), car);
+        }
+        Files.write(
+                directory.resolve("broken.xml"),
+                "<?xml version=\"1.0\"?>\n<featureModel><struct><and name=\"A\">".getBytes(StandardCharsets.UTF_8));
+        Files.write(directory.resolve("notes.txt"), "not a model".getBytes(StandardCharsets.UTF_8));
+
+        FeatureModelBulkLoader loader =
+                new FeatureModelBulkLoader(List.of(new XMLFeatureModelFormat())).setMaxInFlight(3);
+        assertEquals(9, loader.discover(directory).size());
+
+        Map<Path, Integer> features = new ConcurrentHashMap<>();
+        Summary summary =
+                loader.load(directory, (path, featureModel) -> features.put(path, featureModel.getNumberOfFeatures()));
+        assertEquals(9, summary.getResults().size());
+        assertEquals(8, summary.getSuccessCount());
+        assertEquals(1, summary.getFailureCount());
+        FileResult failure = summary.getFailures().get(0);
+        assertEquals("broken.xml", failure.getPath().getFileName().toString());
+        assertFalse(failure.getProblems().isEmpty());
+        assertEquals(8, features.size());
+        for (FileResult result : summary.getResults()) {
+            if (result.isSuccess()) {
+                assertEquals("FeatureIDE", result.getFormatName());
+                assertEquals(16, features.get(result.getPath()));
+            }
+        }
+        assertEquals(8L * car.length + Files.size(directory.resolve("broken.xml")), summary.getBytes());
+        assertTrue(summary.getFilesPerSecond() > 0);
+    }
+
+    @Test
+    public void keepsDetectionProblems() throws IOException {
+        Path file = directory.resolve("unknown.xml");
+        Files.write(file, "not a model".getBytes(StandardCharsets.UTF_8));
+        FeatureModelBulkLoader loader = new FeatureModelBulkLoader(List.of(new XMLFeatureModelFormat()));
+        List<Problem> problems = loader.detectFormat(file).getProblems();
+        assertFalse(problems.isEmpty());
+
+        FileResult result = loader.load(List.of(file), (path, featureModel) -> {})
+                .getResults()
+                .get(0);
+        assertFalse(result.isSuccess());
+        assertEquals(problems.toString(), result.getProblems().toString());
+    }
+
+    @Test
+    public void failingConsumerFailsFile() throws IOException {
+        byte[] car;
+        try (InputStream inputStream =
+                getClass().getClassLoader().getResourceAsStream("testFeatureModels/car.xml")) {
+            assertNotNull(inputStream);
+            car = inputStream.readAllBytes();
+        }
+        Path file = directory.resolve("car.xml");
+        Files.write(file, car);
+        Summary summary = new FeatureModelBulkLoader(List.of(new XMLFeatureModelFormat()))
+                .load(List.of(file), (path, featureModel) -> {
+                    throw new IllegalStateException("rejected");
+                });
+        assertEquals(1, summary.getFailureCount());
+        assertFalse(summary.getFailures().get(0).getProblems().isEmpty());
+    }
+}
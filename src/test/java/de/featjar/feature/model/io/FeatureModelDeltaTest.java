@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.featjar.base.data.Result;
+import de.featjar.base.data.identifier.Identifiers;
+import de.featjar.feature.model.Attributes;
+import de.featjar.feature.model.FeatureModel;
+import de.featjar.feature.model.IFeatureModel;
+import de.featjar.feature.model.IFeatureTree;
+import de.featjar.feature.model.StructuralHashes;
+import de.featjar.feature.model.io.binary.FeatureModelDelta;
+import de.featjar.feature.model.io.binary.FeatureModelSnapshot;
+import de.featjar.formula.structure.Expressions;
+import de.featjar.formula.structure.connective.Implies;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+public class FeatureModelDeltaTest {
+
+    private static IFeatureModel createFeatureModel(int size) {
+        Random random = new Random(size);
+        IFeatureModel featureModel = new FeatureModel(Identifiers.newCounterIdentifier());
+        IFeatureTree root = featureModel.mutate().addFeatureTreeRoot(featureModel.mutate().addFeature("F0"));
+        List<IFeatureTree> nodes = new ArrayList<>(List.of(root));
+        for (int i = 1; i < size; i++) {
+            IFeatureTree parent = nodes.get(random.nextInt(nodes.size()));
+            nodes.add(parent.mutate().addFeatureBelow(featureModel.mutate().addFeature("F" + i)));
+        }
+        featureModel.mutate().addConstraint(new Implies(Expressions.literal("F1"), Expressions.literal("F2")));
+        return featureModel;
+    }
+
+    private static void mutate(IFeatureModel featureModel, Random random, int round) {
+        List<IFeatureTree> nodes = featureModel.getFeatureTreeStream().collect(Collectors.toList());
+        IFeatureTree node = nodes.get(1 + random.nextInt(nodes.size() - 1));
+        switch (random.nextInt(5)) {
+            case 0:
+                node.getFeature().mutate().setName("R" + round);
+                break;
+            case 1:
+                node.mutate()
+                        .addFeatureBelow(
+                                featureModel.mutate().addFeature("A" + round),
+                                random.nextInt(node.getChildren().size() + 1));
+                break;
+            case 2:
+                if (node.getChildren().isEmpty()) {
+                    node.getParent().get().removeChild(node);
+                    featureModel.mutate().removeFeature(node.getFeature());
+                }
+                break;
+            case 3:
+                node.getFeature().mutate().setAttributeValue(Attributes.DESCRIPTION, "round " + round);
+                break;
+            default:
+                featureModel
+                        .mutate()
+                        .addConstraint(new Implies(
+                                Expressions.literal(node.getFeature().getName().get()),
+                                Expressions.literal("F0")));
+        }
+    }
+
+    @Test
+    public void byteRoundTrip() throws IOException {
+        IFeatureModel oldFeatureModel = createFeatureModel(50);
+        IFeatureModel newFeatureModel = createFeatureModel(50);
+        Random random = new Random(0);
+        for (int i = 0; i < 20; i++) {
+            mutate(newFeatureModel, random, i);
+        }
+        FeatureModelDelta delta = FeatureModelDelta.fromBytes(
+                FeatureModelDelta.diff(oldFeatureModel, newFeatureModel).toBytes());
+        Result<IFeatureModel> result = delta.apply(oldFeatureModel);
+        assertTrue(result.isPresent(), () -> result.getProblems().toString());
+        assertEquals(
+                StructuralHashes.ofFeatureModel(newFeatureModel), StructuralHashes.ofFeatureModel(oldFeatureModel));
+    }
+
+    @Test
+    public void wrongBaseIsRejected() throws IOException {
+        IFeatureModel oldFeatureModel = createFeatureModel(50);
+        IFeatureModel newFeatureModel = createFeatureModel(50);
+        newFeatureModel.getRoots().get(0).getFeature().mutate().setName("Root");
+        FeatureModelDelta delta = FeatureModelDelta.diff(oldFeatureModel, newFeatureModel);
+        IFeatureModel otherFeatureModel = createFeatureModel(51);
+        long fingerprint = StructuralHashes.ofFeatureModel(otherFeatureModel);
+        assertTrue(delta.apply(otherFeatureModel).isEmpty());
+        assertEquals(fingerprint, StructuralHashes.ofFeatureModel(otherFeatureModel));
+    }
+
+    @Test
+    public void loopbackReplication() throws Exception {
+        int rounds = 50;
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Future<?> worker = executor.submit(() -> {
+                IFeatureModel replica = createFeatureModel(500);
+                try (Socket socket = serverSocket.accept();
+                        DataInputStream in = new DataInputStream(socket.getInputStream());
+                        DataOutputStream out = new DataOutputStream(socket.getOutputStream())) {
+                    for (int i = 0; i < rounds; i++) {
+                        byte[] bytes = new byte[in.readInt()];
+                        in.readFully(bytes);
+                        FeatureModelDelta.fromBytes(bytes).apply(replica).orElseThrow();
+                        out.writeLong(StructuralHashes.ofFeatureModel(replica));
+                        out.flush();
+                    }
+                }
+                return null;
+            });
+
+            IFeatureModel featureModel = createFeatureModel(500);
+            IFeatureModel shipped = createFeatureModel(500);
+            Random random = new Random(1);
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+                    DataInputStream in = new DataInputStream(socket.getInputStream());
+                    DataOutputStream out = new DataOutputStream(socket.getOutputStream())) {
+                for (int i = 0; i < rounds; i++) {
+                    mutate(featureModel, random, i);
+                    FeatureModelDelta delta = FeatureModelDelta.diff(shipped, featureModel);
+                    byte[] bytes = delta.toBytes();
+                    assertTrue(bytes.length < FeatureModelSnapshot.toBytes(featureModel).length / 10);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                    out.flush();
+                    delta.apply(shipped).orElseThrow();
+                    assertEquals(StructuralHashes.ofFeatureModel(featureModel), in.readLong());
+                }
+            }
+            worker.get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
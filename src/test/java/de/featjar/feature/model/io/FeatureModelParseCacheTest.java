@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.io;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.featjar.Common;
+import de.featjar.base.data.Attribute;
+import de.featjar.base.data.Result;
+import de.featjar.base.io.IO;
+import de.featjar.feature.model.FeatureModel;
+import de.featjar.feature.model.IFeatureModel;
+import de.featjar.feature.model.IFeatureTree;
+import de.featjar.feature.model.io.binary.FeatureModelSnapshot;
+import de.featjar.feature.model.io.cache.FeatureModelParseCache;
+import de.featjar.feature.model.io.xml.XMLFeatureModelFormat;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FeatureModelParseCacheTest extends Common {
+
+    private static final Attribute<Integer> PRIORITY = new Attribute<>("test", "priority", Integer.class);
+
+    private static final Attribute<StringBuilder> NOTE = new Attribute<>("test", "note", StringBuilder.class);
+
+    private static final String RECURSIVE_MODEL = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n"
+            + "<featureModel>\n"
+            + "  <struct>\n"
+            + "    <and name=\"root\">\n"
+            + "      <property data-type=\"int\" key=\"priority\" namespace=\"test\" recursive=\"true\" value=\"1\"/>\n"
+            + "      <feature name=\"A\"/>\n"
+            + "    </and>\n"
+            + "  </struct>\n"
+            + "</featureModel>\n";
+
+    @TempDir
+    Path directory;
+
+    private byte[] readCar() throws IOException {
+        try (InputStream inputStream =
+                getClass().getClassLoader().getResourceAsStream("testFeatureModels/car.xml")) {
+            return inputStream.readAllBytes();
+        }
+    }
+
+    @Test
+    public void snapshotRoundTrip() throws IOException {
+        IFeatureModel featureModel = load("testFeatureModels/car.xml", new XMLFeatureModelFormat());
+        byte[] bytes = FeatureModelSnapshot.toBytes(featureModel);
+        IFeatureModel copy = FeatureModelSnapshot.fromBytes(bytes);
+
+        assertArrayEquals(bytes, FeatureModelSnapshot.toBytes(copy));
+        assertEquals(featureModel.getNumberOfFeatures(), copy.getNumberOfFeatures());
+        assertEquals(featureModel.getNumberOfConstraints(), copy.getNumberOfConstraints());
+        IFeatureTree root = featureModel.getRoots().get(0);
+        IFeatureTree copyRoot = copy.getRoots().get(0);
+        assertEquals(root.getFeature().getName(), copyRoot.getFeature().getName());
+        assertEquals(root.getChildren().size(), copyRoot.getChildren().size());
+        for (int i = 0; i < root.getChildren().size(); i++) {
+            IFeatureTree child = root.getChildren().get(i);
+            IFeatureTree copyChild = copyRoot.getChildren().get(i);
+            assertEquals(child.getFeature().getName(), copyChild.getFeature().getName());
+            assertEquals(child.isMandatory(), copyChild.isMandatory());
+            assertEquals(child.getGroup().getLowerBound(), copyChild.getGroup().getLowerBound());
+            assertEquals(child.getGroup().getUpperBound(), copyChild.getGroup().getUpperBound());
+        }
+    }
+
+    @Test
+    public void hitsMissesAndEviction() throws IOException {
+        byte[] car = readCar();
+        Path file = directory.resolve("car.xml");
+        Files.write(file, car);
+        FeatureModelParseCache cache = new FeatureModelParseCache(directory.resolve("cache"), Long.MAX_VALUE);
+
+        Result<IFeatureModel> parsed = cache.load(file, new XMLFeatureModelFormat());
+        Result<IFeatureModel> cached = cache.load(file, new XMLFeatureModelFormat());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(parsed.get().getNumberOfFeatures(), cached.get().getNumberOfFeatures());
+        assertEquals(parsed.get().getNumberOfConstraints(), cached.get().getNumberOfConstraints());
+
+        String changed = new String(car, StandardCharsets.UTF_8) + "\n<!-- changed -->\n";
+        Files.write(file, changed.getBytes(StandardCharsets.UTF_8));
+        cache.load(file, new XMLFeatureModelFormat());
+        assertEquals(2, cache.getMisses());
+
+        Path oldEntry = cache.getDirectory()
+                .resolve(FeatureModelParseCache.getKey(car, new XMLFeatureModelFormat())
+                        + FeatureModelParseCache.ENTRY_EXTENSION);
+        Files.setLastModifiedTime(oldEntry, FileTime.fromMillis(0));
+        long entrySize = cache.getSize() / 2;
+        FeatureModelParseCache boundedCache = new FeatureModelParseCache(cache.getDirectory(), entrySize);
+        boundedCache.evict();
+        assertEquals(1, boundedCache.getEvictions());
+        assertTrue(boundedCache.getSize() <= entrySize);
+        assertFalse(Files.exists(oldEntry));
+        boundedCache.load(file, new XMLFeatureModelFormat());
+        assertEquals(1, boundedCache.getHits());
+    }
+
+    @Test
+    public void evictsOnWrite() throws IOException {
+        byte[] car = readCar();
+        Path first = directory.resolve("first.xml");
+        Files.write(first, car);
+        FeatureModelParseCache cache = new FeatureModelParseCache(directory.resolve("cache"), Long.MAX_VALUE);
+        cache.load(first, new XMLFeatureModelFormat());
+        long entrySize = cache.getSize();
+        Path firstEntry = cache.getDirectory()
+                .resolve(FeatureModelParseCache.getKey(car, new XMLFeatureModelFormat())
+                        + FeatureModelParseCache.ENTRY_EXTENSION);
+        Files.setLastModifiedTime(firstEntry, FileTime.fromMillis(0));
+
+        FeatureModelParseCache boundedCache =
+                new FeatureModelParseCache(cache.getDirectory(), entrySize + entrySize / 2);
+        Path second = directory.resolve("second.xml");
+        String changed = new String(car, StandardCharsets.UTF_8) + "\n<!-- second -->\n";
+        Files.write(second, changed.getBytes(StandardCharsets.UTF_8));
+        boundedCache.load(second, new XMLFeatureModelFormat());
+        assertEquals(1, boundedCache.getEvictions());
+        assertFalse(Files.exists(firstEntry));
+        assertEquals(entrySize, boundedCache.getSize());
+    }
+
+    @Test
+    public void keepsRecursiveAttributes() throws IOException {
+        Path file = directory.resolve("recursive.xml");
+        Files.write(file, RECURSIVE_MODEL.getBytes(StandardCharsets.UTF_8));
+        FeatureModelParseCache cache = new FeatureModelParseCache(directory.resolve("cache"), Long.MAX_VALUE);
+        FeatureModel parsed = (FeatureModel)
+                cache.load(file, new XMLFeatureModelFormat()).orElseThrow();
+        FeatureModel cached = (FeatureModel)
+                cache.load(file, new XMLFeatureModelFormat()).orElseThrow();
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertTrue(parsed.isRecursive(PRIORITY));
+        assertTrue(cached.isRecursive(PRIORITY));
+        assertTrue(IO.print(cached, new XMLFeatureModelFormat()).contains("recursive=\"true\""));
+    }
+
+    @Test
+    public void rejectsUnencodableAttributes() throws IOException {
+        IFeatureModel featureModel = load("testFeatureModels/car.xml", new XMLFeatureModelFormat());
+        featureModel.getRoots().get(0).getFeature().mutate().setAttributeValue(NOTE, new StringBuilder("note"));
+        assertThrows(IllegalArgumentException.class, () -> FeatureModelSnapshot.toBytes(featureModel));
+    }
+
+    @Test
+    public void parsesHashedBytesWithDeclaredEncoding() throws IOException {
+        Path file = directory.resolve("latin.xml");
+        Files.write(
+                file,
+                RECURSIVE_MODEL
+                        .replace("UTF-8", "ISO-8859-1")
+                        .replace("\"A\"", "\"\u00c4\"")
+                        .getBytes(StandardCharsets.ISO_8859_1));
+        FeatureModelParseCache cache = new FeatureModelParseCache(directory.resolve("cache"), Long.MAX_VALUE);
+        assertTrue(cache.load(file, new XMLFeatureModelFormat())
+                .orElseThrow()
+                .getFeature("\u00c4")
+                .isPresent());
+        assertTrue(cache.load(file, new XMLFeatureModelFormat())
+                .orElseThrow()
+                .getFeature("\u00c4")
+                .isPresent());
+        assertEquals(1, cache.getHits());
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.featjar.base.data.identifier.Identifiers;
+import de.featjar.feature.model.FeatureModel;
+import de.featjar.feature.model.IFeatureModel;
+import de.featjar.feature.model.IFeatureTree;
+import de.featjar.feature.model.StructuralHashes;
+import de.featjar.feature.model.io.store.FeatureModelStore;
+import de.featjar.formula.structure.Expressions;
+import de.featjar.formula.structure.connective.Or;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FeatureModelStoreTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Commits a growing feature model and returns the fingerprints of all versions, starting with version 1.
+     */
+    private static List<Long> commitVersions(FeatureModelStore store, int count) throws IOException {
+        Random random = new Random(count);
+        IFeatureModel featureModel = new FeatureModel(Identifiers.newCounterIdentifier());
+        List<IFeatureTree> nodes = new ArrayList<>();
+        nodes.add(featureModel.mutate().addFeatureTreeRoot(featureModel.mutate().addFeature("F0")));
+        List<Long> fingerprints = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            IFeatureTree parent = nodes.get(random.nextInt(nodes.size()));
+            nodes.add(parent.mutate().addFeatureBelow(featureModel.mutate().addFeature("F" + i)));
+            if (i % 3 == 0) {
+                featureModel
+                        .mutate()
+                        .addConstraint(new Or(Expressions.literal("F" + i), Expressions.literal("F" + (i - 1))));
+            }
+            assertEquals(i, store.commit(featureModel));
+            fingerprints.add(StructuralHashes.ofFeatureModel(featureModel));
+        }
+        return fingerprints;
+    }
+
+    private static void assertVersions(FeatureModelStore store, List<Long> fingerprints) {
+        assertEquals(fingerprints.size(), store.getLatestVersion());
+        for (int version = 1; version <= fingerprints.size(); version++) {
+            IFeatureModel featureModel = store.load(version).orElseThrow();
+            assertEquals(fingerprints.get(version - 1), StructuralHashes.ofFeatureModel(featureModel));
+        }
+    }
+
+    private List<Path> getSnapshotFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("snapshot-"))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void loadsEveryVersion() throws IOException {
+        List<Long> fingerprints;
+        try (FeatureModelStore store = new FeatureModelStore(directory, 5)) {
+            assertTrue(store.load(1).isEmpty());
+            fingerprints = commitVersions(store, 23);
+            assertVersions(store, fingerprints);
+        }
+        try (FeatureModelStore store = new FeatureModelStore(directory, 5)) {
+            assertEquals(List.of(5, 10, 15, 20), store.getSnapshotVersions());
+            assertVersions(store, fingerprints);
+        }
+    }
+
+    @Test
+    public void recoversFromTornAppend() throws IOException {
+        List<Long> fingerprints;
+        try (FeatureModelStore store = new FeatureModelStore(directory, 4)) {
+            fingerprints = commitVersions(store, 10);
+        }
+        Path log = directory.resolve(FeatureModelStore.LOG_FILE);
+        try (RandomAccessFile file = new RandomAccessFile(log.toFile(), "rw")) {
+            file.setLength(file.length() - 3);
+        }
+        try (FeatureModelStore store = new FeatureModelStore(directory, 4)) {
+            assertVersions(store, fingerprints.subList(0, 9));
+            fingerprints = new ArrayList<>(fingerprints.subList(0, 9));
+            IFeatureModel featureModel = store.load(9).orElseThrow();
+            assertEquals(10, store.commit(featureModel));
+            fingerprints.add(StructuralHashes.ofFeatureModel(featureModel));
+        }
+        long size = Files.size(log);
+        try (RandomAccessFile file = new RandomAccessFile(log.toFile(), "rw")) {
+            file.seek(size);
+            file.write(new byte[] {0, 0, 1});
+        }
+        try (FeatureModelStore store = new FeatureModelStore(directory, 4)) {
+            assertVersions(store, fingerprints);
+        }
+        assertEquals(size, Files.size(log));
+    }
+
+    @Test
+    public void recoversFromCorruptRecord() throws IOException {
+        List<Long> fingerprints;
+        try (FeatureModelStore store = new FeatureModelStore(directory, 100)) {
+            fingerprints = commitVersions(store, 6);
+        }
+        Path log = directory.resolve(FeatureModelStore.LOG_FILE);
+        try (RandomAccessFile file = new RandomAccessFile(log.toFile(), "rw")) {
+            file.seek(file.length() - 1);
+            int last = file.read();
+            file.seek(file.length() - 1);
+            file.write(last ^ 0xFF);
+        }
+        try (FeatureModelStore store = new FeatureModelStore(directory, 100)) {
+            assertVersions(store, fingerprints.subList(0, 5));
+            assertEquals(6, store.commit(store.load(5).orElseThrow()));
+        }
+    }
+
+    @Test
+    public void rebuildsLostSnapshots() throws Exception {
+        List<Long> fingerprints;
+        try (FeatureModelStore store = new FeatureModelStore(directory, 3)) {
+            fingerprints = commitVersions(store, 12);
+        }
+        for (Path snapshot : getSnapshotFiles()) {
+            Files.delete(snapshot);
+        }
+        Files.write(directory.resolve("snapshot-0000000004.fms.tmp"), new byte[] {1, 2, 3});
+        Files.write(directory.resolve("snapshot-0000000099.fms"), new byte[] {1, 2, 3});
+        try (FeatureModelStore store = new FeatureModelStore(directory, 3)) {
+            store.writeMissingSnapshots().get();
+            assertEquals(List.of(3, 6, 9, 12), store.getSnapshotVersions());
+            assertVersions(store, fingerprints);
+        }
+        assertFalse(Files.exists(directory.resolve("snapshot-0000000004.fms.tmp")));
+        assertFalse(Files.exists(directory.resolve("snapshot-0000000099.fms")));
+    }
+
+    @Test
+    public void fallsBackFromCorruptSnapshots() throws Exception {
+        List<Long> fingerprints;
+        try (FeatureModelStore store = new FeatureModelStore(directory, 3)) {
+            fingerprints = commitVersions(store, 12);
+        }
+        Path truncated = directory.resolve("snapshot-0000000012.fms");
+        try (RandomAccessFile file = new RandomAccessFile(truncated.toFile(), "rw")) {
+            file.setLength(file.length() / 2);
+        }
+        Path corrupt = directory.resolve("snapshot-0000000009.fms");
+        try (RandomAccessFile file = new RandomAccessFile(corrupt.toFile(), "rw")) {
+            file.seek(file.length() - 1);
+            int last = file.read();
+            file.seek(file.length() - 1);
+            file.write(last ^ 0xFF);
+        }
+        try (FeatureModelStore store = new FeatureModelStore(directory, 3)) {
+            assertVersions(store, fingerprints);
+            store.writeMissingSnapshots().get();
+            assertEquals(List.of(3, 6, 9, 12), store.getSnapshotVersions());
+        }
+        for (Path snapshot : getSnapshotFiles()) {
+            Files.write(snapshot, new byte[0]);
+        }
+        try (FeatureModelStore store = new FeatureModelStore(directory, 3)) {
+            assertVersions(store, fingerprints);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.featjar.Common;
+import de.featjar.feature.model.IFeatureModel;
+import de.featjar.feature.model.IFeatureTree;
+import de.featjar.feature.model.diff.FeatureModelDiff;
+import de.featjar.feature.model.diff.FeatureModelEdit;
+import de.featjar.feature.model.io.xml.XMLFeatureModelFormat;
+import de.featjar.feature.model.jfr.CloneEvent;
+import de.featjar.feature.model.jfr.FormatEvent;
+import de.featjar.feature.model.jfr.MutationEvent;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+public class FlightRecorderEventTest extends Common {
+    @Test
+    public void formatAndCloneEvents() throws IOException {
+        Path dump = Files.createTempFile("feature-model", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(FormatEvent.class);
+            recording.enable(CloneEvent.class);
+            recording.start();
+            IFeatureModel featureModel = load("testFeatureModels/car.xml", new XMLFeatureModelFormat());
+            featureModel.clone();
+            recording.stop();
+            recording.dump(dump);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+            List<RecordedEvent> formatEvents = events.stream()
+                    .filter(e -> e.getEventType().getName().equals("de.featjar.feature.model.Format"))
+                    .collect(Collectors.toList());
+            assertEquals(1, formatEvents.size());
+            assertEquals("FeatureIDE", formatEvents.get(0).getString("format"));
+            assertEquals(FormatEvent.PARSE, formatEvents.get(0).getString("operation"));
+            assertEquals(featureModel.getNumberOfFeatures(), formatEvents.get(0).getInt("features"));
+            assertTrue(formatEvents.get(0).getLong("bytes") > 0);
+            assertTrue(events.stream()
+                    .anyMatch(e -> e.getEventType().getName().equals("de.featjar.feature.model.Clone")));
+        } finally {
+            Files.deleteIfExists(dump);
+        }
+    }
+
+    @Test
+    public void mutationEvent() throws IOException {
+        Path dump = Files.createTempFile("feature-model", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(MutationEvent.class);
+            recording.start();
+            IFeatureModel oldFeatureModel = load("testFeatureModels/car.xml", new XMLFeatureModelFormat());
+            IFeatureModel newFeatureModel = load("testFeatureModels/car.xml", new XMLFeatureModelFormat());
+            IFeatureTree root = newFeatureModel.getRoots().get(0);
+            root.getChildren().get(0).mutate().removeFromTree();
+            root.mutate().addFeatureBelow(newFeatureModel.mutate().addFeature("New"));
+            List<FeatureModelEdit> edits = FeatureModelDiff.diff(oldFeatureModel, newFeatureModel);
+            FeatureModelDiff.apply(oldFeatureModel, edits);
+            recording.stop();
+            recording.dump(dump);
+
+            List<RecordedEvent> mutationEvents = RecordingFile.readAllEvents(dump).stream()
+                    .filter(e -> e.getEventType().getName().equals("de.featjar.feature.model.Mutation"))
+                    .collect(Collectors.toList());
+            assertEquals(1, mutationEvents.size());
+            assertEquals("apply", mutationEvents.get(0).getString("operation"));
+            assertEquals(edits.size(), mutationEvents.get(0).getInt("elements"));
+        } finally {
+            Files.deleteIfExists(dump);
+        }
+    }
+}
@@ -20,14 +20,21 @@
  */
 package de.featjar.feature.model.io;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import de.featjar.Common;
+import de.featjar.base.data.identifier.Identifiers;
 import de.featjar.base.io.IO;
+import de.featjar.base.tree.Trees;
+import de.featjar.feature.model.FeatureModel;
+import de.featjar.feature.model.IFeature;
 import de.featjar.feature.model.IFeatureModel;
 import de.featjar.feature.model.io.xml.GraphVizFeatureModelFormat;
 import de.featjar.feature.model.io.xml.XMLFeatureModelFormat;
 import java.io.IOException;
+import java.io.StringWriter;
 import org.junit.jupiter.api.Test;
 
 public class GraphVizFeatureModelFormatTest extends Common {
@@ -36,4 +43,76 @@ public class GraphVizFeatureModelFormatTest extends Common {
         IFeatureModel featureModel = load("testFeatureModels/car.xml", new XMLFeatureModelFormat());
         assertTrue(IO.print(featureModel, new GraphVizFeatureModelFormat()).startsWith("digraph {"));
     }
+
+    @Test
+    public void streamingExportWritesAllFeatures() throws IOException {
+        IFeatureModel featureModel = load("testFeatureModels/car.xml", new XMLFeatureModelFormat());
+        StringWriter writer = new StringWriter();
+        int written = new GraphVizFeatureModelFormat().serialize(featureModel, writer);
+        assertEquals(featureModel.getNumberOfFeatures(), written);
+        assertTrue(writer.toString().startsWith("digraph {"));
+        assertTrue(writer.toString().endsWith("}"));
+        assertFalse(writer.toString().contains("_more"));
+    }
+
+    @Test
+    public void levelOfDetail() throws IOException {
+        IFeatureModel featureModel = load("testFeatureModels/car.xml", new XMLFeatureModelFormat());
+        GraphVizFeatureModelFormat format = new GraphVizFeatureModelFormat().setMaxDepth(1);
+        StringWriter writer = new StringWriter();
+        int written = format.serialize(featureModel, writer);
+        assertEquals(1 + featureModel.getRoots().get(0).getChildrenCount(), written);
+        assertTrue(writer.toString().contains("_more"));
+
+        writer = new StringWriter();
+        written = new GraphVizFeatureModelFormat().setMaxNodes(3).serialize(featureModel, writer);
+        assertTrue(written <= 3);
+        assertTrue(writer.toString().contains("features\""));
+
+        writer = new StringWriter();
+        written = new GraphVizFeatureModelFormat().setSubtreeRoot("Gearbox").serialize(featureModel, writer);
+        assertEquals(
+                Trees.preOrderStream(featureModel.getFeatureTree("Gearbox").get())
+                        .count(),
+                written);
+        assertFalse(writer.toString().contains("label=\"Car\""));
+
+        assertTrue(new GraphVizFeatureModelFormat()
+                .setSubtreeRoot("DoesNotExist")
+                .serialize(featureModel)
+                .isEmpty());
+    }
+
+    @Test
+    public void multipleRoots() throws IOException {
+        FeatureModel featureModel = new FeatureModel(Identifiers.newCounterIdentifier());
+        IFeature first = featureModel.mutate().addFeature("First");
+        IFeature second = featureModel.mutate().addFeature("Second");
+        featureModel.mutate().addFeatureTreeRoot(first).mutate().addFeatureBelow(featureModel.addFeature("Child"));
+        featureModel.mutate().addFeatureTreeRoot(second);
+        StringWriter writer = new StringWriter();
+        assertEquals(3, new GraphVizFeatureModelFormat().serialize(featureModel, writer));
+        assertTrue(writer.toString().contains("label=\"First\""));
+        assertTrue(writer.toString().contains("label=\"Second\""));
+    }
+
+    @Test
+    public void summaryCountsOmittedFeatures() throws IOException {
+        IFeatureModel featureModel = load("testFeatureModels/car.xml", new XMLFeatureModelFormat());
+        StringWriter writer = new StringWriter();
+        new GraphVizFeatureModelFormat().setMaxDepth(0).serialize(featureModel, writer);
+        assertTrue(writer.toString().contains("label=\"+" + (featureModel.getNumberOfFeatures() - 1) + " features\""));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void deprecatedHelpersMatchStreamingExport() throws IOException {
+        IFeatureModel featureModel = load("testFeatureModels/car.xml", new XMLFeatureModelFormat());
+        String dot = IO.print(featureModel, new GraphVizFeatureModelFormat());
+        GraphVizFeatureModelFormat format = new GraphVizFeatureModelFormat();
+        featureModel.getFeatureTreeStream().forEach(tree -> {
+            assertTrue(dot.contains(format.getNode(tree)));
+            assertTrue(dot.contains(format.getEdge(tree)));
+        });
+    }
 }
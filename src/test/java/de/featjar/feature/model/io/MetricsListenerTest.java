@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2024 FeatJAR-Development-Team
+ *
+ * This file is part of FeatJAR-feature-model.
+ *
+ * feature-model is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3.0 of the License,
+ * or (at your option) any later version.
+ *
+ * feature-model is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with feature-model. If not, see <https://www.gnu.org/licenses/>.
+ *
+ * See <https://github.com/FeatureIDE/FeatJAR-feature-model> for further information.
+ */
+package de.featjar.feature.model.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.featjar.Common;
+import de.featjar.feature.model.IFeatureModel;
+import de.featjar.feature.model.io.xml.GraphVizFeatureModelFormat;
+import de.featjar.feature.model.io.xml.XMLFeatureModelFormat;
+import de.featjar.feature.model.metrics.HistogramMetricsListener;
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+
+public class MetricsListenerTest extends Common {
+    @Test
+    public void histogramMetricsListener() throws IOException {
+        HistogramMetricsListener listener = new HistogramMetricsListener();
+        IFeatureModel featureModel =
+                load("testFeatureModels/car.xml", new XMLFeatureModelFormat().setMetricsListener(listener));
+        assertEquals(1, listener.getHistogram("FeatureIDE/TREE/nanos").getCount());
+        assertEquals(
+                featureModel.getNumberOfFeatures(),
+                listener.getHistogram("FeatureIDE/TREE/elements").getSum());
+        assertEquals(
+                featureModel.getNumberOfConstraints(),
+                listener.getHistogram("FeatureIDE/CONSTRAINTS/elements").getSum());
+        assertEquals(1, listener.getHistogram("FeatureIDE/READ/nanos").getCount());
+        assertEquals(1, listener.getHistogram("FeatureIDE/bytes").getCount());
+        assertTrue(listener.getHistogram("FeatureIDE/bytes").getSum() > 0);
+        assertEquals(0, listener.getHistogram("FeatureIDE/problems").getSum());
+
+        String dot = new GraphVizFeatureModelFormat()
+                .setMetricsListener(listener)
+                .serialize(featureModel)
+                .get();
+        assertEquals(dot.length(), listener.getHistogram("GraphViz/bytes").getSum());
+        assertTrue(listener.dump().contains("GraphViz/WRITE/nanos"));
+    }
+}